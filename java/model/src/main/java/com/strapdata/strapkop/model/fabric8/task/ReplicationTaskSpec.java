@@ -36,4 +36,7 @@ public class ReplicationTaskSpec implements KubernetesResource {
     String dcName;
     int dcSize;
     Map<String, Integer> replicationMap;
+    Map<String, Integer> dcSizes;
+    Boolean rebuild;
+    String srcDcName;
 }
@@ -19,6 +19,7 @@ package com.strapdata.strapkop.model.fabric8.task;
 
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.strapdata.strapkop.model.k8s.task.StreamStatus;
 import com.strapdata.strapkop.model.k8s.task.TaskPhase;
 import io.fabric8.kubernetes.api.model.KubernetesResource;
 import lombok.Getter;
@@ -41,4 +42,5 @@ public class TaskStatus implements KubernetesResource {
     private Long durationInMs;
     private String lastMessage = null;
     private Map<String, TaskPhase> pods = new HashMap<>();
+    private Map<String, StreamStatus> streams = new HashMap<>();
 }
@@ -52,10 +52,12 @@ public final class OperatorLabels {
 
     public static final String CREDENTIAL = labelPrefix + "credential";
     public static final String KEYSTORE = labelPrefix + "keystore";
+    public static final String IMMUTABLE_CONFIGMAP = labelPrefix + "immutable-configmap";
     public static final String PVC_DECOMMISSION_POLICY = labelPrefix + "pvc-decommission-policy";
 
     public static final String DATACENTER_GENERATION = labelPrefix + "datacenter-generation";
     public static final String DATACENTER_FINGERPRINT = labelPrefix + "datacenter-fingerprint";
+    public static final String RACK_CONFIGMAP = labelPrefix + "rack-configmap";
 
     public static final String REAPER_FINGERPRINT = labelPrefix + "reaper-fingerprint";
 
@@ -262,4 +262,19 @@ public class DataCenterSpec {
         ///System.out.println(json+"="+digest);
         return digest;
     }
+
+    /**
+     * Fingerprint of the desired CQL schema (keyspaces and roles), including plugin contributions.
+     */
+    public String cqlFingerprint() {
+        List<Object> acc = new ArrayList<>();
+        acc.add(datacenterName);
+        acc.add(replicas);
+        acc.add(cassandra);
+        acc.add(managedKeyspaces);
+        acc.add(elasticsearch);
+        acc.add(reaper);
+        acc.add(kibana);
+        return DigestUtils.sha1Hex(GsonUtils.toJson(acc)).substring(0,7);
+    }
 }
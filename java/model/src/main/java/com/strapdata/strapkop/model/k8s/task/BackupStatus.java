@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.model.k8s.task;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+import lombok.*;
+
+/**
+ * Incremental backup progress of a pod.
+ */
+@Data
+@With
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+public class BackupStatus {
+
+    /**
+     * Pod backup phase
+     */
+    @SerializedName("phase")
+    @Expose
+    private TaskPhase phase = TaskPhase.WAITING;
+
+    /**
+     * Number of files in the snapshot
+     */
+    @SerializedName("filesTotal")
+    @Expose
+    private int filesTotal = 0;
+
+    /**
+     * Number of files uploaded
+     */
+    @SerializedName("filesUploaded")
+    @Expose
+    private int filesUploaded = 0;
+
+    /**
+     * Number of files already in the repository
+     */
+    @SerializedName("filesSkipped")
+    @Expose
+    private int filesSkipped = 0;
+
+    /**
+     * Size in bytes of the snapshot
+     */
+    @SerializedName("bytesTotal")
+    @Expose
+    private long bytesTotal = 0;
+
+    /**
+     * Bytes uploaded so far
+     */
+    @SerializedName("bytesUploaded")
+    @Expose
+    private long bytesUploaded = 0;
+}
@@ -39,4 +39,18 @@ public class BackupTaskSpec  {
     @SerializedName("keyspaces")
     @Expose
     private List<String> keyspaces;
+
+    /**
+     * Incremental backup: snapshot nodes and upload SSTables not yet in the operator repository.
+     */
+    @SerializedName("incremental")
+    @Expose
+    private Boolean incremental = false;
+
+    /**
+     * Upload bandwidth per node in MB/s for incremental backups, operator default if null
+     */
+    @SerializedName("bandwidthInMBPerSec")
+    @Expose
+    private Integer bandwidthInMBPerSec;
 }
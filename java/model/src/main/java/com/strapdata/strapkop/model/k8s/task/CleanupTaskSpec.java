@@ -33,10 +33,24 @@ public class CleanupTaskSpec {
     String keyspace;
 
     /**
-     * Wait interval between node cleanup, 10s by default
+     * Wait interval before checking again the pending compactions of a postponed node, 10s by default
      */
     @SerializedName("waitIntervalInSec")
     @Expose
     Long waitIntervalInSec = 10L;
+
+    /**
+     * Maximum number of nodes cleaned up concurrently in a rack, 1 by default
+     */
+    @SerializedName("nodesPerRack")
+    @Expose
+    Integer nodesPerRack;
+
+    /**
+     * Cleanup of a node is postponed while its pending compactions exceed this threshold, operator default if null
+     */
+    @SerializedName("maxPendingCompactions")
+    @Expose
+    Integer maxPendingCompactions;
 }
 
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.model.k8s.task;
+
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.annotations.SerializedName;
+import com.strapdata.strapkop.model.GsonIsoDateAdapter;
+import lombok.*;
+
+import java.util.Date;
+
+/**
+ * Repair progress of a pod, counting the repair segments (token subranges) coordinated by the pod.
+ */
+@Data
+@With
+@AllArgsConstructor
+@NoArgsConstructor
+@ToString
+public class RepairStatus {
+
+    /**
+     * Pod repair phase
+     */
+    @SerializedName("phase")
+    @Expose
+    private TaskPhase phase = TaskPhase.WAITING;
+
+    /**
+     * Repair segments coordinated by the pod
+     */
+    @SerializedName("segmentsTotal")
+    @Expose
+    private int segmentsTotal = 0;
+
+    /**
+     * Repair segments successfully repaired
+     */
+    @SerializedName("segmentsCompleted")
+    @Expose
+    private int segmentsCompleted = 0;
+
+    /**
+     * Repair segments failed after all attempts
+     */
+    @SerializedName("segmentsFailed")
+    @Expose
+    private int segmentsFailed = 0;
+
+    /**
+     * Percentage of the pod segments completed or failed
+     */
+    @SerializedName("progressPercent")
+    @Expose
+    private int progressPercent = 0;
+
+    /**
+     * Date of the last segment completion or failure
+     */
+    @SerializedName("lastProgressDate")
+    @Expose
+    @JsonAdapter(GsonIsoDateAdapter.class)
+    private Date lastProgressDate = null;
+}
@@ -33,10 +33,24 @@ public class RepairTaskSpec {
     String keyspace;
 
     /**
-     * Wait interval between node repair, 10s by default
+     * Wait interval before retrying a failed repair segment, 10s by default
      */
     @SerializedName("waitIntervalInSec")
     @Expose
     Long waitIntervalInSec = 10L;
+
+    /**
+     * Maximum number of repair segments running concurrently (on distinct replicas), operator default if null
+     */
+    @SerializedName("concurrency")
+    @Expose
+    Integer concurrency;
+
+    /**
+     * Number of segments per token range, operator default if null
+     */
+    @SerializedName("segmentsPerRange")
+    @Expose
+    Integer segmentsPerRange;
 }
 
@@ -22,6 +22,7 @@ import com.google.gson.annotations.SerializedName;
 import lombok.*;
 
 import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Remove a datacenter from replication map, before removing DC
@@ -61,6 +62,40 @@ public class ReplicationTaskSpec {
     @Expose
     private Map<String, Integer> replicationMap;
 
+    /**
+     * Datacenters to add or remove with their number of nodes, all updated in one schema change.
+     * When set, dcName and dcSize are ignored.
+     */
+    @SerializedName("dcSizes")
+    @Expose
+    private Map<String, Integer> dcSizes;
+
+    /**
+     * When adding datacenters, rebuild the added datacenters managed by this operator.
+     */
+    @SerializedName("rebuild")
+    @Expose
+    private Boolean rebuild = false;
+
+    /**
+     * Source datacenter to stream from when rebuilding, default is the task datacenter.
+     */
+    @SerializedName("srcDcName")
+    @Expose
+    private String srcDcName;
+
+    /**
+     * @return target datacenters with their number of nodes.
+     */
+    public Map<String, Integer> targetDcSizes() {
+        if (dcSizes != null && !dcSizes.isEmpty())
+            return new TreeMap<>(dcSizes);
+        Map<String, Integer> target = new TreeMap<>();
+        if (dcName != null)
+            target.put(dcName, dcSize);
+        return target;
+    }
+
     public enum Action {
         ADD,    // add dc
         REMOVE  // remove dc
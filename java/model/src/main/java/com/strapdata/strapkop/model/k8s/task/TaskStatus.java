@@ -69,4 +69,25 @@ public class TaskStatus {
     @SerializedName("pods")
     @Expose
     private Map<String, TaskPhase> pods = new HashMap<>();
+
+    /**
+     * Per datacenter streaming status, for tasks streaming data to several datacenters.
+     */
+    @SerializedName("streams")
+    @Expose
+    private Map<String, StreamStatus> streams = new HashMap<>();
+
+    /**
+     * Per pod repair progress, for repair tasks.
+     */
+    @SerializedName("repairs")
+    @Expose
+    private Map<String, RepairStatus> repairs = new HashMap<>();
+
+    /**
+     * Per pod backup progress, for incremental backup tasks.
+     */
+    @SerializedName("backups")
+    @Expose
+    private Map<String, BackupStatus> backups = new HashMap<>();
 }
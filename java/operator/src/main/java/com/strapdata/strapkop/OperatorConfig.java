@@ -68,4 +68,184 @@ public class OperatorConfig {
      * CQL schema agreement wait in seconds
      */
     int maxSchemaAgreementWaitSeconds = 30;
+
+    /**
+     * Maximum number of nodes decommissioned concurrently (in distinct racks) when scaling down a datacenter
+     */
+    int scaleDownParallelism = 2;
+
+    /**
+     * Default maximum number of repair segments running concurrently, on distinct replica sets
+     */
+    int repairConcurrency = 8;
+
+    /**
+     * Default number of repair segments per token range, should be increased when nodes own a few large token ranges
+     */
+    int repairSegmentsPerRange = 1;
+
+    /**
+     * Maximum number of attempts to repair a segment
+     */
+    int repairSegmentMaxAttempts = 3;
+
+    /**
+     * Default maximum number of pending compactions of a node to start its cleanup
+     */
+    int cleanupMaxPendingCompactions = 20;
+
+    /**
+     * Maximum time in seconds a node cleanup is postponed because of pending compactions
+     */
+    int cleanupMaxPostponeInSec = 3600;
+
+    /**
+     * Root directory of the incremental backup repository
+     */
+    String backupRepositoryPath = "/var/lib/elassandra-operator/backups";
+
+    /**
+     * Default upload bandwidth per node in MB/s of incremental backups
+     */
+    int backupBandwidthInMBPerSec = 50;
+
+    /**
+     * Streaming progress reporting interval in seconds while decommissioning a node
+     */
+    int streamingProgressIntervalInSec = 30;
+
+    /**
+     * Minimum interval in seconds between two progress updates of a running task status
+     */
+    int taskStatusUpdateIntervalInSec = 10;
+
+    /**
+     * Idle time in seconds before closing the CQL session of a datacenter
+     */
+    int cqlSessionIdleTimeoutInSec = 600;
+
+    /**
+     * CQL sessions idle and health check interval in seconds
+     */
+    int cqlSessionHealthCheckIntervalInSec = 60;
+
+    /**
+     * CQL connect timeout in milliseconds when probing candidate roles in parallel
+     */
+    int cqlProbeConnectTimeoutMillis = 2000;
+
+    /**
+     * Maximum number of concurrent GRANT statements when reconciling a CQL role
+     */
+    int cqlGrantConcurrency = 8;
+
+    /**
+     * Maximum number of local hosts the operator opens CQL connections to, per datacenter
+     */
+    int cqlMaxHostsPerSession = 3;
+
+    /**
+     * Maximum number of retries on another host for idempotent CQL requests
+     */
+    int cqlMaxRetries = 2;
+
+    /**
+     * Smoothing factor of the per-host CQL failure rate moving average
+     */
+    double cqlHostFailureEwmaAlpha = 0.3;
+
+    /**
+     * Failure rate above which a host is tried after the other hosts
+     */
+    double cqlHostFailureRateThreshold = 0.5;
+
+    /**
+     * Half-life in milliseconds of the per-host CQL failure rate when the host receives no more requests
+     */
+    long cqlHostFailureHalfLifeMillis = 30000;
+
+    /**
+     * Delay in milliseconds before a speculative execution of idempotent CQL reads
+     */
+    long cqlSpeculativeExecutionDelayMillis = 500;
+
+    /**
+     * Maximum number of speculative executions of idempotent CQL reads
+     */
+    int cqlSpeculativeExecutionMax = 2;
+
+    /**
+     * Number of threads of the event loop group shared by all sidecar HTTP clients
+     */
+    int sidecarEventLoopThreads = 4;
+
+    /**
+     * Maximum number of pooled HTTP connections per sidecar
+     */
+    int sidecarMaxConnectionsPerHost = 2;
+
+    /**
+     * Idle time in seconds before closing a pooled sidecar HTTP connection
+     */
+    int sidecarConnectionIdleTimeoutInSec = 60;
+
+    /**
+     * Maximum number of pooled JMX connectors, least recently used connectors are closed first
+     */
+    int jmxPoolMaxSize = 500;
+
+    /**
+     * Idle time in seconds before closing a pooled JMX connector
+     */
+    int jmxPoolIdleTimeoutInSec = 600;
+
+    /**
+     * Liveness probe interval in seconds of the pooled JMX connectors
+     */
+    int jmxPoolProbeIntervalInSec = 60;
+
+    /**
+     * Maximum number of cached client TLS sessions per SSL context, for TLS session resumption
+     */
+    int sslSessionCacheSize = 1000;
+
+    /**
+     * Timeout in seconds of cached client TLS sessions
+     */
+    int sslSessionTimeoutInSec = 3600;
+
+    /**
+     * Node status polling interval in seconds, statuses older than 3 intervals are considered as stale
+     */
+    int nodeStatusPollIntervalInSec = 30;
+
+    /**
+     * Random jitter ratio applied to the node status polling interval
+     */
+    double nodeStatusPollJitter = 0.2;
+
+    /**
+     * Maximum number of nodes concurrently polled
+     */
+    int nodeStatusPollConcurrency = 16;
+
+    /**
+     * Timeout in seconds of a node status poll
+     */
+    int nodeStatusPollTimeoutInSec = 10;
+
+    /**
+     * Number of node statuses kept in memory per node
+     */
+    int nodeStatusHistorySize = 8;
+
+    /**
+     * Maximum time in seconds to wait for a CQL schema agreement
+     */
+    int schemaAgreementDeadlineInSec = 120;
+
+    /**
+     * Schema agreement re-check interval in seconds when no schema or host event is received
+     */
+    int schemaAgreementCheckIntervalInSec = 5;
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.backup;
+
+import lombok.Data;
+
+import java.util.regex.Pattern;
+
+/**
+ * A file of a node snapshot.
+ */
+@Data
+public class BackupFile {
+
+    // SSTable components, immutable once written, for example mc-12-big-Data.db
+    static final Pattern SSTABLE_PATTERN = Pattern.compile("^[a-z]{2}-\\d+-big-[A-Za-z0-9]+\\.[a-z0-9]+$");
+
+    // SSTable component holding the CRC32 of the Data.db component
+    static final String DIGEST_COMPONENT = "Digest.crc32";
+
+    final String keyspace;
+    final String table;     // table directory name, including the table id
+    final String name;
+    final long size;
+    final String path;      // absolute path on the node
+
+    /**
+     * @return true for SSTable components, shared by successive snapshots.
+     */
+    public boolean isSSTable() {
+        return SSTABLE_PATTERN.matcher(name).matches();
+    }
+
+    /**
+     * @return the SSTable descriptor, for example mc-12-big.
+     */
+    public String sstable() {
+        return name.substring(0, name.lastIndexOf('-'));
+    }
+
+    public boolean isDigest() {
+        return isSSTable() && name.endsWith("-" + DIGEST_COMPONENT);
+    }
+
+    /**
+     * @param digest the content digest of the SSTable, or null if unknown.
+     * @return the repository key of the file. SSTable components are keyed by SSTable descriptor and content digest,
+     * and stored once. Other snapshot files (manifest, schema) and SSTables without digest are stored per snapshot.
+     */
+    public String key(String tag, String digest) {
+        return isSSTable() && digest != null ?
+                keyspace + "/" + table + "/" + sstable() + "-" + digest + "/" + name :
+                keyspace + "/" + table + "/snapshots/" + tag + "/" + name;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.backup;
+
+import com.strapdata.strapkop.model.k8s.task.BackupStatus;
+import com.strapdata.strapkop.model.k8s.task.TaskPhase;
+
+/**
+ * Incremental backup progress of a node.
+ */
+public class BackupProgress {
+    private int filesTotal = 0;
+    private int filesUploaded = 0;
+    private int filesSkipped = 0;
+    private long bytesTotal = 0;
+    private long bytesUploaded = 0;
+
+    public synchronized void start(int files, long bytes) {
+        this.filesTotal = files;
+        this.bytesTotal = bytes;
+    }
+
+    public synchronized void uploaded() {
+        filesUploaded++;
+    }
+
+    public synchronized void skipped(long size) {
+        filesSkipped++;
+        bytesTotal -= size;
+    }
+
+    public synchronized void bytesUploaded(long bytes) {
+        bytesUploaded += bytes;
+    }
+
+    public synchronized int getFilesUploaded() {
+        return filesUploaded;
+    }
+
+    public synchronized int getFilesSkipped() {
+        return filesSkipped;
+    }
+
+    public synchronized long getBytesUploaded() {
+        return bytesUploaded;
+    }
+
+    public synchronized BackupStatus toStatus(TaskPhase phase) {
+        return new BackupStatus()
+                .setPhase(phase)
+                .setFilesTotal(filesTotal)
+                .setFilesUploaded(filesUploaded)
+                .setFilesSkipped(filesSkipped)
+                .setBytesTotal(bytesTotal)
+                .setBytesUploaded(bytesUploaded);
+    }
+}
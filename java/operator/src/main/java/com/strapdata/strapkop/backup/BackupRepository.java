@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.backup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Repository of node backups.
+ */
+public interface BackupRepository {
+
+    /**
+     * @return true if the file is already stored for this node, with the same size.
+     */
+    boolean contains(String node, String key, long size) throws IOException;
+
+    /**
+     * Store a file, the stored file is visible once completely written.
+     */
+    void put(String node, String key, long size, InputStream in) throws IOException;
+
+    /**
+     * Store the list of files of a snapshot, required to restore it.
+     */
+    void putManifest(String node, String tag, List<String> keys) throws IOException;
+}
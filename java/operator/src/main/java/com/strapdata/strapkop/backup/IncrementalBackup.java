@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.backup;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Upload the files of a node snapshot not already in the repository, throttled by a per node rate limiter,
+ * then store the snapshot manifest. SSTables are identified by their Digest.crc32 content, so that an SSTable
+ * re-using the name of a backed up one is uploaded again.
+ */
+public class IncrementalBackup {
+    private static final Logger logger = LoggerFactory.getLogger(IncrementalBackup.class);
+
+    @FunctionalInterface
+    public interface FileSource {
+        InputStream open(BackupFile file) throws IOException;
+    }
+
+    static final int MAX_DIGEST_SIZE = 32;
+    static final Pattern DIGEST_PATTERN = Pattern.compile("^\\d+$");
+
+    private final String node;
+    private final String tag;
+    private final BackupRepository repository;
+    private final FileSource source;
+    private final RateLimiter rateLimiter;
+    private final BackupProgress progress;
+    private final Runnable progressListener;
+
+    public IncrementalBackup(String node, String tag, BackupRepository repository, FileSource source,
+                             RateLimiter rateLimiter, BackupProgress progress, Runnable progressListener) {
+        this.node = node;
+        this.tag = tag;
+        this.repository = repository;
+        this.source = source;
+        this.rateLimiter = rateLimiter;
+        this.progress = progress;
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Blocking upload of the snapshot files.
+     */
+    public void run(List<BackupFile> files) throws IOException {
+        progress.start(files.size(), files.stream().mapToLong(BackupFile::getSize).sum());
+        progressListener.run();
+        final Map<String, String> digests = new HashMap<>();
+        for (BackupFile file : files) {
+            if (file.isDigest())
+                digests.put(sstableId(file), readDigest(file));
+        }
+        final List<String> keys = new ArrayList<>(files.size());
+        for (BackupFile file : files) {
+            final String key = file.key(tag, file.isSSTable() ? digests.get(sstableId(file)) : null);
+            keys.add(key);
+            if (repository.contains(node, key, file.getSize())) {
+                logger.trace("node={} tag={} file={} already in repository", node, tag, key);
+                progress.skipped(file.getSize());
+            } else {
+                try (InputStream in = new ThrottledInputStream(source.open(file), rateLimiter, progress::bytesUploaded)) {
+                    repository.put(node, key, file.getSize(), in);
+                }
+                logger.debug("node={} tag={} file={} size={} uploaded", node, tag, key, file.getSize());
+                progress.uploaded();
+            }
+            progressListener.run();
+        }
+        repository.putManifest(node, tag, keys);
+    }
+
+    static String sstableId(BackupFile file) {
+        return file.getKeyspace() + "/" + file.getTable() + "/" + file.sstable();
+    }
+
+    /**
+     * @return the CRC32 value of a Digest.crc32 component, or null if not a number.
+     */
+    String readDigest(BackupFile file) throws IOException {
+        try (InputStream in = source.open(file)) {
+            final String digest = new String(ByteStreams.toByteArray(ByteStreams.limit(in, MAX_DIGEST_SIZE)), StandardCharsets.US_ASCII).trim();
+            if (DIGEST_PATTERN.matcher(digest).matches())
+                return digest;
+            logger.warn("node={} tag={} file={} invalid digest, SSTable stored with the snapshot", node, tag, file.getName());
+            return null;
+        }
+    }
+}
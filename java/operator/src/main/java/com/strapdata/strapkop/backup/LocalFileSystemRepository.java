@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.backup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Backup repository on a local or mounted filesystem, organized as root/node/data/key and root/node/manifests/tag.
+ */
+public class LocalFileSystemRepository implements BackupRepository {
+
+    private final Path root;
+
+    public LocalFileSystemRepository(Path root) {
+        this.root = root;
+    }
+
+    Path dataPath(String node, String key) {
+        return root.resolve(node).resolve("data").resolve(key);
+    }
+
+    @Override
+    public boolean contains(String node, String key, long size) throws IOException {
+        Path path = dataPath(node, key);
+        return Files.isRegularFile(path) && Files.size(path) == size;
+    }
+
+    @Override
+    public void put(String node, String key, long size, InputStream in) throws IOException {
+        final Path path = dataPath(node, key);
+        Files.createDirectories(path.getParent());
+        final Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            long copied = Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            if (copied != size)
+                throw new IOException("Backup of " + key + " copied " + copied + " bytes, expecting " + size);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public void putManifest(String node, String tag, List<String> keys) throws IOException {
+        final Path path = root.resolve(node).resolve("manifests").resolve(tag);
+        Files.createDirectories(path.getParent());
+        Files.write(path, keys, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.backup;
+
+import com.google.common.io.ByteStreams;
+import com.strapdata.strapkop.k8s.ElassandraPod;
+import io.kubernetes.client.Exec;
+import io.kubernetes.client.openapi.ApiClient;
+import io.kubernetes.client.openapi.ApiException;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read the snapshot files of an elassandra pod through the kubernetes exec API.
+ */
+@Singleton
+public class PodSnapshotReader {
+
+    public static final String CONTAINER = "elassandra";
+    public static final long LIST_TIMEOUT_IN_SEC = 60;
+
+    private final Exec exec;
+
+    public PodSnapshotReader(@Named("apiClient") ApiClient apiClient) {
+        this.exec = new Exec(apiClient);
+    }
+
+    /**
+     * @return the files of the snapshot tag.
+     */
+    public List<BackupFile> list(ElassandraPod pod, String tag) throws IOException, ApiException, InterruptedException {
+        final Process process = exec.exec(pod.getNamespace(), pod.getName(), SnapshotFiles.listCommand(tag), CONTAINER, false, false);
+        try {
+            final String output = new String(ByteStreams.toByteArray(process.getInputStream()), StandardCharsets.UTF_8);
+            if (!process.waitFor(LIST_TIMEOUT_IN_SEC, TimeUnit.SECONDS) || process.exitValue() != 0)
+                throw new IOException("Failed to list snapshot tag=" + tag + " of pod=" + pod.id());
+            return SnapshotFiles.parse(output, tag);
+        } finally {
+            process.destroy();
+        }
+    }
+
+    /**
+     * @return a source streaming the snapshot files of the pod.
+     */
+    public IncrementalBackup.FileSource source(ElassandraPod pod) {
+        return file -> {
+            try {
+                final Process process = exec.exec(pod.getNamespace(), pod.getName(), new String[]{"cat", file.getPath()}, CONTAINER, false, false);
+                return new FilterInputStream(process.getInputStream()) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            process.destroy();
+                        }
+                    }
+                };
+            } catch (ApiException e) {
+                throw new IOException("Failed to read file=" + file.getPath() + " of pod=" + pod.id(), e);
+            }
+        };
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.backup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * List the files of a node snapshot.
+ */
+public class SnapshotFiles {
+
+    public static final String DATA_DIRECTORY = "/var/lib/cassandra/data";
+
+    private SnapshotFiles() {}
+
+    /**
+     * @return the find command listing the size and path of the snapshot files.
+     */
+    public static String[] listCommand(String tag) {
+        return new String[] { "find", DATA_DIRECTORY, "-path", "*/snapshots/" + tag + "/*", "-type", "f", "-printf", "%s %p\\n" };
+    }
+
+    /**
+     * Parse the output of the list command, paths are data/keyspace/table-id/snapshots/tag/file.
+     */
+    public static List<BackupFile> parse(String output, String tag) {
+        final List<BackupFile> files = new ArrayList<>();
+        final String marker = "/snapshots/" + tag + "/";
+        for (String line : output.split("\\n")) {
+            int space = line.indexOf(' ');
+            if (space <= 0)
+                continue;
+            final String path = line.substring(space + 1).trim();
+            final int snapshots = path.indexOf(marker);
+            if (snapshots < 0)
+                continue;
+            final String name = path.substring(snapshots + marker.length());
+            final String[] dirs = path.substring(0, snapshots).split("/");
+            if (dirs.length < 2 || name.contains("/"))
+                continue;   // secondary index sub-directories are not supported
+            files.add(new BackupFile(dirs[dirs.length - 2], dirs[dirs.length - 1], name, Long.parseLong(line.substring(0, space)), path));
+        }
+        return files;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.backup;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.LongConsumer;
+
+/**
+ * Input stream limited by a rate limiter of bytes per second, shared by all the streams of a node.
+ */
+public class ThrottledInputStream extends FilterInputStream {
+
+    private final RateLimiter rateLimiter;
+    private final LongConsumer bytesReadConsumer;
+
+    public ThrottledInputStream(InputStream in, RateLimiter rateLimiter, LongConsumer bytesReadConsumer) {
+        super(in);
+        this.rateLimiter = rateLimiter;
+        this.bytesReadConsumer = bytesReadConsumer;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0)
+            consumed(1);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0)
+            consumed(n);
+        return n;
+    }
+
+    private void consumed(int n) {
+        rateLimiter.acquire(n);
+        bytesReadConsumer.accept(n);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.cache;
+
+import com.google.common.collect.ImmutableList;
+import com.strapdata.strapkop.model.Key;
+import io.micrometer.core.instrument.ImmutableTag;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * This cache associate to a datacenter the digest of the last applied CQL schema (keyspaces, roles and their secrets),
+ * so that keyspace and role reconciliation is skipped when nothing changed.
+ */
+@Singleton
+public class CqlDigestCache extends Cache<Key, String> {
+
+    private final MeterRegistry meterRegistry;
+    private final List<Tag> tags = ImmutableList.of(new ImmutableTag("type", "cql_digest"));
+
+    CqlDigestCache(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gaugeMapSize("cache.size", tags, this);
+    }
+
+    /**
+     * Return true if the given digest was the last one applied to the datacenter.
+     */
+    public boolean isApplied(Key key, String digest) {
+        if (Objects.equals(get(key), digest)) {
+            meterRegistry.counter("cache.hit", tags).increment();
+            return true;
+        }
+        meterRegistry.counter("cache.miss", tags).increment();
+        return false;
+    }
+}
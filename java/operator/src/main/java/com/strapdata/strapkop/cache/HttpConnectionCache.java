@@ -37,10 +37,25 @@ public class HttpConnectionCache extends Cache<ElassandraPod, HttpClient> {
 
     private static final Logger logger = LoggerFactory.getLogger(HttpConnectionCache.class);
 
-    HttpConnectionCache(MeterRegistry meterRegistry) {
+    public HttpConnectionCache(MeterRegistry meterRegistry) {
         meterRegistry.gaugeMapSize("cache.size", ImmutableList.of(new ImmutableTag("type", "sidecar_client")), this);
     }
 
+    /**
+     * Remove all clients of a cluster. Client are closed before removal
+     */
+    public void purgeCluster(final String namespace, final String clusterName) {
+        this.entrySet().removeIf(e -> {
+                    if (Objects.equals(e.getKey().getCluster(), clusterName) &&
+                            Objects.equals(e.getKey().getNamespace(), namespace)) {
+                        e.getValue().close();
+                        return true;
+                    }
+                    return false;
+                }
+        );
+    }
+
     /**
      * Remove all clients that match a given datacenter. Client are closed before removal
      */
@@ -18,48 +18,277 @@
 package com.strapdata.strapkop.cache;
 
 import com.google.common.collect.ImmutableList;
+import com.strapdata.strapkop.OperatorConfig;
 import com.strapdata.strapkop.k8s.ElassandraPod;
 import com.strapdata.strapkop.model.k8s.datacenter.DataCenter;
+import com.strapdata.strapkop.sidecar.ObjectNames;
 import io.micrometer.core.instrument.ImmutableTag;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
 import javax.inject.Singleton;
+import javax.management.ObjectName;
 import javax.management.remote.JMXConnector;
 import java.io.IOException;
-import java.util.Objects;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
 /**
- * This cache associate a sidecar client to an elassandra pod.
+ * This cache is a pool of JMX connectors associated to elassandra pods.
+ *
+ * The pool size is bounded (least recently used connectors are closed first), idle connectors are closed after a TTL,
+ * and a background probe reads a cheap attribute to close dead connectors before they are used.
+ * Connectors are bound to the pod UID, so that a connector to a deleted or re-created pod is never reused.
+ *
+ * Each {@link #borrow(ElassandraPod, String)} or {@link #offer(ElassandraPod, JMXConnector, String)} must be followed
+ * by a {@link #release(ElassandraPod, PooledConnector)}: connectors in use are never evicted nor idle-closed,
+ * and invalidated connectors in use are closed by their last release.
  */
 @Singleton
-public class JMXConnectorCache extends Cache<ElassandraPod, JMXConnector> {
+public class JMXConnectorCache extends Cache<ElassandraPod, JMXConnectorCache.PooledConnector> {
 
     private static final Logger logger = LoggerFactory.getLogger(JMXConnectorCache.class);
 
-    JMXConnectorCache(MeterRegistry meterRegistry) {
-        meterRegistry.gaugeMapSize("cache.size", ImmutableList.of(new ImmutableTag("type", "jmx_connector")), this);
+    static final ObjectName RUNTIME_MBEAN_NAME = ObjectNames.create("java.lang:type=Runtime");
+
+    public static class PooledConnector {
+        final JMXConnector connector;
+        final String podUid;
+        volatile long lastUsed;
+        private int users = 0;
+        private boolean retired = false;
+
+        PooledConnector(JMXConnector connector, String podUid, long now) {
+            this.connector = connector;
+            this.podUid = podUid;
+            this.lastUsed = now;
+        }
+
+        public JMXConnector getConnector() {
+            return connector;
+        }
+
+        public String getPodUid() {
+            return podUid;
+        }
+
+        synchronized boolean acquire(long now) {
+            if (retired)
+                return false;
+            users++;
+            lastUsed = now;
+            return true;
+        }
+
+        /**
+         * @return true if the connector must be closed, being retired and no more used.
+         */
+        synchronized boolean release(long now) {
+            users = Math.max(0, users - 1);
+            lastUsed = now;
+            return retired && users == 0;
+        }
+
+        /**
+         * @return true if the connector must be closed now, being no more used.
+         */
+        synchronized boolean retire() {
+            retired = true;
+            return users == 0;
+        }
+
+        synchronized boolean isUsed() {
+            return users > 0;
+        }
+    }
+
+    private final OperatorConfig operatorConfig;
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier clock;
+    private final List<Tag> tags = ImmutableList.of(new ImmutableTag("type", "jmx_connector"));
+
+    private Disposable probe;
+
+    @Inject
+    JMXConnectorCache(final OperatorConfig operatorConfig, final MeterRegistry meterRegistry) {
+        this(operatorConfig, meterRegistry, System::currentTimeMillis);
+    }
+
+    JMXConnectorCache(final OperatorConfig operatorConfig, final MeterRegistry meterRegistry, final LongSupplier clock) {
+        this.operatorConfig = operatorConfig;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+        meterRegistry.gaugeMapSize("cache.size", tags, this);
+    }
+
+    @PostConstruct
+    public void startProbe() {
+        int interval = operatorConfig.getJmxPoolProbeIntervalInSec();
+        this.probe = Observable.interval(interval, interval, TimeUnit.SECONDS, Schedulers.io())
+                .subscribe(t -> probe(), e -> logger.warn("JMX connector probe error:", e));
+    }
+
+    @PreDestroy
+    public void close() {
+        if (probe != null)
+            probe.dispose();
+        new ArrayList<>(keySet()).forEach(pod -> invalidate(pod, "shutdown"));
+    }
+
+    /**
+     * Borrow the pooled connector of a pod, if any and still bound to the same pod UID.
+     * @param podUid the current pod UID, or null when unknown.
+     */
+    public Optional<PooledConnector> borrow(final ElassandraPod pod, final String podUid) {
+        final PooledConnector pooled = get(pod);
+        if (pooled != null) {
+            if (podUid == null || pooled.podUid == null || podUid.equals(pooled.podUid)) {
+                if (pooled.acquire(clock.getAsLong())) {
+                    meterRegistry.counter("cache.hit", tags).increment();
+                    return Optional.of(pooled);
+                }
+            } else {
+                invalidate(pod, pooled, "uid");
+            }
+        }
+        meterRegistry.counter("cache.miss", tags).increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Add a new connector to the pool and borrow it, evicting the least recently used unused connector when full.
+     * @return the borrowed pooled connector, which is an existing one when a connector was concurrently added for the same pod.
+     */
+    public PooledConnector offer(final ElassandraPod pod, final JMXConnector connector, final String podUid) {
+        while (size() >= operatorConfig.getJmxPoolMaxSize() && !containsKey(pod)) {
+            Optional<Map.Entry<ElassandraPod, PooledConnector>> lru = entrySet().stream()
+                    .filter(e -> !e.getValue().isUsed())
+                    .min(Comparator.comparingLong(e -> e.getValue().lastUsed));
+            if (!lru.isPresent())
+                break; // all connectors are in use, the pool temporarily exceeds its max size
+            invalidate(lru.get().getKey(), lru.get().getValue(), "size");
+        }
+        final PooledConnector pooled = new PooledConnector(connector, podUid, clock.getAsLong());
+        pooled.acquire(clock.getAsLong());
+        final PooledConnector previous = putIfAbsent(pod, pooled);
+        if (previous != null && (podUid == null || podUid.equals(previous.podUid)) && previous.acquire(clock.getAsLong())) {
+            close(pod, connector);
+            return previous;
+        }
+        if (previous != null) {
+            // replace a connector of the previous pod incarnation, or an invalidated one
+            invalidate(pod, previous, "uid");
+            put(pod, pooled);
+        }
+        return pooled;
+    }
+
+    /**
+     * Give back a borrowed connector, closing it if it was invalidated in the meantime.
+     */
+    public void release(final ElassandraPod pod, final PooledConnector pooled) {
+        if (pooled.release(clock.getAsLong()))
+            close(pod, pooled.connector);
+    }
+
+    /**
+     * Remove and close the connector of a pod.
+     */
+    public void invalidate(final ElassandraPod pod, final String reason) {
+        final PooledConnector pooled = get(pod);
+        if (pooled != null)
+            invalidate(pod, pooled, reason);
+    }
+
+    /**
+     * Remove and close all connectors bound to a pod UID, when the pod is deleted.
+     */
+    public void invalidatePodUid(final String podUid) {
+        if (podUid == null)
+            return;
+        for (Map.Entry<ElassandraPod, PooledConnector> e : entrySet()) {
+            if (podUid.equals(e.getValue().podUid))
+                invalidate(e.getKey(), e.getValue(), "uid");
+        }
+    }
+
+    /**
+     * Remove and close the connector of a pod name bound to another pod UID, when the pod is re-created.
+     */
+    public void invalidatePodName(final String namespace, final String podName, final String podUid) {
+        for (Map.Entry<ElassandraPod, PooledConnector> e : entrySet()) {
+            if (Objects.equals(e.getKey().getNamespace(), namespace) &&
+                    Objects.equals(e.getKey().getName(), podName) &&
+                    e.getValue().podUid != null && !e.getValue().podUid.equals(podUid))
+                invalidate(e.getKey(), e.getValue(), "uid");
+        }
     }
 
     /**
      * Remove all clients that match a given datacenter. Client are closed before removal
      */
     public void purgeDataCenter(final DataCenter dc) {
-        this.entrySet().removeIf(e -> {
-                    if (Objects.equals(e.getKey().getParent(), dc.getMetadata().getName()) &&
-                            Objects.equals(e.getKey().getNamespace(), dc.getMetadata().getNamespace())) {
-                        try {
-                            e.getValue().close();
-                        }
-                        catch (IOException exc) {
-                            logger.warn("runtime error while closing sidecar client for pod={}", e.getKey().getName(), exc);
-                        }
-                        return true;
-                    } else {
-                        return false;
-                    }
-                }
-        );
+        for (Map.Entry<ElassandraPod, PooledConnector> e : entrySet()) {
+            if (Objects.equals(e.getKey().getParent(), dc.getMetadata().getName()) &&
+                    Objects.equals(e.getKey().getNamespace(), dc.getMetadata().getNamespace()))
+                invalidate(e.getKey(), e.getValue(), "purge");
+        }
+    }
+
+    /**
+     * Remove all connectors of a cluster, for example when its CA has changed. Connectors in use are closed when released.
+     */
+    public void purgeCluster(final String namespace, final String clusterName) {
+        for (Map.Entry<ElassandraPod, PooledConnector> e : entrySet()) {
+            if (Objects.equals(e.getKey().getCluster(), clusterName) &&
+                    Objects.equals(e.getKey().getNamespace(), namespace))
+                invalidate(e.getKey(), e.getValue(), "rotation");
+        }
+    }
+
+    /**
+     * Close idle connectors and connectors failing a cheap attribute read.
+     */
+    void probe() {
+        final long idleDeadline = clock.getAsLong() - TimeUnit.SECONDS.toMillis(operatorConfig.getJmxPoolIdleTimeoutInSec());
+        for (Map.Entry<ElassandraPod, PooledConnector> e : entrySet()) {
+            final PooledConnector pooled = e.getValue();
+            if (pooled.lastUsed < idleDeadline && !pooled.isUsed()) {
+                invalidate(e.getKey(), pooled, "idle");
+                continue;
+            }
+            try {
+                pooled.connector.getMBeanServerConnection().getAttribute(RUNTIME_MBEAN_NAME, "Uptime");
+            } catch (Exception ex) {
+                logger.debug("JMX connector probe failed for pod={}: {}", e.getKey().id(), ex.toString());
+                invalidate(e.getKey(), pooled, "liveness");
+            }
+        }
+    }
+
+    private void invalidate(final ElassandraPod pod, final PooledConnector pooled, final String reason) {
+        if (remove(pod, pooled)) {
+            logger.debug("Closing JMX connector of pod={} reason={}", pod.id(), reason);
+            meterRegistry.counter("cache.eviction", "type", "jmx_connector", "reason", reason).increment();
+            if (pooled.retire())
+                close(pod, pooled.connector);
+        }
+    }
+
+    private void close(final ElassandraPod pod, final JMXConnector connector) {
+        try {
+            connector.close();
+        } catch (IOException exc) {
+            logger.warn("error while closing JMX connector for pod={}", pod.getName(), exc);
+        }
     }
 }
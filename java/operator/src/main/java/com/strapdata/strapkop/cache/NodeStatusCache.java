@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.cache;
+
+import com.google.common.collect.ImmutableList;
+import com.strapdata.strapkop.OperatorConfig;
+import com.strapdata.strapkop.model.Key;
+import com.strapdata.strapkop.model.sidecar.ElassandraNodeStatus;
+import com.strapdata.strapkop.sidecar.NodeSnapshot;
+import io.micrometer.core.instrument.ImmutableTag;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import javax.inject.Singleton;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * In-memory node statuses of each datacenter, maintained by the NodeStatusPoller.
+ * Statuses older than 3 poll intervals are ignored by readers.
+ */
+@Singleton
+public class NodeStatusCache extends Cache<Key, Map<String, NodeStatusRing>> {
+
+    private final OperatorConfig operatorConfig;
+
+    NodeStatusCache(final OperatorConfig operatorConfig, final MeterRegistry meterRegistry) {
+        this.operatorConfig = operatorConfig;
+        meterRegistry.gaugeMapSize("cache.size", ImmutableList.of(new ImmutableTag("type", "node_status")), this);
+    }
+
+    private NodeStatusRing ring(final Key dcKey, final String podName) {
+        return computeIfAbsent(dcKey, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(podName, p -> new NodeStatusRing(operatorConfig.getNodeStatusHistorySize()));
+    }
+
+    public void record(final Key dcKey, final String podName, final NodeSnapshot snapshot) {
+        ring(dcKey, podName).record(snapshot);
+    }
+
+    /**
+     * Record an unreachable node as UNKNOWN, its last snapshot is kept.
+     */
+    public void recordFailure(final Key dcKey, final String podName) {
+        ring(dcKey, podName).record(ElassandraNodeStatus.UNKNOWN, System.currentTimeMillis());
+    }
+
+    long minTimestamp() {
+        return System.currentTimeMillis() - 3 * TimeUnit.SECONDS.toMillis(operatorConfig.getNodeStatusPollIntervalInSec());
+    }
+
+    /**
+     * @return the latest status of a pod, empty when unknown or stale.
+     */
+    public Optional<ElassandraNodeStatus> status(final Key dcKey, final String podName) {
+        final Map<String, NodeStatusRing> rings = get(dcKey);
+        final NodeStatusRing ring = rings == null ? null : rings.get(podName);
+        return ring == null ? Optional.empty() : ring.latest(minTimestamp());
+    }
+
+    /**
+     * @return the latest fresh status of each pod of a datacenter.
+     */
+    public SortedMap<String, ElassandraNodeStatus> statuses(final Key dcKey) {
+        final SortedMap<String, ElassandraNodeStatus> statuses = new TreeMap<>();
+        final Map<String, NodeStatusRing> rings = get(dcKey);
+        if (rings != null) {
+            final long minTimestamp = minTimestamp();
+            rings.forEach((pod, ring) -> ring.latest(minTimestamp).ifPresent(status -> statuses.put(pod, status)));
+        }
+        return statuses;
+    }
+
+    /**
+     * @return pods of a datacenter with a fresh status matching the predicate.
+     */
+    public List<String> pods(final Key dcKey, final Predicate<ElassandraNodeStatus> predicate) {
+        final List<String> pods = new ArrayList<>();
+        statuses(dcKey).forEach((pod, status) -> {
+            if (predicate.test(status))
+                pods.add(pod);
+        });
+        return pods;
+    }
+
+    /**
+     * @return the last collected snapshot of each pod of a datacenter.
+     */
+    public SortedMap<String, NodeSnapshot> snapshots(final Key dcKey) {
+        final SortedMap<String, NodeSnapshot> snapshots = new TreeMap<>();
+        final Map<String, NodeStatusRing> rings = get(dcKey);
+        if (rings != null) {
+            rings.forEach((pod, ring) -> {
+                if (ring.getLastSnapshot() != null)
+                    snapshots.put(pod, ring.getLastSnapshot());
+            });
+        }
+        return snapshots;
+    }
+
+    /**
+     * Remove deleted pods (for example after a scale down)
+     */
+    public void retainPods(final Key dcKey, final Set<String> podNames) {
+        final Map<String, NodeStatusRing> rings = get(dcKey);
+        if (rings != null)
+            rings.keySet().retainAll(podNames);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.cache;
+
+import com.strapdata.strapkop.model.sidecar.ElassandraNodeStatus;
+import com.strapdata.strapkop.sidecar.NodeSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Fixed size history of the polled statuses of a node, stored as status ordinals and timestamps,
+ * with the last successfully collected snapshot.
+ */
+public class NodeStatusRing {
+
+    private static final ElassandraNodeStatus[] STATUSES = ElassandraNodeStatus.values();
+
+    private final byte[] statuses;
+    private final long[] timestamps;
+    private int head = 0;   // next write position
+    private int size = 0;
+    private volatile NodeSnapshot lastSnapshot;
+
+    public NodeStatusRing(int capacity) {
+        this.statuses = new byte[Math.max(1, capacity)];
+        this.timestamps = new long[Math.max(1, capacity)];
+    }
+
+    public synchronized void record(ElassandraNodeStatus status, long timestamp) {
+        statuses[head] = (byte) status.ordinal();
+        timestamps[head] = timestamp;
+        head = (head + 1) % statuses.length;
+        size = Math.min(size + 1, statuses.length);
+    }
+
+    public void record(NodeSnapshot snapshot) {
+        this.lastSnapshot = snapshot;
+        record(snapshot.getOperationMode(), snapshot.getTimestamp());
+    }
+
+    private int last() {
+        return (head - 1 + statuses.length) % statuses.length;
+    }
+
+    public synchronized Optional<ElassandraNodeStatus> latest() {
+        return size == 0 ? Optional.empty() : Optional.of(STATUSES[statuses[last()]]);
+    }
+
+    /**
+     * @return the latest status if collected after minTimestamp.
+     */
+    public synchronized Optional<ElassandraNodeStatus> latest(long minTimestamp) {
+        return (size == 0 || timestamps[last()] < minTimestamp) ? Optional.empty() : Optional.of(STATUSES[statuses[last()]]);
+    }
+
+    public synchronized long latestTimestamp() {
+        return size == 0 ? 0L : timestamps[last()];
+    }
+
+    /**
+     * @return the number of latest consecutive samples having this status.
+     */
+    public synchronized int consecutive(ElassandraNodeStatus status) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (STATUSES[statuses[(head - 1 - i + 2 * statuses.length) % statuses.length]] != status)
+                break;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return statuses from the oldest to the latest.
+     */
+    public synchronized List<ElassandraNodeStatus> history() {
+        List<ElassandraNodeStatus> history = new ArrayList<>(size);
+        for (int i = size; i > 0; i--)
+            history.add(STATUSES[statuses[(head - i + statuses.length) % statuses.length]]);
+        return history;
+    }
+
+    public NodeSnapshot getLastSnapshot() {
+        return lastSnapshot;
+    }
+}
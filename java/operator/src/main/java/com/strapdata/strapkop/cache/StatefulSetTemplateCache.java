@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.cache;
+
+import com.google.common.collect.ImmutableList;
+import com.strapdata.strapkop.k8s.StatefulSetDiff;
+import com.strapdata.strapkop.model.Key;
+import com.strapdata.strapkop.model.k8s.OperatorLabels;
+import com.strapdata.strapkop.model.k8s.datacenter.DataCenter;
+import io.kubernetes.client.openapi.models.V1PodTemplateSpec;
+import io.micrometer.core.instrument.ImmutableTag;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * This cache associate the last built pod template to a statefulset (one per rack), so that the pod template
+ * is only rebuilt when the datacenter fingerprint or the rack configmap changes.
+ */
+@Singleton
+public class StatefulSetTemplateCache extends Cache<Key, V1PodTemplateSpec> {
+
+    private final MeterRegistry meterRegistry;
+    private final List<Tag> tags = ImmutableList.of(new ImmutableTag("type", "sts_template"));
+
+    StatefulSetTemplateCache(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gaugeMapSize("cache.size", tags, this);
+    }
+
+    /**
+     * Return the cached pod template of the statefulset if built for the given fingerprint and rack configmap, null otherwise.
+     */
+    public V1PodTemplateSpec get(Key stsKey, String fingerprint, String rackConfigMap) {
+        V1PodTemplateSpec template = get(stsKey);
+        if (template != null && Objects.equals(StatefulSetDiff.templateFingerprint(template), StatefulSetDiff.templateFingerprint(fingerprint, rackConfigMap))) {
+            meterRegistry.counter("cache.hit", tags).increment();
+            return template;
+        }
+        meterRegistry.counter("cache.miss", tags).increment();
+        return null;
+    }
+
+    public static String fingerprint(V1PodTemplateSpec template) {
+        return (template.getMetadata() == null || template.getMetadata().getAnnotations() == null)
+                ? null
+                : template.getMetadata().getAnnotations().get(OperatorLabels.DATACENTER_FINGERPRINT);
+    }
+
+    /**
+     * Remove all templates of a given datacenter.
+     */
+    public void purgeDataCenter(final DataCenter dc) {
+        this.entrySet().removeIf(e -> Objects.equals(e.getKey().getNamespace(), dc.getMetadata().getNamespace()) &&
+                e.getValue().getMetadata() != null &&
+                e.getValue().getMetadata().getLabels() != null &&
+                Objects.equals(e.getValue().getMetadata().getLabels().get(OperatorLabels.PARENT), dc.getMetadata().getName()));
+    }
+}
@@ -35,6 +35,9 @@ public class StatefulsetCache extends Cache<Key, TreeMap<String, V1StatefulSet>>
     @Inject
     MeterRegistry meterRegistry;
 
+    @Inject
+    ZoneTopologyIndex zoneTopologyIndex;
+
     @PostConstruct
     public void initGauge() {
         meterRegistry.gaugeMapSize("cache.size", ImmutableList.of(new ImmutableTag("type", "statefulset")), this);
@@ -49,6 +52,7 @@ public class StatefulsetCache extends Cache<Key, TreeMap<String, V1StatefulSet>>
                     v = new TreeMap<>();
                 }
                 v.put(zone, sts);
+                zoneTopologyIndex.updateStatefulSet(k, zone, sts);
                 return v;
             });
         }
@@ -63,10 +67,28 @@ public class StatefulsetCache extends Cache<Key, TreeMap<String, V1StatefulSet>>
                 if (v == null) {
                     v = new TreeMap<>();
                 }
-                v.putIfAbsent(zone, sts);
+                if (v.putIfAbsent(zone, sts) == null)
+                    zoneTopologyIndex.updateStatefulSet(k, zone, sts);
                 return v;
             });
         }
         return getOrDefault(key, new TreeMap<>());
     }
+
+    public void delete(V1StatefulSet sts) {
+        final Key key = new Key(sts.getMetadata().getNamespace(), sts.getMetadata().getLabels().get(OperatorLabels.PARENT));
+        final String zone = sts.getMetadata().getLabels().get(OperatorLabels.RACK);
+        if (zone != null) {
+            computeIfPresent(key, (k, v) -> {
+                v.remove(zone);
+                zoneTopologyIndex.removeStatefulSet(k, zone);
+                return v;
+            });
+        }
+    }
+
+    public void purgeDataCenter(Key key) {
+        remove(key);
+        zoneTopologyIndex.purgeDataCenter(key);
+    }
 }
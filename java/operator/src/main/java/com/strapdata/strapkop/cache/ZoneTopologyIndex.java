@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.strapdata.strapkop.cache;
+
+import com.google.common.collect.ImmutableList;
+import com.strapdata.strapkop.model.Key;
+import io.kubernetes.client.openapi.models.V1StatefulSet;
+import io.micrometer.core.instrument.ImmutableTag;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+
+import javax.inject.Singleton;
+import java.util.*;
+
+/**
+ * Incrementally maintained zone topology, updated by the k8s node and statefulset informers.
+ *
+ * For each datacenter, zones are kept in two sorted sets of scale-up and scale-down candidates,
+ * so that choosing the next zone to scale is O(log n) instead of sorting all nodes on each reconciliation.
+ */
+@Singleton
+public class ZoneTopologyIndex {
+
+    /**
+     * Immutable view of a datacenter zone, re-inserted in sorted sets when updated.
+     */
+    @Data
+    public static class ZoneEntry {
+        final String name;
+        final int size;         // number of k8s nodes in the zone
+        final int replicas;     // statefulset replicas in the zone
+        final boolean hasSts;
+
+        public int freeNodeCount() {
+            return size - replicas;
+        }
+
+        boolean isScaleUpCandidate() {
+            return size > 0 && freeNodeCount() > 0;
+        }
+
+        boolean isScaleDownCandidate() {
+            return size > 0 && (replicas > 0 || !hasSts);
+        }
+    }
+
+    // same order as DataCenterUpdateAction.Zone, the first zone is the next to scale up, the last one the next to scale down.
+    public static final Comparator<ZoneEntry> SCALE_ORDER = Comparator
+            .comparingInt(ZoneEntry::getSize)
+            .thenComparingInt(z -> -z.freeNodeCount())
+            .thenComparing(ZoneEntry::getName);
+
+    static class DataCenterZones {
+        final Map<String, ZoneEntry> zones = new HashMap<>();
+        final TreeSet<ZoneEntry> scaleUpCandidates = new TreeSet<>(SCALE_ORDER);
+        final TreeSet<ZoneEntry> scaleDownCandidates = new TreeSet<>(SCALE_ORDER);
+        int totalReplicas = 0;
+
+        void put(ZoneEntry entry) {
+            remove(entry.getName());
+            zones.put(entry.getName(), entry);
+            if (entry.getSize() > 0)
+                totalReplicas += entry.getReplicas();
+            if (entry.isScaleUpCandidate())
+                scaleUpCandidates.add(entry);
+            if (entry.isScaleDownCandidate())
+                scaleDownCandidates.add(entry);
+        }
+
+        ZoneEntry remove(String zone) {
+            ZoneEntry previous = zones.remove(zone);
+            if (previous != null) {
+                if (previous.getSize() > 0)
+                    totalReplicas -= previous.getReplicas();
+                scaleUpCandidates.remove(previous);
+                scaleDownCandidates.remove(previous);
+            }
+            return previous;
+        }
+    }
+
+    // node name -> zone name
+    private final Map<String, String> nodeZones = new HashMap<>();
+    // zone name -> number of nodes
+    private final TreeMap<String, Integer> zoneSizes = new TreeMap<>();
+    private int totalNodes = 0;
+
+    private final Map<Key, DataCenterZones> dataCenters = new HashMap<>();
+
+    public ZoneTopologyIndex(MeterRegistry meterRegistry) {
+        meterRegistry.gaugeMapSize("cache.size", ImmutableList.of(new ImmutableTag("type", "zone")), zoneSizes);
+    }
+
+    /**
+     * Register or move a k8s node, a null zone removes the node.
+     */
+    public synchronized void updateNode(String nodeName, String zone) {
+        String previous = zone == null ? nodeZones.remove(nodeName) : nodeZones.put(nodeName, zone);
+        if (Objects.equals(previous, zone))
+            return;
+        if (previous != null)
+            resizeZone(previous, -1);
+        if (zone != null)
+            resizeZone(zone, 1);
+    }
+
+    public synchronized void removeNode(String nodeName) {
+        updateNode(nodeName, null);
+    }
+
+    private void resizeZone(String zone, int delta) {
+        int size = zoneSizes.getOrDefault(zone, 0) + delta;
+        if (size > 0)
+            zoneSizes.put(zone, size);
+        else
+            zoneSizes.remove(zone);
+        totalNodes += delta;
+        for (DataCenterZones dcZones : dataCenters.values()) {
+            ZoneEntry entry = dcZones.zones.get(zone);
+            dcZones.put(entry == null ?
+                    new ZoneEntry(zone, Math.max(0, size), 0, false) :
+                    new ZoneEntry(zone, Math.max(0, size), entry.getReplicas(), entry.isHasSts()));
+        }
+    }
+
+    /**
+     * Update the statefulset of a datacenter zone.
+     */
+    public synchronized void updateStatefulSet(Key dcKey, String zone, V1StatefulSet sts) {
+        int replicas = (sts == null || sts.getSpec() == null || sts.getSpec().getReplicas() == null) ? 0 : sts.getSpec().getReplicas();
+        dataCenterZones(dcKey).put(new ZoneEntry(zone, zoneSizes.getOrDefault(zone, 0), replicas, sts != null));
+    }
+
+    public synchronized void removeStatefulSet(Key dcKey, String zone) {
+        DataCenterZones dcZones = dataCenters.get(dcKey);
+        if (dcZones != null)
+            dcZones.put(new ZoneEntry(zone, zoneSizes.getOrDefault(zone, 0), 0, false));
+    }
+
+    public synchronized void purgeDataCenter(Key dcKey) {
+        dataCenters.remove(dcKey);
+    }
+
+    private DataCenterZones dataCenterZones(Key dcKey) {
+        return dataCenters.computeIfAbsent(dcKey, k -> {
+            DataCenterZones dcZones = new DataCenterZones();
+            for (Map.Entry<String, Integer> e : zoneSizes.entrySet())
+                dcZones.put(new ZoneEntry(e.getKey(), e.getValue(), 0, false));
+            return dcZones;
+        });
+    }
+
+    /**
+     * @return a snapshot of the number of k8s nodes per zone, sorted by zone name.
+     */
+    public synchronized SortedMap<String, Integer> zoneSizes() {
+        return new TreeMap<>(zoneSizes);
+    }
+
+    public synchronized int totalNodes() {
+        return totalNodes;
+    }
+
+    public synchronized int totalReplicas(Key dcKey) {
+        DataCenterZones dcZones = dataCenters.get(dcKey);
+        return dcZones == null ? 0 : dcZones.totalReplicas;
+    }
+
+    /**
+     * @return the zone having free k8s nodes where to add the next datacenter replica.
+     */
+    public synchronized Optional<ZoneEntry> nextToScaleUp(Key dcKey) {
+        DataCenterZones dcZones = dataCenterZones(dcKey);
+        if (totalNodes == dcZones.totalReplicas || dcZones.scaleUpCandidates.isEmpty())
+            return Optional.empty();
+        return Optional.of(dcZones.scaleUpCandidates.first());
+    }
+
+    /**
+     * @return the zone where to remove the next datacenter replica.
+     */
+    public synchronized Optional<ZoneEntry> nextToScaleDown(Key dcKey) {
+        DataCenterZones dcZones = dataCenterZones(dcKey);
+        if (dcZones.totalReplicas == 0 || dcZones.scaleDownCandidates.isEmpty())
+            return Optional.empty();
+        return Optional.of(dcZones.scaleDownCandidates.last());
+    }
+}
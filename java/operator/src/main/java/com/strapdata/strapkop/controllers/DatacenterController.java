@@ -18,6 +18,7 @@
 package com.strapdata.strapkop.controllers;
 
 import com.strapdata.strapkop.cache.DataCenterStatusCache;
+import com.strapdata.strapkop.cache.NodeStatusCache;
 import com.strapdata.strapkop.cache.StatefulsetCache;
 import com.strapdata.strapkop.cql.CqlKeyspace;
 import com.strapdata.strapkop.cql.CqlKeyspaceManager;
@@ -27,14 +28,21 @@ import com.strapdata.strapkop.k8s.OperatorNames;
 import com.strapdata.strapkop.model.Key;
 import com.strapdata.strapkop.model.k8s.datacenter.DataCenter;
 import com.strapdata.strapkop.model.k8s.datacenter.DataCenterStatus;
+import com.strapdata.strapkop.model.k8s.datacenter.Operation;
+import com.strapdata.strapkop.reconcilier.DataCenterUpdateAction;
+import com.strapdata.strapkop.reconcilier.ReconciliationPlan;
+import com.strapdata.strapkop.sidecar.NodeSnapshot;
 import io.kubernetes.client.informer.SharedInformerFactory;
 import io.kubernetes.client.openapi.ApiException;
 import io.kubernetes.client.openapi.models.V1StatefulSet;
+import io.micronaut.context.ApplicationContext;
 import io.micronaut.http.MediaType;
 import io.micronaut.http.annotation.Controller;
 import io.micronaut.http.annotation.Get;
+import io.reactivex.Maybe;
 
 import javax.inject.Inject;
+import java.util.Date;
 import java.util.Map;
 
 @Controller("/datacenter")
@@ -52,9 +60,15 @@ public class DatacenterController {
     @Inject
     DataCenterStatusCache dataCenterStatusCache;
 
+    @Inject
+    NodeStatusCache nodeStatusCache;
+
     @Inject
     SharedInformerFactory sharedInformerFactory;
 
+    @Inject
+    ApplicationContext context;
+
     @Get(value = "/{namespace}/{cluster}/{datacenter}", produces = MediaType.APPLICATION_JSON)
     public DataCenter datacenter(String namespace, String cluster, String datacenter) {
         Key dcKey = new Key(namespace, OperatorNames.dataCenterResource(cluster, datacenter));
@@ -81,4 +95,26 @@ public class DatacenterController {
         return statefulsetCache.get(new Key(namespace, OperatorNames.dataCenterResource(cluster, datacenter)));
     }
 
+    /**
+     * Return the last polled status of each node of the datacenter.
+     */
+    @Get(value = "/{namespace}/{cluster}/{datacenter}/_nodes", produces = MediaType.APPLICATION_JSON)
+    public Map<String, NodeSnapshot> nodes(String namespace, String cluster, String datacenter) {
+        return nodeStatusCache.snapshots(new Key(namespace, OperatorNames.dataCenterResource(cluster, datacenter)));
+    }
+
+    /**
+     * Dry-run, return the next reconciliation plan computed from the cached state without applying it.
+     */
+    @Get(value = "/{namespace}/{cluster}/{datacenter}/_plan", produces = MediaType.APPLICATION_JSON)
+    public Maybe<ReconciliationPlan> plan(String namespace, String cluster, String datacenter) {
+        DataCenter dc = datacenter(namespace, cluster, datacenter);
+        if (dc == null)
+            return Maybe.empty();
+        Operation operation = new Operation()
+                .withLastTransitionTime(new Date())
+                .withTriggeredBy("Dry-run");
+        return context.createBean(DataCenterUpdateAction.class, dc, operation).plan(true).toMaybe();
+    }
+
 }
\ No newline at end of file
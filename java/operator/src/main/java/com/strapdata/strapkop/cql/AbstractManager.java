@@ -79,6 +79,14 @@ public abstract class AbstractManager<T extends CqlReconciliable> {
         });
     }
 
+    /**
+     * @return true if all managed resources of the datacenter are reconciled.
+     */
+    public boolean reconcilied(final DataCenter dataCenter) {
+        Map<String, T> map = get(dataCenter);
+        return map == null || map.values().stream().allMatch(CqlReconciliable::reconcilied);
+    }
+
     public void remove(final DataCenter dataCenter) {
         resources.remove(key(dataCenter));
     }
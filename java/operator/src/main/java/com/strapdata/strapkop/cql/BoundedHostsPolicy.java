@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.cql;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.HostDistance;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.policies.ChainableLoadBalancingPolicy;
+import com.datastax.driver.core.policies.LoadBalancingPolicy;
+import com.google.common.collect.Iterators;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Minimal footprint load balancing policy: the operator only opens connections to a bounded set of local hosts.
+ *
+ * Up to maxHosts local hosts are selected, preferring hosts whose pods are ready, other hosts are IGNORED (no connection pool).
+ * When a selected host goes down or is removed, another local host is promoted and its connection pool is created.
+ */
+public class BoundedHostsPolicy implements ChainableLoadBalancingPolicy {
+
+    private final LoadBalancingPolicy childPolicy;
+    private final HostHealthTracker hostHealthTracker;
+    private final int maxHosts;
+
+    private final Set<Host> candidates = new CopyOnWriteArraySet<>();
+    private final Set<Host> selected = new CopyOnWriteArraySet<>();
+    private volatile Cluster cluster;
+
+    public BoundedHostsPolicy(final LoadBalancingPolicy childPolicy, final HostHealthTracker hostHealthTracker, final int maxHosts) {
+        this.childPolicy = childPolicy;
+        this.hostHealthTracker = hostHealthTracker;
+        this.maxHosts = Math.max(1, maxHosts);
+    }
+
+    @Override
+    public LoadBalancingPolicy getChildPolicy() {
+        return childPolicy;
+    }
+
+    public Set<Host> getSelectedHosts() {
+        return selected;
+    }
+
+    @Override
+    public void init(Cluster cluster, Collection<Host> hosts) {
+        this.cluster = cluster;
+        childPolicy.init(cluster, hosts);
+        for (Host host : hosts) {
+            if (childPolicy.distance(host) == HostDistance.LOCAL)
+                candidates.add(host);
+        }
+        select();
+    }
+
+    @Override
+    public HostDistance distance(Host host) {
+        HostDistance distance = childPolicy.distance(host);
+        return (distance == HostDistance.IGNORED || selected.contains(host)) ? distance : HostDistance.IGNORED;
+    }
+
+    @Override
+    public Iterator<Host> newQueryPlan(String loggedKeyspace, Statement statement) {
+        return Iterators.filter(childPolicy.newQueryPlan(loggedKeyspace, statement), selected::contains);
+    }
+
+    /**
+     * Fill the selected hosts up to maxHosts with up candidates, hosts of ready pods first.
+     * @return true if a host was added
+     */
+    private synchronized boolean select() {
+        boolean added = false;
+        Iterator<Host> it = candidates.stream()
+                .filter(h -> h.isUp() && !selected.contains(h))
+                .sorted(Comparator.comparing(hostHealthTracker::isDegraded))
+                .iterator();
+        while (selected.size() < maxHosts && it.hasNext()) {
+            selected.add(it.next());
+            added = true;
+        }
+        return added;
+    }
+
+    private void unselect(Host host) {
+        if (selected.remove(host) && select() && cluster != null) {
+            // create connection pools of the promoted hosts
+            cluster.getConfiguration().getPoolingOptions().refreshConnectedHosts();
+        }
+    }
+
+    @Override
+    public void onAdd(Host host) {
+        childPolicy.onAdd(host);
+        if (childPolicy.distance(host) == HostDistance.LOCAL) {
+            candidates.add(host);
+            select();
+        }
+    }
+
+    @Override
+    public void onUp(Host host) {
+        childPolicy.onUp(host);
+        if (childPolicy.distance(host) == HostDistance.LOCAL) {
+            candidates.add(host);
+            select();
+        }
+    }
+
+    @Override
+    public void onDown(Host host) {
+        childPolicy.onDown(host);
+        unselect(host);
+    }
+
+    @Override
+    public void onRemove(Host host) {
+        childPolicy.onRemove(host);
+        candidates.remove(host);
+        unselect(host);
+    }
+
+    @Override
+    public void close() {
+        childPolicy.close();
+    }
+}
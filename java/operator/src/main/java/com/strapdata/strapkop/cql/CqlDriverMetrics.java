@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.cql;
+
+import com.codahale.metrics.Snapshot;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.LatencyTracker;
+import com.datastax.driver.core.Metrics;
+import com.datastax.driver.core.Statement;
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Bridge the DataStax driver metrics of a Cluster into Micrometer, with datacenter tags.
+ *
+ * Meters are removed from the registry when the cluster is closed, so that closed sessions do not leave stale series.
+ */
+public class CqlDriverMetrics implements MeterBinder, AutoCloseable {
+
+    private static final double[] QUANTILES = new double[] { 0.5, 0.95, 0.99 };
+
+    private final Cluster cluster;
+    private final Iterable<Tag> tags;
+    private final List<Meter> meters = new ArrayList<>();
+    private final RequestLatencies latencies = new RequestLatencies();
+    private MeterRegistry registry;
+
+    public CqlDriverMetrics(final Cluster cluster, final Iterable<Tag> tags) {
+        this.cluster = cluster;
+        this.tags = tags;
+    }
+
+    @Override
+    public synchronized void bindTo(final MeterRegistry registry) {
+        final Metrics metrics = cluster.getMetrics();
+        if (metrics == null)
+            return; // metrics disabled for this cluster
+        this.registry = registry;
+
+        // request latency, the count and total time are monotonic sums of the latencies reported by the driver
+        cluster.register(latencies);
+        meters.add(FunctionTimer.builder("cql.driver.requests", latencies,
+                l -> l.count.sum(),
+                l -> l.totalNanos.sum(),
+                TimeUnit.NANOSECONDS)
+                .tags(tags).description("CQL request executions sent by the operator, per host attempt").register(registry));
+        final com.codahale.metrics.Timer requests = metrics.getRequestsTimer();
+        for (double quantile : QUANTILES) {
+            meters.add(Gauge.builder("cql.driver.requests.latency", requests, t -> quantile(t.getSnapshot(), quantile))
+                    .tags(tags).tag("quantile", String.valueOf(quantile)).baseUnit("milliseconds").register(registry));
+        }
+
+        // hosts and connection pools saturation
+        gauge("cql.driver.hosts", "state", "known", metrics.getKnownHosts());
+        gauge("cql.driver.hosts", "state", "connected", metrics.getConnectedToHosts());
+        gauge("cql.driver.connections", "state", "open", metrics.getOpenConnections());
+        if (cluster.getConfiguration().getPolicies().getLoadBalancingPolicy() instanceof BoundedHostsPolicy) {
+            final BoundedHostsPolicy policy = (BoundedHostsPolicy) cluster.getConfiguration().getPolicies().getLoadBalancingPolicy();
+            meters.add(Gauge.builder("cql.driver.hosts", policy, p -> p.getSelectedHosts().size())
+                    .tags(tags).tag("state", "selected").register(registry));
+        }
+        gauge("cql.driver.connections", "state", "trashed", metrics.getTrashedConnections());
+        meters.add(Gauge.builder("cql.driver.requests.inflight", metrics.getInFlightRequests(), g -> valueOf(g.getValue()))
+                .tags(tags).register(registry));
+        gauge("cql.driver.queue.depth", "executor", "executor", metrics.getExecutorQueueDepth());
+        gauge("cql.driver.queue.depth", "executor", "blocking", metrics.getBlockingExecutorQueueDepth());
+        gauge("cql.driver.queue.depth", "executor", "reconnection", metrics.getReconnectionSchedulerQueueSize());
+        gauge("cql.driver.queue.depth", "executor", "task", metrics.getTaskSchedulerQueueSize());
+
+        // errors, retries and speculative executions
+        final Metrics.Errors errors = metrics.getErrorMetrics();
+        counter("cql.driver.errors", "connection", errors, e -> e.getConnectionErrors().getCount());
+        counter("cql.driver.errors", "authentication", errors, e -> e.getAuthenticationErrors().getCount());
+        counter("cql.driver.errors", "read_timeout", errors, e -> e.getReadTimeouts().getCount());
+        counter("cql.driver.errors", "write_timeout", errors, e -> e.getWriteTimeouts().getCount());
+        counter("cql.driver.errors", "unavailable", errors, e -> e.getUnavailables().getCount());
+        counter("cql.driver.errors", "client_timeout", errors, e -> e.getClientTimeouts().getCount());
+        counter("cql.driver.errors", "other", errors, e -> e.getOthers().getCount());
+        counter("cql.driver.retries", "all", errors, e -> e.getRetries().getCount());
+        counter("cql.driver.retries", "ignore", errors, e -> e.getIgnores().getCount());
+        counter("cql.driver.speculative.executions", "all", errors, e -> e.getSpeculativeExecutions().getCount());
+    }
+
+    private void gauge(final String name, final String tagKey, final String tagValue, final com.codahale.metrics.Gauge<Integer> gauge) {
+        meters.add(Gauge.builder(name, gauge, g -> valueOf(g.getValue()))
+                .tags(tags).tag(tagKey, tagValue).register(registry));
+    }
+
+    private void counter(final String name, final String type, final Metrics.Errors errors, final ToDoubleFunction<Metrics.Errors> count) {
+        meters.add(FunctionCounter.builder(name, errors, count)
+                .tags(tags).tag("type", type).register(registry));
+    }
+
+    private static double valueOf(Integer value) {
+        return value == null ? Double.NaN : value;
+    }
+
+    private static double quantile(final Snapshot snapshot, final double quantile) {
+        return TimeUnit.NANOSECONDS.toMicros((long) snapshot.getValue(quantile)) / 1000.0;
+    }
+
+    /**
+     * Remove the driver meters from the registry, only if still registered by this instance, and not by another
+     * instance with the same datacenter tags.
+     */
+    @Override
+    public synchronized void close() {
+        if (registry != null) {
+            cluster.unregister(latencies);
+            for (Meter meter : meters) {
+                if (registry.find(meter.getId().getName()).tags(meter.getId().getTags()).meters().stream().anyMatch(m -> m == meter))
+                    registry.remove(meter);
+            }
+            meters.clear();
+        }
+    }
+
+    static class RequestLatencies implements LatencyTracker {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+
+        @Override
+        public void update(Host host, Statement statement, Exception exception, long newLatencyNanos) {
+            count.increment();
+            totalNanos.add(newLatencyNanos);
+        }
+
+        @Override
+        public void onRegister(Cluster cluster) {
+        }
+
+        @Override
+        public void onUnregister(Cluster cluster) {
+        }
+    }
+}
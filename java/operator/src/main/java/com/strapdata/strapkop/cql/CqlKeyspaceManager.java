@@ -38,7 +38,6 @@ import io.micrometer.core.instrument.MeterRegistry;
 import io.micronaut.context.annotation.Infrastructure;
 import io.reactivex.Completable;
 import io.reactivex.CompletableSource;
-import io.reactivex.Flowable;
 import io.reactivex.Single;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,7 +45,6 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Singleton;
 import java.util.*;
 import java.util.concurrent.Callable;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -66,13 +64,16 @@ public class CqlKeyspaceManager extends AbstractManager<CqlKeyspace> {
 
     final K8sResourceUtils k8sResourceUtils;
     final JmxmpElassandraProxy jmxmpElassandraProxy;
+    final CqlStatementExecutor statementExecutor;
 
     public CqlKeyspaceManager(final K8sResourceUtils k8sResourceUtils,
                               final JmxmpElassandraProxy jmxmpElassandraProxy,
+                              final CqlStatementExecutor statementExecutor,
                               final MeterRegistry meterRegistry) {
         super(meterRegistry);
         this.k8sResourceUtils = k8sResourceUtils;
         this.jmxmpElassandraProxy = jmxmpElassandraProxy;
+        this.statementExecutor = statementExecutor;
     }
 
     private String elasticAdminKeyspaceName(DataCenter dataCenter) {
@@ -129,6 +130,7 @@ public class CqlKeyspaceManager extends AbstractManager<CqlKeyspace> {
                                         todoList.add(ks.createIfNotExistsKeyspace(dataCenter, dataCenterUpdateAction.dataCenterStatus, sessionSupplier).ignoreElement());
                                     } catch (Exception e) {
                                         logger.warn("datacenter=" + dataCenter.id() + " Failed to create keyspace=" + ks.name, e);
+                                        dataCenterUpdateAction.reconcileFailed("create keyspace=" + ks.name, e);
                                     }
                                 }
                             }
@@ -140,20 +142,29 @@ public class CqlKeyspaceManager extends AbstractManager<CqlKeyspace> {
                     // reconcile keyspace according to the current DC size
                     // if the last observed replicas and current replicas differ, update keyspaces
                     if (!Optional.ofNullable(dataCenterUpdateAction.dataCenterStatus.getKeyspaceManagerStatus().getReplicas()).orElse(0).equals(dataCenter.getSpec().getReplicas())) {
-                        List<CompletableSource> todoList = new ArrayList<>();
+                        final Map<String, Integer> targetRfs = new HashMap<>();
                         logger.debug("manager={}", get(dataCenter));
                         for (CqlKeyspace keyspace : get(dataCenter).values()) {
+                            if (!keyspace.reconcilied() || keyspace.reconcileWithDcSize < keyspace.rf || dataCenter.getSpec().getReplicas() < keyspace.rf)
+                                targetRfs.put(keyspace.name, effectiveRF(dataCenter, keyspace.rf));
+                        }
+                        Completable todo = Completable.complete();
+                        if (!targetRfs.isEmpty()) {
                             try {
-                                if (!keyspace.reconcilied() || keyspace.reconcileWithDcSize < keyspace.rf || dataCenter.getSpec().getReplicas() < keyspace.rf)
-                                    todoList.add(updateKeyspaceReplicationMap(dataCenter, dataCenterUpdateAction.dataCenterStatus, keyspace.name, effectiveRF(dataCenter, keyspace.rf), sessionSupplier)
-                                            .andThen(Completable.fromAction(() -> dataCenterUpdateAction.operation.getActions().add("Update keyspace RF for ["+keyspace.getName()+"]")))
-                                    );
+                                todo = alterKeyspacesReplicationMap(dataCenter, dataCenterUpdateAction.dataCenterStatus, dataCenter.getSpec().getDatacenterName(), targetRfs, sessionSupplier, true)
+                                        .onErrorComplete(t -> {
+                                            logReplicationMapError(dataCenter, targetRfs, t);
+                                            dataCenterUpdateAction.reconcileFailed("update RF", t);
+                                            return true;
+                                        })
+                                        .andThen(Completable.fromAction(() -> dataCenterUpdateAction.operation.getActions().add("Update keyspace RF for " + new TreeSet<>(targetRfs.keySet()))));
                             } catch (Exception e) {
-                                logger.warn("datacenter=" + dataCenter.id() + " Failed to adjust RF for keyspace=" + keyspace, e);
+                                logger.warn("datacenter=" + dataCenter.id() + " Failed to adjust RF for keyspaces=" + targetRfs.keySet(), e);
+                                dataCenterUpdateAction.reconcileFailed("update RF", e);
                             }
                         }
                         // we set the current replicas in observed replicas to know if we need to update rf map
-                        return Completable.mergeArray(todoList.toArray(new CompletableSource[todoList.size()]))
+                        return todo
                                 .andThen(Completable.fromAction(() -> {
                                     dataCenterUpdateAction.dataCenterStatus.getKeyspaceManagerStatus().setReplicas(dataCenter.getSpec().getReplicas());
                                 }))
@@ -181,20 +192,20 @@ public class CqlKeyspaceManager extends AbstractManager<CqlKeyspace> {
         if (dataCenter.getStatus().getPhase().equals(DataCenterPhase.RUNNING) &&
                 dataCenter.getStatus().getCqlStatus().equals(CqlStatus.ESTABLISHED)) {
             try {
+                final Map<String, Integer> targetRfs = new HashMap<>();
                 // adjust RF for system keyspaces
-                for (CqlKeyspace keyspace : SYSTEM_KEYSPACES) {
-                    updateKeyspaceReplicationMap(dataCenter, dataCenterStatus, keyspace.name, 0, sessionSupplier).blockingGet();
-                }
+                for (CqlKeyspace keyspace : SYSTEM_KEYSPACES)
+                    targetRfs.put(keyspace.name, 0);
 
                 // monitor elastic_admin keyspace to reduce RF when scaling down the DC.
-                updateKeyspaceReplicationMap(dataCenter, dataCenterStatus, elasticAdminKeyspaceName(dataCenter), 0, sessionSupplier).blockingGet();
+                targetRfs.put(elasticAdminKeyspaceName(dataCenter), 0);
 
                 // adjust user keyspace RF
                 if (get(dataCenter) != null) {
-                    for (CqlKeyspace keyspace : get(dataCenter).values()) {
-                        updateKeyspaceReplicationMap(dataCenter, dataCenterStatus, keyspace.name, 0, sessionSupplier).blockingGet();
-                    }
+                    for (CqlKeyspace keyspace : get(dataCenter).values())
+                        targetRfs.put(keyspace.name, 0);
                 }
+                updateKeyspacesReplicationMap(dataCenter, dataCenterStatus, dataCenter.getSpec().getDatacenterName(), targetRfs, sessionSupplier, true).blockingAwait();
             } catch (Exception e) {
                 logger.warn("datacenter=" + dataCenter.id() + " Unable to update Keyspace Replication Map due to '{}'", e.getMessage(), e);
             }
@@ -207,20 +218,14 @@ public class CqlKeyspaceManager extends AbstractManager<CqlKeyspace> {
         if (get(dataCenter) != null &&
                 dataCenter.getStatus().getPhase().equals(DataCenterPhase.RUNNING) &&
                 dataCenter.getStatus().getCqlStatus().equals(CqlStatus.ESTABLISHED)) {
-            Collection<CqlKeyspace> keyspaces = get(dataCenter).values();
-            List<Completable> completables = new ArrayList<>(keyspaces.size());
-            for (CqlKeyspace keyspace : keyspaces) {
-                completables.add(updateKeyspaceReplicationMap(dataCenter, dataCenterStatus, keyspace.name, Math.min(keyspace.rf, targetDcSize), sessionSupplier));
-            }
-            return Completable.mergeArray(completables.toArray(new Completable[completables.size()])).onErrorComplete();
+            final Map<String, Integer> targetRfs = new HashMap<>();
+            for (CqlKeyspace keyspace : get(dataCenter).values())
+                targetRfs.put(keyspace.name, Math.min(keyspace.rf, targetDcSize));
+            return updateKeyspacesReplicationMap(dataCenter, dataCenterStatus, dataCenter.getSpec().getDatacenterName(), targetRfs, sessionSupplier, true).onErrorComplete();
         }
         return Completable.complete();
     }
 
-    private Completable updateKeyspaceReplicationMap(final DataCenter dc, final DataCenterStatus dataCenterStatus, final String keyspace, int targetRf, final CqlSessionSupplier sessionSupplier) throws Exception {
-        return updateKeyspaceReplicationMap(dc, dataCenterStatus, dc.getSpec().getDatacenterName(), keyspace, targetRf, sessionSupplier, true);
-    }
-
     /**
      * Remove the DC from replication map of all keyspaces.
      *
@@ -231,143 +236,199 @@ public class CqlKeyspaceManager extends AbstractManager<CqlKeyspace> {
      */
     public Completable removeDcFromReplicationMap(final DataCenter dc, final DataCenterStatus dataCenterStatus,
                                                   final String dcName, final CqlSessionSupplier sessionSupplier) throws Exception {
+        return removeDcsFromReplicationMap(dc, dataCenterStatus, Collections.singleton(dcName), sessionSupplier);
+    }
+
+    /**
+     * Remove several DCs from the replication map of all keyspaces, with one ALTER per keyspace.
+     */
+    public Completable removeDcsFromReplicationMap(final DataCenter dc, final DataCenterStatus dataCenterStatus,
+                                                   final Collection<String> dcNames, final CqlSessionSupplier sessionSupplier) throws Exception {
         return sessionSupplier.getSession(dc, dataCenterStatus)
-                .flatMap(session -> Single.fromFuture(session.executeAsync("SELECT keyspace_name, replication FROM system_schema.keyspaces")))
-                .flatMapCompletable(rs -> {
-                    final Map<String, Integer> currentRfMap = new HashMap<>();
-                    List<Completable> todoList = new ArrayList<>();
-                    for (Row row : rs) {
-                        final Map<String, String> replication = row.getMap("replication", String.class, String.class);
-                        final Map<String, Integer> keyspaceReplicationMap = replication.entrySet().stream()
-                                .filter(e -> !e.getKey().equals("class") && !e.getKey().equals("replication_factor"))
-                                .collect(Collectors.toMap(Map.Entry::getKey, e -> Integer.parseInt(e.getValue())));
-                        if (keyspaceReplicationMap.containsKey(dcName)) {
-                            keyspaceReplicationMap.remove(dcName);
-                            todoList.add(alterKeyspace(dc, dataCenterStatus, sessionSupplier, row.getString("keyspace_name"), keyspaceReplicationMap).ignoreElement());
-                        }
-                    }
-                    return Completable.mergeArray(todoList.toArray(new CompletableSource[todoList.size()]));
-                })
+                .flatMapCompletable(session -> readReplicationMaps(session)
+                        .flatMapCompletable(rfMaps -> {
+                            List<Completable> todoList = new ArrayList<>();
+                            for (Map.Entry<String, Map<String, Integer>> entry : rfMaps.entrySet()) {
+                                final Map<String, Integer> keyspaceReplicationMap = new HashMap<>(entry.getValue());
+                                if (keyspaceReplicationMap.keySet().removeAll(dcNames))
+                                    todoList.add(alterKeyspace(dc, session, entry.getKey(), keyspaceReplicationMap));
+                            }
+                            if (todoList.isEmpty())
+                                return Completable.complete();
+                            // wait once for schema agreement after all ALTER
+                            return Completable.concat(todoList)
+                                    .andThen(sessionSupplier.getSessionWithSchemaAgreed(dc, dataCenterStatus).ignoreElement());
+                        }))
                 .onErrorComplete(t -> {
-                    logger.error("datacenter=" + dc.id() + " remove dc=" + dcName + " error:", t);
+                    logger.error("datacenter=" + dc.id() + " remove dcs=" + dcNames + " error:", t);
                     return true;
                 });
     }
 
+    /**
+     * Set the RF of several DCs for several keyspaces in one schema change: one ALTER per keyspace
+     * and a single schema agreement wait. No repair or cleanup is triggered, added DCs must be rebuilt.
+     *
+     * @param targetRfMaps target RF per DC for each keyspace, a zero RF removes the DC.
+     */
+    public Completable updateReplicationMaps(final DataCenter dc, final DataCenterStatus dataCenterStatus,
+                                             final Map<String, Map<String, Integer>> targetRfMaps, final CqlSessionSupplier sessionSupplier) throws Exception {
+        return sessionSupplier.getSessionWithSchemaAgreed(dc, dataCenterStatus)
+                .flatMapCompletable(session -> readReplicationMaps(session)
+                        .flatMapCompletable(rfMaps -> {
+                            for (String keyspace : targetRfMaps.keySet()) {
+                                if (!rfMaps.containsKey(keyspace))
+                                    logger.warn("datacenter={} keyspace={} does not exist, ignoring.", dc.id(), keyspace);
+                            }
+                            final Map<String, Map<String, Integer>> changes = KeyspaceReplicationPlan.merge(rfMaps, targetRfMaps);
+                            logger.debug("datacenter={} targetRfMaps={} changes={}", dc.id(), targetRfMaps, changes);
+                            if (changes.isEmpty())
+                                return Completable.complete();
+                            List<Completable> todoList = new ArrayList<>(changes.size());
+                            for (Map.Entry<String, Map<String, Integer>> change : changes.entrySet())
+                                todoList.add(alterKeyspace(dc, session, change.getKey(), change.getValue()));
+                            return Completable.concat(todoList)
+                                    .andThen(Completable.defer(() -> sessionSupplier.getSessionWithSchemaAgreed(dc, dataCenterStatus).ignoreElement()));
+                        }));
+    }
+
     /**
      * Alter rf map but keep other dc replication factor
      *
      * @throws StrapkopException
      */
     public Completable updateKeyspaceReplicationMap(final DataCenter dc, DataCenterStatus dataCenterStatus, String dcName, final String keyspace, int targetRf, final CqlSessionSupplier sessionSupplier, boolean triggerRepairOrCleanup) throws Exception {
-        return sessionSupplier.getSessionWithSchemaAgreed(dc, dataCenterStatus)
-                .flatMap(session ->
-                        Single.fromFuture(session.executeAsync("SELECT keyspace_name, replication FROM system_schema.keyspaces WHERE keyspace_name = ?", keyspace))
-                )
-                .flatMapCompletable(rs -> {
-                    Row row = rs.one();
-                    if (row == null) {
-                        logger.warn("datacenter={} keyspace={} does not exist, ignoring.", dc.id(), keyspace, dc.getMetadata().getName());
-                        return Completable.complete();
-                    }
-                    final Map<String, String> replication = row.getMap("replication", String.class, String.class);
-                    final String strategy = replication.get("class");
-                    Objects.requireNonNull(strategy, "replication strategy cannot be null");
-
-                    final Map<String, Integer> currentRfMap = replication.entrySet().stream()
-                            .filter(e -> !e.getKey().equals("class") && !e.getKey().equals("replication_factor"))
-                            .collect(Collectors.toMap(
-                                    Map.Entry::getKey,
-                                    e -> Integer.parseInt(e.getValue())
-                            ));
-                    final int currentRf = currentRfMap.getOrDefault(dcName, 0);
-                    logger.debug("datacenter={} keyspace={} currentRf={} targetRf={}", dc.id(), keyspace, currentRf, targetRf);
-
-                    // increase sequentially RF by one and repair to avoid quorum read issue (and elassandra_operator login issue)
-                    Completable todo = Completable.complete();
-                    for (int rf = currentRf; rf <= targetRf; rf++) {
-                        currentRfMap.put(dcName, rf);
-                        final int rf2 = rf;
-                        if (currentRfMap.entrySet().stream().filter(e -> e.getValue() > 0).count() > 0) {
-                            todo = todo.andThen(alterKeyspace(dc, dataCenterStatus, sessionSupplier, keyspace, currentRfMap)
-                                    .map(s -> {
-                                        logger.debug("datacenter={} ALTER executed keyspace={} replicationMap={}", dc.id(), keyspace, currentRfMap);
-                                        return s;
-                                    })
-                                    // check schema agreement and wait beyond the max schema agreement wait timeout
-                                    .flatMap(s -> {
-                                        if (!s.getCluster().getMetadata().checkSchemaAgreement())
-                                            throw new IllegalStateException("No schema agreement");
-                                        return Single.just(s);
-                                    })
-                                    .retryWhen((Flowable<Throwable> f) -> f.take(20).delay(6, TimeUnit.SECONDS))
-                                    .map(s -> {
-                                        logger.debug("datacenter={} ALTER applied keyspace={} replicationMap={}", dc.id(), keyspace, currentRfMap);
-                                        CqlKeyspace cqlKeyspace = get(dc, keyspace);
-                                        if (cqlKeyspace == null) {
-                                            cqlKeyspace = new CqlKeyspace().withName(keyspace);
-                                        }
-                                        cqlKeyspace.setReconcilied(true);
-                                        cqlKeyspace.setReconcileWithDcSize(rf2);
-                                        put(dc, cqlKeyspace.name, cqlKeyspace);
-                                        return s;
-                                    })
-                                    .flatMapCompletable(s -> {
-                                        if (!triggerRepairOrCleanup)
-                                            return Completable.complete();
+        return updateKeyspacesReplicationMap(dc, dataCenterStatus, dcName, ImmutableMap.of(keyspace, targetRf), sessionSupplier, triggerRepairOrCleanup);
+    }
 
-                                        if (targetRf > currentRf) {
-                                            // RF increased
-                                            if (targetRf > 1) {
-                                                logger.info("datacenter={} Need a repair for keyspace={}", dc.id(), keyspace);
-                                                final String labelSelector = OperatorLabels.toSelector(ImmutableMap.of(
-                                                        OperatorLabels.PARENT, dc.getMetadata().getName(),
-                                                        OperatorLabels.APP, OperatorLabels.ELASSANDRA_APP));
-                                                return Single.fromCallable(new Callable<Iterable<V1Pod>>() {
-                                                    @Override
-                                                    public Iterable<V1Pod> call() throws Exception {
-                                                        return k8sResourceUtils.listNamespacedPods(dc.getMetadata().getNamespace(), null, labelSelector);
-                                                    }
-                                                }).flatMapCompletable(podList -> {
-                                                    Completable todo2 = Completable.complete();
-                                                    for (V1Pod pod : podList) {
-                                                        logger.debug("Launch repair pod={} keyspace={}", pod.getMetadata().getName(), keyspace);
-                                                        todo2 = todo2.andThen(jmxmpElassandraProxy.repair(ElassandraPod.fromName(dc, pod.getMetadata().getName()), keyspace));
-                                                    }
-                                                    return todo2;
-                                                });
-                                            }
-                                        } else {
-                                            // RF decreased
-                                            if (targetRf < dc.getSpec().getReplicas()) {
-                                                dc.getStatus().getNeedCleanupKeyspaces().add(keyspace);
-                                                logger.info("datacenter={} cleanup required for keyspace={}", dc.id(), keyspace);
-                                            }
-                                        }
-                                        return Completable.complete();
-                                    }));
-                        }
-                    }
-                    return todo;
-                })
+    /**
+     * Alter the rf map of several keyspaces but keep other dc replication factor.
+     * Current replication maps are read once, all changes are computed in memory by {@link KeyspaceReplicationPlan},
+     * and each wave of ALTER KEYSPACE is followed by a single schema agreement wait.
+     *
+     * @throws StrapkopException
+     */
+    public Completable updateKeyspacesReplicationMap(final DataCenter dc, DataCenterStatus dataCenterStatus, String dcName, final Map<String, Integer> targetRfs, final CqlSessionSupplier sessionSupplier, boolean triggerRepairOrCleanup) throws Exception {
+        return alterKeyspacesReplicationMap(dc, dataCenterStatus, dcName, targetRfs, sessionSupplier, triggerRepairOrCleanup)
                 .onErrorComplete(t -> {
-                    if (!(t instanceof java.net.UnknownHostException))
-                        logger.error("datacenter=" + dc.id() + " update RF keyspace=" + keyspace + " error:", t);
+                    logReplicationMapError(dc, targetRfs, t);
                     return true;
                 });
     }
 
-    private Single<Session> alterKeyspace(final DataCenter dc, DataCenterStatus dataCenterStatus, final CqlSessionSupplier sessionSupplier, final String name, Map<String, Integer> rfMap) throws Exception {
+    private void logReplicationMapError(final DataCenter dc, final Map<String, Integer> targetRfs, final Throwable t) {
+        if (!(t instanceof java.net.UnknownHostException))
+            logger.error("datacenter=" + dc.id() + " update RF keyspaces=" + targetRfs.keySet() + " error:", t);
+    }
+
+    private Completable alterKeyspacesReplicationMap(final DataCenter dc, DataCenterStatus dataCenterStatus, String dcName, final Map<String, Integer> targetRfs, final CqlSessionSupplier sessionSupplier, boolean triggerRepairOrCleanup) throws Exception {
         return sessionSupplier.getSessionWithSchemaAgreed(dc, dataCenterStatus)
-                .flatMap(session -> {
-                    final String query = String.format(Locale.ROOT,
-                            "ALTER KEYSPACE %s WITH replication = {'class': 'NetworkTopologyStrategy', %s};",
-                            quote(name), stringifyRfMap(rfMap));
-                    logger.debug("dc={} query={}", dc.id(), query);
-                    return Single.fromFuture(session.executeAsync(query)).map(x -> session);
+                .flatMapCompletable(session -> readReplicationMaps(session)
+                        .flatMapCompletable(rfMaps -> {
+                            final KeyspaceReplicationPlan plan = KeyspaceReplicationPlan.plan(dcName, rfMaps, targetRfs);
+                            logger.debug("datacenter={} dcName={} targetRfs={} plan={}", dc.id(), dcName, targetRfs, plan);
+                            for (String keyspace : plan.getMissing())
+                                logger.warn("datacenter={} keyspace={} does not exist, ignoring.", dc.id(), keyspace);
+                            for (String keyspace : plan.getUnchanged())
+                                markReconcilied(dc, keyspace, targetRfs.get(keyspace));
+
+                            // increase sequentially RF by one and repair to avoid quorum read issue (and elassandra_operator login issue)
+                            Completable todo = Completable.complete();
+                            for (final List<KeyspaceReplicationPlan.Change> wave : plan.getWaves()) {
+                                List<Completable> alters = new ArrayList<>(wave.size());
+                                for (KeyspaceReplicationPlan.Change change : wave)
+                                    alters.add(alterKeyspace(dc, session, change.getKeyspace(), change.getReplicationMap()));
+                                todo = todo.andThen(Completable.concat(alters))
+                                        // wait for schema agreement beyond the max schema agreement wait timeout
+                                        .andThen(Completable.defer(() -> sessionSupplier.getSessionWithSchemaAgreed(dc, dataCenterStatus).ignoreElement()))
+                                        .andThen(Completable.defer(() -> {
+                                            for (KeyspaceReplicationPlan.Change change : wave) {
+                                                logger.debug("datacenter={} ALTER applied keyspace={} replicationMap={}", dc.id(), change.getKeyspace(), change.getReplicationMap());
+                                                markReconcilied(dc, change.getKeyspace(), change.getRf());
+                                            }
+                                            return triggerRepairOrCleanup ? repairOrCleanup(dc, wave) : Completable.complete();
+                                        }));
+                            }
+                            return todo;
+                        }));
+    }
+
+    /**
+     * Read the replication maps of all keyspaces in one query.
+     */
+    private Single<Map<String, Map<String, Integer>>> readReplicationMaps(final Session session) {
+        return statementExecutor.executeRead(session, "select_replication", "SELECT keyspace_name, replication FROM system_schema.keyspaces")
+                .map(rs -> {
+                    final Map<String, Map<String, Integer>> rfMaps = new HashMap<>();
+                    for (Row row : rs)
+                        rfMaps.put(row.getString("keyspace_name"), KeyspaceReplicationPlan.replicationMap(row.getMap("replication", String.class, String.class)));
+                    return rfMaps;
                 });
     }
 
+    private void markReconcilied(final DataCenter dc, final String keyspace, final int rf) {
+        CqlKeyspace cqlKeyspace = get(dc, keyspace);
+        if (cqlKeyspace == null) {
+            cqlKeyspace = new CqlKeyspace().withName(keyspace);
+        }
+        cqlKeyspace.setReconcilied(true);
+        cqlKeyspace.setReconcileWithDcSize(rf);
+        put(dc, cqlKeyspace.name, cqlKeyspace);
+    }
+
+    /**
+     * Repair keyspaces having an increased RF, or flag keyspaces having a decreased RF for cleanup.
+     */
+    private Completable repairOrCleanup(final DataCenter dc, final List<KeyspaceReplicationPlan.Change> wave) {
+        final List<String> keyspacesToRepair = new ArrayList<>();
+        for (KeyspaceReplicationPlan.Change change : wave) {
+            if (change.isIncrease()) {
+                // RF increased
+                if (change.getTargetRf() > 1) {
+                    logger.info("datacenter={} Need a repair for keyspace={}", dc.id(), change.getKeyspace());
+                    keyspacesToRepair.add(change.getKeyspace());
+                }
+            } else {
+                // RF decreased
+                if (change.getTargetRf() < dc.getSpec().getReplicas()) {
+                    dc.getStatus().getNeedCleanupKeyspaces().add(change.getKeyspace());
+                    logger.info("datacenter={} cleanup required for keyspace={}", dc.id(), change.getKeyspace());
+                }
+            }
+        }
+        if (keyspacesToRepair.isEmpty())
+            return Completable.complete();
+
+        final String labelSelector = OperatorLabels.toSelector(ImmutableMap.of(
+                OperatorLabels.PARENT, dc.getMetadata().getName(),
+                OperatorLabels.APP, OperatorLabels.ELASSANDRA_APP));
+        return Single.fromCallable(new Callable<Iterable<V1Pod>>() {
+            @Override
+            public Iterable<V1Pod> call() throws Exception {
+                return k8sResourceUtils.listNamespacedPods(dc.getMetadata().getNamespace(), null, labelSelector);
+            }
+        }).flatMapCompletable(podList -> {
+            Completable todo = Completable.complete();
+            for (V1Pod pod : podList) {
+                for (String keyspace : keyspacesToRepair) {
+                    logger.debug("Launch repair pod={} keyspace={}", pod.getMetadata().getName(), keyspace);
+                    todo = todo.andThen(jmxmpElassandraProxy.repair(ElassandraPod.fromName(dc, pod.getMetadata().getName()), keyspace));
+                }
+            }
+            return todo;
+        });
+    }
+
+    private Completable alterKeyspace(final DataCenter dc, final Session session, final String name, Map<String, Integer> rfMap) {
+        return Completable.defer(() -> {
+            final String query = String.format(Locale.ROOT,
+                    "ALTER KEYSPACE %s WITH replication = {'class': 'NetworkTopologyStrategy', %s};",
+                    quote(name), stringifyRfMap(rfMap));
+            logger.debug("dc={} query={}", dc.id(), query);
+            return statementExecutor.executeSimple(session, "alter_keyspace", query).ignoreElement();
+        });
+    }
+
     private String stringifyRfMap(final Map<String, Integer> rfMap) {
         return rfMap.entrySet().stream()
                 .filter(e -> e.getValue() > 0)
@@ -24,7 +24,7 @@ import com.strapdata.strapkop.k8s.K8sResourceUtils;
 import com.strapdata.strapkop.k8s.OperatorNames;
 import com.strapdata.strapkop.model.k8s.datacenter.DataCenter;
 import com.strapdata.strapkop.model.k8s.datacenter.DataCenterStatus;
-import io.reactivex.Completable;
+import io.reactivex.Flowable;
 import io.reactivex.Single;
 import lombok.*;
 import org.slf4j.Logger;
@@ -132,7 +132,7 @@ public class CqlRole implements CqlReconciliable, Cloneable {
         if (this.password != null)
             return Single.just(this);
 
-        return k8sResourceUtils.readNamespacedSecret(dataCenter.getMetadata().getNamespace(), this.secretNameProvider.apply(dataCenter))
+        return k8sResourceUtils.readNamespacedSecretCached(dataCenter.getMetadata().getNamespace(), this.secretNameProvider.apply(dataCenter))
                 .map(secret -> {
                     byte[] passBytes = secret.getData().get(secretKey);
                     if (passBytes == null) {
@@ -154,12 +154,14 @@ public class CqlRole implements CqlReconciliable, Cloneable {
 
     /**
      * Create or update a cassandra role, grant permissions and execute postCreate handler.
+     * Grant statements have no bind markers, they are executed as simple statements, at most grantConcurrency at a time.
      *
      * @param sessionSupplier
      * @return this
      * @throws StrapkopException
      */
-    public Single<CqlRole> createOrUpdateRole(DataCenter dataCenter, DataCenterStatus dataCenterStatus, K8sResourceUtils k8sResourceUtils, final CqlSessionSupplier sessionSupplier) throws Exception {
+    public Single<CqlRole> createOrUpdateRole(DataCenter dataCenter, DataCenterStatus dataCenterStatus, K8sResourceUtils k8sResourceUtils, final CqlSessionSupplier sessionSupplier,
+                                              final CqlStatementExecutor statementExecutor, final int grantConcurrency) throws Exception {
         if (!reconcilied) {
             // create role if not exists, then alter... so this is completely idempotent and can even update password, although it might not be optimized
             return loadPassword(dataCenter, k8sResourceUtils)
@@ -170,22 +172,23 @@ public class CqlRole implements CqlReconciliable, Cloneable {
                     .flatMap(session -> {
                         if (!"cassandra".equals(username)) {
                             // don not create the cassandra role, it always exists
+                            // role options cannot be bound
                             String q = String.format(Locale.ROOT, "CREATE ROLE IF NOT EXISTS %s with SUPERUSER = %b AND LOGIN = %b and PASSWORD = '%s'", username, superUser, login, password);
-                            logger.debug("datacenter={} query={}", dataCenter.id(), q);
-                            return Single.fromFuture(session.executeAsync(q)).map(rs -> session);
+                            logger.debug("datacenter={} create role={}", dataCenter.id(), username);
+                            return statementExecutor.executeSimple(session, "create_role", q).map(rs -> session);
                         } else {
                             return Single.just(session);
                         }
                     })
                     .flatMap(session -> {
                         String q = String.format(Locale.ROOT, "ALTER ROLE %s WITH PASSWORD = '%s'", username, password);
-                        logger.debug("datacenter={} query={}", dataCenter.id(), q);
-                        return Single.fromFuture(session.executeAsync(q)).map(rs -> session);
+                        logger.debug("datacenter={} alter role={}", dataCenter.id(), username);
+                        return statementExecutor.executeSimple(session, "alter_role", q).map(rs -> session);
                     })
                     .flatMap(session -> {
                         return (this.grantStatements != null && this.grantStatements.size() > 0) ?
-                                Completable.mergeArray(this.grantStatements.stream().map(
-                                        stmt -> Completable.fromFuture(session.executeAsync(stmt))).toArray(Completable[]::new))
+                                Flowable.fromIterable(this.grantStatements)
+                                        .flatMapCompletable(stmt -> statementExecutor.executeSimple(session, "grant", stmt).ignoreElement(), false, Math.max(1, grantConcurrency))
                                         .toSingleDefault(session) :
                                 Single.just(session);
                     })
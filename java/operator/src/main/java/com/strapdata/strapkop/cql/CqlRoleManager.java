@@ -20,6 +20,7 @@ package com.strapdata.strapkop.cql;
 import com.datastax.driver.core.*;
 import com.datastax.driver.core.exceptions.AuthenticationException;
 import com.datastax.driver.core.exceptions.DriverException;
+import com.datastax.driver.core.policies.ConstantSpeculativeExecutionPolicy;
 import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
 import com.datastax.driver.core.policies.LoggingRetryPolicy;
 import com.datastax.driver.core.policies.TokenAwarePolicy;
@@ -48,6 +49,7 @@ import io.netty.handler.ssl.SslProvider;
 import io.reactivex.Completable;
 import io.reactivex.CompletableSource;
 import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
 import io.vavr.Tuple2;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,10 +60,14 @@ import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -81,13 +87,22 @@ public class CqlRoleManager extends AbstractManager<CqlRole> {
     final K8sResourceUtils k8sResourceUtils;
     final AuthorityManager authorityManager;
     final OperatorConfig operatorConfig;
+    final CqlStatementExecutor statementExecutor;
+    final HostHealthTracker hostHealthTracker;
+
+    // last successful role per datacenter, tried first on the next connection
+    final Map<String, String> lastConnectedRoles = new ConcurrentHashMap<>();
 
     public CqlRoleManager(final CoreV1Api coreApi,
                           final K8sResourceUtils k8sResourceUtils,
                           final AuthorityManager authorityManager,
                           final OperatorConfig operatorConfig,
+                          final CqlStatementExecutor statementExecutor,
+                          final HostHealthTracker hostHealthTracker,
                           final MeterRegistry meterRegistry) {
         super(meterRegistry);
+        this.statementExecutor = statementExecutor;
+        this.hostHealthTracker = hostHealthTracker;
         this.coreApi = coreApi;
         this.k8sResourceUtils = k8sResourceUtils;
         this.authorityManager = authorityManager;
@@ -119,6 +134,7 @@ public class CqlRoleManager extends AbstractManager<CqlRole> {
                                 todoList.add(plugin.syncRoles(CqlRoleManager.this, dataCenter));
                             } catch(Exception e) {
                                 logger.warn("datacenter={} Failed to syncRoles for plugin={}", dataCenter.id(), plugin.getClass().getName());
+                                dataCenterUpdateAction.reconcileFailed("syncRoles plugin=" + plugin.getClass().getName(), e);
                             }
                         }
                     }
@@ -134,7 +150,7 @@ public class CqlRoleManager extends AbstractManager<CqlRole> {
                                 try {
                                     doUpdateStatus = true;
                                     todoList.add(
-                                            role.createOrUpdateRole(dataCenter, dataCenterUpdateAction.dataCenterStatus, k8sResourceUtils, sessionSupplier)
+                                            role.createOrUpdateRole(dataCenter, dataCenterUpdateAction.dataCenterStatus, k8sResourceUtils, sessionSupplier, statementExecutor, operatorConfig.getCqlGrantConcurrency())
                                             .map(r -> {
                                                 // update registry because role seems to be managed by value
                                                 put(dataCenter, r.getUsername(), r);
@@ -145,6 +161,7 @@ public class CqlRoleManager extends AbstractManager<CqlRole> {
                                 } catch (Exception ex) {
                                     logger.error("datacenter={} Cannot load password or apply for role={} error={}",
                                             dataCenter.id(), role.getUsername(), ex.getMessage());
+                                    dataCenterUpdateAction.reconcileFailed("role=" + role.getUsername(), ex);
                                 }
                             }
                         }
@@ -153,6 +170,24 @@ public class CqlRoleManager extends AbstractManager<CqlRole> {
                 });
     }
 
+    /**
+     * Resource versions of the secrets holding the managed role passwords, read from the informer cache.
+     */
+    public Map<String, String> secretVersions(final DataCenter dataCenter) {
+        final Map<String, String> versions = new TreeMap<>();
+        if (get(dataCenter) != null) {
+            for (CqlRole role : get(dataCenter).values()) {
+                if (role.getSecretKey() != null) {
+                    final String secretName = role.getSecretNameProvider().apply(dataCenter);
+                    versions.put(secretName, k8sResourceUtils.getCachedNamespacedSecret(dataCenter.getMetadata().getNamespace(), secretName)
+                            .map(secret -> secret.getMetadata().getResourceVersion())
+                            .orElse(null));
+                }
+            }
+        }
+        return versions;
+    }
+
     /**
      * @param dc the datacenter to connect  to
      * @return
@@ -167,56 +202,55 @@ public class CqlRoleManager extends AbstractManager<CqlRole> {
         addIfAbsent(dc, CqlRole.ADMIN_ROLE.username, () -> CqlRole.ADMIN_ROLE.duplicate());
         addIfAbsent(dc, CqlRole.STRAPKOP_ROLE.username, () -> CqlRole.STRAPKOP_ROLE.duplicate());
 
-        return Single.fromCallable(new Callable<Tuple2<Cluster,Session>>() {
+        if (dc.getSpec().getCassandra().getAuthentication().equals(Authentication.NONE)) {
+            logger.debug("datacenter={} Creating a new CQL connection", dc.id());
+            return connect(dc, dcStatus, Optional.empty());
+        }
+
+        final List<CqlRole> candidates = candidateRoles(dc);
+        // load secrets concurrently, from the informer cache when available, a role without secret is skipped
+        return Completable.merge(candidates.stream()
+                .map(role -> Single.defer(() -> role.loadPassword(dc, k8sResourceUtils))
+                        .subscribeOn(Schedulers.io())
+                        .ignoreElement()
+                        .doOnError(t -> logger.warn("datacenter={} role={} cannot load password: {}", dc.id(), role.getUsername(), t.toString()))
+                        .onErrorComplete())
+                .collect(Collectors.toList()))
+                .andThen(Single.fromCallable(new Callable<Tuple2<Cluster,Session>>() {
                 @Override
                 public Tuple2<Cluster,Session> call() throws Exception {
                     logger.debug("datacenter={} Creating a new CQL connection", dc.id());
-                    if (dc.getSpec().getCassandra().getAuthentication().equals(Authentication.NONE))
-                        return connect(dc, dcStatus, Optional.empty()).blockingGet();
-
-                    List<CqlRole> roles = ImmutableList.of(
-                            get(dc, CqlRole.ADMIN_ROLE.username),
-                            get(dc, CqlRole.CASSANDRA_ROLE.username),
-                            get(dc, CqlRole.STRAPKOP_ROLE.username),
-                            CqlRole.DEFAULT_CASSANDRA_ROLE
-                    );
+                    final List<CqlRole> roles = candidates.stream().filter(role -> role.getPassword() != null).collect(Collectors.toList());
+                    if (roles.isEmpty())
+                        throw new StrapkopException("datacenter=" + dc.id() + " no password available for roles=" +
+                                candidates.stream().map(CqlRole::getUsername).collect(Collectors.toList()));
 
                     Tuple2<Cluster,Session> rootClusterSession = null;
                     CqlRole connectedRole = null;
                     Exception lastException = null;
-                    for (CqlRole role : roles) {
-                        try {
-                            logger.debug("datacenter={} Loading secret for role={}", dc.id(), role);
-                            role.loadPassword(dc, k8sResourceUtils).blockingGet();
-                            logger.debug("datacenter={} Connecting with role={}", dc.id(), role);
-                            rootClusterSession = connect(dc, dcStatus, Optional.of(role)).blockingGet();
-                            logger.debug("datacenter={} Connected with role={}", dc.id(), role);
-                            connectedRole = role;
-                            break;
-                        } catch (AuthenticationException e) {
-                            // authentication failed
-                            logger.debug("datacenter={} Authentication failed with role={} from secret={}",
-                                    dc.id(), role.username, (role.secretKey == null) ? null : role.secret(dc));
-                            lastException = e;
-                        } catch (ApiException e) {
-                            // cannot load k8s secret
-                            logger.warn("datacenter={} Cannot load secret in for role={} from secret={}",
-                                    dc.id(), role.username, (role.secretKey == null) ? null : role.secret(dc));
-                            lastException = e;
-                        } catch (StrapkopException e) {
-                            // password contains illegal caracters
-                            logger.warn("datacenter={} Bad password for role={} from secret={}",
-                                    dc.id(), role.username, role.secret(dc));
-                            lastException = e;
-                        } catch(DriverException e) {
-                            logger.warn("datacenter=" + dc.id() + " Driver exception:" + e.getMessage(), e);
-                            lastException = e;
-                        } catch(IllegalArgumentException e) {
-                            logger.warn("datacenter=" + dc.id() + " No pod available for a CQL connection:" + e.getMessage());
-                            lastException = e;
-                        } catch(Exception e) {
-                            logger.debug("datacenter=" + dc.id() + " Unexpected exception:" + e.getMessage(), e);
-                            lastException = e;
+
+                    // try the last successful role first
+                    CqlRole preferredRole = roles.get(0);
+                    try {
+                        logger.debug("datacenter={} Connecting with role={}", dc.id(), preferredRole);
+                        rootClusterSession = connect(dc, dcStatus, Optional.of(preferredRole)).blockingGet();
+                        logger.debug("datacenter={} Connected with role={}", dc.id(), preferredRole);
+                        connectedRole = preferredRole;
+                    } catch (Exception e) {
+                        lastException = connectionFailure(dc, preferredRole, e);
+                    }
+
+                    if (connectedRole == null) {
+                        // probe the other roles in parallel with a short connect timeout, then connect with the first successful one
+                        Optional<CqlRole> probedRole = probe(dc, roles.subList(1, roles.size()));
+                        if (probedRole.isPresent()) {
+                            try {
+                                logger.debug("datacenter={} Connecting with probed role={}", dc.id(), probedRole.get());
+                                rootClusterSession = connect(dc, dcStatus, probedRole).blockingGet();
+                                connectedRole = probedRole.get();
+                            } catch (Exception e) {
+                                lastException = connectionFailure(dc, probedRole.get(), e);
+                            }
                         }
                     }
 
@@ -256,7 +290,7 @@ public class CqlRoleManager extends AbstractManager<CqlRole> {
                                     public void close() {
                                         // do not close it now
                                     }
-                                }).blockingGet();
+                                }, statementExecutor, operatorConfig.getCqlGrantConcurrency()).blockingGet();
                             } catch (Exception e) {
                                 logger.error("datacenter={} Cannot CreateOrUpdate role={}", dc.id(), role, e);
                             }
@@ -279,16 +313,107 @@ public class CqlRoleManager extends AbstractManager<CqlRole> {
                                 } catch (Exception e) {
                                     logger.warn("datacenter=" + dc.id() + " Failed to close root session:" + e.getMessage(), e);
                                 }
+                                lastConnectedRoles.put(key(dc), roleId(strakopRole));
                                 return strapkopConnection;
                             } catch (AuthenticationException e) {
                             } catch (Exception e) {
                                 logger.error("datacenter=" + dc.id() + " Failed to reconnect with the operator role=" + strakopRole + " :" + e.getMessage(), e);
                             }
                         }
+                    } else {
+                        lastConnectedRoles.put(key(dc), roleId(connectedRole));
                     }
                     return rootClusterSession;
                 }
-            });
+            }));
+    }
+
+    String roleId(CqlRole role) {
+        return role.getUsername() + "/" + role.getSecretKey();
+    }
+
+    /**
+     * Candidate roles to connect with, the last successful role of the datacenter first.
+     */
+    List<CqlRole> candidateRoles(final DataCenter dc) {
+        List<CqlRole> roles = new ArrayList<>(ImmutableList.of(
+                get(dc, CqlRole.ADMIN_ROLE.username),
+                get(dc, CqlRole.CASSANDRA_ROLE.username),
+                get(dc, CqlRole.STRAPKOP_ROLE.username),
+                CqlRole.DEFAULT_CASSANDRA_ROLE
+        ));
+        String lastRoleId = lastConnectedRoles.get(key(dc));
+        if (lastRoleId != null) {
+            for (int i = 1; i < roles.size(); i++) {
+                if (lastRoleId.equals(roleId(roles.get(i)))) {
+                    roles.add(0, roles.remove(i));
+                    break;
+                }
+            }
+        }
+        return roles;
+    }
+
+    /**
+     * Try to open a connection with each role concurrently with a short connect timeout.
+     * @return the first role (in the candidate order) that successfully authenticated.
+     */
+    @SuppressWarnings("unchecked")
+    Optional<CqlRole> probe(final DataCenter dc, final List<CqlRole> roles) {
+        if (roles.isEmpty())
+            return Optional.empty();
+        final int connectTimeoutMillis = operatorConfig.getCqlProbeConnectTimeoutMillis();
+        List<Single<Optional<CqlRole>>> probes = roles.stream()
+                .map(role -> Single.fromCallable(() -> createClusterObject(dc, Optional.of(role), connectTimeoutMillis))
+                        .flatMap(cluster -> Single.fromFuture(cluster.connectAsync())
+                                .map(session -> Optional.of(role))
+                                .doFinally(cluster::closeAsync))
+                        .timeout(2L * connectTimeoutMillis, TimeUnit.MILLISECONDS)
+                        .onErrorReturn(t -> {
+                            logger.debug("datacenter={} Probe failed for role={} error={}", dc.id(), role.getUsername(), t.toString());
+                            return Optional.empty();
+                        })
+                        .subscribeOn(Schedulers.io()))
+                .collect(Collectors.toList());
+        return Single.zip(probes, results -> {
+            for (Object result : results) {
+                Optional<CqlRole> probedRole = (Optional<CqlRole>) result;
+                if (probedRole.isPresent())
+                    return probedRole;
+            }
+            return Optional.<CqlRole>empty();
+        }).blockingGet();
+    }
+
+    Exception connectionFailure(final DataCenter dc, final CqlRole role, final Exception exception) {
+        Throwable e = (exception instanceof RuntimeException && exception.getCause() instanceof Exception &&
+                !(exception instanceof DriverException)) ? exception.getCause() : exception;
+        if (e instanceof AuthenticationException) {
+            // authentication failed
+            logger.debug("datacenter={} Authentication failed with role={} from secret={}",
+                    dc.id(), role.username, (role.secretKey == null) ? null : role.secret(dc));
+        } else if (e instanceof ApiException) {
+            // cannot load k8s secret
+            logger.warn("datacenter={} Cannot load secret in for role={} from secret={}",
+                    dc.id(), role.username, (role.secretKey == null) ? null : role.secret(dc));
+        } else if (e instanceof StrapkopException) {
+            // password contains illegal caracters
+            logger.warn("datacenter={} Bad password for role={} from secret={}",
+                    dc.id(), role.username, role.secret(dc));
+        } else if (e instanceof DriverException) {
+            logger.warn("datacenter=" + dc.id() + " Driver exception:" + e.getMessage(), e);
+        } else if (e instanceof IllegalArgumentException) {
+            logger.warn("datacenter=" + dc.id() + " No pod available for a CQL connection:" + e.getMessage());
+        } else {
+            logger.debug("datacenter=" + dc.id() + " Unexpected exception:" + e.getMessage(), e);
+        }
+        return (Exception) e;
+    }
+
+    @Override
+    public void remove(final DataCenter dataCenter) {
+        super.remove(dataCenter);
+        lastConnectedRoles.remove(key(dataCenter));
     }
 
     private Single<Tuple2<Cluster, Session>> connect(final DataCenter dc, final DataCenterStatus dataCenterStatus, Optional<CqlRole> optionalCqlRole) throws StrapkopException, ApiException, SSLException, ExecutionException, InterruptedException {
@@ -308,6 +433,10 @@ public class CqlRoleManager extends AbstractManager<CqlRole> {
     }
 
     private Cluster createClusterObject(final DataCenter dc, final Optional<CqlRole> optionalCqlRole) throws StrapkopException, ApiException, SSLException, ExecutionException, InterruptedException {
+        return createClusterObject(dc, optionalCqlRole, null);
+    }
+
+    private Cluster createClusterObject(final DataCenter dc, final Optional<CqlRole> optionalCqlRole, final Integer connectTimeoutMillis) throws StrapkopException, ApiException, SSLException, ExecutionException, InterruptedException {
         // check the number of available node to adapt the ConsistencyLevel otherwise creating a DC with more than 1 node (or park a DC) isn't possible
         // because licence can't be checked (UnavailableException: Not enough replicas available for query at consistency LOCAL_QUORUM (2 required but only 1 alive))
 
@@ -324,12 +453,17 @@ public class CqlRoleManager extends AbstractManager<CqlRole> {
                         .setCoreConnectionsPerHost(HostDistance.LOCAL,1)
                 )
                 .withMaxSchemaAgreementWaitSeconds(operatorConfig.getMaxSchemaAgreementWaitSeconds())
-                .withLoadBalancingPolicy(new TokenAwarePolicy(
+                // pinned to the reconciled DC, with connections to a bounded set of local hosts
+                .withLoadBalancingPolicy(new BoundedHostsPolicy(new HealthAwareLoadBalancingPolicy(new TokenAwarePolicy(
                         DCAwareRoundRobinPolicy.builder()
                                 .withLocalDc(dc.getSpec().getDatacenterName())
                                 .withUsedHostsPerRemoteDc(0)
-                                .build()))
-                .withRetryPolicy(new LoggingRetryPolicy(OperatorRetryPolicy.INSTANCE));
+                                .build()), hostHealthTracker), hostHealthTracker, operatorConfig.getCqlMaxHostsPerSession()))
+                .withRetryPolicy(new LoggingRetryPolicy(new OperatorRetryPolicy(operatorConfig.getCqlMaxRetries())))
+                // only applies to statements marked as idempotent, like system_schema reads
+                .withSpeculativeExecutionPolicy(new ConstantSpeculativeExecutionPolicy(
+                        operatorConfig.getCqlSpeculativeExecutionDelayMillis(),
+                        operatorConfig.getCqlSpeculativeExecutionMax()));
 
         if (dc.getSpec().getNetworking().getHostNetworkEnabled() || dc.getSpec().getNetworking().getHostPortEnabled()) {
             // if cluster has public broadcast IPs, the translator retreive internal k8s IP addresses
@@ -367,7 +501,14 @@ public class CqlRoleManager extends AbstractManager<CqlRole> {
             );
         }
 
-        builder.withoutMetrics(); // disable metric collection
+        if (connectTimeoutMillis != null) {
+            // short-lived probe cluster, no metrics
+            builder.withSocketOptions(new SocketOptions().setConnectTimeoutMillis(connectTimeoutMillis));
+            builder.withoutMetrics();
+        } else {
+            // driver metrics are exposed through micrometer by CqlDriverMetrics
+            builder.withoutJMXReporting();
+        }
         return builder.build();
     }
 
@@ -17,65 +17,67 @@
 
 package com.strapdata.strapkop.cql;
 
-import com.datastax.driver.core.Cluster;
 import com.datastax.driver.core.Session;
 import com.strapdata.strapkop.model.k8s.datacenter.DataCenter;
 import com.strapdata.strapkop.model.k8s.datacenter.DataCenterStatus;
 import io.micronaut.context.annotation.Prototype;
-import io.reactivex.Flowable;
 import io.reactivex.Single;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.TimeUnit;
-
 /**
- * Manage CQL session during a reconciliation
+ * Manage CQL session during a reconciliation, the underlying session is borrowed from the {@link CqlSessionRegistry}.
  */
 @Prototype
 public class CqlSessionHandler implements CqlSessionSupplier {
     private static final Logger logger = LoggerFactory.getLogger(CqlSessionHandler.class);
 
-    final CqlRoleManager cqlRoleManager;
+    final CqlSessionRegistry cqlSessionRegistry;
+    final SchemaAgreementWaiter schemaAgreementWaiter;
 
-    Session session;
-    Cluster cluster;
+    CqlSessionRegistry.CqlSession borrowed;
 
-    public CqlSessionHandler(final CqlRoleManager cqlRoleManager) {
-        this.cqlRoleManager = cqlRoleManager;
+    public CqlSessionHandler(final CqlSessionRegistry cqlSessionRegistry, final SchemaAgreementWaiter schemaAgreementWaiter) {
+        this.cqlSessionRegistry = cqlSessionRegistry;
+        this.schemaAgreementWaiter = schemaAgreementWaiter;
     }
 
     @Override
     public Single<Session> getSession(DataCenter dataCenter, DataCenterStatus dataCenterStatus) throws Exception {
-        return (session != null) ?
-            Single.just(session) :
-            cqlRoleManager.connect(dataCenter, dataCenterStatus)
-                .map(tuple -> {
-                    this.cluster = tuple._1;
-                    this.session = tuple._2;
-                    return this.session;
+        synchronized (this) {
+            if (borrowed != null)
+                return Single.just(borrowed.session);
+        }
+        return cqlSessionRegistry.borrow(dataCenter, dataCenterStatus)
+                .map(cqlSession -> {
+                    synchronized (this) {
+                        if (borrowed == null) {
+                            borrowed = cqlSession;
+                        } else {
+                            // borrowed concurrently
+                            cqlSessionRegistry.release(cqlSession);
+                        }
+                        return borrowed.session;
+                    }
                 });
     }
 
+    /**
+     * Release the session, which is kept open by the registry for the next reconciliation.
+     */
     @Override
-    public void close() {
-        logger.debug("Closing cluster={}", cluster == null ? null : cluster.getClusterName());
-        if (cluster != null)
-            cluster.closeAsync();
-        cluster = null;
-        session = null;
+    public synchronized void close() {
+        if (borrowed != null) {
+            cqlSessionRegistry.release(borrowed);
+            borrowed = null;
+        }
     }
 
 
     @Override
     public Single<Session> getSessionWithSchemaAgreed(DataCenter dataCenter, DataCenterStatus dataCenterStatus) throws Exception {
         return getSession(dataCenter, dataCenterStatus)
-                .flatMap(s -> {
-                    if (!s.getCluster().getMetadata().checkSchemaAgreement())
-                        throw new IllegalStateException("No schema agreement");
-                    return Single.just(session);
-                })
-                .retryWhen((Flowable<Throwable> f) -> f.take(10).delay(6, TimeUnit.SECONDS));
+                .flatMap(schemaAgreementWaiter::await);
     }
 
 
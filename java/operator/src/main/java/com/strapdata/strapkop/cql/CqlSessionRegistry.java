@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.strapdata.strapkop.cql;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.Session;
+import com.google.common.collect.ImmutableList;
+import com.strapdata.strapkop.OperatorConfig;
+import com.strapdata.strapkop.model.Key;
+import com.strapdata.strapkop.model.k8s.datacenter.DataCenter;
+import com.strapdata.strapkop.model.k8s.datacenter.DataCenterSpec;
+import com.strapdata.strapkop.model.k8s.datacenter.DataCenterStatus;
+import io.micrometer.core.instrument.ImmutableTag;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micronaut.context.annotation.Infrastructure;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keep one warmed CQL Cluster/Session per datacenter across reconciliations.
+ *
+ * A session is reused while its connection settings and operator credentials are unchanged and at least one host is up,
+ * otherwise it is retired and a new one is opened. Idle or unhealthy sessions are evicted by a periodic health check.
+ * Sessions are reference counted, a retired session is closed once released by all its borrowers.
+ */
+@Singleton
+@Infrastructure
+public class CqlSessionRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(CqlSessionRegistry.class);
+
+    static class CqlSession {
+        final Cluster cluster;
+        final Session session;
+        final String fingerprint;
+        volatile long lastUsed = System.currentTimeMillis();
+        volatile CqlDriverMetrics driverMetrics;
+        private int users = 0;
+        private boolean retired = false;
+
+        CqlSession(Cluster cluster, Session session, String fingerprint) {
+            this.cluster = cluster;
+            this.session = session;
+            this.fingerprint = fingerprint;
+        }
+
+        boolean isHealthy() {
+            return !session.isClosed() && !cluster.isClosed() &&
+                    cluster.getMetadata().getAllHosts().stream().anyMatch(Host::isUp);
+        }
+
+        /**
+         * @return false if the session is retired and cannot be borrowed anymore.
+         */
+        synchronized boolean acquire() {
+            if (retired)
+                return false;
+            users++;
+            lastUsed = System.currentTimeMillis();
+            return true;
+        }
+
+        synchronized void release() {
+            users--;
+            lastUsed = System.currentTimeMillis();
+            if (retired && users == 0)
+                close();
+        }
+
+        /**
+         * Prevent new borrowers, and close the session if not used.
+         * Driver meters are removed immediately, before a replacing session registers the same meters.
+         */
+        synchronized void retire() {
+            if (!retired) {
+                retired = true;
+                closeDriverMetrics();
+                if (users == 0)
+                    close();
+            }
+        }
+
+        synchronized boolean isUsed() {
+            return users > 0;
+        }
+
+        private void closeDriverMetrics() {
+            if (driverMetrics != null) {
+                driverMetrics.close();
+                driverMetrics = null;
+            }
+        }
+
+        private void close() {
+            logger.debug("Closing cluster={}", cluster.getClusterName());
+            closeDriverMetrics();
+            cluster.closeAsync();
+        }
+    }
+
+    private final CqlRoleManager cqlRoleManager;
+    private final OperatorConfig operatorConfig;
+    private final MeterRegistry meterRegistry;
+    private final List<Tag> tags = ImmutableList.of(new ImmutableTag("type", "cql_session"));
+    private final Map<Key, CqlSession> sessions = new ConcurrentHashMap<>();
+
+    private Disposable healthCheck;
+
+    public CqlSessionRegistry(final CqlRoleManager cqlRoleManager,
+                              final OperatorConfig operatorConfig,
+                              final MeterRegistry meterRegistry) {
+        this.cqlRoleManager = cqlRoleManager;
+        this.operatorConfig = operatorConfig;
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gaugeMapSize("cache.size", tags, sessions);
+    }
+
+    @PostConstruct
+    public void startHealthCheck() {
+        int interval = operatorConfig.getCqlSessionHealthCheckIntervalInSec();
+        this.healthCheck = Observable.interval(interval, interval, TimeUnit.SECONDS, Schedulers.io())
+                .subscribe(t -> evict(), e -> logger.warn("CQL session health check error:", e));
+    }
+
+    @PreDestroy
+    public void close() {
+        if (healthCheck != null)
+            healthCheck.dispose();
+        sessions.keySet().forEach(this::invalidate);
+    }
+
+    /**
+     * Borrow the datacenter session, connecting a new one if absent, stale or unhealthy.
+     * The borrowed session must be released with {@link #release(CqlSession)}.
+     */
+    Single<CqlSession> borrow(final DataCenter dc, final DataCenterStatus dcStatus) throws Exception {
+        final Key key = new Key(dc.getMetadata());
+        final String fingerprint = fingerprint(dc);
+        final CqlSession cached = sessions.get(key);
+        if (cached != null) {
+            if (fingerprint.equals(cached.fingerprint) && cached.isHealthy() && cached.acquire()) {
+                meterRegistry.counter("cache.hit", tags).increment();
+                return Single.just(cached);
+            }
+            logger.debug("datacenter={} invalidating CQL session fingerprint changed={}", dc.id(), !fingerprint.equals(cached.fingerprint));
+            if (sessions.remove(key, cached))
+                cached.retire();
+        }
+
+        meterRegistry.counter("cache.miss", tags).increment();
+        final Timer.Sample sample = Timer.start(meterRegistry);
+        return cqlRoleManager.connect(dc, dcStatus)
+                .map(tuple -> {
+                    sample.stop(meterRegistry.timer("cql.session.connect"));
+                    // fingerprint computed once connected, when role passwords are loaded
+                    final CqlSession connected = new CqlSession(tuple._1, tuple._2, fingerprint(dc));
+                    connected.acquire();
+                    // keep the first registered healthy session if another reconciliation connected concurrently
+                    final CqlSession[] replaced = new CqlSession[1];
+                    final CqlSession winner = sessions.compute(key, (k, v) -> {
+                        if (v != null && connected.fingerprint.equals(v.fingerprint) && v.isHealthy() && v.acquire())
+                            return v;
+                        replaced[0] = v;
+                        return connected;
+                    });
+                    if (replaced[0] != null)
+                        replaced[0].retire();
+                    if (winner != connected) {
+                        connected.release();
+                        connected.retire();
+                    } else {
+                        // expose driver metrics of the registered session only
+                        connected.driverMetrics = new CqlDriverMetrics(connected.cluster, ImmutableList.of(
+                                new ImmutableTag("namespace", dc.getMetadata().getNamespace()),
+                                new ImmutableTag("cluster", dc.getSpec().getClusterName()),
+                                new ImmutableTag("datacenter", dc.getSpec().getDatacenterName())));
+                        connected.driverMetrics.bindTo(meterRegistry);
+                    }
+                    return winner;
+                });
+    }
+
+    /**
+     * Release a borrowed session, which is kept open for the next reconciliation unless retired.
+     */
+    void release(final CqlSession cqlSession) {
+        cqlSession.release();
+    }
+
+    /**
+     * Retire the datacenter session, closed once released by its current borrowers.
+     */
+    public void invalidate(final Key key) {
+        final CqlSession cqlSession = sessions.remove(key);
+        if (cqlSession != null)
+            cqlSession.retire();
+    }
+
+    public void invalidate(final DataCenter dc) {
+        invalidate(new Key(dc.getMetadata()));
+    }
+
+    /**
+     * Retire idle sessions and sessions without any available host.
+     */
+    void evict() {
+        final long idleTimeout = TimeUnit.SECONDS.toMillis(operatorConfig.getCqlSessionIdleTimeoutInSec());
+        final long now = System.currentTimeMillis();
+        sessions.forEach((key, cqlSession) -> {
+            boolean idle = !cqlSession.isUsed() && now - cqlSession.lastUsed > idleTimeout;
+            if (idle || !cqlSession.isHealthy()) {
+                logger.debug("Evicting CQL session datacenter={} idle={}", key.id(), idle);
+                if (sessions.remove(key, cqlSession)) {
+                    cqlSession.retire();
+                    meterRegistry.counter("cache.eviction", tags).increment();
+                }
+            }
+        });
+    }
+
+    /**
+     * Connection settings and operator credentials used to open the session, a change requires a new session.
+     */
+    String fingerprint(final DataCenter dc) {
+        final DataCenterSpec spec = dc.getSpec();
+        final CqlRole operatorRole = cqlRoleManager.get(dc, CqlRole.STRAPKOP_ROLE.username);
+        return String.join("/",
+                spec.getClusterName(),
+                String.valueOf(spec.getCassandra().getNativePort()),
+                String.valueOf(spec.getCassandra().getAuthentication()),
+                String.valueOf(spec.getCassandra().getSsl()),
+                String.valueOf(spec.getNetworking().getHostNetworkEnabled()),
+                String.valueOf(spec.getNetworking().getHostPortEnabled()),
+                String.valueOf(dc.getStatus() != null && Boolean.TRUE.equals(dc.getStatus().getBootstrapped())),
+                operatorRole == null ? "" : operatorRole.isReconcilied() + ":" + Objects.hashCode(operatorRole.getPassword()));
+    }
+}
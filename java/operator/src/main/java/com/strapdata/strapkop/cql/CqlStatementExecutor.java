@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.cql;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.reactivex.Single;
+
+import javax.inject.Singleton;
+
+/**
+ * Execute CQL statements asynchronously, and record their latency in the cql.statement timer tagged by statement type and outcome.
+ *
+ * Role and grant statements have no bind markers (and some embed a secret), so they are executed as simple statements.
+ */
+@Singleton
+public class CqlStatementExecutor {
+
+    private final MeterRegistry meterRegistry;
+
+    public CqlStatementExecutor(final MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Execute an idempotent read, eligible for retries on another host and speculative executions.
+     */
+    public Single<ResultSet> executeRead(final Session session, final String type, final String query) {
+        return timed(type, Single.defer(() -> Single.fromFuture(session.executeAsync(new SimpleStatement(query).setIdempotent(true)))));
+    }
+
+    /**
+     * Execute a simple statement, the type tags the cql.statement latency timer.
+     */
+    public Single<ResultSet> executeSimple(final Session session, final String type, final String query) {
+        return timed(type, Single.defer(() -> Single.fromFuture(session.executeAsync(query))));
+    }
+
+    private Single<ResultSet> timed(final String type, final Single<ResultSet> single) {
+        return Single.defer(() -> {
+            final Timer.Sample sample = Timer.start(meterRegistry);
+            return single
+                    .doOnSuccess(rs -> sample.stop(meterRegistry.timer("cql.statement", "type", type, "outcome", "success")))
+                    .doOnError(t -> sample.stop(meterRegistry.timer("cql.statement", "type", type, "outcome", "error")));
+        });
+    }
+}
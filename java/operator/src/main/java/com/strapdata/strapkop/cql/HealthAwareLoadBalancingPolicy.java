@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.cql;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.HostDistance;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.policies.ChainableLoadBalancingPolicy;
+import com.datastax.driver.core.policies.LoadBalancingPolicy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Load balancing policy trying degraded hosts (restarting or failing, see {@link HostHealthTracker}) after the healthy ones.
+ * Degraded hosts are kept in the query plan, so requests still go through when all hosts are degraded.
+ */
+public class HealthAwareLoadBalancingPolicy implements ChainableLoadBalancingPolicy {
+
+    private final LoadBalancingPolicy childPolicy;
+    private final HostHealthTracker hostHealthTracker;
+
+    public HealthAwareLoadBalancingPolicy(final LoadBalancingPolicy childPolicy, final HostHealthTracker hostHealthTracker) {
+        this.childPolicy = childPolicy;
+        this.hostHealthTracker = hostHealthTracker;
+    }
+
+    @Override
+    public LoadBalancingPolicy getChildPolicy() {
+        return childPolicy;
+    }
+
+    @Override
+    public void init(Cluster cluster, Collection<Host> hosts) {
+        childPolicy.init(cluster, hosts);
+        cluster.register(hostHealthTracker);
+    }
+
+    @Override
+    public HostDistance distance(Host host) {
+        return childPolicy.distance(host);
+    }
+
+    @Override
+    public Iterator<Host> newQueryPlan(String loggedKeyspace, Statement statement) {
+        final List<Host> healthy = new ArrayList<>();
+        final List<Host> degraded = new ArrayList<>();
+        Iterator<Host> plan = childPolicy.newQueryPlan(loggedKeyspace, statement);
+        while (plan.hasNext()) {
+            Host host = plan.next();
+            if (hostHealthTracker.isDegraded(host)) {
+                degraded.add(host);
+            } else {
+                healthy.add(host);
+            }
+        }
+        healthy.addAll(degraded);
+        return healthy.iterator();
+    }
+
+    @Override
+    public void onAdd(Host host) {
+        hostHealthTracker.reset(host);
+        childPolicy.onAdd(host);
+    }
+
+    @Override
+    public void onUp(Host host) {
+        hostHealthTracker.reset(host);
+        childPolicy.onUp(host);
+    }
+
+    @Override
+    public void onDown(Host host) {
+        childPolicy.onDown(host);
+    }
+
+    @Override
+    public void onRemove(Host host) {
+        hostHealthTracker.reset(host);
+        childPolicy.onRemove(host);
+    }
+
+    @Override
+    public void close() {
+        childPolicy.close();
+    }
+}
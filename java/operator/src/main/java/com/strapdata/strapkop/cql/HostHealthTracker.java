@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.cql;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.LatencyTracker;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.*;
+import com.strapdata.strapkop.OperatorConfig;
+import io.kubernetes.client.informer.SharedIndexInformer;
+import io.kubernetes.client.informer.SharedInformerFactory;
+import io.kubernetes.client.openapi.models.V1OwnerReference;
+import io.kubernetes.client.openapi.models.V1Pod;
+import io.kubernetes.client.openapi.models.V1StatefulSet;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.lang3.ObjectUtils;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Track per-host CQL request failure rates with an exponentially weighted moving average,
+ * and the Elassandra pods being restarted according to the pod and statefulset informers.
+ * Hosts failing too often or restarting are tried last by the {@link HealthAwareLoadBalancingPolicy}.
+ * The failure rate of a host decays over time, and is reset when the host is added or comes back up.
+ */
+@Singleton
+public class HostHealthTracker implements LatencyTracker {
+
+    /**
+     * Pod informer index by pod IP address.
+     */
+    public static final String POD_IP_INDEX = "podIP";
+
+    /**
+     * Exponentially weighted moving average of the failure rate, 1 for a failure and 0 for a success.
+     * Without updates, the rate is halved every halfLifeNanos, so a degraded host no more tried is eventually tried again.
+     */
+    static class Ewma {
+        private final double alpha;
+        private final long halfLifeNanos;
+        private final LongSupplier nanoClock;
+        private double rate = 0.0;
+        private long lastUpdate;
+
+        Ewma(double alpha) {
+            this(alpha, 0, System::nanoTime);
+        }
+
+        Ewma(double alpha, long halfLifeNanos, LongSupplier nanoClock) {
+            this.alpha = alpha;
+            this.halfLifeNanos = halfLifeNanos;
+            this.nanoClock = nanoClock;
+            this.lastUpdate = nanoClock.getAsLong();
+        }
+
+        synchronized double update(boolean failure) {
+            rate = alpha * (failure ? 1.0 : 0.0) + (1.0 - alpha) * rate();
+            lastUpdate = nanoClock.getAsLong();
+            return rate;
+        }
+
+        synchronized double rate() {
+            if (halfLifeNanos <= 0)
+                return rate;
+            long elapsed = nanoClock.getAsLong() - lastUpdate;
+            return elapsed <= 0 ? rate : rate * Math.pow(0.5, (double) elapsed / halfLifeNanos);
+        }
+    }
+
+    private final Map<InetAddress, Ewma> failureRates = new ConcurrentHashMap<>();
+    private final SharedInformerFactory sharedInformerFactory;
+    private final OperatorConfig operatorConfig;
+    private final LongSupplier nanoClock;
+
+    @Inject
+    public HostHealthTracker(final SharedInformerFactory sharedInformerFactory,
+                             final OperatorConfig operatorConfig,
+                             final MeterRegistry meterRegistry) {
+        this(sharedInformerFactory, operatorConfig, meterRegistry, System::nanoTime);
+    }
+
+    HostHealthTracker(final SharedInformerFactory sharedInformerFactory,
+                      final OperatorConfig operatorConfig,
+                      final MeterRegistry meterRegistry,
+                      final LongSupplier nanoClock) {
+        this.sharedInformerFactory = sharedInformerFactory;
+        this.operatorConfig = operatorConfig;
+        this.nanoClock = nanoClock;
+        meterRegistry.gaugeMapSize("cql.host.tracked", Collections.emptyList(), failureRates);
+        meterRegistry.gauge("cql.host.degraded", Collections.emptyList(), this, HostHealthTracker::degradedHosts);
+    }
+
+    @Override
+    public void update(Host host, Statement statement, Exception exception, long newLatencyNanos) {
+        // query errors (syntax, already exists...) do not tell anything about the host health
+        if (exception == null || isHostFailure(exception))
+            failureRates.computeIfAbsent(host.getAddress(), k -> new Ewma(operatorConfig.getCqlHostFailureEwmaAlpha(),
+                    TimeUnit.MILLISECONDS.toNanos(operatorConfig.getCqlHostFailureHalfLifeMillis()), nanoClock))
+                    .update(exception != null);
+    }
+
+    /**
+     * Forget the failure rate of a host added, back up or removed from the cluster.
+     */
+    public void reset(final Host host) {
+        failureRates.remove(host.getAddress());
+    }
+
+    static boolean isHostFailure(final Exception exception) {
+        return exception instanceof ConnectionException ||
+                exception instanceof OverloadedException ||
+                exception instanceof BootstrappingException ||
+                exception instanceof ServerError ||
+                exception instanceof QueryConsistencyException;
+    }
+
+    public double failureRate(final Host host) {
+        return failureRate(host.getAddress());
+    }
+
+    double failureRate(final InetAddress address) {
+        Ewma ewma = failureRates.get(address);
+        return ewma == null ? 0.0 : ewma.rate();
+    }
+
+    /**
+     * @return true if the host should be tried after the other hosts.
+     */
+    public boolean isDegraded(final Host host) {
+        return isDegraded(host.getAddress());
+    }
+
+    boolean isDegraded(final InetAddress address) {
+        return failureRate(address) > operatorConfig.getCqlHostFailureRateThreshold() || isRestarting(address);
+    }
+
+    /**
+     * @return the number of tracked hosts currently degraded.
+     */
+    double degradedHosts() {
+        return failureRates.keySet().stream().filter(this::isDegraded).count();
+    }
+
+    boolean isRestarting(final InetAddress address) {
+        SharedIndexInformer<V1Pod> podInformer = sharedInformerFactory.getExistingSharedIndexInformer(V1Pod.class);
+        SharedIndexInformer<V1StatefulSet> stsInformer = sharedInformerFactory.getExistingSharedIndexInformer(V1StatefulSet.class);
+        if (podInformer == null || stsInformer == null)
+            return false;
+        List<V1Pod> pods = podInformer.getIndexer().byIndex(POD_IP_INDEX, address.getHostAddress());
+        for (V1Pod pod : pods) {
+            V1StatefulSet sts = null;
+            if (pod.getMetadata().getOwnerReferences() != null) {
+                for (V1OwnerReference ref : pod.getMetadata().getOwnerReferences()) {
+                    if ("StatefulSet".equals(ref.getKind()))
+                        sts = stsInformer.getIndexer().getByKey(pod.getMetadata().getNamespace() + "/" + ref.getName());
+                }
+            }
+            if (isRestarting(pod, sts))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * A pod is restarting when it is terminating, not ready, or the next one to be replaced by an ongoing rolling update
+     * (pods are updated from the highest ordinal to the lowest).
+     */
+    static boolean isRestarting(final V1Pod pod, final V1StatefulSet sts) {
+        if (pod.getMetadata().getDeletionTimestamp() != null)
+            return true;
+        boolean ready = pod.getStatus() != null && pod.getStatus().getConditions() != null &&
+                pod.getStatus().getConditions().stream().anyMatch(c -> "Ready".equals(c.getType()) && "True".equals(c.getStatus()));
+        if (!ready)
+            return true;
+        if (sts == null || sts.getStatus() == null || sts.getStatus().getUpdateRevision() == null ||
+                sts.getStatus().getUpdateRevision().equals(sts.getStatus().getCurrentRevision()))
+            return false;
+        String name = pod.getMetadata().getName();
+        int ordinal = Integer.parseInt(name.substring(name.lastIndexOf('-') + 1));
+        int replicas = ObjectUtils.defaultIfNull(sts.getStatus().getReplicas(), 0);
+        int updatedReplicas = ObjectUtils.defaultIfNull(sts.getStatus().getUpdatedReplicas(), 0);
+        return ordinal == replicas - updatedReplicas - 1;
+    }
+
+    @Override
+    public void onRegister(Cluster cluster) {
+    }
+
+    @Override
+    public void onUnregister(Cluster cluster) {
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.cql;
+
+import lombok.Data;
+
+import java.util.*;
+
+/**
+ * Compute the replication changes of a set of keyspaces from a single snapshot of their current replication maps.
+ *
+ * Decreases are applied in the first wave, and increases are applied by one RF per wave to avoid quorum read issues,
+ * so that all ALTER KEYSPACE of a wave can be executed in a batch bounded by one schema agreement wait.
+ */
+@Data
+public class KeyspaceReplicationPlan {
+
+    /**
+     * The replication map to apply on a keyspace.
+     */
+    @Data
+    public static class Change {
+        final String keyspace;
+        final Map<String, Integer> replicationMap;
+        final int rf;
+        final int currentRf;
+        final int targetRf;
+
+        public boolean isIncrease() {
+            return rf > currentRf;
+        }
+    }
+
+    /**
+     * Ordered waves of ALTER KEYSPACE.
+     */
+    final List<List<Change>> waves;
+
+    /**
+     * Keyspaces already having the target RF.
+     */
+    final Set<String> unchanged;
+
+    /**
+     * Keyspaces not found in the snapshot.
+     */
+    final Set<String> missing;
+
+    public boolean isEmpty() {
+        return waves.isEmpty();
+    }
+
+    /**
+     * Parse a system_schema.keyspaces replication column into a dc-to-rf map.
+     */
+    public static Map<String, Integer> replicationMap(final Map<String, String> replication) {
+        final Map<String, Integer> rfMap = new HashMap<>();
+        for (Map.Entry<String, String> e : replication.entrySet()) {
+            if (!e.getKey().equals("class") && !e.getKey().equals("replication_factor"))
+                rfMap.put(e.getKey(), Integer.parseInt(e.getValue()));
+        }
+        return rfMap;
+    }
+
+    /**
+     * Merge the target RF of several datacenters into the current replication maps, a zero RF removes the datacenter.
+     * @return the new replication map of the keyspaces to alter, keyspaces not found or unchanged are ignored.
+     */
+    public static Map<String, Map<String, Integer>> merge(final Map<String, Map<String, Integer>> currentRfMaps,
+                                                          final Map<String, Map<String, Integer>> targetRfMaps) {
+        final Map<String, Map<String, Integer>> changes = new TreeMap<>();
+        for (Map.Entry<String, Map<String, Integer>> target : targetRfMaps.entrySet()) {
+            final Map<String, Integer> currentRfMap = currentRfMaps.get(target.getKey());
+            if (currentRfMap == null)
+                continue;
+            final Map<String, Integer> rfMap = new HashMap<>(currentRfMap);
+            for (Map.Entry<String, Integer> dcRf : target.getValue().entrySet()) {
+                if (dcRf.getValue() > 0) {
+                    rfMap.put(dcRf.getKey(), dcRf.getValue());
+                } else {
+                    rfMap.remove(dcRf.getKey());
+                }
+            }
+            // a keyspace must keep at least one replica somewhere
+            if (!rfMap.equals(currentRfMap) && rfMap.values().stream().anyMatch(rf -> rf > 0))
+                changes.put(target.getKey(), rfMap);
+        }
+        return changes;
+    }
+
+    public static KeyspaceReplicationPlan plan(final String dcName,
+                                               final Map<String, Map<String, Integer>> currentRfMaps,
+                                               final Map<String, Integer> targetRfs) {
+        final SortedMap<Integer, List<Change>> waves = new TreeMap<>();
+        final Set<String> unchanged = new TreeSet<>();
+        final Set<String> missing = new TreeSet<>();
+
+        for (Map.Entry<String, Integer> target : new TreeMap<>(targetRfs).entrySet()) {
+            final String keyspace = target.getKey();
+            final Map<String, Integer> currentRfMap = currentRfMaps.get(keyspace);
+            if (currentRfMap == null) {
+                missing.add(keyspace);
+                continue;
+            }
+            final int currentRf = currentRfMap.getOrDefault(dcName, 0);
+            final int targetRf = Math.max(0, target.getValue());
+            if (targetRf == currentRf) {
+                unchanged.add(keyspace);
+            } else if (targetRf < currentRf) {
+                final Map<String, Integer> rfMap = new HashMap<>(currentRfMap);
+                rfMap.put(dcName, targetRf);
+                // a keyspace must keep at least one replica somewhere
+                if (rfMap.values().stream().anyMatch(rf -> rf > 0)) {
+                    waves.computeIfAbsent(0, k -> new ArrayList<>()).add(new Change(keyspace, rfMap, targetRf, currentRf, targetRf));
+                } else {
+                    unchanged.add(keyspace);
+                }
+            } else {
+                for (int rf = currentRf + 1; rf <= targetRf; rf++) {
+                    final Map<String, Integer> rfMap = new HashMap<>(currentRfMap);
+                    rfMap.put(dcName, rf);
+                    waves.computeIfAbsent(rf - currentRf, k -> new ArrayList<>()).add(new Change(keyspace, rfMap, rf, currentRf, targetRf));
+                }
+            }
+        }
+        return new KeyspaceReplicationPlan(new ArrayList<>(waves.values()), unchanged, missing);
+    }
+}
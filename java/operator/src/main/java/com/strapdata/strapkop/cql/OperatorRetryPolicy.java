@@ -21,17 +21,41 @@ import com.datastax.driver.core.Cluster;
 import com.datastax.driver.core.ConsistencyLevel;
 import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.WriteType;
+import com.datastax.driver.core.exceptions.BootstrappingException;
 import com.datastax.driver.core.exceptions.DriverException;
+import com.datastax.driver.core.exceptions.OverloadedException;
 import com.datastax.driver.core.policies.DefaultRetryPolicy;
 import com.datastax.driver.core.policies.RetryPolicy;
 
+/**
+ * Retry policy of the operator CQL requests.
+ *
+ * Idempotent requests failing on a host are retried on the next host of the query plan, up to maxRetries times.
+ * Combined with the {@link HealthAwareLoadBalancingPolicy}, retries go to healthy hosts first, avoiding restarting nodes.
+ */
 public class OperatorRetryPolicy implements RetryPolicy {
 
     private static final RetryPolicy DEFAULT_RETRY = DefaultRetryPolicy.INSTANCE;
     public static final RetryPolicy INSTANCE = new OperatorRetryPolicy();
 
+    private final int maxRetries;
+
+    public OperatorRetryPolicy() {
+        this(1);
+    }
+
+    public OperatorRetryPolicy(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    private boolean retryOnNextHost(Statement statement, int nbRetry) {
+        return nbRetry < maxRetries && Boolean.TRUE.equals(statement.isIdempotent());
+    }
+
     @Override
     public RetryDecision onReadTimeout(Statement statement, ConsistencyLevel cl, int requiredResponses, int receivedResponses, boolean dataRetrieved, int nbRetry) {
+        if (retryOnNextHost(statement, nbRetry))
+            return RetryDecision.tryNextHost(cl);
         return DEFAULT_RETRY.onReadTimeout(statement, cl, requiredResponses, receivedResponses, dataRetrieved, nbRetry);
     }
 
@@ -50,6 +74,9 @@ public class OperatorRetryPolicy implements RetryPolicy {
 
     @Override
     public RetryDecision onRequestError(Statement statement, ConsistencyLevel cl, DriverException e, int nbRetry) {
+        // the request was not executed by a bootstrapping or overloaded node, so it can be retried elsewhere
+        if (nbRetry < maxRetries && (e instanceof BootstrappingException || e instanceof OverloadedException || retryOnNextHost(statement, nbRetry)))
+            return RetryDecision.tryNextHost(cl);
         return DEFAULT_RETRY.onRequestError(statement, cl, e, nbRetry);
     }
 
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.strapdata.strapkop.cql;
+
+import com.datastax.driver.core.*;
+import com.strapdata.strapkop.OperatorConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Singleton;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Wait for CQL schema agreement, re-checking as soon as the driver notifies a schema change or a host state change,
+ * with a periodic re-check as a safety net, until the configured deadline.
+ */
+@Singleton
+public class SchemaAgreementWaiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaAgreementWaiter.class);
+
+    private final OperatorConfig operatorConfig;
+    private final MeterRegistry meterRegistry;
+
+    public SchemaAgreementWaiter(final OperatorConfig operatorConfig, final MeterRegistry meterRegistry) {
+        this.operatorConfig = operatorConfig;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @return the session once the schema is agreed, or an IllegalStateException when the deadline is reached.
+     */
+    public Single<Session> await(final Session session) {
+        final Cluster cluster = session.getCluster();
+        return Single.defer(() -> {
+            final Timer.Sample sample = Timer.start(meterRegistry);
+            return Observable.merge(
+                    Observable.<Long>create(emitter -> {
+                        // driver threads signal concurrently
+                        final SchemaEvents listener = new SchemaEvents(emitter.serialize());
+                        cluster.register((SchemaChangeListener) listener);
+                        cluster.register((Host.StateListener) listener);
+                        emitter.setCancellable(() -> {
+                            cluster.unregister((SchemaChangeListener) listener);
+                            cluster.unregister((Host.StateListener) listener);
+                        });
+                    }),
+                    Observable.interval(operatorConfig.getSchemaAgreementCheckIntervalInSec(), TimeUnit.SECONDS))
+                    .startWith(0L)
+                    .concatMapSingle(e -> Single.fromCallable(() -> cluster.getMetadata().checkSchemaAgreement()).subscribeOn(Schedulers.io()))
+                    .filter(agreed -> agreed)
+                    .firstOrError()
+                    .timeout(operatorConfig.getSchemaAgreementDeadlineInSec(), TimeUnit.SECONDS)
+                    .map(agreed -> {
+                        sample.stop(meterRegistry.timer("cql.schema.agreement", "outcome", "agreed"));
+                        return session;
+                    })
+                    .onErrorResumeNext(t -> {
+                        sample.stop(meterRegistry.timer("cql.schema.agreement", "outcome", t instanceof TimeoutException ? "timeout" : "error"));
+                        logger.warn("cluster={} No schema agreement error={}", cluster.getClusterName(), t.toString());
+                        return Single.error(new IllegalStateException("No schema agreement", t));
+                    });
+        });
+    }
+
+    /**
+     * Emit a signal on schema or host state changes to trigger a schema agreement check.
+     */
+    static class SchemaEvents extends SchemaChangeListenerBase implements Host.StateListener {
+        final ObservableEmitter<Long> emitter;
+
+        SchemaEvents(ObservableEmitter<Long> emitter) {
+            this.emitter = emitter;
+        }
+
+        void signal() {
+            emitter.onNext(0L);
+        }
+
+        @Override
+        public void onKeyspaceAdded(KeyspaceMetadata keyspace) {
+            signal();
+        }
+
+        @Override
+        public void onKeyspaceRemoved(KeyspaceMetadata keyspace) {
+            signal();
+        }
+
+        @Override
+        public void onKeyspaceChanged(KeyspaceMetadata current, KeyspaceMetadata previous) {
+            signal();
+        }
+
+        @Override
+        public void onTableAdded(TableMetadata table) {
+            signal();
+        }
+
+        @Override
+        public void onTableRemoved(TableMetadata table) {
+            signal();
+        }
+
+        @Override
+        public void onTableChanged(TableMetadata current, TableMetadata previous) {
+            signal();
+        }
+
+        @Override
+        public void onAdd(Host host) {
+            signal();
+        }
+
+        @Override
+        public void onUp(Host host) {
+            signal();
+        }
+
+        @Override
+        public void onDown(Host host) {
+            signal();
+        }
+
+        @Override
+        public void onRemove(Host host) {
+            signal();
+        }
+
+        @Override
+        public void onRegister(Cluster cluster) {
+        }
+
+        @Override
+        public void onUnregister(Cluster cluster) {
+        }
+    }
+}
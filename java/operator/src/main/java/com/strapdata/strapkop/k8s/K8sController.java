@@ -1,8 +1,12 @@
 package com.strapdata.strapkop.k8s;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.strapdata.strapkop.cache.DataCenterStatusCache;
+import com.strapdata.strapkop.cache.JMXConnectorCache;
 import com.strapdata.strapkop.cache.StatefulsetCache;
+import com.strapdata.strapkop.cache.ZoneTopologyIndex;
+import com.strapdata.strapkop.cql.HostHealthTracker;
 import com.strapdata.strapkop.model.Key;
 import com.strapdata.strapkop.model.k8s.OperatorLabels;
 import com.strapdata.strapkop.model.k8s.StrapdataCrdGroup;
@@ -13,6 +17,7 @@ import com.strapdata.strapkop.model.k8s.task.TaskStatus;
 import com.strapdata.strapkop.reconcilier.DataCenterReconcilier;
 import com.strapdata.strapkop.reconcilier.Reconciliation;
 import com.strapdata.strapkop.reconcilier.TaskResolver;
+import com.strapdata.strapkop.sidecar.NodeStatusPoller;
 import io.kubernetes.client.informer.ResourceEventHandler;
 import io.kubernetes.client.informer.SharedIndexInformer;
 import io.kubernetes.client.informer.SharedInformerFactory;
@@ -34,6 +39,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -75,16 +81,27 @@ public class K8sController {
     @Inject
     StatefulsetCache statefulsetCache;
 
+    @Inject
+    ZoneTopologyIndex zoneTopologyIndex;
+
+    @Inject
+    JMXConnectorCache jmxConnectorCache;
+
     @Inject
     TaskResolver taskReconcilierResolver;
 
     @Inject
     K8sResourceUtils k8sResourceUtils;
 
+    @Inject
+    NodeStatusPoller nodeStatusPoller;
+
     public void start() {
         addNodeInformer();
         addPodInformer();
         addServiceAccountInformer();
+        addSecretInformer();
+        addConfigMapInformer();
         addStatefulSetInformer();
         addDeploymentInformer();
         addDataCenterInformer();
@@ -92,6 +109,8 @@ public class K8sController {
 
         sharedInformerFactory.startAllRegisteredInformers();
         logger.info("Kubernetes informer factory started");
+
+        nodeStatusPoller.start();
     }
 
     @EventListener
@@ -118,6 +137,28 @@ public class K8sController {
                         },
                         V1Node.class,
                         V1NodeList.class);
+
+        // maintain the zone topology incrementally rather than sorting all nodes on each reconciliation
+        nodeInformer.addEventHandler(new ResourceEventHandler<V1Node>() {
+            @Override
+            public void onAdd(V1Node node) {
+                zoneTopologyIndex.updateNode(node.getMetadata().getName(), zone(node));
+            }
+
+            @Override
+            public void onUpdate(V1Node oldNode, V1Node node) {
+                zoneTopologyIndex.updateNode(node.getMetadata().getName(), zone(node));
+            }
+
+            @Override
+            public void onDelete(V1Node node, boolean deletedFinalStateUnknown) {
+                zoneTopologyIndex.removeNode(node.getMetadata().getName());
+            }
+
+            String zone(V1Node node) {
+                return node.getMetadata().getLabels() == null ? null : node.getMetadata().getLabels().get(OperatorLabels.ZONE);
+            }
+        });
     }
 
     void addPodInformer() {
@@ -136,6 +177,27 @@ public class K8sController {
                                 null),
                         V1Pod.class,
                         V1PodList.class);
+        // lookup pods by IP address to map CQL hosts to pods
+        podInformer.addIndexers(ImmutableMap.of(HostHealthTracker.POD_IP_INDEX, pod ->
+                (pod.getStatus() == null || pod.getStatus().getPodIP() == null)
+                        ? Collections.emptyList()
+                        : Collections.singletonList(pod.getStatus().getPodIP())));
+        // never reuse a JMX connector to a deleted or re-created pod
+        podInformer.addEventHandler(new ResourceEventHandler<V1Pod>() {
+            @Override
+            public void onAdd(V1Pod pod) {
+                jmxConnectorCache.invalidatePodName(pod.getMetadata().getNamespace(), pod.getMetadata().getName(), pod.getMetadata().getUid());
+            }
+
+            @Override
+            public void onUpdate(V1Pod oldPod, V1Pod pod) {
+            }
+
+            @Override
+            public void onDelete(V1Pod pod, boolean deletedFinalStateUnknown) {
+                jmxConnectorCache.invalidatePodUid(pod.getMetadata().getUid());
+            }
+        });
     }
 
     void addServiceAccountInformer() {
@@ -156,6 +218,44 @@ public class K8sController {
                         V1ServiceAccountList.class);
     }
 
+    void addSecretInformer() {
+        // cache operator managed secrets, used to resolve CQL role passwords
+        SharedIndexInformer<V1Secret> secretInformer =
+                sharedInformerFactory.sharedIndexInformerFor(
+                        (CallGeneratorParams params) -> coreV1Api.listSecretForAllNamespacesCall(
+                                null,
+                                null,
+                                null,
+                                OperatorLabels.toSelector(OperatorLabels.MANAGED),
+                                null,
+                                null,
+                                params.resourceVersion,
+                                params.timeoutSeconds,
+                                params.watch,
+                                null),
+                        V1Secret.class,
+                        V1SecretList.class);
+    }
+
+    void addConfigMapInformer() {
+        // cache operator managed configmaps, to check they still exist without any API call
+        SharedIndexInformer<V1ConfigMap> configMapInformer =
+                sharedInformerFactory.sharedIndexInformerFor(
+                        (CallGeneratorParams params) -> coreV1Api.listConfigMapForAllNamespacesCall(
+                                null,
+                                null,
+                                null,
+                                OperatorLabels.toSelector(OperatorLabels.MANAGED),
+                                null,
+                                null,
+                                params.resourceVersion,
+                                params.timeoutSeconds,
+                                params.watch,
+                                null),
+                        V1ConfigMap.class,
+                        V1ConfigMapList.class);
+    }
+
     void addDataCenterInformer() {
         SharedIndexInformer<DataCenter> dcInformer =
                 sharedInformerFactory.sharedIndexInformerFor(
@@ -267,8 +367,7 @@ public class K8sController {
             @Override
             public void onDelete(V1StatefulSet sts, boolean deletedFinalStateUnknown) {
                 logger.debug("sts={}/{}", sts.getMetadata().getNamespace(), sts.getMetadata().getName());
-                Key key = new Key(sts.getMetadata());
-                statefulsetCache.remove(key);
+                statefulsetCache.delete(sts);
                 meterRegistry.counter("k8s.event.deleted", tags).increment();
                 managed.decrementAndGet();
             }
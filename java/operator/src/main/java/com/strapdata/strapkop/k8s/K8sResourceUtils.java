@@ -33,6 +33,9 @@ import com.strapdata.strapkop.model.k8s.datacenter.DataCenterStatus;
 import com.strapdata.strapkop.model.k8s.task.Task;
 import com.strapdata.strapkop.model.k8s.task.TaskList;
 import com.strapdata.strapkop.model.k8s.task.TaskSpec;
+import io.kubernetes.client.custom.V1Patch;
+import io.kubernetes.client.informer.SharedIndexInformer;
+import io.kubernetes.client.informer.SharedInformerFactory;
 import io.kubernetes.client.openapi.ApiException;
 import io.kubernetes.client.openapi.ApiResponse;
 import io.kubernetes.client.openapi.apis.*;
@@ -76,6 +79,9 @@ public class K8sResourceUtils {
     @Inject
     DataCenterStatusCache dataCenterStatusCache;
 
+    @Inject
+    SharedInformerFactory sharedInformerFactory;
+
     @FunctionalInterface
     public interface ApiCallable {
         void call() throws ApiException;
@@ -243,6 +249,38 @@ public class K8sResourceUtils {
                 () -> coreApi.replaceNamespacedConfigMap(configMap.getMetadata().getName(), namespace, configMap, null, null, null));
     }
 
+    /**
+     * Create an immutable configmap, an already existing configmap with the same content-addressed name is kept as is.
+     */
+    public Single<V1ConfigMap> createNamespacedImmutableConfigMap(final V1ConfigMap configMap) {
+        final String namespace = configMap.getMetadata().getNamespace();
+        final V1ConfigMap immutableConfigMap = new V1ImmutableConfigMap(configMap);
+        return Single.fromCallable(new Callable<V1ConfigMap>() {
+            @Override
+            public V1ConfigMap call() throws Exception {
+                try {
+                    V1ConfigMap configMap2 = coreApi.createNamespacedConfigMap(namespace, immutableConfigMap, null, null, null);
+                    logger.debug("Created immutable ConfigMap={} in namespace={}", configMap.getMetadata().getName(), namespace);
+                    return configMap2;
+                } catch (ApiException e) {
+                    if (e.getCode() == 409) {
+                        logger.debug("Immutable ConfigMap={} already exists in namespace={}", configMap.getMetadata().getName(), namespace);
+                        return configMap;
+                    }
+                    throw e;
+                }
+            }
+        });
+    }
+
+    /**
+     * Lookup a managed configmap in the informer cache, without any API call.
+     */
+    public Optional<V1ConfigMap> getCachedNamespacedConfigMap(final String namespace, final String name) {
+        SharedIndexInformer<V1ConfigMap> configMapInformer = sharedInformerFactory.getExistingSharedIndexInformer(V1ConfigMap.class);
+        return Optional.ofNullable((configMapInformer == null) ? null : configMapInformer.getIndexer().getByKey(namespace + "/" + name));
+    }
+
     public Single<V1ConfigMap> readNamespacedConfigMap(final String namespace, final String name) {
         return Single.fromCallable(new Callable<V1ConfigMap>() {
             @Override
@@ -343,6 +381,28 @@ public class K8sResourceUtils {
         );
     }
 
+    /**
+     * Apply JSON patch operations to a statefulset.
+     */
+    public Single<V1StatefulSet> patchNamespacedStatefulSet(final V1StatefulSet statefulset, final List<Map<String, Object>> jsonPatch) {
+        final String namespace = statefulset.getMetadata().getNamespace();
+        return Single.fromCallable(() -> {
+                    try {
+                        final String patch = appsApi.getApiClient().getJSON().serialize(jsonPatch);
+                        V1StatefulSet statefulSet2 = appsApi.patchNamespacedStatefulSet(statefulset.getMetadata().getName(), namespace, new V1Patch(patch), null, null, null, null);
+                        logger.debug("Patched namespaced statefulset={} in namespace={} operations={}", statefulset.getMetadata().getName(), namespace, jsonPatch.size());
+                        return statefulSet2;
+                    } catch (ApiException e) {
+                        if (e.getCode() == 404) {
+                            throw new NoSuchElementException("statefulset="+statefulset.getMetadata().getName()+"/"+namespace+" not found");
+                        }
+                        logger.warn("Patch namespaced statefulset={} in namespace={} error: {}", statefulset.getMetadata().getName(), namespace, e.getMessage());
+                        throw e;
+                    }
+                }
+        );
+    }
+
     public Single<V1StatefulSet> readNamespacedStatefulSet(final String namespace, final String name) throws ApiException {
         return Single.fromCallable(() -> {
                     try {
@@ -426,6 +486,26 @@ public class K8sResourceUtils {
         });
     }
 
+    /**
+     * Read a secret from the informer cache, or from the k8s API if not cached.
+     */
+    public Single<V1Secret> readNamespacedSecretCached(final String namespace, final String name) {
+        V1Secret secret = getCachedNamespacedSecret(namespace, name).orElse(null);
+        if (secret != null) {
+            logger.trace("cached namespaced secret={}", name);
+            return Single.just(secret);
+        }
+        return readNamespacedSecret(namespace, name);
+    }
+
+    /**
+     * Lookup a managed secret in the informer cache, without any API call.
+     */
+    public Optional<V1Secret> getCachedNamespacedSecret(final String namespace, final String name) {
+        SharedIndexInformer<V1Secret> secretInformer = sharedInformerFactory.getExistingSharedIndexInformer(V1Secret.class);
+        return Optional.ofNullable((secretInformer == null) ? null : secretInformer.getIndexer().getByKey(namespace + "/" + name));
+    }
+
     public Single<Optional<V1Secret>> readOptionalNamespacedSecret(final String namespace, final String name) {
         return Single.fromCallable(new Callable<Optional<V1Secret>>() {
             @Override
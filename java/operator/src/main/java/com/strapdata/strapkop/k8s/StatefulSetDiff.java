@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.k8s;
+
+import com.google.common.collect.ImmutableMap;
+import com.strapdata.strapkop.model.k8s.OperatorLabels;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import io.kubernetes.client.openapi.models.V1PodTemplateSpec;
+import io.kubernetes.client.openapi.models.V1StatefulSet;
+
+import java.util.*;
+
+/**
+ * Structural diff between an existing statefulset (from the informer cache) and the desired one, limited to
+ * the fields owned by the operator: metadata labels and annotations, replicas, and the pod template identified
+ * by its datacenter fingerprint and rack configmap annotations. The diff is expressed as a list of JSON patch operations.
+ */
+public class StatefulSetDiff {
+
+    private final List<Map<String, Object>> operations = new ArrayList<>();
+
+    public static StatefulSetDiff of(V1StatefulSet existing, V1StatefulSet desired) {
+        StatefulSetDiff diff = new StatefulSetDiff();
+        diff.diffMap("/metadata/labels", existing.getMetadata().getLabels(), desired.getMetadata().getLabels());
+        diff.diffMap("/metadata/annotations", existing.getMetadata().getAnnotations(), desired.getMetadata().getAnnotations());
+        if (!Objects.equals(existing.getSpec().getReplicas(), desired.getSpec().getReplicas())) {
+            diff.add("/spec/replicas", desired.getSpec().getReplicas());
+        }
+        if (!Objects.equals(templateFingerprint(existing.getSpec().getTemplate()), templateFingerprint(desired.getSpec().getTemplate()))) {
+            diff.add("/spec/template", desired.getSpec().getTemplate());
+        }
+        return diff;
+    }
+
+    /**
+     * @return the datacenter fingerprint and the content-addressed rack configmap name of a pod template, or null.
+     */
+    public static String templateFingerprint(V1PodTemplateSpec template) {
+        V1ObjectMeta metadata = template == null ? null : template.getMetadata();
+        return (metadata == null || metadata.getAnnotations() == null) ? null : templateFingerprint(
+                metadata.getAnnotations().get(OperatorLabels.DATACENTER_FINGERPRINT),
+                metadata.getAnnotations().get(OperatorLabels.RACK_CONFIGMAP));
+    }
+
+    public static String templateFingerprint(String datacenterFingerprint, String rackConfigMap) {
+        return datacenterFingerprint + "/" + rackConfigMap;
+    }
+
+    /**
+     * Desired entries are merged into existing ones, entries added by others are preserved.
+     */
+    private void diffMap(String path, Map<String, String> existing, Map<String, String> desired) {
+        if (desired == null || desired.isEmpty())
+            return;
+        Map<String, String> current = existing == null ? Collections.emptyMap() : existing;
+        boolean changed = desired.entrySet().stream().anyMatch(e -> !Objects.equals(current.get(e.getKey()), e.getValue()));
+        if (changed) {
+            Map<String, String> merged = new TreeMap<>(current);
+            merged.putAll(desired);
+            add(path, merged);
+        }
+    }
+
+    private void add(String path, Object value) {
+        // JSON patch "add" replaces the target value if it already exists
+        operations.add(ImmutableMap.of("op", "add", "path", path, "value", value));
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    public List<Map<String, Object>> getOperations() {
+        return operations;
+    }
+
+    public boolean templateChanged() {
+        return operations.stream().anyMatch(op -> "/spec/template".equals(op.get("path")));
+    }
+}
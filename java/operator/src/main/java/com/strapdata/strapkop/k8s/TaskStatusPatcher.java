@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.k8s;
+
+import com.strapdata.strapkop.OperatorConfig;
+import com.strapdata.strapkop.model.k8s.task.Task;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.reactivex.Completable;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Write the status of long running tasks at most once per interval. Updates received while a write is pending
+ * are coalesced, the pending write sends the latest in-memory task status.
+ */
+@Singleton
+public class TaskStatusPatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskStatusPatcher.class);
+
+    private final Function<Task, Completable> writer;
+    private final Scheduler scheduler;
+    private final long intervalMs;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, State> states = new ConcurrentHashMap<>();
+
+    static class State {
+        long lastWrite = 0L;
+        Disposable pending = null;
+    }
+
+    @Inject
+    public TaskStatusPatcher(final K8sResourceUtils k8sResourceUtils, final OperatorConfig operatorConfig, final MeterRegistry meterRegistry) {
+        this(task -> Completable.defer(() -> k8sResourceUtils.updateTaskStatus(task).ignoreElement()),
+                Schedulers.io(),
+                TimeUnit.SECONDS.toMillis(operatorConfig.getTaskStatusUpdateIntervalInSec()),
+                meterRegistry);
+    }
+
+    TaskStatusPatcher(final Function<Task, Completable> writer, final Scheduler scheduler, final long intervalMs, final MeterRegistry meterRegistry) {
+        this.writer = writer;
+        this.scheduler = scheduler;
+        this.intervalMs = intervalMs;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Schedule a write of the task status, immediately if the last write is older than the interval.
+     */
+    public void patch(final Task task) {
+        final State state = states.computeIfAbsent(task.id(), k -> new State());
+        synchronized (state) {
+            if (state.pending != null) {
+                meterRegistry.counter("task.status.patch", "outcome", "coalesced").increment();
+                return;
+            }
+            final long delay = Math.max(0L, state.lastWrite + intervalMs - scheduler.now(TimeUnit.MILLISECONDS));
+            state.pending = Completable.timer(delay, TimeUnit.MILLISECONDS, scheduler)
+                    .andThen(Completable.defer(() -> {
+                        synchronized (state) {
+                            state.pending = null;
+                            state.lastWrite = scheduler.now(TimeUnit.MILLISECONDS);
+                        }
+                        meterRegistry.counter("task.status.patch", "outcome", "written").increment();
+                        return writer.apply(task);
+                    }))
+                    .subscribe(() -> logger.trace("task={} status patched", task.id()),
+                            e -> logger.warn("task=" + task.id() + " status patch failed:", e));
+        }
+    }
+
+    /**
+     * Cancel the pending write of a task status, before its final update.
+     */
+    public void cancel(final Task task) {
+        final State state = states.remove(task.id());
+        if (state != null) {
+            synchronized (state) {
+                if (state.pending != null) {
+                    state.pending.dispose();
+                    state.pending = null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.k8s;
+
+import com.google.gson.annotations.SerializedName;
+import io.kubernetes.client.openapi.models.V1ConfigMap;
+
+/**
+ * V1ConfigMap with the immutable field (kubernetes 1.18+) not yet available in the kubernetes java client model.
+ * Kubelet does not watch immutable configmaps, and older API servers just ignore the field.
+ */
+public class V1ImmutableConfigMap extends V1ConfigMap {
+
+    @SerializedName("immutable")
+    private Boolean immutable = true;
+
+    public V1ImmutableConfigMap(V1ConfigMap configMap) {
+        this.setApiVersion(configMap.getApiVersion());
+        this.setKind(configMap.getKind());
+        this.setMetadata(configMap.getMetadata());
+        this.setData(configMap.getData());
+        this.setBinaryData(configMap.getBinaryData());
+    }
+
+    public Boolean getImmutable() {
+        return immutable;
+    }
+}
@@ -75,10 +75,12 @@ public class PluginRegistry {
                             logger.warn("datacenter="+dataCenterUpdateAction.dataCenter.id()+
                                             " plugin="+plugin.getClass().getName()+
                                             " reconcile failed, error:", t);
+                            dataCenterUpdateAction.reconcileFailed("plugin=" + plugin.getClass().getName(), t);
                             return Single.just(false);
                         }));
             } catch (Exception e) {
                 logger.error("Plugin class=" + plugin.getClass().getSimpleName() + " reconciliation failed:", e);
+                dataCenterUpdateAction.reconcileFailed("plugin=" + plugin.getClass().getName(), e);
             }
         }
         return pluginSingles.size() == 0 ?
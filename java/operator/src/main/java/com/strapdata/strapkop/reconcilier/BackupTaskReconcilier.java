@@ -17,18 +17,22 @@
 
 package com.strapdata.strapkop.reconcilier;
 
+import com.google.common.util.concurrent.RateLimiter;
 import com.strapdata.strapkop.OperatorConfig;
+import com.strapdata.strapkop.backup.*;
 import com.strapdata.strapkop.cache.DataCenterStatusCache;
 import com.strapdata.strapkop.cql.CqlRole;
 import com.strapdata.strapkop.cql.CqlRoleManager;
 import com.strapdata.strapkop.k8s.ElassandraPod;
 import com.strapdata.strapkop.k8s.K8sResourceUtils;
+import com.strapdata.strapkop.k8s.TaskStatusPatcher;
 import com.strapdata.strapkop.model.k8s.datacenter.DataCenter;
 import com.strapdata.strapkop.model.k8s.datacenter.DataCenterStatus;
 import com.strapdata.strapkop.model.k8s.task.BackupTaskSpec;
 import com.strapdata.strapkop.model.k8s.task.Task;
 import com.strapdata.strapkop.model.k8s.task.TaskPhase;
 import com.strapdata.strapkop.sidecar.HttpClientFactory;
+import com.strapdata.strapkop.sidecar.JmxmpElassandraProxy;
 import io.kubernetes.client.informer.SharedInformerFactory;
 import io.kubernetes.client.openapi.ApiException;
 import io.kubernetes.client.openapi.models.V1Pod;
@@ -46,7 +50,10 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.Optional;
 
 @Singleton
 @Infrastructure
@@ -54,6 +61,9 @@ public class BackupTaskReconcilier extends TaskReconcilier {
     private static final Logger logger = LoggerFactory.getLogger(BackupTaskReconcilier.class);
     private final HttpClientFactory httpClientFactory;
     private final CqlRoleManager cqlRoleManager;
+    private final JmxmpElassandraProxy jmxmpElassandraProxy;
+    private final PodSnapshotReader podSnapshotReader;
+    private final TaskStatusPatcher taskStatusPatcher;
 
     public BackupTaskReconcilier(ReconcilierObserver reconcilierObserver,
                                  final OperatorConfig operatorConfig,
@@ -63,6 +73,9 @@ public class BackupTaskReconcilier extends TaskReconcilier {
                                  final DataCenterReconcilier dataCenterController,
                                  final SharedInformerFactory sharedInformerFactory,
                                  final CqlRoleManager cqlRoleManager,
+                                 final JmxmpElassandraProxy jmxmpElassandraProxy,
+                                 final PodSnapshotReader podSnapshotReader,
+                                 final TaskStatusPatcher taskStatusPatcher,
                                  final DataCenterStatusCache dataCenterStatusCache,
                                  ExecutorFactory executorFactory,
                                  @Named("tasks") UserExecutorConfiguration userExecutorConfiguration ) {
@@ -70,10 +83,13 @@ public class BackupTaskReconcilier extends TaskReconcilier {
                 dataCenterController, sharedInformerFactory, dataCenterStatusCache, executorFactory, userExecutorConfiguration);
         this.httpClientFactory = httpClientFactory;
         this.cqlRoleManager = cqlRoleManager;
+        this.jmxmpElassandraProxy = jmxmpElassandraProxy;
+        this.podSnapshotReader = podSnapshotReader;
+        this.taskStatusPatcher = taskStatusPatcher;
     }
 
     /**
-     * Execute backup concurrently on all nodes
+     * Execute backup concurrently on all nodes, incrementally into the operator repository or through the sidecars.
      * @param task
      * @param dc
      * @return
@@ -81,9 +97,11 @@ public class BackupTaskReconcilier extends TaskReconcilier {
      */
     @Override
     protected Completable doTask(final DataCenter dc, final DataCenterStatus dataCenterStatus, final Task task, Iterable<V1Pod> pods) throws ApiException {
-        // TODO: better backup with sstableloader and progress tracking
-        // right now it just call the backup api on every nodes sidecar in parallel
         final BackupTaskSpec backupSpec = task.getSpec().getBackup();
+        if (Boolean.TRUE.equals(backupSpec.getIncremental()))
+            return incrementalBackup(dc, dataCenterStatus, task, pods);
+
+        // call the backup api on every nodes sidecar in parallel
 
         return Observable.fromIterable(pods)
                 .subscribeOn(Schedulers.io())
@@ -103,6 +121,84 @@ public class BackupTaskReconcilier extends TaskReconcilier {
                 .flatMapCompletable(list -> finalizeTaskStatus(dc, dataCenterStatus, task, TaskPhase.SUCCEED, "backup"));
     }
 
+    /**
+     * Snapshot each node and upload the SSTables not already in the repository, nodes in parallel,
+     * each node throttled to bandwidthInMBPerSec.
+     */
+    Completable incrementalBackup(final DataCenter dc, final DataCenterStatus dataCenterStatus, final Task task, Iterable<V1Pod> pods) {
+        final BackupTaskSpec backupSpec = task.getSpec().getBackup();
+        final String tag = task.getMetadata().getName();
+        final int bandwidthInMBPerSec = Math.max(1, Optional.ofNullable(backupSpec.getBandwidthInMBPerSec()).orElse(operatorConfig.getBackupBandwidthInMBPerSec()));
+        final String repositoryName = Optional.ofNullable(backupSpec.getRepository()).orElse("default");
+        if (!isValidRepositoryName(repositoryName)) {
+            task.getStatus().setLastMessage("Invalid backup repository name=" + repositoryName);
+            return finalizeTaskStatus(dc, dataCenterStatus, task, TaskPhase.FAILED, "backup");
+        }
+        final Path root = Paths.get(operatorConfig.getBackupRepositoryPath(),
+                repositoryName,
+                dc.getMetadata().getNamespace(), dc.getSpec().getClusterName(), dc.getSpec().getDatacenterName());
+        final BackupRepository repository = new LocalFileSystemRepository(root);
+        logger.info("datacenter={} task={} incremental backup tag={} repository={} bandwidth={}MB/s",
+                dc.id(), task.id(), tag, root, bandwidthInMBPerSec);
+
+        return Observable.fromIterable(pods)
+                .map(ElassandraPod::fromV1Pod)
+                .flatMapSingle(pod -> {
+                    final BackupProgress progress = new BackupProgress();
+                    final RateLimiter rateLimiter = RateLimiter.create(bandwidthInMBPerSec * 1024.0 * 1024.0);
+                    updateBackupStatus(task, pod, progress, TaskPhase.RUNNING);
+                    return jmxmpElassandraProxy.takeSnapshot(pod, tag, backupSpec.getKeyspaces())
+                            .andThen(Completable.fromAction(() -> {
+                                final List<BackupFile> files = podSnapshotReader.list(pod, tag);
+                                new IncrementalBackup(pod.getName(), tag, repository, podSnapshotReader.source(pod), rateLimiter, progress, () -> {
+                                    updateBackupStatus(task, pod, progress, TaskPhase.RUNNING);
+                                    taskStatusPatcher.patch(task);
+                                }).run(files);
+                                logger.debug("datacenter={} task={} pod={} files uploaded={} skipped={} bytes={}",
+                                        dc.id(), task.id(), pod.getName(), progress.getFilesUploaded(), progress.getFilesSkipped(), progress.getBytesUploaded());
+                            }))
+                            // clear the snapshot whatever the upload outcome, not to keep SSTables on the node
+                            .onErrorResumeNext(t -> Completable.defer(() -> jmxmpElassandraProxy.clearSnapshot(pod, tag))
+                                    .doOnError(e -> logger.warn("datacenter={} task={} pod={} failed to clear snapshot tag={}: {}",
+                                            dc.id(), task.id(), pod.getName(), tag, e.toString()))
+                                    .onErrorComplete()
+                                    .andThen(Completable.error(t)))
+                            .andThen(Completable.defer(() -> jmxmpElassandraProxy.clearSnapshot(pod, tag)))
+                            .toSingleDefault(TaskPhase.SUCCEED)
+                            .onErrorReturn(t -> {
+                                logger.error("datacenter={} task={} incremental backup of pod={} failed:", dc.id(), task.id(), pod.getName(), t);
+                                task.getStatus().setLastMessage("Backup task=" + task.getMetadata().getName() + " on pod=" + pod.getName() + " failed: " + t.getMessage());
+                                return TaskPhase.FAILED;
+                            })
+                            .doOnSuccess(phase -> updateBackupStatus(task, pod, progress, phase))
+                            .subscribeOn(Schedulers.io());
+                })
+                .toList()
+                .flatMapCompletable(phases -> {
+                    taskStatusPatcher.cancel(task);
+                    return finalizeTaskStatus(dc, dataCenterStatus, task,
+                            phases.contains(TaskPhase.FAILED) ? TaskPhase.FAILED : TaskPhase.SUCCEED, "backup");
+                });
+    }
+
+    /**
+     * @return true if the repository name is a single directory name, not escaping the backup repository path.
+     */
+    static boolean isValidRepositoryName(String repository) {
+        return !repository.isEmpty() &&
+                !repository.equals(".") &&
+                !repository.contains("/") &&
+                !repository.contains("\\") &&
+                !repository.contains("..");
+    }
+
+    void updateBackupStatus(final Task task, final ElassandraPod pod, final BackupProgress progress, final TaskPhase phase) {
+        synchronized (task) {
+            task.getStatus().getBackups().put(pod.getName(), progress.toStatus(phase));
+            task.getStatus().getPods().put(pod.getName(), phase);
+        }
+    }
+
     @Override
     public Single<List<V1Pod>> init(Task task, DataCenter dc) {
         return listAllDcPods(task, dc).map(pods -> initTaskStatusPodMap(task, pods));
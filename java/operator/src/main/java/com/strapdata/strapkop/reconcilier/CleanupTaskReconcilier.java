@@ -21,6 +21,7 @@ import com.strapdata.strapkop.OperatorConfig;
 import com.strapdata.strapkop.cache.DataCenterStatusCache;
 import com.strapdata.strapkop.k8s.ElassandraPod;
 import com.strapdata.strapkop.k8s.K8sResourceUtils;
+import com.strapdata.strapkop.model.k8s.OperatorLabels;
 import com.strapdata.strapkop.model.k8s.datacenter.DataCenter;
 import com.strapdata.strapkop.model.k8s.datacenter.DataCenterStatus;
 import com.strapdata.strapkop.model.k8s.task.CleanupTaskSpec;
@@ -35,7 +36,6 @@ import io.micronaut.context.annotation.Infrastructure;
 import io.micronaut.scheduling.executor.ExecutorFactory;
 import io.micronaut.scheduling.executor.UserExecutorConfiguration;
 import io.reactivex.Completable;
-import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
 import org.slf4j.Logger;
@@ -43,12 +43,13 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
- * Sequentially cleanup nodes of a datacenter, waiting 10 secondes between node cleanup.
+ * Cleanup nodes of a datacenter concurrently, one node per rack (or nodesPerRack), starting the cleanup of a node
+ * only when its pending compactions are below a threshold.
  */
 @Singleton
 @Infrastructure
@@ -81,37 +82,100 @@ public final class CleanupTaskReconcilier extends TaskReconcilier {
      */
     @Override
     protected Completable doTask(final DataCenter dc, final DataCenterStatus dataCenterStatus, final Task task, Iterable<V1Pod> pods) throws ApiException {
-        // do clean up on each pod with 10 sec interval
-        // TODO: maybe we should try to caught outer exception (even if we already catch inside doOnNext)
         final CleanupTaskSpec cleanupTaskSpec = task.getSpec().getCleanup();
-        return Observable.zip(Observable.fromIterable(pods), Observable.interval(cleanupTaskSpec.getWaitIntervalInSec(), TimeUnit.SECONDS), (pod, timer) -> pod)
+        final Map<String, String> rackByPod = new LinkedHashMap<>();
+        final Map<String, ElassandraPod> podsByName = new HashMap<>();
+        for (V1Pod pod : pods) {
+            final Map<String, String> labels = pod.getMetadata().getLabels();
+            rackByPod.put(pod.getMetadata().getName(), labels == null ? "" : labels.getOrDefault(OperatorLabels.RACKINDEX, ""));
+            podsByName.put(pod.getMetadata().getName(), ElassandraPod.fromV1Pod(pod));
+        }
+        final RackParallelQueue queue = new RackParallelQueue(rackByPod,
+                Optional.ofNullable(cleanupTaskSpec.getNodesPerRack()).orElse(1));
+        logger.info("datacenter={} task={} cleanup pods={} concurrency={}", dc.id(), task.id(), rackByPod.size(), queue.concurrency());
+
+        final List<Completable> workers = new ArrayList<>(queue.concurrency());
+        for (int i = 0; i < queue.concurrency(); i++)
+            workers.add(worker(dc, task, queue, podsByName));
+        return Completable.merge(workers)
                 .subscribeOn(Schedulers.io())
-                .flatMapSingle(pod ->
-                        jmxmpElassandraProxy.cleanup(ElassandraPod.fromV1Pod(pod), task.getSpec().getCleanup().getKeyspace())
-                        .doOnComplete(() -> {
-                            task.getStatus().getPods().put(pod.getMetadata().getName(), TaskPhase.SUCCEED);
-                        })
-                        .doOnError(throwable -> {
-                            logger.error("datacenter={} cleanup={} Error while executing cleanup on pod={}", dc.id(), task.id(), pod, throwable);
-                            task.getStatus().setLastMessage(throwable.getMessage());
-                            task.getStatus().getPods().put(pod.getMetadata().getName(), TaskPhase.FAILED);
-                        })
-                        .toSingleDefault(pod))
-                .toList()
-                .flatMapCompletable(list -> finalizeTaskStatus(dc, dataCenterStatus,
-                        task, TaskPhase.SUCCEED, "cleanup",
-                        new Consumer<DataCenterStatus>() {
-                            @Override
-                            public void accept(DataCenterStatus dataCenterStatus) {
-                                if (cleanupTaskSpec.getKeyspace() == null) {
-                                    dataCenterStatus.setNeedCleanup(false);
-                                    dataCenterStatus.getNeedCleanupKeyspaces().clear();
-                                } else {
-                                    dataCenterStatus.getNeedCleanupKeyspaces().remove(cleanupTaskSpec.getKeyspace());
+                .andThen(Completable.defer(() -> {
+                    final boolean failed;
+                    synchronized (task) {
+                        failed = task.getStatus().getPods().containsValue(TaskPhase.FAILED);
+                    }
+                    if (failed)
+                        return finalizeTaskStatus(dc, dataCenterStatus, task, TaskPhase.FAILED, "cleanup");
+                    return finalizeTaskStatus(dc, dataCenterStatus,
+                            task, TaskPhase.SUCCEED, "cleanup",
+                            new Consumer<DataCenterStatus>() {
+                                @Override
+                                public void accept(DataCenterStatus dataCenterStatus) {
+                                    if (cleanupTaskSpec.getKeyspace() == null) {
+                                        dataCenterStatus.setNeedCleanup(false);
+                                        dataCenterStatus.getNeedCleanupKeyspaces().clear();
+                                    } else {
+                                        dataCenterStatus.getNeedCleanupKeyspaces().remove(cleanupTaskSpec.getKeyspace());
+                                    }
                                 }
                             }
+                    );
+                }));
+    }
+
+    /**
+     * Cleanup the next available pods until the queue is empty. A pod having too many pending compactions is postponed
+     * for waitIntervalInSec, up to cleanupMaxPostponeInSec, while the worker moves on to the other ready pods.
+     */
+    Completable worker(final DataCenter dc, final Task task, final RackParallelQueue queue, final Map<String, ElassandraPod> podsByName) {
+        final CleanupTaskSpec cleanupTaskSpec = task.getSpec().getCleanup();
+        final int maxPendingCompactions = Optional.ofNullable(cleanupTaskSpec.getMaxPendingCompactions()).orElse(operatorConfig.getCleanupMaxPendingCompactions());
+        final long waitIntervalInSec = Optional.ofNullable(cleanupTaskSpec.getWaitIntervalInSec()).orElse(10L);
+        return Completable.defer(() -> {
+            final Optional<String> next = queue.next(System.currentTimeMillis());
+            if (!next.isPresent())
+                return queue.isFinished() ? Completable.complete() : Completable.timer(1, TimeUnit.SECONDS, Schedulers.io());
+
+            final ElassandraPod pod = podsByName.get(next.get());
+            return jmxmpElassandraProxy.pendingCompactions(pod)
+                    .flatMapCompletable(pendingCompactions -> {
+                        if (pendingCompactions > maxPendingCompactions) {
+                            final long now = System.currentTimeMillis();
+                            if (now - queue.postponedSince(pod.getName(), now) < TimeUnit.SECONDS.toMillis(operatorConfig.getCleanupMaxPostponeInSec())) {
+                                logger.debug("datacenter={} task={} pod={} pendingCompactions={} cleanup postponed",
+                                        dc.id(), task.id(), pod.getName(), pendingCompactions);
+                                queue.postpone(pod.getName(), now + TimeUnit.SECONDS.toMillis(waitIntervalInSec));
+                                return Completable.complete();
+                            }
+                            logger.warn("datacenter={} task={} pod={} pendingCompactions={} still above {}, starting cleanup",
+                                    dc.id(), task.id(), pod.getName(), pendingCompactions, maxPendingCompactions);
+                        }
+                        updatePodPhase(task, pod, TaskPhase.RUNNING);
+                        return jmxmpElassandraProxy.cleanup(pod, cleanupTaskSpec.getKeyspace())
+                                .doOnComplete(() -> {
+                                    logger.debug("datacenter={} task={} cleanup pod={} done", dc.id(), task.id(), pod.getName());
+                                    updatePodPhase(task, pod, TaskPhase.SUCCEED);
+                                    queue.done(pod.getName());
+                                });
+                    })
+                    // blocking JMX calls, workers run concurrently on distinct threads
+                    .subscribeOn(Schedulers.io())
+                    .onErrorResumeNext(throwable -> {
+                        logger.error("datacenter={} cleanup={} Error while executing cleanup on pod={}", dc.id(), task.id(), pod.getName(), throwable);
+                        synchronized (task) {
+                            task.getStatus().setLastMessage(throwable.getMessage());
+                            task.getStatus().getPods().put(pod.getName(), TaskPhase.FAILED);
                         }
-                ));
+                        queue.done(pod.getName());
+                        return Completable.complete();
+                    });
+        }).repeatUntil(queue::isFinished);
+    }
+
+    void updatePodPhase(final Task task, final ElassandraPod pod, final TaskPhase phase) {
+        synchronized (task) {
+            task.getStatus().getPods().put(pod.getName(), phase);
+        }
     }
 
     @Override
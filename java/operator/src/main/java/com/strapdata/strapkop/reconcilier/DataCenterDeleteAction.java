@@ -22,11 +22,13 @@ import com.strapdata.strapkop.utils.BackupScheduler;
 import com.strapdata.strapkop.cache.*;
 import com.strapdata.strapkop.cql.CqlKeyspaceManager;
 import com.strapdata.strapkop.cql.CqlRoleManager;
+import com.strapdata.strapkop.cql.CqlSessionRegistry;
 import com.strapdata.strapkop.cql.CqlSessionSupplier;
 import com.strapdata.strapkop.k8s.K8sResourceUtils;
 import com.strapdata.strapkop.model.Key;
 import com.strapdata.strapkop.model.k8s.OperatorLabels;
 import com.strapdata.strapkop.model.k8s.datacenter.DataCenter;
+import com.strapdata.strapkop.ssl.SslContextCache;
 import io.kubernetes.client.informer.SharedIndexInformer;
 import io.kubernetes.client.informer.SharedInformerFactory;
 import io.kubernetes.client.openapi.ApiException;
@@ -40,6 +42,8 @@ import io.reactivex.functions.Action;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Objects;
+
 /**
  * TODO: we should probably use kubernetes GC to manage deletion : https://kubernetes.io/docs/concepts/workloads/controllers/garbage-collection/
  */
@@ -55,6 +59,12 @@ public class DataCenterDeleteAction {
     private final HttpConnectionCache sidecarConnectionCache;
     private final JMXConnectorCache jmxConnectorCache;
     private final StatefulsetCache statefulsetCache;
+    private final StatefulSetTemplateCache statefulSetTemplateCache;
+    private final ConfigMapCache configMapCache;
+    private final CqlDigestCache cqlDigestCache;
+    private final NodeStatusCache nodeStatusCache;
+    private final CqlSessionRegistry cqlSessionRegistry;
+    private final SslContextCache sslContextCache;
 
     private final CqlKeyspaceManager cqlKeyspaceManager;
     private final CqlRoleManager cqlRoleManager;
@@ -69,6 +79,12 @@ public class DataCenterDeleteAction {
                                   final HttpConnectionCache sidecarConnectionCache,
                                   final JMXConnectorCache jmxConnectorCache,
                                   final StatefulsetCache statefulsetCache,
+                                  final StatefulSetTemplateCache statefulSetTemplateCache,
+                                  final ConfigMapCache configMapCache,
+                                  final CqlDigestCache cqlDigestCache,
+                                  final NodeStatusCache nodeStatusCache,
+                                  final CqlSessionRegistry cqlSessionRegistry,
+                                  final SslContextCache sslContextCache,
                                   CqlKeyspaceManager cqlKeyspaceManager,
                                   CqlRoleManager cqlRoleManager,
                                   @Parameter("dataCenter") DataCenter dataCenter,
@@ -81,6 +97,12 @@ public class DataCenterDeleteAction {
         this.dataCenterStatusCache = dataCenterStatusCache;
         this.sidecarConnectionCache = sidecarConnectionCache;
         this.statefulsetCache = statefulsetCache;
+        this.statefulSetTemplateCache = statefulSetTemplateCache;
+        this.configMapCache = configMapCache;
+        this.cqlDigestCache = cqlDigestCache;
+        this.nodeStatusCache = nodeStatusCache;
+        this.cqlSessionRegistry = cqlSessionRegistry;
+        this.sslContextCache = sslContextCache;
         this.jmxConnectorCache = jmxConnectorCache;
         this.cqlKeyspaceManager = cqlKeyspaceManager;
         this.cqlRoleManager = cqlRoleManager;
@@ -99,10 +121,21 @@ public class DataCenterDeleteAction {
                 // cleanup local caches
                 Key key = new Key(dataCenter.getMetadata());
                 dataCenterStatusCache.remove(key);
-                statefulsetCache.remove(key);
+                statefulsetCache.purgeDataCenter(key);
+                statefulSetTemplateCache.purgeDataCenter(dataCenter);
+                configMapCache.remove(key);
+                cqlDigestCache.remove(key);
+                nodeStatusCache.remove(key);
 
                 sidecarConnectionCache.purgeDataCenter(dataCenter);
                 jmxConnectorCache.purgeDataCenter(dataCenter);
+                // drop the SSL contexts of the cluster with its last datacenter
+                final boolean lastDataCenter = dataCenterSharedIndexInformer.getIndexer().list().stream()
+                        .noneMatch(dc -> Objects.equals(dc.getMetadata().getNamespace(), dataCenter.getMetadata().getNamespace()) &&
+                                Objects.equals(dc.getSpec().getClusterName(), dataCenter.getSpec().getClusterName()) &&
+                                !Objects.equals(dc.getMetadata().getName(), dataCenter.getMetadata().getName()));
+                if (lastDataCenter)
+                    sslContextCache.invalidate(dataCenter.getMetadata().getNamespace(), dataCenter.getSpec().getClusterName());
 
                 cqlRoleManager.remove(dataCenter);
                 cqlKeyspaceManager.remove(dataCenter);
@@ -174,6 +207,7 @@ public class DataCenterDeleteAction {
                 }
                 logger.info("Deleted dataCenter={}", dataCenter.id());
                 cqlSessionSupplier.close();
+                cqlSessionRegistry.invalidate(key);
             }
         });
     }
@@ -179,8 +179,12 @@ public class DataCenterReconcilier extends Reconcilier<DataCenter> {
                 .andThen(pluginRegistry.deleteAll(dataCenter))
                 .andThen(Completable.fromCallable(() -> {
                     final DataCenterDeleteAction dataCenterDeleteAction = context.createBean(DataCenterDeleteAction.class, dataCenter);
-                    final CqlSessionHandler cqlSessionHandler = context.createBean(CqlSessionHandler.class, this.cqlRoleManager);
-                    return dataCenterDeleteAction.deleteDataCenter(cqlSessionHandler).blockingGet();
+                    final CqlSessionHandler cqlSessionHandler = context.createBean(CqlSessionHandler.class);
+                    try {
+                        return dataCenterDeleteAction.deleteDataCenter(cqlSessionHandler).blockingGet();
+                    } finally {
+                        cqlSessionHandler.close();
+                    }
                 }))
                 .doFinally(() -> meterRegistry.counter("datacenter.delete").increment())
                 .doOnError(t -> {
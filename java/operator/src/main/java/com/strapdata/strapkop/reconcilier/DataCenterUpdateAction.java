@@ -23,8 +23,14 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.net.InetAddresses;
 import com.strapdata.cassandra.k8s.ElassandraOperatorSeedProvider;
 import com.strapdata.strapkop.OperatorConfig;
+import com.strapdata.strapkop.cache.ConfigMapCache;
+import com.strapdata.strapkop.cache.CqlDigestCache;
+import com.strapdata.strapkop.cache.NodeStatusCache;
 import com.strapdata.strapkop.cache.DataCenterStatusCache;
+import com.strapdata.strapkop.cache.StatefulSetTemplateCache;
 import com.strapdata.strapkop.cache.StatefulsetCache;
+import com.strapdata.strapkop.cache.ZoneTopologyIndex;
+import com.strapdata.strapkop.cql.CqlKeyspace;
 import com.strapdata.strapkop.cql.CqlKeyspaceManager;
 import com.strapdata.strapkop.cql.CqlRole;
 import com.strapdata.strapkop.cql.CqlRoleManager;
@@ -32,11 +38,13 @@ import com.strapdata.strapkop.cql.CqlSessionHandler;
 import com.strapdata.strapkop.k8s.ElassandraPod;
 import com.strapdata.strapkop.k8s.K8sResourceUtils;
 import com.strapdata.strapkop.k8s.OperatorNames;
+import com.strapdata.strapkop.k8s.StatefulSetDiff;
 import com.strapdata.strapkop.model.Key;
 import com.strapdata.strapkop.model.k8s.OperatorLabels;
 import com.strapdata.strapkop.model.k8s.StrapdataCrdGroup;
 import com.strapdata.strapkop.model.k8s.datacenter.*;
 import com.strapdata.strapkop.model.k8s.task.Task;
+import com.strapdata.strapkop.model.sidecar.ElassandraNodeStatus;
 import com.strapdata.strapkop.plugins.PluginRegistry;
 import com.strapdata.strapkop.sidecar.JmxmpElassandraProxy;
 import com.strapdata.strapkop.ssl.AuthorityManager;
@@ -52,6 +60,8 @@ import io.kubernetes.client.openapi.apis.AppsV1Api;
 import io.kubernetes.client.openapi.apis.CoreV1Api;
 import io.kubernetes.client.openapi.apis.CustomObjectsApi;
 import io.kubernetes.client.openapi.models.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.micronaut.context.ApplicationContext;
 import io.micronaut.context.annotation.Parameter;
 import io.micronaut.context.annotation.Prototype;
@@ -71,9 +81,11 @@ import org.yaml.snakeyaml.Yaml;
 
 import javax.inject.Named;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringWriter;
 import java.security.GeneralSecurityException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -104,6 +116,14 @@ public class DataCenterUpdateAction {
     public static final long CASSANDRA_USER_ID = 999L;
     public static final long CASSANDRA_GROUP_ID = 999L;
 
+    public static final String SYSTEM_TUNE_IMAGE = "busybox";
+    public static final String NODEINFO_IMAGE = "bitnami/kubectl";
+
+    /**
+     * Build identity of the operator, the pod templates it renders (containers, injected env) may change on upgrade.
+     */
+    static final String OPERATOR_BUILD = operatorBuild();
+
     private final ApplicationContext context;
     private final CoreV1Api coreApi;
     private final AppsV1Api appsApi;
@@ -122,6 +142,7 @@ public class DataCenterUpdateAction {
     private final Key key;
     private Zones zones;
     private List<String> sibilingDcs;
+    private volatile boolean reconcileFailed = false;
 
     public final V1ObjectMeta dataCenterMetadata;
     public final DataCenterSpec dataCenterSpec;
@@ -135,12 +156,18 @@ public class DataCenterUpdateAction {
     private final OperatorConfig operatorConfig;
 
     private final StatefulsetCache statefulsetCache;
+    private final StatefulSetTemplateCache statefulSetTemplateCache;
+    private final ConfigMapCache configMapCache;
+    private final CqlDigestCache cqlDigestCache;
+    private final NodeStatusCache nodeStatusCache;
+    private final ZoneTopologyIndex zoneTopologyIndex;
     private final DataCenterStatusCache dataCenterStatusCache;
     private final  SharedIndexInformer<V1ServiceAccount> saSharedIndexInformer;
 
     final SharedInformerFactory sharedInformerFactory;
 
     private final BackupScheduler backupScheduler;
+    private final MeterRegistry meterRegistry;
 
     public final Builder builder = new Builder();
 
@@ -154,13 +181,19 @@ public class DataCenterUpdateAction {
                                   final CqlRoleManager cqlRoleManager,
                                   final CqlKeyspaceManager cqlKeyspaceManager,
                                   final StatefulsetCache statefulsetCache,
+                                  final StatefulSetTemplateCache statefulSetTemplateCache,
+                                  final ConfigMapCache configMapCache,
+                                  final CqlDigestCache cqlDigestCache,
+                                  final NodeStatusCache nodeStatusCache,
+                                  final ZoneTopologyIndex zoneTopologyIndex,
                                   final DataCenterStatusCache dataCenterStatusCache,
                                   final JmxmpElassandraProxy jmxmpElassandraProxy,
                                   @Parameter("dataCenter") DataCenter dataCenter,
                                   @Parameter("operation") Operation operation,
                                   final OperatorConfig operatorConfig,
                                   final BackupScheduler backupScheduler,
-                                  final PluginRegistry pluginRegistry) {
+                                  final PluginRegistry pluginRegistry,
+                                  final MeterRegistry meterRegistry) {
         this.context = context;
         this.sharedInformerFactory = sharedInformerFactory;
         this.coreApi = coreApi;
@@ -180,6 +213,11 @@ public class DataCenterUpdateAction {
 
         this.dataCenterStatusCache = dataCenterStatusCache;
         this.statefulsetCache = statefulsetCache;
+        this.statefulSetTemplateCache = statefulSetTemplateCache;
+        this.configMapCache = configMapCache;
+        this.cqlDigestCache = cqlDigestCache;
+        this.nodeStatusCache = nodeStatusCache;
+        this.zoneTopologyIndex = zoneTopologyIndex;
         this.saSharedIndexInformer = sharedInformerFactory.getExistingSharedIndexInformer(V1ServiceAccount.class);
 
         this.cqlRoleManager = cqlRoleManager;
@@ -189,12 +227,12 @@ public class DataCenterUpdateAction {
 
         this.backupScheduler = backupScheduler;
         this.pluginRegistry = pluginRegistry;
+        this.meterRegistry = meterRegistry;
 
         this.key = new Key(dataCenterMetadata);
         this.dataCenterStatus = dataCenterStatusCache.getOrDefault(key, dataCenter.getStatus());
 
-        SharedIndexInformer<V1Node> nodeSharedIndexInformer = sharedInformerFactory.getExistingSharedIndexInformer(V1Node.class);
-        this.zones = new Zones(dataCenterStatus, nodeSharedIndexInformer.getIndexer().list(), this.statefulsetCache.getOrDefault(key, new TreeMap<>()));
+        this.zones = new Zones(dataCenterStatus, zoneTopologyIndex, key, this.statefulsetCache.getOrDefault(key, new TreeMap<>()));
     }
 
     // sibiling DC are DC in the same cluster, same namespace
@@ -340,28 +378,15 @@ public class DataCenterUpdateAction {
     }
 
     public boolean statefulSetIsReady(V1StatefulSet sts) {
-        V1StatefulSetStatus stsStatus = sts.getStatus();
-        int replicas = ObjectUtils.defaultIfNull(stsStatus.getReplicas(), 0);
-        int readyReplicas = ObjectUtils.defaultIfNull(stsStatus.getReadyReplicas(), 0);
-        if (readyReplicas >= replicas) {
-            logger.trace("datacenter={} sts={} ready", dataCenter.id(), sts.getMetadata().getName());
-            return true;
-        }
-        logger.trace("datacenter={} sts={} NOT ready", dataCenter.id(), sts.getMetadata().getName());
-        return false;
+        boolean ready = ReconciliationPlanner.statefulSetIsReady(sts);
+        logger.trace("datacenter={} sts={} ready={}", dataCenter.id(), sts.getMetadata().getName(), ready);
+        return ready;
     }
 
     public boolean statefulSetIsUpToDate(V1StatefulSet sts) {
-        V1StatefulSetStatus stsStatus = sts.getStatus();
-        int replicas = ObjectUtils.defaultIfNull(stsStatus.getReplicas(), 0);
-        int updatedReplicas = ObjectUtils.defaultIfNull(stsStatus.getUpdatedReplicas(), replicas);
-        if ((stsStatus.getUpdateRevision() == null || stsStatus.getCurrentRevision().equals(stsStatus.getUpdateRevision()))
-                && updatedReplicas == replicas ) {
-            logger.trace("datacenter={} sts={} up-to-date", dataCenter.id(), sts.getMetadata().getName());
-            return true;
-        }
-        logger.trace("datacenter={} sts={} NOT up-to-date", dataCenter.id(), sts.getMetadata().getName());
-        return false;
+        boolean upToDate = ReconciliationPlanner.statefulSetIsUpToDate(sts);
+        logger.trace("datacenter={} sts={} upToDate={}", dataCenter.id(), sts.getMetadata().getName(), upToDate);
+        return upToDate;
     }
 
     public Completable taskDone(Task task) {
@@ -391,121 +416,207 @@ public class DataCenterUpdateAction {
     }
 
     Completable nextAction(final boolean updateStatus) {
-        if (dataCenterSpec.isParked() && !(DataCenterPhase.PARKED.equals(dataCenterStatus.getPhase())))
-            return parkDatacenter();
-
-        if (!dataCenterSpec.isParked() && (DataCenterPhase.PARKED.equals(dataCenterStatus.getPhase())))
-            return unparkDatacenter();
-
-        if (DataCenterPhase.PARKED.equals(dataCenterStatus.getPhase()) && dataCenterSpec.isParked() && dataCenterStatus.getReadyReplicas() == 0) {
-            return updateStatus ?
-                    k8sResourceUtils.updateDataCenterStatus(dataCenter, dataCenterStatus).flatMapCompletable(dc -> {
-                        logger.debug("datacenter={} updating status={}", dataCenter.id(), dataCenterStatus);
-                        return Completable.complete();
-                    }) :
-                    Completable.complete();
-        }
+        Optional<ReconciliationPlan> parkingPlan = ReconciliationPlanner.planParking(dataCenterSpec, dataCenterStatus, updateStatus);
+        if (parkingPlan.isPresent())
+            return executePlan(parkingPlan.get(), null);
 
         // read user config map to check fingerprint
         return readUserConfigMap()
                 .flatMapCompletable(optionalUserConfig -> {
                     ConfigMapVolumeMounts configMapVolumeMounts = new ConfigMapVolumeMounts(optionalUserConfig);
-                    String currentFingerprint = dataCenterSpec.elassandraFingerprint() + "-" + configMapVolumeMounts.fingerPrint();
-                    TreeMap<String, V1StatefulSet> statefulSetTreeMap = this.statefulsetCache.getOrDefault(key, new TreeMap<>());
-                    boolean allStsReady = true;
-                    for(RackStatus rackStatus : dataCenterStatus.getRackStatuses().values()) {
-                        V1StatefulSet v1StatefulSet = statefulSetTreeMap.get(rackStatus.getName());
-                        if (ProgressState.UPDATING.equals(rackStatus.getProgressState()) || v1StatefulSet == null || !statefulSetIsReady(v1StatefulSet)) {
-                            allStsReady = false;
-                            break;
-                        }
-                    }
-                    logger.debug("allStsReady={} currentFingerprint={} rackStatus={}",
-                            allStsReady, currentFingerprint, dataCenterStatus.getRackStatuses().values());
-
-                    // don't update sts if another one is currently doing a rolling update.
-                    if (allStsReady) {
-                        for(RackStatus rackStatus : dataCenterStatus.getRackStatuses().values()) {
-                            V1StatefulSet v1StatefulSet = statefulSetTreeMap.get(rackStatus.getName());
-                            String stsFingerprint = v1StatefulSet == null ? null : v1StatefulSet.getSpec().getTemplate().getMetadata().getAnnotations().get(OperatorLabels.DATACENTER_FINGERPRINT);
-                            // Trigger an update if ConfigMap fingerprint or DC generation are different
-                            if (!currentFingerprint.equals(stsFingerprint)) {
-                                logger.debug("datacenter={} fingerprint={} sts={} fingerprint={} not match => rolling update sts",
-                                        dataCenter.id(), currentFingerprint, v1StatefulSet == null ? null : v1StatefulSet.getMetadata().getName(), stsFingerprint);
-
-                                rackStatus.setFingerprint(currentFingerprint);
-                                rackStatus.setProgressState(ProgressState.UPDATING);
-
-                                configMapVolumeMounts.setRack(rackStatus);
-                                return configMapVolumeMounts.createOrReplaceNamespacedConfigMaps()
-                                        // updateRack also call prepareDataCenterSnapshot
-                                        .andThen(builder.buildStatefulSetRack(rackStatus, configMapVolumeMounts)
-                                                .flatMapCompletable(sts -> {
-                                                    endOperation("updating sts=" + v1StatefulSet.getMetadata().getName() +" fingerprint=" + currentFingerprint + " rack=" + rackStatus.getName());
-                                                    return k8sResourceUtils.updateDataCenterStatus(dataCenter, dataCenterStatus).ignoreElement();
-                                                }));
-                            }
-                        }
-                    }
+                    return executePlan(plan(configMapVolumeMounts, updateStatus), configMapVolumeMounts);
+                });
+    }
 
-                    // check if all racks STS have reached the desired state, otherwise wait next reconciliation
-                    for(RackStatus rackStatus : dataCenterStatus.getRackStatuses().values()) {
-                        V1StatefulSet v1StatefulSet = statefulSetTreeMap.get(rackStatus.getName());
-                        if (ProgressState.UPDATING.equals(rackStatus.getProgressState())) {
-                            logger.debug("v1StatefulSet={}/{} not up-to-date, waiting", v1StatefulSet.getMetadata().getName(), v1StatefulSet.getMetadata().getNamespace());
-                            endOperation("noop, wait for rolling update completion in rack index=" + rackStatus.getIndex() + " name=" + rackStatus.getName());
-                            return k8sResourceUtils.updateDataCenterStatus(dataCenter, dataCenterStatus).ignoreElement();
-                        }
-                    }
+    /**
+     * Datacenter fingerprint of the rack pod templates: CRD spec, configmaps, and the operator owned template inputs.
+     */
+    String podTemplateFingerprint(final ConfigMapVolumeMounts configMapVolumeMounts) {
+        return dataCenterSpec.elassandraFingerprint() + "-" + configMapVolumeMounts.fingerPrint() + "-" + operatorFingerPrint();
+    }
 
-                    // check if need to scale up or down
-                    int totalReplicas = dataCenterStatus.getRackStatuses().values().stream()
-                            .map(r -> r.getDesiredReplicas())
-                            .reduce(0, (a, b) -> a + b);
-                    if (totalReplicas < dataCenter.getSpec().getReplicas() && Health.GREEN.equals(dataCenterStatus.health()))
-                        return scaleUpDatacenter(configMapVolumeMounts);
-
-                    // check if need to scale down (require a CQL connection to reduce some RF)
-                    final CqlSessionHandler cqlSessionHandler = context.createBean(CqlSessionHandler.class, this.cqlRoleManager);
-                    if (totalReplicas > dataCenter.getSpec().getReplicas() && Health.GREEN.equals(dataCenterStatus.health()))
-                        return scaleDownDatacenter(configMapVolumeMounts, cqlSessionHandler)
-                                .doFinally(() -> cqlSessionHandler.close());
-
-                    // check if all racks STS are ready, otherwise wait next reconciliation
-                    for(RackStatus rackStatus : dataCenterStatus.getRackStatuses().values()) {
-                        V1StatefulSet v1StatefulSet = statefulSetTreeMap.get(rackStatus.getName());
-                        if (v1StatefulSet != null && !statefulSetIsReady(v1StatefulSet)) {
-                            logger.debug("v1StatefulSet={}/{} not ready, waiting", v1StatefulSet.getMetadata().getName(), v1StatefulSet.getMetadata().getNamespace());
-                            endOperation("noop, wait for pods ready in rack index=" + rackStatus.getIndex() + " name=" + rackStatus.getName());
-                            return k8sResourceUtils.updateDataCenterStatus(dataCenter, dataCenterStatus).ignoreElement();
-                        }
-                    }
+    /**
+     * SHA1 first 7 caraters fingerprint of the operator build, the init container images and the operator config
+     * injected in pod templates, so that an operator upgrade rolls out its template changes.
+     */
+    String operatorFingerPrint() {
+        List<Object> acc = new ArrayList<>();
+        acc.add(OPERATOR_BUILD);
+        acc.add(SYSTEM_TUNE_IMAGE);
+        acc.add(NODEINFO_IMAGE);
+        acc.add(operatorConfig.getServiceName());
+        acc.add(operatorConfig.getOperatorNamespace());
+        return DigestUtils.sha1Hex(appsApi.getApiClient().getJSON().getGson().toJson(acc)).substring(0, 7);
+    }
 
-                    // tack if we need to update the datacenter update status
-                    Single<Boolean> doUpdate = updateStatus
-                        ? k8sResourceUtils.updateDataCenterStatus(dataCenter, dataCenterStatus).map(o -> false)
-                        : Single.just(false);
-
-                    // manage roles, keyspaces, plugins, and backups
-                    if (dataCenterStatus.getReadyReplicas() > 0 && dataCenterStatus.getBootstrapped() == true) {
-                        doUpdate = doUpdate
-                                .flatMap(status -> this.cqlKeyspaceManager.reconcileKeyspaces(this, status, cqlSessionHandler, pluginRegistry))
-                                .flatMap(status -> this.cqlRoleManager.reconcileRole(this, status, cqlSessionHandler, pluginRegistry))
-                                // manage plugins
-                                .flatMap(s -> pluginRegistry.reconcileAll(this).map(b -> b || s));
-                                //.flatMap(s -> Completable.fromAction(() -> backupScheduler.scheduleBackups(dataCenter)).toSingleDefault(s));
-                    }
+    /**
+     * @return the git commit of the operator build (from git.properties), or the jar implementation version.
+     */
+    static String operatorBuild() {
+        try (InputStream in = DataCenterUpdateAction.class.getResourceAsStream("/git.properties")) {
+            if (in != null) {
+                Properties properties = new Properties();
+                properties.load(in);
+                String commit = properties.getProperty("git.commit.id");
+                if (commit != null)
+                    return commit;
+            }
+        } catch (IOException e) {
+            logger.warn("Cannot read git.properties: {}", e.toString());
+        }
+        return Optional.ofNullable(DataCenterUpdateAction.class.getPackage().getImplementationVersion()).orElse("unknown");
+    }
 
-                    // update datacenter status
-                    return doUpdate.flatMapCompletable(doStatusUpdate -> {
-                        if (doStatusUpdate) {
-                            logger.trace("datacenter={} updating status={}", dataCenter.id(), dataCenterStatus);
-                            endOperation();
-                            return k8sResourceUtils.updateDataCenterStatus(dataCenter, dataCenterStatus).ignoreElement();
-                        }
-                        return Completable.complete();
-                    }).doFinally(() -> cqlSessionHandler.close());
-                });
+    /**
+     * Compute the next reconciliation plan from the cached state, without any side effect (dry-run).
+     */
+    public Single<ReconciliationPlan> plan(final boolean updateStatus) {
+        Optional<ReconciliationPlan> parkingPlan = ReconciliationPlanner.planParking(dataCenterSpec, dataCenterStatus, updateStatus);
+        if (parkingPlan.isPresent())
+            return Single.just(parkingPlan.get());
+        return readUserConfigMap().map(optionalUserConfig -> plan(new ConfigMapVolumeMounts(optionalUserConfig), updateStatus));
+    }
+
+    ReconciliationPlan plan(final ConfigMapVolumeMounts configMapVolumeMounts, final boolean updateStatus) {
+        String currentFingerprint = podTemplateFingerprint(configMapVolumeMounts);
+        ReconciliationPlan plan = ReconciliationPlanner.plan(dataCenterSpec, dataCenterStatus,
+                this.statefulsetCache.getOrDefault(key, new TreeMap<>()), currentFingerprint, updateStatus, cqlSchemaUpToDate());
+        logger.debug("datacenter={} currentFingerprint={} rackStatus={} plan={}",
+                dataCenter.id(), currentFingerprint, dataCenterStatus.getRackStatuses().values(), plan.getSteps());
+        return plan;
+    }
+
+    /**
+     * Digest of the desired keyspaces and roles, including plugin contributions and secret resourceVersions.
+     */
+    String cqlDigest() {
+        List<Object> acc = new ArrayList<>();
+        acc.add(dataCenterSpec.cqlFingerprint());
+        acc.add(dataCenterStatus.getKeyspaceManagerStatus());
+        acc.add(pluginRegistry.plugins().stream().filter(p -> p.isActive(dataCenter)).map(p -> p.getClass().getName()).sorted().collect(Collectors.toList()));
+        // keyspaces and roles registered by plugins, with their target RF
+        acc.add(Optional.ofNullable(cqlKeyspaceManager.get(dataCenter)).map(m -> m.values().stream().map(ks -> ks.getName() + ":" + ks.getRf()).sorted().collect(Collectors.toList())).orElse(null));
+        acc.add(Optional.ofNullable(cqlRoleManager.get(dataCenter)).map(m -> new TreeSet<>(m.keySet())).orElse(null));
+        acc.add(cqlRoleManager.secretVersions(dataCenter));
+        return DigestUtils.sha1Hex(appsApi.getApiClient().getJSON().getGson().toJson(acc)).substring(0, 7);
+    }
+
+    /**
+     * @return true if the last applied CQL schema is still the desired one, so keyspace and role reconciliation can be skipped.
+     */
+    boolean cqlSchemaUpToDate() {
+        return cqlRoleManager.reconcilied(dataCenter) &&
+                cqlDigestCache.isApplied(key, cqlDigest());
+    }
+
+    /**
+     * Record a keyspace, role or plugin reconciliation error that was logged and swallowed,
+     * so that the CQL digest of this run is not remembered and the next reconciliation retries.
+     */
+    public void reconcileFailed(final String what, final Throwable t) {
+        logger.debug("datacenter={} {} failed, CQL digest not recorded, error={}", dataCenter.id(), what, t == null ? null : t.toString());
+        this.reconcileFailed = true;
+    }
+
+    /**
+     * Execute plan steps in order, each step being timed, then update the datacenter status if requested by a step.
+     */
+    Completable executePlan(final ReconciliationPlan plan, final ConfigMapVolumeMounts configMapVolumeMounts) {
+        // scaling down or managing keyspaces and roles require a CQL connection
+        final CqlSessionHandler cqlSessionHandler = plan.requiresCqlSession() ? context.createBean(CqlSessionHandler.class) : null;
+        Single<Boolean> todo = Single.just(false);
+        for (ReconciliationPlan.Step step : plan.getSteps()) {
+            todo = todo.flatMap(status -> Single.defer(() -> {
+                final Timer.Sample sample = Timer.start(meterRegistry);
+                return executeStep(plan, step, status, configMapVolumeMounts, cqlSessionHandler)
+                        .doFinally(() -> sample.stop(meterRegistry.timer("reconcile.step", "step", step.name())));
+            }));
+        }
+        if (plan.contains(ReconciliationPlan.StepType.RECONCILE_ROLES)) {
+            todo = todo.doOnSuccess(s -> {
+                // remember the applied CQL schema only when keyspaces, roles and plugins were all reconciled
+                if (!reconcileFailed && cqlRoleManager.reconcilied(dataCenter))
+                    cqlDigestCache.put(key, cqlDigest());
+            });
+        }
+
+        // update datacenter status
+        return todo.flatMapCompletable(doStatusUpdate -> {
+            if (doStatusUpdate) {
+                logger.trace("datacenter={} updating status={}", dataCenter.id(), dataCenterStatus);
+                endOperation();
+                return k8sResourceUtils.updateDataCenterStatus(dataCenter, dataCenterStatus).ignoreElement();
+            }
+            return Completable.complete();
+        }).doFinally(() -> {
+            if (cqlSessionHandler != null)
+                cqlSessionHandler.close();
+        });
+    }
+
+    Single<Boolean> executeStep(final ReconciliationPlan plan,
+                                final ReconciliationPlan.Step step,
+                                final Boolean status,
+                                final ConfigMapVolumeMounts configMapVolumeMounts,
+                                final CqlSessionHandler cqlSessionHandler) throws Exception {
+        switch (step.getType()) {
+            case PARK:
+                return parkDatacenter().toSingleDefault(false);
+            case UNPARK:
+                return unparkDatacenter().toSingleDefault(false);
+            case ROLLING_UPDATE: {
+                final RackStatus rackStatus = dataCenterStatus.getRackStatuses().get(step.getRackIndex());
+                logger.debug("datacenter={} fingerprint={} rack={} {} => rolling update sts",
+                        dataCenter.id(), plan.getFingerprint(), rackStatus.getName(), step.getReason());
+                rackStatus.setFingerprint(plan.getFingerprint());
+                rackStatus.setProgressState(ProgressState.UPDATING);
+                configMapVolumeMounts.setRack(rackStatus);
+                return configMapVolumeMounts.createOrReplaceNamespacedConfigMaps()
+                        // updateRack also call prepareDataCenterSnapshot
+                        .andThen(builder.buildStatefulSetRack(rackStatus, configMapVolumeMounts)
+                                .flatMap(sts -> {
+                                    endOperation("updating sts=" + sts.getMetadata().getName() + " fingerprint=" + plan.getFingerprint() + " rack=" + rackStatus.getName());
+                                    return k8sResourceUtils.updateDataCenterStatus(dataCenter, dataCenterStatus);
+                                }))
+                        .map(dc -> false);
+            }
+            case WAIT_ROLLING_UPDATE:
+                logger.debug("datacenter={} rack={} not up-to-date, waiting", dataCenter.id(), step.getRack());
+                endOperation("noop, wait for rolling update completion in rack index=" + step.getRackIndex() + " name=" + step.getRack());
+                return k8sResourceUtils.updateDataCenterStatus(dataCenter, dataCenterStatus).map(dc -> false);
+            case SCALE_UP:
+            case SCALE_DOWN: {
+                // do not change the topology while polled nodes are joining or leaving.
+                List<String> movingPods = nodeStatusCache.pods(key, ElassandraNodeStatus::isMoving);
+                if (!movingPods.isEmpty()) {
+                    logger.debug("datacenter={} {} delayed, moving pods={}", dataCenter.id(), step.getType(), movingPods);
+                    endOperation("noop, wait for pods=" + movingPods + " to be NORMAL");
+                    return k8sResourceUtils.updateDataCenterStatus(dataCenter, dataCenterStatus).map(dc -> false);
+                }
+                return ReconciliationPlan.StepType.SCALE_UP.equals(step.getType()) ?
+                        scaleUpDatacenter(configMapVolumeMounts).toSingleDefault(false) :
+                        scaleDownDatacenter(configMapVolumeMounts, cqlSessionHandler).toSingleDefault(false);
+            }
+            case WAIT_PODS_READY:
+                logger.debug("datacenter={} rack={} not ready, waiting", dataCenter.id(), step.getRack());
+                endOperation("noop, wait for pods ready in rack index=" + step.getRackIndex() + " name=" + step.getRack());
+                return k8sResourceUtils.updateDataCenterStatus(dataCenter, dataCenterStatus).map(dc -> false);
+            case UPDATE_STATUS:
+                logger.debug("datacenter={} updating status={}", dataCenter.id(), dataCenterStatus);
+                return k8sResourceUtils.updateDataCenterStatus(dataCenter, dataCenterStatus).map(dc -> false);
+            case GC_CONFIGMAPS:
+                return deleteUnreferencedConfigMaps(configMapVolumeMounts)
+                        .andThen(Completable.fromAction(() -> dataCenterStatus.setConfigMapFingerPrint(plan.getFingerprint())))
+                        .toSingleDefault(true);
+            case RECONCILE_KEYSPACES:
+                return this.cqlKeyspaceManager.reconcileKeyspaces(this, status, cqlSessionHandler, pluginRegistry);
+            case RECONCILE_ROLES:
+                return this.cqlRoleManager.reconcileRole(this, status, cqlSessionHandler, pluginRegistry);
+            case RECONCILE_PLUGINS:
+                return pluginRegistry.reconcileAll(this).map(b -> b || status);
+            default:
+                throw new IllegalStateException("Unsupported reconciliation step=" + step.getType());
+        }
     }
 
     public Completable parkDatacenter() {
@@ -614,46 +725,131 @@ public class DataCenterUpdateAction {
                         .ignoreElement());
     }
 
+    /**
+     * Scale down the datacenter to its desired size. The whole layout is planned up front, RF of managed keyspaces is
+     * decreased for the target size, and nodes are decommissioned by waves of pods belonging to distinct racks,
+     * one wave per reconciliation, the next one being planned again once the statefulsets are resized.
+     */
     public Completable scaleDownDatacenter(ConfigMapVolumeMounts configMapVolumeMounts, CqlSessionHandler cqlSessionHandler) throws Exception {
         Completable todo = Completable.complete();
-        Optional<Zone> scaleDownZone = zones.nextToScaleDown();
-        if (!scaleDownZone.isPresent()) {
-            logger.warn("datacenter={} Cannot scale down, no more replicas", dataCenter.id(), dataCenterMetadata.getName(), dataCenterMetadata.getNamespace());
+        if (zones.totalReplicas() == 0) {
+            logger.warn("datacenter={} Cannot scale down, no more replicas", dataCenter.id());
             return todo.toSingleDefault(dataCenterStatus).flatMapCompletable(dcs -> {
                 endOperation("Cannot scale-down, no more replicas");
                 return k8sResourceUtils.updateDataCenterStatus(dataCenter, dataCenterStatus).ignoreElement();
             });
         }
 
-        // scaling DOWN
-        Zone zone = scaleDownZone.get();
-        V1StatefulSet sts = zone.getSts().get();
-        Integer rackIndex = Integer.parseInt(sts.getMetadata().getLabels().get(OperatorLabels.RACKINDEX));
-        RackStatus rackStatus = dataCenterStatus.getRackStatuses().get(rackIndex);
-
-        if (dataCenterStatus.getBootstrapped() && dataCenterSpec.getReplicas() > 1) {
-            todo = cqlKeyspaceManager.decreaseRfBeforeScalingDownDc(dataCenter, dataCenterStatus, zones.totalReplicas() - 1, cqlSessionHandler)
-                    .andThen(Completable.fromAction(() -> {
-                        // update the DC status after the decreaseRf because decreaseRf test DC phase is RUNNING...
-                        logger.info("datacenter={} SCALE_DOWN started in rack={} size={}, decommissioning pod={}-{}",
-                                dataCenter.id(), zone.name, zone.size, sts.getMetadata().getName(), sts.getSpec().getReplicas() - 1);
-                    }))
-                    .andThen(jmxmpElassandraProxy.decomission(new ElassandraPod(dataCenter, rackIndex, sts.getSpec().getReplicas() - 1))
-                            .retryWhen(errors -> errors
-                                    .zipWith(Flowable.range(1, 5), (n, i) -> i)
-                                    .flatMap(retryCount -> Flowable.timer(2, TimeUnit.SECONDS))
-                            ));
+        final SortedMap<String, Integer> currentReplicas = new TreeMap<>();
+        for (Zone zone : zones) {
+            if (zone.getSts().isPresent())
+                currentReplicas.put(zone.getName(), zone.replicas());
+        }
+        final boolean decommission = dataCenterStatus.getBootstrapped() && dataCenterSpec.getReplicas() > 1;
+        final int parallelism = decommission ? scaleDownParallelism(dataCenterSpec.getReplicas()) : Integer.MAX_VALUE;
+        final ScaleDownPlan plan = ScaleDownPlan.plan(currentReplicas, dataCenterSpec.getReplicas(), parallelism);
+        logger.info("datacenter={} SCALE_DOWN started replicas={} target={} waves={} parallelism={}",
+                dataCenter.id(), currentReplicas, plan.getTargetReplicas(), plan.getWaves().size(), parallelism);
+
+        if (decommission) {
+            // decrease RF once for the target datacenter size before any decommission.
+            todo = cqlKeyspaceManager.decreaseRfBeforeScalingDownDc(dataCenter, dataCenterStatus, plan.targetTotal(), cqlSessionHandler);
+            if (!plan.getWaves().isEmpty()) {
+                final List<ScaleDownPlan.Step> wave = plan.getWaves().get(0);
+                todo = todo.andThen(Completable.defer(() -> decommissionWave(wave)))
+                        .andThen(Completable.defer(() -> resizeRacks(wave, configMapVolumeMounts)));
+            }
+        } else {
+            // no data to stream, remove all pods at once
+            for (List<ScaleDownPlan.Step> wave : plan.getWaves()) {
+                todo = todo.andThen(Completable.defer(() -> resizeRacks(wave, configMapVolumeMounts)));
+            }
         }
 
-        rackStatus.setDesiredReplicas(sts.getSpec().getReplicas() - 1);
-        sts.getSpec().setReplicas(sts.getSpec().getReplicas() - 1);
-
-        configMapVolumeMounts.setRack(rackStatus);
-        return todo.andThen(configMapVolumeMounts.createOrReplaceNamespacedConfigMaps()) // update seeds
-                .andThen(k8sResourceUtils.replaceNamespacedStatefulSet(sts).ignoreElement())
-                .toSingleDefault(dataCenterSpec)
+        return todo.toSingleDefault(dataCenterSpec)
                 .flatMapCompletable(s -> {
-                    endOperation("scale-down");
+                    endOperation(decommission && plan.getWaves().size() > 1 ?
+                            "scale-down wave 1/" + plan.getWaves().size() + " to replicas=" + plan.targetTotal() :
+                            "scale-down to replicas=" + plan.targetTotal());
+                    return k8sResourceUtils.updateDataCenterStatus(dataCenter, dataCenterStatus).ignoreElement();
+                });
+    }
+
+    /**
+     * Concurrent decommissions are bounded by the operator config, and by the smallest target RF minus one,
+     * so that at least one replica of each token range is never streaming.
+     */
+    private int scaleDownParallelism(int targetDcSize) {
+        int minRf = Integer.MAX_VALUE;
+        Map<String, CqlKeyspace> keyspaces = cqlKeyspaceManager.get(dataCenter);
+        if (keyspaces != null) {
+            for (CqlKeyspace keyspace : keyspaces.values()) {
+                if (keyspace.getRf() > 0)
+                    minRf = Math.min(minRf, Math.min(keyspace.getRf(), targetDcSize));
+            }
+        }
+        if (minRf == Integer.MAX_VALUE)
+            return 1;
+        return Math.max(1, Math.min(operatorConfig.getScaleDownParallelism(), minRf - 1));
+    }
+
+    /**
+     * @return the rack index label of the zone statefulset, the rack index is never derived from the zone order.
+     */
+    private int rackIndex(Zone zone) {
+        return Integer.parseInt(zone.getSts().get().getMetadata().getLabels().get(OperatorLabels.RACKINDEX));
+    }
+
+    private Completable decommissionWave(List<ScaleDownPlan.Step> wave) throws Exception {
+        List<CompletableSource> todoList = new ArrayList<>(wave.size());
+        for (ScaleDownPlan.Step step : wave) {
+            final int rackIndex = rackIndex(zones.get(step.getZone()));
+            final ElassandraPod pod = new ElassandraPod(dataCenter, rackIndex, step.getOrdinal());
+            if (nodeStatusCache.status(key, pod.getName()).filter(ElassandraNodeStatus.DECOMMISSIONED::equals).isPresent()) {
+                logger.info("datacenter={} SCALE_DOWN pod={} in rack={} already decommissioned", dataCenter.id(), pod.getName(), step.getZone());
+                continue;
+            }
+            logger.info("datacenter={} SCALE_DOWN decommissioning pod={} in rack={}", dataCenter.id(), pod.getName(), step.getZone());
+            todoList.add(jmxmpElassandraProxy.decomission(pod, operatorConfig.getStreamingProgressIntervalInSec(), progress ->
+                    logger.info("datacenter={} pod={} decommissioning streams={} sent={}/{} bytes ({}%)",
+                            dataCenter.id(), pod.getName(), progress.getStreams(),
+                            progress.getCurrentTxBytes(), progress.getTotalTxBytes(), String.format(Locale.ROOT, "%.1f", progress.txPercentage())))
+                    .retryWhen(errors -> errors
+                            .zipWith(Flowable.range(1, 5), (n, i) -> i)
+                            .flatMap(retryCount -> Flowable.timer(2, TimeUnit.SECONDS))
+                    ));
+        }
+        return Completable.mergeArray(todoList.toArray(new CompletableSource[todoList.size()]));
+    }
+
+    /**
+     * Shrink the statefulsets of the wave racks, then persist the scale-down progress in the datacenter status.
+     */
+    private Completable resizeRacks(List<ScaleDownPlan.Step> wave, ConfigMapVolumeMounts configMapVolumeMounts) throws Exception {
+        Completable todo = Completable.complete();
+        for (ScaleDownPlan.Step step : wave) {
+            todo = todo.andThen(Completable.defer(() -> {
+                Zone zone = zones.get(step.getZone());
+                V1StatefulSet sts = zone.getSts().get();
+                RackStatus rackStatus = dataCenterStatus.getRackStatuses().get(rackIndex(zone));
+                rackStatus.setDesiredReplicas(step.getOrdinal());
+                sts.getSpec().setReplicas(step.getOrdinal());
+                configMapVolumeMounts.setRack(rackStatus);
+                return configMapVolumeMounts.createOrReplaceNamespacedConfigMaps() // update seeds
+                        .andThen(k8sResourceUtils.replaceNamespacedStatefulSet(sts))
+                        .map(updatedSts -> {
+                            // keep the latest resourceVersion for the next wave
+                            zone.setSts(Optional.of(updatedSts));
+                            return updatedSts;
+                        })
+                        .ignoreElement();
+            }));
+        }
+        return todo.toSingleDefault(wave)
+                .flatMapCompletable(w -> {
+                    operation.getActions().add("scale-down pods=" + w.stream()
+                            .map(step -> step.getZone() + "/" + step.getOrdinal())
+                            .collect(Collectors.joining(",")));
                     return k8sResourceUtils.updateDataCenterStatus(dataCenter, dataCenterStatus).ignoreElement();
                 });
     }
@@ -662,6 +858,8 @@ public class DataCenterUpdateAction {
         public final V1ConfigMap configMap;
         public final V1ConfigMapVolumeSource volumeSource;
         public final String mountName, mountPath;
+        private boolean unique = false;
+        private boolean immutable = false;
 
         public ConfigMapVolumeMountBuilder(final V1ConfigMap configMap, final V1ConfigMapVolumeSource volumeSource, final String mountName, final String mountPath) {
             this.configMap = configMap;
@@ -698,7 +896,8 @@ public class DataCenterUpdateAction {
         }
 
         public ConfigMapVolumeMountBuilder makeUnique() {
-            if (configMap != null) {
+            if (configMap != null && !unique) {
+                unique = true;
                 String hashedName = OperatorNames.configMapUniqueName(configMap.getMetadata().getName(), fingerPrint());
                 configMap.getMetadata().setName(hashedName);// TODO [ELE] fully copy the configmap to include the cofgimap into the dc fingerprint
                 volumeSource.setName(hashedName);
@@ -706,17 +905,57 @@ public class DataCenterUpdateAction {
             return this;
         }
 
+        /**
+         * Content-addressed immutable configmap, written once and shared by all racks having the same content.
+         */
+        public ConfigMapVolumeMountBuilder makeImmutable() {
+            if (configMap != null) {
+                makeUnique();
+                Map<String, String> labels = new HashMap<>();
+                if (configMap.getMetadata().getLabels() != null)
+                    labels.putAll(configMap.getMetadata().getLabels());
+                labels.putAll(OperatorLabels.datacenter(dataCenter));
+                labels.put(OperatorLabels.IMMUTABLE_CONFIGMAP, Boolean.TRUE.toString());
+                configMap.getMetadata().setLabels(labels);
+                immutable = true;
+            }
+            return this;
+        }
+
         public ConfigMapVolumeMountBuilder(final V1ConfigMapVolumeSource volumeSource, final String mountName, final String mountPath) {
             this(null, volumeSource, mountName, mountPath);
         }
 
+        /**
+         * Write the configmap if its content changed since the last write, or if it was deleted since.
+         */
         public Single<ConfigMapVolumeMountBuilder> createOrReplaceNamespacedConfigMap() throws ApiException {
             if (configMap != null) {
-                return k8sResourceUtils.createOrReplaceNamespacedConfigMap(configMap).map(c -> this);
+                final String name = configMap.getMetadata().getName();
+                final String fingerprint = fingerPrint();
+                final Map<String, String> writtenConfigMaps = configMapCache.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+                if (fingerprint.equals(writtenConfigMaps.get(name))) {
+                    // managed configmaps are cached by the informer, no API call when unchanged
+                    if (k8sResourceUtils.getCachedNamespacedConfigMap(configMap.getMetadata().getNamespace(), name).isPresent()) {
+                        logger.trace("datacenter={} configmap={} unchanged", dataCenter.id(), name);
+                        return Single.just(this);
+                    }
+                    logger.warn("datacenter={} configmap={} deleted, recreating", dataCenter.id(), name);
+                    writtenConfigMaps.remove(name);
+                }
+                return writeConfigMap(writtenConfigMaps, name, fingerprint);
             }
             return Single.just(this);
         }
 
+        private Single<ConfigMapVolumeMountBuilder> writeConfigMap(final Map<String, String> writtenConfigMaps, final String name, final String fingerprint) throws ApiException {
+            return (immutable ? k8sResourceUtils.createNamespacedImmutableConfigMap(configMap) : k8sResourceUtils.createOrReplaceNamespacedConfigMap(configMap))
+                    .map(c -> {
+                        writtenConfigMaps.put(name, fingerprint);
+                        return this;
+                    });
+        }
+
         public ConfigMapVolumeMountBuilder addFile(final String path, final String content) {
             final String encodedKey = path.replaceAll("\\W", "_");
 
@@ -742,11 +981,11 @@ public class DataCenterUpdateAction {
 
         public ConfigMapVolumeMounts(Optional<V1ConfigMap> userConfig) throws IOException, ApiException {
             this.operatorConfig = builder.buildConfigMapOperator();
-            this.userConfig = builder.buildConfigMapUser(userConfig);
+            this.userConfig = builder.buildConfigMapUser(userConfig).map(ConfigMapVolumeMountBuilder::makeImmutable);
         }
 
         public void setRack(RackStatus rackStatus) throws IOException, ApiException {
-            this.rackConfig = builder.buildConfigMapRack(rackStatus);
+            this.rackConfig = builder.buildConfigMapRack(rackStatus).makeImmutable();
             this.seedConfig = builder.buildConfigMapSeed(zones);
         }
 
@@ -766,11 +1005,20 @@ public class DataCenterUpdateAction {
                     .andThen(seedConfig.createOrReplaceNamespacedConfigMap().ignoreElement())
                     // use user configmap
                     .andThen(userConfig.isPresent() ?
-                            userConfig.get().makeUnique().createOrReplaceNamespacedConfigMap().ignoreElement() :
+                            userConfig.get().createOrReplaceNamespacedConfigMap().ignoreElement() :
                             Completable.complete()
                     );
         }
 
+        public Set<String> names() {
+            Set<String> names = new HashSet<>();
+            for (ConfigMapVolumeMountBuilder configMapVolumeMountBuilder : this) {
+                if (configMapVolumeMountBuilder != null && configMapVolumeMountBuilder.configMap != null)
+                    names.add(configMapVolumeMountBuilder.configMap.getMetadata().getName());
+            }
+            return names;
+        }
+
         /**
          * Returns an iterator over elements of type {@code T}.
          *
@@ -801,6 +1049,37 @@ public class DataCenterUpdateAction {
         return DigestUtils.sha1Hex(appsApi.getApiClient().getJSON().getGson().toJson(object)).substring(0, 7);
     }
 
+    /**
+     * Delete immutable configmaps of the datacenter that are no longer referenced by the current configuration
+     * nor by any rack statefulset.
+     */
+    public Completable deleteUnreferencedConfigMaps(ConfigMapVolumeMounts configMapVolumeMounts) {
+        return Completable.fromAction(() -> {
+            final Set<String> referenced = configMapVolumeMounts.names();
+            for (V1StatefulSet sts : statefulsetCache.getOrDefault(key, new TreeMap<>()).values()) {
+                List<V1Volume> volumes = sts.getSpec().getTemplate().getSpec().getVolumes();
+                if (volumes != null) {
+                    for (V1Volume volume : volumes) {
+                        if (volume.getConfigMap() != null)
+                            referenced.add(volume.getConfigMap().getName());
+                    }
+                }
+            }
+
+            final Map<String, String> labels = new HashMap<>(OperatorLabels.datacenter(dataCenter));
+            labels.put(OperatorLabels.IMMUTABLE_CONFIGMAP, Boolean.TRUE.toString());
+            final Map<String, String> writtenConfigMaps = configMapCache.getOrDefault(key, Collections.emptyMap());
+            for (V1ConfigMap configMap : k8sResourceUtils.listNamespacedConfigMaps(dataCenterMetadata.getNamespace(), null, OperatorLabels.toSelector(labels))) {
+                final String name = configMap.getMetadata().getName();
+                if (!referenced.contains(name)) {
+                    logger.info("datacenter={} deleting unreferenced configmap={}", dataCenter.id(), name);
+                    k8sResourceUtils.deleteConfigMap(configMap);
+                    writtenConfigMaps.remove(name);
+                }
+            }
+        });
+    }
+
     public class Builder {
 
         private String nodetoolSsl() {
@@ -1173,7 +1452,7 @@ public class DataCenterUpdateAction {
         }
 
         /**
-         * One configmap per sts, mutable and suffixed by a hash of the spec data
+         * One configmap shared by all racks, immutable and suffixed by a hash of the spec data
          *
          * @return
          * @throws IOException
@@ -1465,12 +1744,12 @@ public class DataCenterUpdateAction {
                 }
             }
 
-            return configMapVolumeMountBuilder.makeUnique();
+            return configMapVolumeMountBuilder.makeImmutable();
         }
 
         /**
          * configuration that is specific to rack. For the moment, an update of it does not trigger a restart
-         * One immutable configmap per rack
+         * One immutable configmap per rack, suffixed by a hash of its data
          */
         private ConfigMapVolumeMountBuilder buildConfigMapRack(final RackStatus rackStatus) throws IOException {
             final V1ConfigMap configMap = new V1ConfigMap().metadata(rackObjectMeta(rackStatus));
@@ -1615,9 +1894,80 @@ public class DataCenterUpdateAction {
             return k8sResourceUtils.createOrReplaceNamespacedPodDisruptionBudget(podDisruptionBudget);
         }
 
+        /**
+         * Build the rack statefulset, reusing the cached pod template when the datacenter fingerprint is unchanged,
+         * then create it, or patch the existing one with the minimal diff (or nothing when already up-to-date).
+         */
         public Single<V1StatefulSet> buildStatefulSetRack(RackStatus rackStatus, ConfigMapVolumeMounts configMapVolumeMounts) throws Exception {
             final V1ObjectMeta statefulSetMetadata = rackObjectMeta(rackStatus);
 
+            // CRD spec + configMap + operator fingerprint
+            final String fingerprint = podTemplateFingerprint(configMapVolumeMounts);
+            final Key templateKey = new Key(statefulSetMetadata);
+            V1PodTemplateSpec podTemplate = statefulSetTemplateCache.get(templateKey, fingerprint, configMapVolumeMounts.rackConfig.configMap.getMetadata().getName());
+            if (podTemplate == null) {
+                podTemplate = buildPodTemplateRack(rackStatus, configMapVolumeMounts, fingerprint);
+                statefulSetTemplateCache.put(templateKey, podTemplate);
+            }
+
+            final V1StatefulSetSpec statefulSetSpec = new V1StatefulSetSpec()
+                    // if the serviceName references a headless service, kubeDNS to create an A record for
+                    // each pod : $(podName).$(serviceName).$(namespace).svc.cluster.local
+                    .serviceName(OperatorNames.nodesService(dataCenter))
+                    .replicas(rackStatus.getDesiredReplicas())
+                    .selector(new V1LabelSelector().matchLabels(OperatorLabels.rack(dataCenter, rackStatus.getName(), rackStatus.getIndex())))
+                    .template(podTemplate);
+
+            Zone zone = zones.get(rackStatus.getName());
+            if (zone != null && zone.getSts().isPresent()) {
+                // Avoid PVC replacement and data loss if spec modified...
+                final V1StatefulSet existingSts = zone.getSts().get();
+                statefulSetSpec.setVolumeClaimTemplates(existingSts.getSpec().getVolumeClaimTemplates());
+
+                final StatefulSetDiff diff = StatefulSetDiff.of(existingSts, new V1StatefulSet().metadata(statefulSetMetadata).spec(statefulSetSpec));
+                if (diff.isEmpty()) {
+                    logger.debug("datacenter={} sts={} up-to-date, nothing to patch", dataCenter.id(), statefulSetMetadata.getName());
+                    return Single.just(existingSts);
+                }
+                logger.debug("datacenter={} sts={} patching operations={} templateChanged={}",
+                        dataCenter.id(), statefulSetMetadata.getName(), diff.getOperations().size(), diff.templateChanged());
+                return k8sResourceUtils.patchNamespacedStatefulSet(existingSts, diff.getOperations())
+                        .map(s -> {
+                            zone.setSts(Optional.of(s));
+                            statefulsetCache.update(s);
+                            return s;
+                        });
+            }
+
+            if (dataCenterSpec.getDataVolumeClaim() != null && dataCenterSpec.getDataVolumeClaim().getStorageClassName() != null) {
+                String storageClassName = dataCenterSpec.getDataVolumeClaim().getStorageClassName()
+                        .replace("{zone}", rackStatus.getName())
+                        .replace("{index}", Integer.toString(rackStatus.getIndex()));
+                logger.info("sts={}/{} rack={} creating new PVC with storageClassName={}",
+                        statefulSetMetadata.getName(), rackStatus.getName(), dataCenterMetadata.getNamespace(), storageClassName);
+
+                V1PersistentVolumeClaimSpec v1PersistentVolumeClaimSpec = new V1PersistentVolumeClaimSpec()
+                        .accessModes(dataCenterSpec.getDataVolumeClaim().getAccessModes())
+                        .dataSource(dataCenterSpec.getDataVolumeClaim().getDataSource())
+                        .resources(dataCenterSpec.getDataVolumeClaim().getResources())
+                        .selector(dataCenterSpec.getDataVolumeClaim().getSelector())
+                        .volumeMode(dataCenterSpec.getDataVolumeClaim().getVolumeMode())
+                        .storageClassName(storageClassName);
+                statefulSetSpec.setVolumeClaimTemplates(ImmutableList.of(new V1PersistentVolumeClaim()
+                        .metadata(new V1ObjectMeta().name("data-volume")).spec(v1PersistentVolumeClaimSpec)));
+            }
+
+            return k8sResourceUtils.createOrReplaceNamespacedStatefulSet(new V1StatefulSet().metadata(statefulSetMetadata).spec(statefulSetSpec))
+                    .map(s -> {
+                        statefulsetCache.updateIfAbsent(s);
+                        return s;
+                    });
+        }
+
+        /**
+         * Build the pod template of a rack statefulset, including init containers, volumes and configmap mounts.
+         */
+        private V1PodTemplateSpec buildPodTemplateRack(RackStatus rackStatus, ConfigMapVolumeMounts configMapVolumeMounts, String fingerprint) throws Exception {
             // create Elassandra container and the associated initContainer to replay commitlogs
             final V1Container cassandraContainer = buildElassandraContainer(rackStatus);
             final V1Container commitlogInitContainer = buildInitContainerCommitlogReplayer(rackStatus);
@@ -1829,12 +2179,11 @@ public class DataCenterUpdateAction {
                 commitlogInitContainer.addArgsItem(opClusterSecretPath);
             }
 
-            // CRD spec + configMap fingerprint
-            String fingerprint = dataCenterSpec.elassandraFingerprint() + "-" + configMapVolumeMounts.fingerPrint();
             final V1ObjectMeta templateMetadata = (dataCenterSpec.getPodTemplate() != null && dataCenterSpec.getPodTemplate().getMetadata() != null
                     ? dataCenterSpec.getPodTemplate().getMetadata()
                     : new V1ObjectMeta())
                     .putAnnotationsItem(OperatorLabels.DATACENTER_FINGERPRINT, fingerprint)
+                    .putAnnotationsItem(OperatorLabels.RACK_CONFIGMAP, configMapVolumeMounts.rackConfig.configMap.getMetadata().getName())
                     .putAnnotationsItem(OperatorLabels.DATACENTER_GENERATION, dataCenter.getMetadata().getGeneration().toString())
                     .putAnnotationsItem(OperatorLabels.PVC_DECOMMISSION_POLICY, dataCenterSpec.getDecommissionPolicy().getValue());
 
@@ -1853,46 +2202,9 @@ public class DataCenterUpdateAction {
                 podSpec.addInitContainersItem(commitlogInitContainer);
             }
 
-            final V1StatefulSetSpec statefulSetSpec = new V1StatefulSetSpec()
-                    // if the serviceName references a headless service, kubeDNS to create an A record for
-                    // each pod : $(podName).$(serviceName).$(namespace).svc.cluster.local
-                    .serviceName(OperatorNames.nodesService(dataCenter))
-                    .replicas(rackStatus.getDesiredReplicas())
-                    .selector(new V1LabelSelector().matchLabels(rackLabels))
-                    .template(new V1PodTemplateSpec()
-                            .metadata(templateMetadata)
-                            .spec(podSpec)
-                    );
-
-            Zone zone = zones.get(rackStatus.getName());
-            if (zone != null && zone.getSts().isPresent()) {
-                // Avoid PVC replacement and data loss if spec modified...
-                statefulSetSpec.setVolumeClaimTemplates(zone.getSts().get().getSpec().getVolumeClaimTemplates());
-            } else {
-                if (dataCenterSpec.getDataVolumeClaim() != null && dataCenterSpec.getDataVolumeClaim().getStorageClassName() != null) {
-                    String storageClassName = dataCenterSpec.getDataVolumeClaim().getStorageClassName()
-                            .replace("{zone}", rackStatus.getName())
-                            .replace("{index}", Integer.toString(rackStatus.getIndex()));
-                    logger.info("sts={}/{} rack={} creating new PVC with storageClassName={}",
-                            statefulSetMetadata.getName(), rackStatus.getName(), dataCenterMetadata.getNamespace(), storageClassName);
-
-                    V1PersistentVolumeClaimSpec v1PersistentVolumeClaimSpec = new V1PersistentVolumeClaimSpec()
-                            .accessModes(dataCenterSpec.getDataVolumeClaim().getAccessModes())
-                            .dataSource(dataCenterSpec.getDataVolumeClaim().getDataSource())
-                            .resources(dataCenterSpec.getDataVolumeClaim().getResources())
-                            .selector(dataCenterSpec.getDataVolumeClaim().getSelector())
-                            .volumeMode(dataCenterSpec.getDataVolumeClaim().getVolumeMode())
-                            .storageClassName(storageClassName);
-                    statefulSetSpec.setVolumeClaimTemplates(ImmutableList.of(new V1PersistentVolumeClaim()
-                            .metadata(new V1ObjectMeta().name("data-volume")).spec(v1PersistentVolumeClaimSpec)));
-                }
-            }
-
-            return k8sResourceUtils.createOrReplaceNamespacedStatefulSet(new V1StatefulSet().metadata(statefulSetMetadata).spec(statefulSetSpec))
-                    .map(s -> {
-                        statefulsetCache.updateIfAbsent(s);
-                        return s;
-                    });
+            return new V1PodTemplateSpec()
+                    .metadata(templateMetadata)
+                    .spec(podSpec);
         }
 
         private V1Container buildElassandraContainer(RackStatus rack) {
@@ -2048,7 +2360,7 @@ public class DataCenterUpdateAction {
             return new V1Container()
                     .securityContext(new V1SecurityContext().privileged(true))
                     .name("system-tune")
-                    .image("busybox")
+                    .image(SYSTEM_TUNE_IMAGE)
                     .imagePullPolicy("IfNotPresent")
                     .terminationMessagePolicy("FallbackToLogsOnError")
                     .command(ImmutableList.of("sysctl", "-w",
@@ -2100,7 +2412,7 @@ public class DataCenterUpdateAction {
                 return new V1Container()
                     .securityContext(new V1SecurityContext().privileged(true))
                     .name("nodeinfo")
-                    .image("bitnami/kubectl")
+                    .image(NODEINFO_IMAGE)
                     .imagePullPolicy("IfNotPresent")
                     .terminationMessagePolicy("FallbackToLogsOnError")
                     .command(ImmutableList.of("sh", "-c",
@@ -2258,30 +2570,22 @@ public class DataCenterUpdateAction {
     public static class Zones implements Iterable<Zone> {
         TreeMap<String, Zone> zoneMap = new TreeMap<>();    // sort racks
 
-        public Zones(DataCenterStatus dataCenterStatus, Collection<V1Node> nodes, TreeMap<String, V1StatefulSet> existingStatefulSetsByZone) {
-            for (V1Node node : nodes.stream()
-                    .filter(n -> n.getMetadata().getLabels().get(OperatorLabels.ZONE) != null)
-                    .sorted(new Comparator<V1Node>() {
-                @Override
-                public int compare(V1Node o1, V1Node o2) {
-                    String zone1 = o1.getMetadata().getLabels().get(OperatorLabels.ZONE);
-                    String zone2 = o2.getMetadata().getLabels().get(OperatorLabels.ZONE);
-                    return zone1.compareTo(zone2);
-                }
-            }).collect(Collectors.toList())) {
-                String zoneName = node.getMetadata().getLabels().get(OperatorLabels.ZONE);
+        final ZoneTopologyIndex zoneTopologyIndex;
+        final Key dcKey;
+
+        public Zones(DataCenterStatus dataCenterStatus, ZoneTopologyIndex zoneTopologyIndex, Key dcKey, TreeMap<String, V1StatefulSet> existingStatefulSetsByZone) {
+            this.zoneTopologyIndex = zoneTopologyIndex;
+            this.dcKey = dcKey;
+            for (Map.Entry<String, Integer> zoneSize : zoneTopologyIndex.zoneSizes().entrySet()) {
+                String zoneName = zoneSize.getKey();
                 if (!dataCenterStatus.getZones().contains(zoneName)) {
                     // Register the zone name to keep an ordered zones list and compute consistent rackIndex.
                     dataCenterStatus.getZones().add(zoneName);
                 }
-                zoneMap.compute(zoneName, (k, z) -> {
-                    if (z == null) {
-                        z = new Zone(zoneName);
-                    }
-                    z.size++;
-                    z.setSts(Optional.ofNullable(existingStatefulSetsByZone.get(zoneName)));
-                    return z;
-                });
+                Zone zone = new Zone(zoneName);
+                zone.size = zoneSize.getValue();
+                zone.setSts(Optional.ofNullable(existingStatefulSetsByZone.get(zoneName)));
+                zoneMap.put(zoneName, zone);
             }
         }
 
@@ -2305,20 +2609,13 @@ public class DataCenterUpdateAction {
             return zoneMap.values().stream().map(Zone::readyReplicas).reduce(0, Integer::sum);
         }
 
+        // served by the zone topology index in O(log n)
         public Optional<Zone> nextToScalueUp() {
-            return (totalNodes() == totalReplicas()) ? Optional.empty() : zoneMap.values().stream()
-                    // filter-out full nodes
-                    .filter(z -> z.freeNodeCount() > 0)
-                    // select the preferred zone based on some priorities
-                    .min(Zone.scaleComparator);
+            return zoneTopologyIndex.nextToScaleUp(dcKey).map(z -> zoneMap.get(z.getName()));
         }
 
         public Optional<Zone> nextToScaleDown() {
-            return (totalReplicas() == 0) ? Optional.empty() : zoneMap.values().stream()
-                    // filter-out full nodes
-                    .filter(z -> z.replicas() > 0 || !z.sts.isPresent())
-                    // select the preferred zone based on some priorities
-                    .max(Zone.scaleComparator);
+            return zoneTopologyIndex.nextToScaleDown(dcKey).map(z -> zoneMap.get(z.getName()));
         }
 
         public Optional<Zone> first() {
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.reconcilier;
+
+import java.util.*;
+
+/**
+ * Queue of pods processed concurrently, at most nodesPerRack pods of the same rack at a time.
+ * Replica placement is rack-aware, so that running one node per rack keeps at least RF-1 replicas
+ * of each token range out of the operation. Postponed pods go back to the tail of their rack queue,
+ * and are skipped until their not-before time.
+ */
+public class RackParallelQueue {
+
+    private final int nodesPerRack;
+    private final SortedMap<String, Deque<String>> pendingByRack = new TreeMap<>();
+    private final Map<String, String> rackByPod = new HashMap<>();
+    private final Map<String, Integer> runningByRack = new HashMap<>();
+    private final Map<String, Long> postponedSince = new HashMap<>();
+    private final Map<String, Long> notBefore = new HashMap<>();
+
+    /**
+     * @param rackByPod the rack of each pod, pods of a rack are processed in the iteration order.
+     */
+    public RackParallelQueue(Map<String, String> rackByPod, int nodesPerRack) {
+        this.nodesPerRack = Math.max(1, nodesPerRack);
+        for (Map.Entry<String, String> e : rackByPod.entrySet()) {
+            this.rackByPod.put(e.getKey(), e.getValue());
+            this.pendingByRack.computeIfAbsent(e.getValue(), k -> new ArrayDeque<>()).add(e.getKey());
+        }
+    }
+
+    /**
+     * @return the maximum number of pods processed concurrently.
+     */
+    public int concurrency() {
+        return pendingByRack.size() * nodesPerRack;
+    }
+
+    public Optional<String> next() {
+        return next(System.currentTimeMillis());
+    }
+
+    /**
+     * @return the next ready pod of the least busy rack having a ready pod and a free slot.
+     */
+    public synchronized Optional<String> next(long now) {
+        String selectedRack = null;
+        String selectedPod = null;
+        int selectedRunning = Integer.MAX_VALUE;
+        for (Map.Entry<String, Deque<String>> e : pendingByRack.entrySet()) {
+            int running = runningByRack.getOrDefault(e.getKey(), 0);
+            if (running < nodesPerRack && running < selectedRunning) {
+                String pod = firstReady(e.getValue(), now);
+                if (pod != null) {
+                    selectedRack = e.getKey();
+                    selectedPod = pod;
+                    selectedRunning = running;
+                }
+            }
+        }
+        if (selectedRack == null)
+            return Optional.empty();
+        runningByRack.merge(selectedRack, 1, Integer::sum);
+        pendingByRack.get(selectedRack).remove(selectedPod);
+        notBefore.remove(selectedPod);
+        return Optional.of(selectedPod);
+    }
+
+    private String firstReady(Deque<String> pods, long now) {
+        for (String pod : pods) {
+            if (notBefore.getOrDefault(pod, Long.MIN_VALUE) <= now)
+                return pod;
+        }
+        return null;
+    }
+
+    public synchronized void done(String pod) {
+        runningByRack.merge(rackByPod.get(pod), -1, Integer::sum);
+        postponedSince.remove(pod);
+        notBefore.remove(pod);
+    }
+
+    /**
+     * @return the time the pod was postponed for the first time, now if never postponed.
+     */
+    public synchronized long postponedSince(String pod, long now) {
+        return postponedSince.computeIfAbsent(pod, k -> now);
+    }
+
+    /**
+     * Release the slot of a pod and put it back at the tail of its rack queue, not to be processed before notBefore.
+     */
+    public synchronized void postpone(String pod, long notBefore) {
+        final String rack = rackByPod.get(pod);
+        runningByRack.merge(rack, -1, Integer::sum);
+        pendingByRack.get(rack).addLast(pod);
+        this.notBefore.put(pod, notBefore);
+    }
+
+    public synchronized boolean isFinished() {
+        for (Map.Entry<String, Deque<String>> e : pendingByRack.entrySet()) {
+            if (!e.getValue().isEmpty() || runningByRack.getOrDefault(e.getKey(), 0) > 0)
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.strapdata.strapkop.reconcilier;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Ordered list of steps a datacenter reconciliation will execute, as computed by the {@link ReconciliationPlanner}.
+ *
+ * Terminal steps (park, unpark, rolling update, scale up/down, waits) end the reconciliation, the next one being triggered
+ * by the resulting k8s events. Non-terminal steps are chained and may request a final datacenter status update.
+ */
+@Data
+public class ReconciliationPlan {
+
+    public enum StepType {
+        PARK(true),
+        UNPARK(true),
+        ROLLING_UPDATE(true),
+        WAIT_ROLLING_UPDATE(true),
+        SCALE_UP(true),
+        SCALE_DOWN(true),
+        WAIT_PODS_READY(true),
+        UPDATE_STATUS(false),
+        GC_CONFIGMAPS(false),
+        RECONCILE_KEYSPACES(false),
+        RECONCILE_ROLES(false),
+        RECONCILE_PLUGINS(false);
+
+        final boolean terminal;
+
+        StepType(boolean terminal) {
+            this.terminal = terminal;
+        }
+
+        public boolean isTerminal() {
+            return terminal;
+        }
+    }
+
+    @Data
+    public static class Step {
+        final StepType type;
+
+        /**
+         * Rack index for rack-specific steps, null otherwise.
+         */
+        final Integer rackIndex;
+        final String rack;
+        final String reason;
+
+        public String name() {
+            return type.name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Expected datacenter fingerprint (elassandra spec and configmaps), null for parking plans.
+     */
+    final String fingerprint;
+
+    final List<Step> steps = new ArrayList<>();
+
+    public ReconciliationPlan add(StepType type, String reason) {
+        return add(type, null, null, reason);
+    }
+
+    public ReconciliationPlan add(StepType type, Integer rackIndex, String rack, String reason) {
+        steps.add(new Step(type, rackIndex, rack, reason));
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return steps.isEmpty();
+    }
+
+    public boolean contains(StepType type) {
+        return steps.stream().anyMatch(s -> type.equals(s.type));
+    }
+
+    /**
+     * @return true if executing the plan needs a CQL session (to adjust replication or manage keyspaces and roles).
+     */
+    public boolean requiresCqlSession() {
+        return steps.stream().anyMatch(s -> StepType.SCALE_DOWN.equals(s.type) ||
+                StepType.RECONCILE_KEYSPACES.equals(s.type) ||
+                StepType.RECONCILE_ROLES.equals(s.type));
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.strapdata.strapkop.reconcilier;
+
+import com.strapdata.strapkop.model.k8s.OperatorLabels;
+import com.strapdata.strapkop.model.k8s.datacenter.*;
+import io.kubernetes.client.openapi.models.V1StatefulSet;
+import io.kubernetes.client.openapi.models.V1StatefulSetStatus;
+import org.apache.commons.lang3.ObjectUtils;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+
+import static com.strapdata.strapkop.reconcilier.ReconciliationPlan.StepType.*;
+
+/**
+ * Side-effect free datacenter reconciliation decisions.
+ *
+ * The plan is computed from the cached datacenter status and statefulsets only, so it can be evaluated
+ * for a dry-run or measured independently of the k8s and CQL calls executed by {@link DataCenterUpdateAction}.
+ */
+public final class ReconciliationPlanner {
+
+    private ReconciliationPlanner() {
+    }
+
+    /**
+     * Plan park/unpark transitions, does not require the datacenter fingerprint.
+     * @return the plan if the datacenter is parking, unparking or parked, empty otherwise.
+     */
+    public static Optional<ReconciliationPlan> planParking(final DataCenterSpec spec, final DataCenterStatus status, final boolean updateStatus) {
+        final boolean parked = DataCenterPhase.PARKED.equals(status.getPhase());
+        if (spec.isParked() && !parked)
+            return Optional.of(new ReconciliationPlan(null).add(PARK, "spec parked"));
+
+        if (!spec.isParked() && parked)
+            return Optional.of(new ReconciliationPlan(null).add(UNPARK, "spec unparked"));
+
+        if (parked && spec.isParked() && status.getReadyReplicas() == 0) {
+            ReconciliationPlan plan = new ReconciliationPlan(null);
+            if (updateStatus)
+                plan.add(UPDATE_STATUS, "datacenter parked");
+            return Optional.of(plan);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Plan the next reconciliation steps.
+     * @param statefulSets existing statefulsets by rack name
+     * @param currentFingerprint expected datacenter fingerprint
+     * @param updateStatus true if the datacenter status must be updated
+     */
+    public static ReconciliationPlan plan(final DataCenterSpec spec,
+                                          final DataCenterStatus status,
+                                          final SortedMap<String, V1StatefulSet> statefulSets,
+                                          final String currentFingerprint,
+                                          final boolean updateStatus) {
+        return plan(spec, status, statefulSets, currentFingerprint, updateStatus, false);
+    }
+
+    /**
+     * @param cqlSchemaUpToDate true when the last applied keyspaces and roles are still the desired ones,
+     *                          in this case keyspace and role reconciliation is skipped (no CQL session required).
+     */
+    public static ReconciliationPlan plan(final DataCenterSpec spec,
+                                          final DataCenterStatus status,
+                                          final SortedMap<String, V1StatefulSet> statefulSets,
+                                          final String currentFingerprint,
+                                          final boolean updateStatus,
+                                          final boolean cqlSchemaUpToDate) {
+        Optional<ReconciliationPlan> parkingPlan = planParking(spec, status, updateStatus);
+        if (parkingPlan.isPresent())
+            return parkingPlan.get();
+
+        final ReconciliationPlan plan = new ReconciliationPlan(currentFingerprint);
+        final Map<Integer, RackStatus> rackStatuses = status.getRackStatuses();
+
+        boolean allStsReady = true;
+        for (RackStatus rackStatus : rackStatuses.values()) {
+            V1StatefulSet sts = statefulSets.get(rackStatus.getName());
+            if (ProgressState.UPDATING.equals(rackStatus.getProgressState()) || sts == null || !statefulSetIsReady(sts)) {
+                allStsReady = false;
+                break;
+            }
+        }
+
+        // don't update sts if another one is currently doing a rolling update.
+        if (allStsReady) {
+            for (RackStatus rackStatus : rackStatuses.values()) {
+                String stsFingerprint = fingerprint(statefulSets.get(rackStatus.getName()));
+                // Trigger an update if ConfigMap fingerprint or DC generation are different
+                if (!currentFingerprint.equals(stsFingerprint))
+                    return plan.add(ROLLING_UPDATE, rackStatus.getIndex(), rackStatus.getName(), "sts fingerprint=" + stsFingerprint + " not match");
+            }
+        }
+
+        // check if all racks STS have reached the desired state, otherwise wait next reconciliation
+        for (RackStatus rackStatus : rackStatuses.values()) {
+            if (ProgressState.UPDATING.equals(rackStatus.getProgressState()))
+                return plan.add(WAIT_ROLLING_UPDATE, rackStatus.getIndex(), rackStatus.getName(), "rolling update in progress");
+        }
+
+        // check if need to scale up or down
+        int totalReplicas = rackStatuses.values().stream()
+                .map(r -> ObjectUtils.defaultIfNull(r.getDesiredReplicas(), 0))
+                .reduce(0, Integer::sum);
+        boolean green = Health.GREEN.equals(status.health());
+        if (totalReplicas < spec.getReplicas() && green)
+            return plan.add(SCALE_UP, "replicas=" + totalReplicas + "/" + spec.getReplicas());
+        if (totalReplicas > spec.getReplicas() && green)
+            return plan.add(SCALE_DOWN, "replicas=" + totalReplicas + "/" + spec.getReplicas());
+
+        // check if all racks STS are ready, otherwise wait next reconciliation
+        for (RackStatus rackStatus : rackStatuses.values()) {
+            V1StatefulSet sts = statefulSets.get(rackStatus.getName());
+            if (sts != null && !statefulSetIsReady(sts))
+                return plan.add(WAIT_PODS_READY, rackStatus.getIndex(), rackStatus.getName(), "pods not ready");
+        }
+
+        if (updateStatus)
+            plan.add(UPDATE_STATUS, "status updated");
+
+        // garbage collect previous configmap generations once all racks run the current configuration,
+        // and all pods are rolled out so that no pod still mounts a previous configmap
+        if (!currentFingerprint.equals(status.getConfigMapFingerPrint()) &&
+                statefulSets.values().stream().allMatch(sts -> currentFingerprint.equals(fingerprint(sts)) &&
+                        statefulSetIsReady(sts) && statefulSetIsUpToDate(sts)))
+            plan.add(GC_CONFIGMAPS, "configmap fingerprint=" + status.getConfigMapFingerPrint() + " obsolete");
+
+        // manage roles, keyspaces and plugins
+        if (status.getReadyReplicas() > 0 && Boolean.TRUE.equals(status.getBootstrapped())) {
+            if (!cqlSchemaUpToDate)
+                plan.add(RECONCILE_KEYSPACES, "datacenter bootstrapped")
+                        .add(RECONCILE_ROLES, "datacenter bootstrapped");
+            plan.add(RECONCILE_PLUGINS, "datacenter bootstrapped");
+        }
+        return plan;
+    }
+
+    public static boolean statefulSetIsReady(V1StatefulSet sts) {
+        V1StatefulSetStatus stsStatus = sts.getStatus();
+        if (stsStatus == null)
+            return false;
+        int replicas = ObjectUtils.defaultIfNull(stsStatus.getReplicas(), 0);
+        int readyReplicas = ObjectUtils.defaultIfNull(stsStatus.getReadyReplicas(), 0);
+        return readyReplicas >= replicas;
+    }
+
+    public static boolean statefulSetIsUpToDate(V1StatefulSet sts) {
+        V1StatefulSetStatus stsStatus = sts.getStatus();
+        if (stsStatus == null)
+            return false;
+        int replicas = ObjectUtils.defaultIfNull(stsStatus.getReplicas(), 0);
+        int updatedReplicas = ObjectUtils.defaultIfNull(stsStatus.getUpdatedReplicas(), replicas);
+        return (stsStatus.getUpdateRevision() == null || stsStatus.getUpdateRevision().equals(stsStatus.getCurrentRevision()))
+                && updatedReplicas == replicas;
+    }
+
+    /**
+     * @return the datacenter fingerprint of the statefulset pod template, or null.
+     */
+    public static String fingerprint(V1StatefulSet sts) {
+        if (sts == null || sts.getSpec() == null || sts.getSpec().getTemplate().getMetadata() == null ||
+                sts.getSpec().getTemplate().getMetadata().getAnnotations() == null)
+            return null;
+        return sts.getSpec().getTemplate().getMetadata().getAnnotations().get(OperatorLabels.DATACENTER_FINGERPRINT);
+    }
+}
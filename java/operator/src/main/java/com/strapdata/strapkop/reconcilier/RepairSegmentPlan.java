@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.reconcilier;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.util.*;
+
+/**
+ * Subrange repair plan of a datacenter.
+ *
+ * Each token range of the repaired keyspaces is split into segments (Murmur3 tokens), and each segment is coordinated
+ * by one of its replicas in the datacenter. Segments having no common replica are repaired concurrently,
+ * so that a node never runs more than one repair segment at a time. Failed segments are retried up to maxAttempts.
+ */
+public class RepairSegmentPlan {
+
+    @Data
+    @EqualsAndHashCode(exclude = "attempts")
+    public static class Segment {
+        final String keyspace;
+        final long start;    // exclusive
+        final long end;      // inclusive
+        final List<String> replicas;
+        final String coordinator;
+        int attempts = 0;
+
+        public String range() {
+            return start + ":" + end;
+        }
+    }
+
+    /**
+     * Repaired segments per coordinator pod.
+     */
+    @Data
+    public static class PodStats {
+        int total = 0;
+        int completed = 0;
+        int failed = 0;
+    }
+
+    private final int maxAttempts;
+    private final LinkedList<Segment> pending;
+    private final Set<Segment> running = new HashSet<>();
+    private final Set<String> busyReplicas = new HashSet<>();
+    private final SortedMap<String, PodStats> podStats = new TreeMap<>();
+    private final List<Segment> failedSegments = new ArrayList<>();
+    private final int total;
+    private int completed = 0;
+    private int failed = 0;
+
+    RepairSegmentPlan(List<Segment> segments, int maxAttempts) {
+        this.pending = new LinkedList<>(segments);
+        this.total = segments.size();
+        this.maxAttempts = Math.max(1, maxAttempts);
+        for (Segment segment : segments)
+            podStats.computeIfAbsent(segment.coordinator, k -> new PodStats()).total++;
+    }
+
+    /**
+     * Build the repair plan.
+     * @param rangesToEndpoints per keyspace, the token ranges ([start, end] as returned by the StorageService MBean) to replica endpoints.
+     * @param localEndpoints endpoints of the datacenter to pod name, only local replicas coordinate a segment.
+     * @param segmentsPerRange number of segments of each token range.
+     */
+    public static RepairSegmentPlan plan(final SortedMap<String, Map<List<String>, List<String>>> rangesToEndpoints,
+                                         final Map<String, String> localEndpoints,
+                                         final int segmentsPerRange,
+                                         final int maxAttempts) {
+        final List<List<Segment>> segmentsByRange = new ArrayList<>();
+        for (Map.Entry<String, Map<List<String>, List<String>>> keyspace : rangesToEndpoints.entrySet()) {
+            // sort ranges to get a deterministic plan
+            final List<Map.Entry<List<String>, List<String>>> ranges = new ArrayList<>(keyspace.getValue().entrySet());
+            ranges.sort(Comparator.comparing(e -> Long.parseLong(e.getKey().get(0))));
+            int index = 0;
+            for (Map.Entry<List<String>, List<String>> range : ranges) {
+                final List<String> localReplicas = new ArrayList<>();
+                for (String endpoint : range.getValue()) {
+                    if (localEndpoints.containsKey(endpoint))
+                        localReplicas.add(localEndpoints.get(endpoint));
+                }
+                if (localReplicas.isEmpty())
+                    continue;   // keyspace not replicated in this datacenter
+                Collections.sort(localReplicas);
+                final String coordinator = localReplicas.get(index++ % localReplicas.size());
+                final List<Segment> segments = new ArrayList<>();
+                for (long[] subrange : split(Long.parseLong(range.getKey().get(0)), Long.parseLong(range.getKey().get(1)), segmentsPerRange))
+                    segments.add(new Segment(keyspace.getKey(), subrange[0], subrange[1], new ArrayList<>(range.getValue()), coordinator));
+                segmentsByRange.add(segments);
+            }
+        }
+
+        // interleave segments of distinct ranges
+        final List<Segment> segments = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, segmentsPerRange); i++) {
+            for (List<Segment> rangeSegments : segmentsByRange) {
+                if (i < rangeSegments.size())
+                    segments.add(rangeSegments.get(i));
+            }
+        }
+        return new RepairSegmentPlan(segments, maxAttempts);
+    }
+
+    /**
+     * Split the token range (start, end] in n subranges. Murmur3 tokens are signed longs, so that the long overflow
+     * follows the ring wrap-around, and start == end is the whole ring.
+     */
+    static List<long[]> split(final long start, final long end, final int n) {
+        final int count = Math.max(1, n);
+        final long size = end - start;   // unsigned
+        final long step = (size == 0) ? Long.divideUnsigned(-1L, count) : Long.divideUnsigned(size, count);
+        final List<long[]> subranges = new ArrayList<>(count);
+        if (step == 0) {
+            subranges.add(new long[]{start, end});
+            return subranges;
+        }
+        long left = start;
+        for (int i = 0; i < count; i++) {
+            long right = (i == count - 1) ? end : left + step;
+            subranges.add(new long[]{left, right});
+            left = right;
+        }
+        return subranges;
+    }
+
+    /**
+     * @return the next pending segment having no replica involved in a running segment.
+     */
+    public synchronized Optional<Segment> next() {
+        final Iterator<Segment> it = pending.iterator();
+        while (it.hasNext()) {
+            final Segment segment = it.next();
+            if (Collections.disjoint(segment.replicas, busyReplicas)) {
+                it.remove();
+                running.add(segment);
+                busyReplicas.addAll(segment.replicas);
+                segment.attempts++;
+                return Optional.of(segment);
+            }
+        }
+        return Optional.empty();
+    }
+
+    public synchronized void succeed(Segment segment) {
+        release(segment);
+        completed++;
+        podStats.get(segment.coordinator).completed++;
+    }
+
+    /**
+     * @return true if the failed segment will be retried.
+     */
+    public synchronized boolean fail(Segment segment) {
+        release(segment);
+        if (segment.attempts < maxAttempts) {
+            pending.addLast(segment);
+            return true;
+        }
+        failed++;
+        failedSegments.add(segment);
+        podStats.get(segment.coordinator).failed++;
+        return false;
+    }
+
+    private void release(Segment segment) {
+        running.remove(segment);
+        busyReplicas.removeAll(segment.replicas);
+    }
+
+    public synchronized boolean isFinished() {
+        return pending.isEmpty() && running.isEmpty();
+    }
+
+    public synchronized int getTotal() {
+        return total;
+    }
+
+    public synchronized int getCompleted() {
+        return completed;
+    }
+
+    public synchronized int getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return segments failed after maxAttempts.
+     */
+    public synchronized List<Segment> getFailedSegments() {
+        return new ArrayList<>(failedSegments);
+    }
+
+    public synchronized int getRunning() {
+        return running.size();
+    }
+
+    public synchronized double percentage() {
+        return total == 0 ? 100.0 : (completed + failed) * 100.0 / total;
+    }
+
+    public synchronized SortedMap<String, PodStats> getPodStats() {
+        SortedMap<String, PodStats> copy = new TreeMap<>();
+        podStats.forEach((pod, stats) -> {
+            PodStats s = new PodStats();
+            s.total = stats.total;
+            s.completed = stats.completed;
+            s.failed = stats.failed;
+            copy.put(pod, s);
+        });
+        return copy;
+    }
+}
@@ -21,8 +21,10 @@ import com.strapdata.strapkop.OperatorConfig;
 import com.strapdata.strapkop.cache.DataCenterStatusCache;
 import com.strapdata.strapkop.k8s.ElassandraPod;
 import com.strapdata.strapkop.k8s.K8sResourceUtils;
+import com.strapdata.strapkop.k8s.TaskStatusPatcher;
 import com.strapdata.strapkop.model.k8s.datacenter.DataCenter;
 import com.strapdata.strapkop.model.k8s.datacenter.DataCenterStatus;
+import com.strapdata.strapkop.model.k8s.task.RepairStatus;
 import com.strapdata.strapkop.model.k8s.task.RepairTaskSpec;
 import com.strapdata.strapkop.model.k8s.task.Task;
 import com.strapdata.strapkop.model.k8s.task.TaskPhase;
@@ -30,12 +32,14 @@ import com.strapdata.strapkop.sidecar.JmxmpElassandraProxy;
 import io.kubernetes.client.informer.SharedInformerFactory;
 import io.kubernetes.client.openapi.ApiException;
 import io.kubernetes.client.openapi.models.V1Pod;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import io.micronaut.context.annotation.Infrastructure;
 import io.micronaut.scheduling.executor.ExecutorFactory;
 import io.micronaut.scheduling.executor.UserExecutorConfiguration;
 import io.reactivex.Completable;
-import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
 import org.slf4j.Logger;
@@ -43,8 +47,11 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
 
 @Singleton
 @Infrastructure
@@ -52,11 +59,13 @@ public final class RepairTaskReconcilier extends TaskReconcilier {
     private static final Logger logger = LoggerFactory.getLogger(RepairTaskReconcilier.class);
 
     private final JmxmpElassandraProxy jmxmpElassandraProxy;
+    private final TaskStatusPatcher taskStatusPatcher;
 
     public RepairTaskReconcilier(ReconcilierObserver reconcilierObserver,
                                  final OperatorConfig operatorConfig,
                                  final K8sResourceUtils k8sResourceUtils,
                                  final JmxmpElassandraProxy jmxmpElassandraProxy,
+                                 final TaskStatusPatcher taskStatusPatcher,
                                  final MeterRegistry meterRegistry,
                                  final DataCenterReconcilier dataCenterController,
                                  final SharedInformerFactory sharedInformerFactory,
@@ -66,34 +75,149 @@ public final class RepairTaskReconcilier extends TaskReconcilier {
         super(reconcilierObserver, operatorConfig, k8sResourceUtils, meterRegistry,
                 dataCenterController, sharedInformerFactory, dataCenterStatusCache, executorFactory, userExecutorConfiguration);
         this.jmxmpElassandraProxy = jmxmpElassandraProxy;
+        this.taskStatusPatcher = taskStatusPatcher;
     }
 
+    /**
+     * Subrange repair: token ranges are split into segments repaired concurrently on distinct replica sets,
+     * each segment being coordinated by a replica of the datacenter.
+     */
     @Override
-    protected Completable doTask(final DataCenter dc, final DataCenterStatus dataCenterStatus, final Task task, Iterable<V1Pod> pods) throws ApiException {
+    protected Completable doTask(final DataCenter dc, final DataCenterStatus dataCenterStatus, final Task task, Iterable<V1Pod> pods) throws Exception {
         final RepairTaskSpec repairTaskSpec = task.getSpec().getRepair();
-        return Observable.zip(Observable.fromIterable(pods), Observable.interval(repairTaskSpec.getWaitIntervalInSec(), TimeUnit.SECONDS), (pod, timer) -> pod)
-                .subscribeOn(Schedulers.io())
-                .flatMapSingle(pod -> jmxmpElassandraProxy.repair(ElassandraPod.fromV1Pod(pod), task.getSpec().getRepair().getKeyspace())
-                        .toSingleDefault(pod)
-                        .map(p -> {
-                            // update pod status in memory (no etcd update)
-                            task.getStatus().getPods().put(p.getMetadata().getName(), TaskPhase.SUCCEED);
-                            logger.debug("datacenter={} task={} repair pod={} done", dc.id(), task.id(), p.getMetadata().getName());
-                            return p;
-                        })
-                        .ignoreElement()
-                        .onErrorResumeNext(throwable -> {
-                            logger.error("Error while executing repair on pod={}", pod, throwable);
-                            task.getStatus().setLastMessage(throwable.getMessage());
-                            task.getStatus().getPods().put(pod.getMetadata().getName(), TaskPhase.FAILED);
-                            return Completable.complete();
-                        })
-                        .toSingleDefault(pod))
-                .toList()
-                .flatMapCompletable(list -> finalizeTaskStatus(dc, dataCenterStatus, task, TaskPhase.SUCCEED, "repair"));
+        final Map<String, String> localEndpoints = new HashMap<>();
+        final Map<String, ElassandraPod> podsByName = new HashMap<>();
+        for (V1Pod pod : pods) {
+            if (pod.getStatus() != null && "Running".equals(pod.getStatus().getPhase()) && pod.getStatus().getPodIP() != null) {
+                localEndpoints.put(pod.getStatus().getPodIP(), pod.getMetadata().getName());
+                podsByName.put(pod.getMetadata().getName(), ElassandraPod.fromV1Pod(pod));
+            }
+        }
+        if (podsByName.isEmpty()) {
+            task.getStatus().setLastMessage("No running pod to repair");
+            return finalizeTaskStatus(dc, dataCenterStatus, task, TaskPhase.FAILED, "repair");
+        }
+
+        final int segmentsPerRange = Optional.ofNullable(repairTaskSpec.getSegmentsPerRange()).orElse(operatorConfig.getRepairSegmentsPerRange());
+        final int concurrency = Math.max(1, Optional.ofNullable(repairTaskSpec.getConcurrency()).orElse(operatorConfig.getRepairConcurrency()));
+        return jmxmpElassandraProxy.rangeToEndpoints(podsByName.values().iterator().next(), repairTaskSpec.getKeyspace())
+                .map(rangeToEndpoints -> RepairSegmentPlan.plan(rangeToEndpoints, localEndpoints, segmentsPerRange, operatorConfig.getRepairSegmentMaxAttempts()))
+                .flatMapCompletable(plan -> {
+                    logger.info("datacenter={} task={} repairing segments={} concurrency={}", dc.id(), task.id(), plan.getTotal(), concurrency);
+                    final long startTime = System.currentTimeMillis();
+                    final AtomicLong lastProgress = new AtomicLong(startTime);
+                    final List<Meter> meters = registerGauges(task, plan, startTime, lastProgress);
+                    final List<Completable> workers = new ArrayList<>(concurrency);
+                    for (int i = 0; i < concurrency; i++)
+                        workers.add(worker(dc, task, plan, podsByName, lastProgress));
+                    return Completable.merge(workers)
+                            .doFinally(() -> meters.forEach(meterRegistry::remove))
+                            .andThen(Completable.defer(() -> {
+                                taskStatusPatcher.cancel(task);
+                                updateTaskStatus(task, plan, true);
+                                if (plan.getFailed() > 0) {
+                                    task.getStatus().setLastMessage("Repair failed for " + plan.getFailed() + " segments: " + plan.getFailedSegments().stream()
+                                            .map(segment -> segment.getKeyspace() + ":" + segment.range())
+                                            .collect(Collectors.joining(",")));
+                                    return finalizeTaskStatus(dc, dataCenterStatus, task, TaskPhase.FAILED, "repair");
+                                }
+                                return finalizeTaskStatus(dc, dataCenterStatus, task, TaskPhase.SUCCEED, "repair");
+                            }));
+                });
+    }
+
+    /**
+     * Repair the next available segments until the plan is finished. A failed segment keeps its replicas busy
+     * for waitIntervalInSec before being retried.
+     */
+    Completable worker(final DataCenter dc, final Task task, final RepairSegmentPlan plan, final Map<String, ElassandraPod> podsByName, final AtomicLong lastProgress) {
+        final long retryDelayInSec = Optional.ofNullable(task.getSpec().getRepair().getWaitIntervalInSec()).orElse(10L);
+        return Completable.defer(() -> {
+            final Optional<RepairSegmentPlan.Segment> next = plan.next();
+            if (!next.isPresent())
+                return plan.isFinished() ? Completable.complete() : Completable.timer(1, TimeUnit.SECONDS);
+
+            final RepairSegmentPlan.Segment segment = next.get();
+            final ElassandraPod pod = podsByName.get(segment.getCoordinator());
+            logger.debug("datacenter={} task={} repair keyspace={} range={} pod={} attempt={}",
+                    dc.id(), task.id(), segment.getKeyspace(), segment.range(), pod.getName(), segment.getAttempts());
+            return jmxmpElassandraProxy.repairRange(pod, segment.getKeyspace(), segment.range())
+                    .subscribeOn(Schedulers.io())
+                    .doOnComplete(() -> plan.succeed(segment))
+                    .onErrorResumeNext(t -> Completable.timer(retryDelayInSec, TimeUnit.SECONDS).andThen(Completable.fromAction(() -> {
+                        if (plan.fail(segment)) {
+                            logger.warn("datacenter={} task={} repair keyspace={} range={} pod={} failed, retrying: {}",
+                                    dc.id(), task.id(), segment.getKeyspace(), segment.range(), pod.getName(), t.toString());
+                        } else {
+                            logger.error("datacenter={} task={} repair keyspace={} range={} pod={} failed after {} attempts:",
+                                    dc.id(), task.id(), segment.getKeyspace(), segment.range(), pod.getName(), segment.getAttempts(), t);
+                            synchronized (task) {
+                                task.getStatus().setLastMessage(t.getMessage());
+                            }
+                        }
+                    })))
+                    .doFinally(() -> {
+                        lastProgress.set(System.currentTimeMillis());
+                        updateTaskStatus(task, plan, false);
+                        taskStatusPatcher.patch(task);
+                    });
+        }).repeatUntil(plan::isFinished);
+    }
+
+    /**
+     * Update the per pod repair status in memory, pods coordinating a failed segment are failed once done.
+     */
+    void updateTaskStatus(final Task task, final RepairSegmentPlan plan, final boolean done) {
+        final SortedMap<String, RepairSegmentPlan.PodStats> podStats = plan.getPodStats();
+        // concurrent workers update the same task status
+        synchronized (task) {
+            updateTaskStatus(task, podStats, done);
+        }
+    }
+
+    private void updateTaskStatus(final Task task, final SortedMap<String, RepairSegmentPlan.PodStats> podStats, final boolean done) {
+        for (Map.Entry<String, RepairSegmentPlan.PodStats> e : podStats.entrySet()) {
+            final RepairSegmentPlan.PodStats stats = e.getValue();
+            final boolean podDone = done || stats.getCompleted() + stats.getFailed() == stats.getTotal();
+            final TaskPhase phase = !podDone ? TaskPhase.RUNNING : (stats.getFailed() > 0 ? TaskPhase.FAILED : TaskPhase.SUCCEED);
+            task.getStatus().getRepairs().put(e.getKey(), new RepairStatus()
+                    .setPhase(phase)
+                    .setSegmentsTotal(stats.getTotal())
+                    .setSegmentsCompleted(stats.getCompleted())
+                    .setSegmentsFailed(stats.getFailed())
+                    .setProgressPercent(stats.getTotal() == 0 ? 100 : (stats.getCompleted() + stats.getFailed()) * 100 / stats.getTotal())
+                    .setLastProgressDate(new Date()));
+            if (podDone)
+                task.getStatus().getPods().put(e.getKey(), phase);
+        }
+        if (done) {
+            // pods coordinating no segment
+            task.getStatus().getPods().replaceAll((pod, phase) -> TaskPhase.WAITING.equals(phase) ? TaskPhase.SUCCEED : phase);
+        }
+    }
+
+    private List<Meter> registerGauges(final Task task, final RepairSegmentPlan plan, final long startTime, final AtomicLong lastProgress) {
+        final Tags tags = Tags.of("namespace", task.getMetadata().getNamespace(), "task", task.getMetadata().getName());
+        final List<Meter> meters = new ArrayList<>();
+        meters.add(gauge("repair.progress", tags, plan, RepairSegmentPlan::percentage));
+        meters.add(gauge("repair.segments.completed", tags, plan, RepairSegmentPlan::getCompleted));
+        meters.add(gauge("repair.segments.failed", tags, plan, RepairSegmentPlan::getFailed));
+        meters.add(gauge("repair.segments.running", tags, plan, RepairSegmentPlan::getRunning));
+        meters.add(gauge("repair.remaining.seconds", tags, plan, p -> {
+            double percentage = p.percentage();
+            return percentage <= 0.0 ? -1.0 : (System.currentTimeMillis() - startTime) * (100.0 - percentage) / percentage / 1000.0;
+        }));
+        meters.add(gauge("repair.idle.seconds", tags, lastProgress, t -> (System.currentTimeMillis() - t.get()) / 1000.0));
+        return meters;
+    }
+
+    private <T> Meter gauge(String name, Tags tags, T state, ToDoubleFunction<T> f) {
+        return Gauge.builder(name, state, f)
+                .tags(tags)
+                .register(meterRegistry);
     }
 
-    // repair PR on all available nodes
+    // repair all available nodes
     @Override
     public Single<List<V1Pod>> init(Task task, DataCenter dc) {
         return listAllDcPods(task, dc).map(pods -> initTaskStatusPodMap(task, pods));
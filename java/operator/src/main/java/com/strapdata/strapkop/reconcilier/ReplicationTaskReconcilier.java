@@ -26,12 +26,15 @@ import com.strapdata.strapkop.cql.CqlRoleManager;
 import com.strapdata.strapkop.cql.CqlSessionHandler;
 import com.strapdata.strapkop.k8s.ElassandraPod;
 import com.strapdata.strapkop.k8s.K8sResourceUtils;
+import com.strapdata.strapkop.k8s.TaskStatusPatcher;
 import com.strapdata.strapkop.model.k8s.datacenter.DataCenter;
 import com.strapdata.strapkop.model.k8s.datacenter.DataCenterStatus;
 import com.strapdata.strapkop.model.k8s.task.ReplicationTaskSpec;
+import com.strapdata.strapkop.model.k8s.task.StreamStatus;
 import com.strapdata.strapkop.model.k8s.task.Task;
 import com.strapdata.strapkop.model.k8s.task.TaskPhase;
 import com.strapdata.strapkop.sidecar.JmxmpElassandraProxy;
+import com.strapdata.strapkop.sidecar.StreamingProgress;
 import io.kubernetes.client.informer.SharedInformerFactory;
 import io.kubernetes.client.openapi.ApiException;
 import io.kubernetes.client.openapi.apis.CustomObjectsApi;
@@ -49,10 +52,9 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Update replication map.
@@ -66,12 +68,14 @@ public class ReplicationTaskReconcilier extends TaskReconcilier {
     private final CqlRoleManager cqlRoleManager;
     private final CqlKeyspaceManager cqlKeyspaceManager;
     private final JmxmpElassandraProxy jmxmpElassandraProxy;
+    private final TaskStatusPatcher taskStatusPatcher;
 
     public ReplicationTaskReconcilier(ReconcilierObserver reconcilierObserver,
                                       final OperatorConfig operatorConfig,
                                       final K8sResourceUtils k8sResourceUtils,
                                       final CustomObjectsApi customObjectsApi,
                                       final JmxmpElassandraProxy jmxmpElassandraProxy,
+                                      final TaskStatusPatcher taskStatusPatcher,
                                       final ApplicationContext context,
                                       final CqlRoleManager cqlRoleManager,
                                       final CqlKeyspaceManager cqlKeyspaceManager,
@@ -87,10 +91,12 @@ public class ReplicationTaskReconcilier extends TaskReconcilier {
         this.cqlRoleManager = cqlRoleManager;
         this.cqlKeyspaceManager = cqlKeyspaceManager;
         this.jmxmpElassandraProxy = jmxmpElassandraProxy;
+        this.taskStatusPatcher = taskStatusPatcher;
     }
 
     /**
-     * Remove a datacenter from C* replication map
+     * Add or remove one or more datacenters to/from the C* replication map, in a single schema change.
+     * When adding with rebuild enabled, target datacenters managed by this operator are rebuilt concurrently.
      *
      * @param task
      * @param dc
@@ -100,26 +106,32 @@ public class ReplicationTaskReconcilier extends TaskReconcilier {
     @Override
     protected Completable doTask(final DataCenter dc, final DataCenterStatus dataCenterStatus, final Task task, Iterable<V1Pod> pods) throws Exception {
         final ReplicationTaskSpec replicationTaskSpec = task.getSpec().getReplication();
+        final Map<String, Integer> targetDcSizes = replicationTaskSpec.targetDcSizes();
 
-        if (Strings.isNullOrEmpty(replicationTaskSpec.getDcName())) {
-            logger.error("datacenter={} task={} dcName not set, ignoring task", dc.id(), task.id());
+        if (targetDcSizes.isEmpty()) {
+            logger.error("datacenter={} task={} dcName or dcSizes not set, ignoring task", dc.id(), task.id());
             return finalizeTaskStatus(dc, dataCenterStatus, task, TaskPhase.SUCCEED,
                     replicationTaskSpec.getAction().equals(ReplicationTaskSpec.Action.ADD) ? "replicationAdd" : "replicationRemove");
         }
 
-        final CqlSessionHandler cqlSessionHandler = context.createBean(CqlSessionHandler.class, this.cqlRoleManager);
+        final CqlSessionHandler cqlSessionHandler = context.createBean(CqlSessionHandler.class);
         switch (replicationTaskSpec.getAction()) {
             case ADD: {
                 final Map<String, Integer> replicationMap = new HashMap<>();
-                replicationMap.putAll(replicationTaskSpec.getReplicationMap());
+                if (replicationTaskSpec.getReplicationMap() != null)
+                    replicationMap.putAll(replicationTaskSpec.getReplicationMap());
                 for (CqlKeyspace systemKs : CqlKeyspaceManager.SYSTEM_KEYSPACES)
                     replicationMap.putIfAbsent(systemKs.getName(), systemKs.getRf());
 
-                // add replication for these keyspaces
-                Completable todo = Completable.complete();
+                // target RF of each keyspace in each added DC, bounded by the DC size
+                final Map<String, Map<String, Integer>> targetRfMaps = new HashMap<>();
                 for (Map.Entry<String, Integer> entry : replicationMap.entrySet()) {
-                    todo = todo.andThen(this.cqlKeyspaceManager.updateKeyspaceReplicationMap(dc, dataCenterStatus, replicationTaskSpec.getDcName(), entry.getKey(), Math.min(entry.getValue(), replicationTaskSpec.getDcSize()), cqlSessionHandler, false));
+                    final Map<String, Integer> dcRfs = new HashMap<>();
+                    for (Map.Entry<String, Integer> dcSize : targetDcSizes.entrySet())
+                        dcRfs.put(dcSize.getKey(), Math.min(entry.getValue(), dcSize.getValue()));
+                    targetRfMaps.put(entry.getKey(), dcRfs);
                 }
+                Completable todo = this.cqlKeyspaceManager.updateReplicationMaps(dc, dataCenterStatus, targetRfMaps, cqlSessionHandler);
 
                 // flush sstables in parallel to stream properly
                 List<CompletableSource> fulshCompletables = new ArrayList<>();
@@ -132,26 +144,34 @@ public class ReplicationTaskReconcilier extends TaskReconcilier {
                                 return t;
                             })
                             .ignoreElement()
+                            .doOnError(t -> task.getStatus().getPods().put(v1Pod.getMetadata().getName(), TaskPhase.FAILED))
                     );
                 }
-                return todo.andThen(Completable.mergeArray(fulshCompletables.toArray(new CompletableSource[fulshCompletables.size()]))
-                                .toSingleDefault(TaskPhase.SUCCEED)
-                                .flatMapCompletable(phase -> finalizeTaskStatus(dc, dataCenterStatus, task, TaskPhase.SUCCEED, "replicationAdd"))
-                                .onErrorResumeNext(throwable -> {
-                                    logger.error("datacenter={} task={} add replication failed, error={}",
-                                            dc.id(), task.id(), replicationTaskSpec.getDcName(), throwable.getMessage());
-                                    task.getStatus().setLastMessage(throwable.getMessage());
-                                    return finalizeTaskStatus(dc, dataCenterStatus, task, TaskPhase.FAILED, "replicationAdd");
-                                }))
+                todo = todo.andThen(Completable.mergeArrayDelayError(fulshCompletables.toArray(new CompletableSource[fulshCompletables.size()])));
+
+                if (Boolean.TRUE.equals(replicationTaskSpec.getRebuild()))
+                    todo = todo.andThen(rebuildDatacenters(dc, task, targetDcSizes.keySet(),
+                            Strings.isNullOrEmpty(replicationTaskSpec.getSrcDcName()) ? dc.getSpec().getDatacenterName() : replicationTaskSpec.getSrcDcName()))
+                            // no progress write after the final task status
+                            .doOnTerminate(() -> taskStatusPatcher.cancel(task));
+
+                return todo.toSingleDefault(TaskPhase.SUCCEED)
+                        .flatMapCompletable(phase -> finalizeTaskStatus(dc, dataCenterStatus, task, TaskPhase.SUCCEED, "replicationAdd"))
+                        .onErrorResumeNext(throwable -> {
+                            logger.error("datacenter={} task={} add replication for dcs={} failed, error={}",
+                                    dc.id(), task.id(), targetDcSizes.keySet(), throwable.getMessage());
+                            task.getStatus().setLastMessage(throwable.getMessage());
+                            return finalizeTaskStatus(dc, dataCenterStatus, task, TaskPhase.FAILED, "replicationAdd");
+                        })
                         .doFinally(() -> cqlSessionHandler.close());
             }
             case REMOVE: {
-                return this.cqlKeyspaceManager.removeDcFromReplicationMap(dc, dataCenterStatus, replicationTaskSpec.getDcName(), cqlSessionHandler)
+                return this.cqlKeyspaceManager.removeDcsFromReplicationMap(dc, dataCenterStatus, targetDcSizes.keySet(), cqlSessionHandler)
                         .toSingleDefault(TaskPhase.SUCCEED)
                         .flatMapCompletable(phase -> finalizeTaskStatus(dc, dataCenterStatus, task, TaskPhase.SUCCEED, "replicationRemove"))
                         .onErrorResumeNext(throwable -> {
-                            logger.error("datacenter={} task={} remove replication failed, error={}",
-                                    dc.id(), task.id(), replicationTaskSpec.getDcName(), throwable.getMessage());
+                            logger.error("datacenter={} task={} remove replication for dcs={} failed, error={}",
+                                    dc.id(), task.id(), targetDcSizes.keySet(), throwable.getMessage());
                             task.getStatus().setLastMessage(throwable.getMessage());
                             return finalizeTaskStatus(dc, dataCenterStatus, task, TaskPhase.FAILED, "replicationRemove");
                         })
@@ -162,6 +182,90 @@ public class ReplicationTaskReconcilier extends TaskReconcilier {
         throw new IllegalArgumentException("Unknwon action");
     }
 
+    /**
+     * Rebuild the target datacenters managed by this operator concurrently, all pods of each datacenter in parallel.
+     * Streaming progress is aggregated per datacenter into the task status, written at most once per taskStatusUpdateIntervalInSec,
+     * and the task status is updated when a datacenter completes.
+     * Datacenters not managed by this operator must be rebuilt by a rebuild task in their own namespace.
+     */
+    Completable rebuildDatacenters(final DataCenter dc, final Task task, final Collection<String> targetDcNames, final String srcDcName) {
+        List<CompletableSource> dcCompletables = new ArrayList<>();
+        for (String targetDcName : targetDcNames) {
+            if (targetDcName.equals(srcDcName))
+                continue;
+            final Optional<DataCenter> targetDc = findManagedDatacenter(dc, targetDcName);
+            if (!targetDc.isPresent()) {
+                logger.warn("datacenter={} task={} dc={} not managed in namespace={}, a rebuild task from dc={} is required",
+                        dc.id(), task.id(), targetDcName, dc.getMetadata().getNamespace(), srcDcName);
+                continue;
+            }
+            task.getStatus().getStreams().put(targetDcName, new StreamStatus());
+            dcCompletables.add(getElassandraRunningPods(targetDc.get())
+                    .flatMapCompletable(dcPods -> rebuildDatacenter(task, targetDcName, srcDcName, dcPods))
+                    .andThen(Completable.defer(() -> {
+                        task.getStatus().getStreams().get(targetDcName).setPhase(TaskPhase.SUCCEED);
+                        logger.info("datacenter={} task={} dc={} rebuilt from dc={}", dc.id(), task.id(), targetDcName, srcDcName);
+                        // the datacenter is rebuilt, a failed status update must not fail it
+                        return k8sResourceUtils.updateTaskStatus(task).ignoreElement()
+                                .doOnError(t -> logger.warn("datacenter={} task={} dc={} status update failed, error={}", dc.id(), task.id(), targetDcName, t.toString()))
+                                .onErrorComplete();
+                    }))
+                    .onErrorResumeNext(t -> {
+                        logger.error("datacenter={} task={} dc={} rebuild from dc={} failed, error={}", dc.id(), task.id(), targetDcName, srcDcName, t.toString());
+                        task.getStatus().getStreams().get(targetDcName).setPhase(TaskPhase.FAILED);
+                        return k8sResourceUtils.updateTaskStatus(task).ignoreElement().onErrorComplete()
+                                .andThen(Completable.error(t));
+                    }));
+        }
+        // rebuild all datacenters even if one fails, the first error fails the task
+        return Completable.mergeDelayError(dcCompletables);
+    }
+
+    Completable rebuildDatacenter(final Task task, final String targetDcName, final String srcDcName, final List<V1Pod> dcPods) throws Exception {
+        final StreamStatus streamStatus = task.getStatus().getStreams().get(targetDcName);
+        final Map<String, StreamingProgress> podProgress = new ConcurrentHashMap<>();
+        final AtomicLong lastUpdate = new AtomicLong(System.currentTimeMillis());
+        streamStatus.setPhase(TaskPhase.RUNNING);
+        streamStatus.setPods(dcPods.size());
+
+        List<CompletableSource> podCompletables = new ArrayList<>(dcPods.size());
+        for (V1Pod v1Pod : dcPods) {
+            final ElassandraPod pod = ElassandraPod.fromV1Pod(v1Pod);
+            podCompletables.add(jmxmpElassandraProxy.rebuild(pod, srcDcName, null, operatorConfig.getStreamingProgressIntervalInSec(), progress -> {
+                podProgress.put(pod.getName(), progress);
+                synchronized (streamStatus) {
+                    long rxBytes = podProgress.values().stream().mapToLong(StreamingProgress::getCurrentRxBytes).sum();
+                    long now = System.currentTimeMillis();
+                    long elapsedMs = now - lastUpdate.getAndSet(now);
+                    if (elapsedMs > 0 && rxBytes >= streamStatus.getRxBytes())
+                        streamStatus.setThroughputBytesPerSec((rxBytes - streamStatus.getRxBytes()) * 1000 / elapsedMs);
+                    streamStatus.setRxBytes(rxBytes);
+                    streamStatus.setTotalRxBytes(podProgress.values().stream().mapToLong(StreamingProgress::getTotalRxBytes).sum());
+                }
+                logger.debug("task={} dc={} pod={} streamStatus={}", task.id(), targetDcName, pod.id(), streamStatus);
+                taskStatusPatcher.patch(task);
+            }).doOnError(t -> {
+                logger.warn("task={} dc={} pod={} rebuild failed, error={}", task.id(), targetDcName, pod.id(), t.toString());
+                synchronized (streamStatus) {
+                    streamStatus.getFailedPods().add(pod.getName());
+                    streamStatus.setPhase(TaskPhase.FAILED);
+                }
+            }));
+        }
+        // let the other pods complete their rebuild when one fails
+        return Completable.mergeDelayError(podCompletables);
+    }
+
+    Optional<DataCenter> findManagedDatacenter(final DataCenter dc, final String datacenterName) {
+        for (DataCenter other : sharedInformerFactory.getExistingSharedIndexInformer(DataCenter.class).getIndexer().list()) {
+            if (other.getMetadata().getNamespace().equals(dc.getMetadata().getNamespace()) &&
+                    other.getSpec().getClusterName().equals(dc.getSpec().getClusterName()) &&
+                    other.getSpec().getDatacenterName().equals(datacenterName))
+                return Optional.of(other);
+        }
+        return Optional.empty();
+    }
+
     @Override
     public Single<List<V1Pod>> init(Task task, DataCenter dc) {
         return listAllDcPods(task, dc).map(pods -> initTaskStatusPodMap(task, pods));
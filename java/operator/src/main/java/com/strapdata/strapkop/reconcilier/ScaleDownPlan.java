@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.reconcilier;
+
+import lombok.Data;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Compute the whole scale-down layout of a datacenter up front.
+ *
+ * Nodes are removed from the racks having the most replicas first (the last pod of a statefulset is always removed first),
+ * and removals are grouped in waves where each wave contains at most one pod per rack and at most maxParallelism pods.
+ * Pods of a wave can be decommissioned concurrently because rack-aware replica placement never puts two replicas
+ * of a token range in the same rack.
+ */
+@Data
+public class ScaleDownPlan {
+
+    /**
+     * A pod to decommission, identified by its zone (rack) name and its statefulset ordinal.
+     */
+    @Data
+    public static class Step {
+        final String zone;
+        final int ordinal;
+    }
+
+    /**
+     * Target replicas per zone once the plan is completed.
+     */
+    final SortedMap<String, Integer> targetReplicas;
+
+    /**
+     * Ordered waves of concurrent decommissions.
+     */
+    final List<List<Step>> waves;
+
+    public static ScaleDownPlan plan(final SortedMap<String, Integer> currentReplicas, final int targetTotal, final int maxParallelism) {
+        final SortedMap<String, Integer> target = new TreeMap<>(currentReplicas);
+        final Map<String, Deque<Step>> stepsByZone = new HashMap<>();
+        int total = target.values().stream().mapToInt(Integer::intValue).sum();
+
+        // largest rack first, lexically last zone name in case of equality
+        final Comparator<Map.Entry<String, Integer>> largestRack = Comparator
+                .comparingInt((Map.Entry<String, Integer> e) -> e.getValue())
+                .thenComparing(Map.Entry::getKey);
+        while (total > Math.max(0, targetTotal)) {
+            Map.Entry<String, Integer> zone = target.entrySet().stream().max(largestRack).get();
+            int ordinal = zone.getValue() - 1;
+            stepsByZone.computeIfAbsent(zone.getKey(), k -> new ArrayDeque<>()).add(new Step(zone.getKey(), ordinal));
+            target.put(zone.getKey(), ordinal);
+            total--;
+        }
+
+        final List<List<Step>> waves = new ArrayList<>();
+        final int parallelism = Math.max(1, maxParallelism);
+        while (!stepsByZone.isEmpty()) {
+            List<String> zones = stepsByZone.entrySet().stream()
+                    .sorted(Comparator.comparingInt((Map.Entry<String, Deque<Step>> e) -> e.getValue().size())
+                            .thenComparing(Map.Entry::getKey)
+                            .reversed())
+                    .limit(parallelism)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+            List<Step> wave = new ArrayList<>(zones.size());
+            for (String zone : zones) {
+                Deque<Step> steps = stepsByZone.get(zone);
+                wave.add(steps.poll());
+                if (steps.isEmpty())
+                    stepsByZone.remove(zone);
+            }
+            waves.add(wave);
+        }
+        return new ScaleDownPlan(target, waves);
+    }
+
+    public int targetTotal() {
+        return targetReplicas.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    public boolean isEmpty() {
+        return waves.isEmpty();
+    }
+}
@@ -17,25 +17,11 @@
 
 package com.strapdata.strapkop.sidecar;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.strapdata.strapkop.cql.CqlRole;
 import com.strapdata.strapkop.model.sidecar.BackupResponse;
 import com.strapdata.strapkop.model.sidecar.StatusResponse;
-import io.micronaut.core.annotation.AnnotationMetadataResolver;
-import io.micronaut.core.io.ResourceResolver;
 import io.micronaut.http.MutableHttpRequest;
-import io.micronaut.http.client.DefaultHttpClient;
-import io.micronaut.http.client.HttpClientConfiguration;
-import io.micronaut.http.client.LoadBalancer;
 import io.micronaut.http.client.RxHttpClient;
-import io.micronaut.http.codec.MediaTypeCodecRegistry;
-import io.micronaut.jackson.ObjectMapperFactory;
-import io.micronaut.jackson.codec.JsonMediaTypeCodec;
-import io.micronaut.jackson.codec.JsonStreamMediaTypeCodec;
-import io.micronaut.runtime.ApplicationConfiguration;
-import io.netty.channel.MultithreadEventLoopGroup;
-import io.netty.handler.ssl.SslContext;
-import io.netty.util.concurrent.DefaultThreadFactory;
 import io.reactivex.Completable;
 import io.reactivex.Single;
 import org.slf4j.Logger;
@@ -46,6 +32,7 @@ import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLEncoder;
 import java.util.List;
+import java.util.function.Supplier;
 
 import static io.micronaut.http.HttpRequest.GET;
 import static io.micronaut.http.HttpRequest.POST;
@@ -53,35 +40,32 @@ import static io.micronaut.http.HttpRequest.POST;
 /**
  * Currently @Client annotation advice that generates the client code from an interface is totally static and cannot
  * be used to configure client with dynamic urls. See {@link io.micronaut.http.client.interceptor.HttpClientIntroductionAdvice}
+ *
+ * Sidecar client of a pod, sharing the micronaut client and connections of its cluster (see {@link SidecarHttpClientPool}).
  */
 public class HttpClient {
 
     static final Logger logger = LoggerFactory.getLogger(HttpClient.class);
 
-    private RxHttpClient httpClient;
-    private CqlRole cqlRole;
-
-    public HttpClient(URL url,
-                      HttpClientConfiguration httpClientConfiguration,
-                      SslContext sslContext,
-                      CqlRole cqlRole) {
-        this.httpClient = new DefaultHttpClient(LoadBalancer.fixed(url),
-                httpClientConfiguration,
-                null,
-                new DefaultThreadFactory(MultithreadEventLoopGroup.class),
-                new HttpNettyClientSslBuilder(new ResourceResolver(), sslContext),
-                createDefaultMediaTypeRegistry(),
-                AnnotationMetadataResolver.DEFAULT);
+    private final Single<RxHttpClient> httpClient;
+    private final String baseUrl;
+    private final CqlRole cqlRole;
+    private volatile boolean closed = false;
+
+    /**
+     * @param sharedClient called on each request, so that a failed or invalidated shared client is created again.
+     */
+    public HttpClient(Supplier<Single<RxHttpClient>> sharedClient, URL url, CqlRole cqlRole) {
+        this.httpClient = Single.defer(sharedClient::get);
+        this.baseUrl = url.toString();
         this.cqlRole = cqlRole;
     }
 
-    private static MediaTypeCodecRegistry createDefaultMediaTypeRegistry() {
-        ObjectMapper objectMapper = new ObjectMapperFactory().objectMapper(null, null);
-        ApplicationConfiguration applicationConfiguration = new ApplicationConfiguration();
-        return MediaTypeCodecRegistry.of(
-                new JsonMediaTypeCodec(objectMapper, applicationConfiguration, null),
-                new JsonStreamMediaTypeCodec(objectMapper, applicationConfiguration, null)
-        );
+    /**
+     * The shared client has no load balancer, requests are sent to absolute URIs.
+     */
+    String uri(String path) {
+        return baseUrl + (path.startsWith("/") ? path : "/" + path);
     }
 
     /**
@@ -98,11 +82,11 @@ public class HttpClient {
     }
 
     public Single<StatusResponse> status() {
-        return httpClient.retrieve(auth(GET("_nodetool/status")), StatusResponse.class).singleOrError();
+        return httpClient.flatMap(client -> client.retrieve(auth(GET(uri("_nodetool/status"))), StatusResponse.class).singleOrError());
     }
 
     public Completable decommission() {
-        return httpClient.exchange(auth(POST("_nodetool/decommission", ""))).ignoreElements();
+        return httpClient.flatMapCompletable(client -> client.exchange(auth(POST(uri("_nodetool/decommission"), ""))).ignoreElements());
     }
 
     public Completable remove(@Nullable  String dcName, String... hostIds) throws UnsupportedEncodingException {
@@ -116,57 +100,61 @@ public class HttpClient {
                 first = false;
             }
         }
-        return httpClient.exchange(auth(POST("_nodetool/remove" + qs, ""))).ignoreElements();
+        final String path = "_nodetool/remove" + qs;
+        return httpClient.flatMapCompletable(client -> client.exchange(auth(POST(uri(path), ""))).ignoreElements());
     }
 
     public Completable cleanup(@Nullable String keyspace) throws UnsupportedEncodingException {
         String qs = (keyspace == null) ? "" : "?keyspace=" + URLEncoder.encode(keyspace,"UTF-8");
-        return httpClient.exchange(auth(POST("_nodetool/cleanup" +qs, ""))).ignoreElements();
+        return httpClient.flatMapCompletable(client -> client.exchange(auth(POST(uri("_nodetool/cleanup" +qs), ""))).ignoreElements());
     }
 
     public Completable rebuild(String sourceDcName, @Nullable String keyspace) throws UnsupportedEncodingException {
         String qs = (keyspace == null) ? "" : "?keyspace=" + URLEncoder.encode(keyspace,"UTF-8");
-        return httpClient.exchange(auth(POST("_nodetool/rebuild/"+sourceDcName+ qs, ""))).ignoreElements();
+        return httpClient.flatMapCompletable(client -> client.exchange(auth(POST(uri("_nodetool/rebuild/"+sourceDcName+ qs), ""))).ignoreElements());
     }
 
     public Completable flush(@Nullable String keyspace) throws UnsupportedEncodingException {
         String qs = (keyspace == null) ? "" : "?keyspace=" + URLEncoder.encode(keyspace,"UTF-8");
-        return httpClient.exchange(auth(POST("_nodetool/flush" + qs, ""))).ignoreElements();
+        return httpClient.flatMapCompletable(client -> client.exchange(auth(POST(uri("_nodetool/flush" + qs), ""))).ignoreElements());
     }
 
     public Completable open(@Nullable String indices) throws UnsupportedEncodingException {
         String idx = (indices == null) ? "*" : indices;
-        return httpClient.exchange(auth(POST(idx+"/_open", ""))).ignoreElements();
+        return httpClient.flatMapCompletable(client -> client.exchange(auth(POST(uri(idx+"/_open"), ""))).ignoreElements());
     }
 
     public Completable close(@Nullable String indices) throws UnsupportedEncodingException {
         String idx = (indices == null) ? "*" : indices;
-        return httpClient.exchange(auth(POST(idx + "/_close", ""))).ignoreElements();
+        return httpClient.flatMapCompletable(client -> client.exchange(auth(POST(uri(idx + "/_close"), ""))).ignoreElements());
     }
 
     public Completable updateRouting(@Nullable String indices) throws UnsupportedEncodingException {
         String idx = (indices == null) ? "" : "/" + indices;
-        return httpClient.exchange(auth(POST(idx + "/_updaterouting", ""))).ignoreElements();
+        return httpClient.flatMapCompletable(client -> client.exchange(auth(POST(uri(idx + "/_updaterouting"), ""))).ignoreElements());
     }
 
     public Completable reloadLicense() throws UnsupportedEncodingException {
-        return httpClient.exchange(auth(POST("/_license", ""))).ignoreElements();
+        return httpClient.flatMapCompletable(client -> client.exchange(auth(POST(uri("/_license"), ""))).ignoreElements());
     }
 
     public Completable repairPrimaryRange(@Nullable String keyspace) throws UnsupportedEncodingException {
         String qs = (keyspace == null) ? "" : "?keyspace=" + URLEncoder.encode(keyspace,"UTF-8");
-        return httpClient.exchange(auth(POST("_nodetool/repair" + qs, ""))).ignoreElements();
+        return httpClient.flatMapCompletable(client -> client.exchange(auth(POST(uri("_nodetool/repair" + qs), ""))).ignoreElements());
     }
 
     public Single<BackupResponse> snapshot(String repository, List<String> keyspaces) {
-        return httpClient.retrieve(auth(POST("_nodetool/snapshot", keyspaces)), BackupResponse.class).singleOrError();
+        return httpClient.flatMap(client -> client.retrieve(auth(POST(uri("_nodetool/snapshot"), keyspaces)), BackupResponse.class).singleOrError());
     }
 
     public boolean isRunning() {
-        return httpClient.isRunning();
+        return !closed;
     }
 
+    /**
+     * Release this pod client, pooled connections are kept by the shared client.
+     */
     public void close() {
-        httpClient.close();
+        closed = true;
     }
 }
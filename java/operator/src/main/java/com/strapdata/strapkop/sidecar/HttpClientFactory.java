@@ -17,29 +17,19 @@
 
 package com.strapdata.strapkop.sidecar;
 
-import com.strapdata.strapkop.StrapkopException;
 import com.strapdata.strapkop.cache.HttpConnectionCache;
 import com.strapdata.strapkop.cql.CqlRole;
 import com.strapdata.strapkop.cql.CqlRoleManager;
 import com.strapdata.strapkop.k8s.ElassandraPod;
-import com.strapdata.strapkop.ssl.AuthorityManager;
-import com.strapdata.strapkop.ssl.utils.X509CertificateAndPrivateKey;
-import io.kubernetes.client.openapi.ApiException;
-import io.micronaut.http.client.DefaultHttpClientConfiguration;
+import com.strapdata.strapkop.ssl.SslContextCache;
 import io.netty.handler.ssl.SslContext;
-import io.netty.handler.ssl.SslContextBuilder;
-import io.netty.handler.ssl.SslProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Singleton;
-import javax.net.ssl.SSLException;
-import java.io.ByteArrayInputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.time.Duration;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Callable;
 
 /**
  * This is a sidecar client factory that caches client and reuse it as possible.
@@ -54,42 +44,47 @@ public class HttpClientFactory {
     static final Logger logger = LoggerFactory.getLogger(HttpClientFactory.class);
 
     private final HttpConnectionCache httpConnectionCache;
-    private final AuthorityManager authorityManager;
+    private final SslContextCache sslContextCache;
     private final CqlRoleManager cqlRoleManager;
+    private final SidecarHttpClientPool sidecarHttpClientPool;
 
-    public HttpClientFactory(HttpConnectionCache httpConnectionCache, AuthorityManager authorityManager, CqlRoleManager cqlRoleManager) {
+    public HttpClientFactory(HttpConnectionCache httpConnectionCache, SslContextCache sslContextCache, CqlRoleManager cqlRoleManager,
+                             SidecarHttpClientPool sidecarHttpClientPool) {
         this.httpConnectionCache = httpConnectionCache;
-        this.authorityManager = authorityManager;
+        this.sslContextCache = sslContextCache;
         this.cqlRoleManager = cqlRoleManager;
+        this.sidecarHttpClientPool = sidecarHttpClientPool;
+        // rebuild shared clients with the new CA
+        sslContextCache.addRotationListener((namespace, clusterName) -> {
+            httpConnectionCache.purgeCluster(namespace, clusterName);
+            sidecarHttpClientPool.invalidate(namespace, clusterName);
+        });
     }
 
     /**
-     * Get a sidecar client from cache or create it
+     * Get a sidecar client from cache or create it.
+     *
+     * Lookups are lock-free, and creation only locks the pod entry. Creating a client never blocks: the shared client
+     * of the cluster and its SslContext (which requires loading the CA) are built asynchronously on the first request.
      */
-    public synchronized HttpClient clientForPod(final ElassandraPod pod, CqlRole cqlRole) throws MalformedURLException, InterruptedException, ExecutionException, ApiException, SSLException {
-        HttpClient sidecarClient = httpConnectionCache.get(pod);
+    public HttpClient clientForPod(final ElassandraPod pod, CqlRole cqlRole) throws MalformedURLException {
+        if (pod.isSsl())
+            sslContextCache.checkRotation(pod.getNamespace(), pod.getCluster());
 
+        HttpClient sidecarClient = httpConnectionCache.get(pod);
         if (sidecarClient != null && sidecarClient.isRunning()) {
             logger.debug("hitting sidecar client cache for pod={}", pod.getName());
             return sidecarClient;
         }
 
-        URL url = pod.isSsl() ? new URL("https://" + pod.getFqdn() + ":" + pod.getEsPort()) : new URL("http://" + pod.getFqdn() + ":" + pod.getEsPort());
-        logger.debug("creating sidecar for pod={} in {}/{} url={}", pod.getName(), pod.getDataCenter(), pod.getNamespace(), url.toString());
-        DefaultHttpClientConfiguration httpClientConfiguration = new DefaultHttpClientConfiguration();
-        httpClientConfiguration.setReadTimeout(Duration.ofSeconds(30));
-        sidecarClient = new HttpClient(url, httpClientConfiguration, getSslContext(pod.getNamespace(), pod.getCluster()), cqlRole);
-        httpConnectionCache.put(pod, sidecarClient);
-        return sidecarClient;
-    }
-
-    private SslContext getSslContext(String namespace, String clusterName) throws StrapkopException, ApiException, SSLException, ExecutionException, InterruptedException {
-        X509CertificateAndPrivateKey ca = authorityManager.get(namespace, clusterName);
-        return SslContextBuilder
-                .forClient()
-                .sslProvider(SslProvider.JDK)
-                .trustManager(new ByteArrayInputStream(ca.getCertificateChainAsString().getBytes(StandardCharsets.UTF_8)))
-                .build();
+        final URL url = pod.isSsl() ? new URL("https://" + pod.getFqdn() + ":" + pod.getEsPort()) : new URL("http://" + pod.getFqdn() + ":" + pod.getEsPort());
+        return httpConnectionCache.compute(pod, (k, current) -> {
+            if (current != null && current.isRunning())
+                return current;
+            logger.debug("creating sidecar for pod={} in {}/{} url={}", pod.getName(), pod.getDataCenter(), pod.getNamespace(), url.toString());
+            final Callable<SslContext> sslContextSupplier = pod.isSsl() ? () -> sslContextCache.getNettySslContext(pod.getNamespace(), pod.getCluster()) : null;
+            return new HttpClient(() -> sidecarHttpClientPool.client(pod.getNamespace(), pod.getCluster(), sslContextSupplier), url, cqlRole);
+        });
     }
 
     /**
@@ -27,43 +27,43 @@ import com.strapdata.strapkop.k8s.OperatorNames;
 import com.strapdata.strapkop.model.k8s.datacenter.DataCenter;
 import com.strapdata.strapkop.model.sidecar.ElassandraNodeStatus;
 import com.strapdata.strapkop.reconcilier.DataCenterUpdateAction;
-import com.strapdata.strapkop.ssl.AuthorityManager;
-import com.strapdata.strapkop.ssl.utils.X509CertificateAndPrivateKey;
+import com.strapdata.strapkop.ssl.SslContextCache;
 import io.kubernetes.client.informer.SharedInformerFactory;
-import io.kubernetes.client.openapi.ApiException;
+import io.kubernetes.client.openapi.models.V1Pod;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.micronaut.context.annotation.Infrastructure;
 import io.micronaut.http.uri.UriTemplate;
 import io.reactivex.Completable;
+import io.reactivex.Observable;
 import io.reactivex.Single;
-import io.vavr.Tuple2;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
 import org.apache.cassandra.locator.EndpointSnitchInfoMBean;
 import org.apache.cassandra.service.StorageServiceMBean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
+import javax.management.Attribute;
+import javax.management.InstanceNotFoundException;
 import javax.management.JMX;
 import javax.management.MBeanServerConnection;
 import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
 import javax.management.remote.JMXConnector;
 import javax.management.remote.JMXConnectorFactory;
 import javax.management.remote.JMXServiceURL;
-import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
 import javax.security.auth.callback.NameCallback;
 import javax.security.auth.callback.PasswordCallback;
 import javax.security.auth.callback.UnsupportedCallbackException;
 import java.io.IOException;
 import java.net.MalformedURLException;
-import java.security.GeneralSecurityException;
-import java.security.SecureRandom;
 import java.security.Security;
-import java.security.cert.X509Certificate;
 import java.util.*;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Infrastructure
@@ -75,6 +75,18 @@ public class JmxmpElassandraProxy {
     public static final ObjectName ENDPOINT_SNITCH_INFO_MBEAN_NAME = ObjectNames.create("org.apache.cassandra.db:type=EndpointSnitchInfo");
     public static final ObjectName STORAGE_SERVICE_MBEAN_NAME = ObjectNames.create("org.apache.cassandra.db:type=StorageService");
     public static final ObjectName ELASTIC_NODE_METRICS_MBEAN_NAME = ObjectNames.create("org.elasticsearch.node:type=node");
+    public static final ObjectName STREAM_MANAGER_MBEAN_NAME = ObjectNames.create("org.apache.cassandra.net:type=StreamManager");
+    public static final ObjectName PENDING_COMPACTIONS_MBEAN_NAME = ObjectNames.create("org.apache.cassandra.metrics:type=Compaction,name=PendingTasks");
+
+    /**
+     * Attributes of each MBean read by {@link #nodeSnapshot(ElassandraPod)}
+     */
+    public static final Map<ObjectName, String[]> NODE_SNAPSHOT_ATTRIBUTES = ImmutableMap.of(
+            STORAGE_SERVICE_MBEAN_NAME, new String[] { "OperationMode", "LocalHostId", "Load", "Joined", "GossipRunning", "NativeTransportRunning",
+                    "LiveNodes", "UnreachableNodes", "JoiningNodes", "LeavingNodes" },
+            FAILURE_DETECTOR_MBEAN_NAME, new String[] { "UpEndpointCount", "DownEndpointCount", "SimpleStates" },
+            ENDPOINT_SNITCH_INFO_MBEAN_NAME, new String[] { "Datacenter", "Rack" },
+            ELASTIC_NODE_METRICS_MBEAN_NAME, new String[] { "Status", "SearchEnabled" });
 
     @Inject
     JMXConnectorCache jmxConnectorCache;
@@ -86,14 +98,30 @@ public class JmxmpElassandraProxy {
     K8sResourceUtils k8sResourceUtils;
 
     @Inject
-    AuthorityManager authorityManager;
+    SslContextCache sslContextCache;
 
-    private Single<JMXConnector> getMbeanServerConn(ElassandraPod pod) throws MalformedURLException {
-        JMXConnector jmxConnector = jmxConnectorCache.get(pod);
-        if (jmxConnector != null)
-            return Single.just(jmxConnector);
+    @Inject
+    MeterRegistry meterRegistry;
+
+    @PostConstruct
+    public void init() {
+        // reconnect with the new CA
+        sslContextCache.addRotationListener((namespace, clusterName) -> jmxConnectorCache.purgeCluster(namespace, clusterName));
+    }
 
+    /**
+     * Borrow a pooled connector or connect a new one, to be released with {@link JMXConnectorCache#release}.
+     */
+    private Single<JMXConnectorCache.PooledConnector> getMbeanServerConn(ElassandraPod pod) throws MalformedURLException {
         DataCenter dc = getDataCenter(pod);
+        if (dc != null && dc.getSpec().getCassandra().getSsl())
+            sslContextCache.checkRotation(pod.getNamespace(), pod.getCluster());
+
+        final String podUid = podUid(pod);
+        Optional<JMXConnectorCache.PooledConnector> pooled = jmxConnectorCache.borrow(pod, podUid);
+        if (pooled.isPresent())
+            return Single.just(pooled.get());
+
         Integer jmxPort = 7199;
         if (dc != null && dc.getSpec() != null && dc.getSpec().getJvm() != null && dc.getSpec().getJvm().getJmxPort() != null)
             jmxPort = dc.getSpec().getJvm().getJmxPort();
@@ -112,7 +140,7 @@ public class JmxmpElassandraProxy {
                         env.put("jmx.remote.profiles", "TLS SASL/PLAIN");
                         env.put("jmx.remote.sasl.callback.handler", new UserPasswordCallbackHandler("cassandra", jmxPassword));
 
-                        SSLSocketFactory sslsocketfactory = getSSLContext(pod.getNamespace(), pod.getCluster()).getSocketFactory();
+                        SSLSocketFactory sslsocketfactory = sslContextCache.getSSLContext(pod.getNamespace(), pod.getCluster()).getSocketFactory();
                         env.put("jmx.remote.tls.socket.factory", sslsocketfactory);
                         logger.trace("JMXMP over SSL, ciphersuites={}", Arrays.asList(sslsocketfactory.getDefaultCipherSuites()));
                     }
@@ -130,10 +158,12 @@ public class JmxmpElassandraProxy {
                     });
                 })
                 .map(jc -> (JMXConnector) jc)
-                .map(jc -> {
-                    jmxConnectorCache.put(pod, jc);
-                    return jc;
-                });
+                .map(jc -> jmxConnectorCache.offer(pod, jc, podUid));
+    }
+
+    String podUid(ElassandraPod pod) {
+        V1Pod v1Pod = sharedInformerFactory.getExistingSharedIndexInformer(V1Pod.class).getIndexer().getByKey(pod.getNamespace() + "/" + pod.getName());
+        return v1Pod == null ? null : v1Pod.getMetadata().getUid();
     }
 
     public void invalidateClient(ElassandraPod pod, Throwable t) {
@@ -143,32 +173,7 @@ public class JmxmpElassandraProxy {
         } else {
             logger.debug("Invalidating JMXMP connection pod="+pod.id(), t);
         }
-        JMXConnector jmxConnector = jmxConnectorCache.remove(pod);
-        if (jmxConnector != null) {
-            try {
-                jmxConnector.close();
-            }catch (IOException e){
-            }
-        }
-    }
-
-    private SSLContext getSSLContext(String namespace, String clusterName) throws StrapkopException, ApiException, IOException, ExecutionException, InterruptedException, GeneralSecurityException {
-        X509CertificateAndPrivateKey ca = authorityManager.get(namespace, clusterName);
-        SSLContext context = SSLContext.getInstance("TLS");
-        context.init(null, new TrustManager[] { new JmxmpTrustManager(ca.getCertificate()) }, new SecureRandom());
-        return context;
-    }
-
-    static class JmxmpTrustManager implements X509TrustManager {
-        X509Certificate[] trustedCa;
-        public JmxmpTrustManager(X509Certificate ca) {
-            this.trustedCa = new X509Certificate[] { ca };
-        }
-        public void checkClientTrusted(X509Certificate[] arg0, String arg1){}
-        public void checkServerTrusted(X509Certificate[] arg0, String arg1){}
-        public X509Certificate[] getAcceptedIssuers() {
-            return this.trustedCa;
-        }
+        jmxConnectorCache.invalidate(pod, "error");
     }
 
     DataCenter getDataCenter(ElassandraPod pod) {
@@ -187,42 +192,28 @@ public class JmxmpElassandraProxy {
                 });
     }
 
-    public Single<StorageServiceMBean> storageServiceMBeanProvider(ElassandraPod pod) throws MalformedURLException {
-        return getMbeanServerConn(pod)
-                .map(jmxConnector -> {
-                    logger.debug("storageServiceMBeanProvider pod={}", pod);
-                    MBeanServerConnection mBeanServerConnection = jmxConnector.getMBeanServerConnection();
-                    StorageServiceMBean storageServiceMBean = JMX.newMBeanProxy(mBeanServerConnection, STORAGE_SERVICE_MBEAN_NAME, StorageServiceMBean.class);
-                    logger.debug("storageServiceMBeanProvider storageServiceMBean={}", storageServiceMBean);
-                    return storageServiceMBean;
-                });
+    /**
+     * Run a JMX action with a pooled connector of the pod, the connector is borrowed for the duration of the action.
+     */
+    <T> Single<T> withConnector(ElassandraPod pod, Function<JMXConnector, T> action) {
+        return Single.defer(() -> getMbeanServerConn(pod))
+                .flatMap(pooled -> Single.fromCallable(() -> action.apply(pooled.getConnector()))
+                        .doFinally(() -> jmxConnectorCache.release(pod, pooled)));
     }
 
-    public Single<Tuple2<StorageServiceMBean,JMXConnector>> getMBeanProvider(ElassandraPod pod) throws MalformedURLException {
-        return getMbeanServerConn(pod)
-                .map(jmxConnector -> {
-                    logger.debug("storageServiceMBeanProvider pod={}", pod);
-                    MBeanServerConnection mBeanServerConnection = jmxConnector.getMBeanServerConnection();
-                    StorageServiceMBean storageServiceMBean = JMX.newMBeanProxy(mBeanServerConnection, STORAGE_SERVICE_MBEAN_NAME, StorageServiceMBean.class);
-                    logger.debug("storageServiceMBeanProvider storageServiceMBean={}", storageServiceMBean);
-                    return new Tuple2<>(storageServiceMBean, jmxConnector);
-                });
+    public <T> Single<T> withStorageService(ElassandraPod pod, Function<StorageServiceMBean, T> action) {
+        return withConnector(pod, jmxConnector -> {
+            logger.debug("storageServiceMBeanProvider pod={}", pod);
+            MBeanServerConnection mBeanServerConnection = jmxConnector.getMBeanServerConnection();
+            return action.apply(JMX.newMBeanProxy(mBeanServerConnection, STORAGE_SERVICE_MBEAN_NAME, StorageServiceMBean.class));
+        });
     }
 
-    public Single<EndpointSnitchInfoMBean> endpointSnitchInfoMBean(ElassandraPod pod) throws MalformedURLException {
-        return getMbeanServerConn(pod)
-                .map(jmxConnector -> {
-                    MBeanServerConnection mBeanServerConnection = jmxConnector.getMBeanServerConnection();
-                    return JMX.newMBeanProxy(mBeanServerConnection, ENDPOINT_SNITCH_INFO_MBEAN_NAME, EndpointSnitchInfoMBean.class);
-                });
-    }
-
-    public Single<ElasticNodeMetricsMBean> elasticNodeMetricsMBeanProvider(ElassandraPod pod) throws MalformedURLException {
-        return getMbeanServerConn(pod)
-                .map(jmxConnector -> {
-                    MBeanServerConnection mBeanServerConnection = jmxConnector.getMBeanServerConnection();
-                    return JMX.newMBeanProxy(mBeanServerConnection, ELASTIC_NODE_METRICS_MBEAN_NAME, ElasticNodeMetricsMBean.class);
-                });
+    public <T> Single<T> withElasticNodeMetrics(ElassandraPod pod, Function<ElasticNodeMetricsMBean, T> action) {
+        return withConnector(pod, jmxConnector -> {
+            MBeanServerConnection mBeanServerConnection = jmxConnector.getMBeanServerConnection();
+            return action.apply(JMX.newMBeanProxy(mBeanServerConnection, ELASTIC_NODE_METRICS_MBEAN_NAME, ElasticNodeMetricsMBean.class));
+        });
     }
 
     static class UserPasswordCallbackHandler implements javax.security.auth.callback.CallbackHandler {
@@ -259,8 +250,7 @@ public class JmxmpElassandraProxy {
     }
 
     public Single<ElassandraNodeStatus> status(ElassandraPod pod) throws MalformedURLException {
-        return storageServiceMBeanProvider(pod)
-                .map(storageServiceMBean -> {
+        return withStorageService(pod, storageServiceMBean -> {
                     logger.debug("status pod={}", pod);
                     ElassandraNodeStatus elassandraNodeStatus = ElassandraNodeStatus.valueOf(storageServiceMBean.getOperationMode());
                     logger.debug("elassandraNodeStatus={} pod={}", elassandraNodeStatus, pod.id());
@@ -268,9 +258,55 @@ public class JmxmpElassandraProxy {
                 });
     }
 
+    /**
+     * Collect the node status with one getAttributes round trip per MBean, rather than one round trip per attribute.
+     * The elasticsearch MBean is optional, other errors are propagated.
+     */
+    public Single<NodeSnapshot> nodeSnapshot(ElassandraPod pod) throws MalformedURLException {
+        return withConnector(pod, jmxConnector -> {
+                    final MBeanServerConnection mBeanServerConnection = jmxConnector.getMBeanServerConnection();
+                    final long start = System.nanoTime();
+                    final Map<ObjectName, Map<String, Object>> attributes = new HashMap<>();
+                    String outcome = "success";
+                    try {
+                        for (Map.Entry<ObjectName, String[]> entry : NODE_SNAPSHOT_ATTRIBUTES.entrySet()) {
+                            Map<String, Object> values = getAttributes(mBeanServerConnection, entry.getKey(), entry.getValue());
+                            if (values != null)
+                                attributes.put(entry.getKey(), values);
+                        }
+                    } catch (Exception e) {
+                        outcome = "error";
+                        throw e;
+                    } finally {
+                        meterRegistry.timer("jmx.collect", "mbean", "all", "outcome", outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                    NodeSnapshot snapshot = NodeSnapshot.of(attributes);
+                    logger.trace("pod={} nodeSnapshot={}", pod.id(), snapshot);
+                    return snapshot;
+                });
+    }
+
+    Map<String, Object> getAttributes(MBeanServerConnection mBeanServerConnection, ObjectName objectName, String[] names) throws Exception {
+        final long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            final Map<String, Object> values = new HashMap<>(names.length);
+            for (Attribute attribute : mBeanServerConnection.getAttributes(objectName, names).asList())
+                values.put(attribute.getName(), attribute.getValue());
+            return values;
+        } catch (InstanceNotFoundException e) {
+            outcome = "missing";
+            return null;
+        } catch (Exception e) {
+            outcome = "error";
+            throw e;
+        } finally {
+            meterRegistry.timer("jmx.collect", "mbean", objectName.getKeyProperty("type"), "outcome", outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
     public Completable flush(ElassandraPod pod, String keyspace) throws MalformedURLException {
-        return storageServiceMBeanProvider(pod)
-                .map(storageServiceMBean -> {
+        return withStorageService(pod, storageServiceMBean -> {
                     final List<String> keyspaces = keyspace == null ? storageServiceMBean.getNonLocalStrategyKeyspaces() : ImmutableList.of(keyspace);
                     for (String ks : keyspaces) {
                         storageServiceMBean.forceKeyspaceFlush(ks);
@@ -281,8 +317,7 @@ public class JmxmpElassandraProxy {
     }
 
     public Completable removeNode(ElassandraPod pod, String hostId) throws MalformedURLException {
-        return storageServiceMBeanProvider(pod)
-                .map(storageServiceMBean -> {
+        return withStorageService(pod, storageServiceMBean -> {
                     storageServiceMBean.removeNode(hostId);
                     logger.info("node removed pod={}", pod.id());
                     return storageServiceMBean;
@@ -298,32 +333,32 @@ public class JmxmpElassandraProxy {
     }
 
     public Completable removeDcNodes(ElassandraPod pod, String dcName) throws MalformedURLException {
-        return storageServiceMBeanProvider(pod)
-                .flatMap(storageServiceMBean -> endpointSnitchInfoMBean(pod).map(endpointSnitchInfoMBean -> new Tuple2<>(storageServiceMBean, endpointSnitchInfoMBean)))
-                .flatMapCompletable(tuple -> Completable.create(emitter -> {
+        return withConnector(pod, jmxConnector -> {
+                    MBeanServerConnection mBeanServerConnection = jmxConnector.getMBeanServerConnection();
+                    StorageServiceMBean storageServiceMBean = JMX.newMBeanProxy(mBeanServerConnection, STORAGE_SERVICE_MBEAN_NAME, StorageServiceMBean.class);
+                    EndpointSnitchInfoMBean endpointSnitchInfoMBean = JMX.newMBeanProxy(mBeanServerConnection, ENDPOINT_SNITCH_INFO_MBEAN_NAME, EndpointSnitchInfoMBean.class);
                     try {
-                        Map<String, String> endpointToHostId = tuple._1.getEndpointToHostId();
-                        Set<String> endpoints = tuple._1.getTokenToEndpointMap().values().stream().collect(Collectors.toSet());
+                        Map<String, String> endpointToHostId = storageServiceMBean.getEndpointToHostId();
+                        Set<String> endpoints = storageServiceMBean.getTokenToEndpointMap().values().stream().collect(Collectors.toSet());
                         for (String endpoint : endpoints) {
-                            String dc = tuple._2.getDatacenter(endpoint);
+                            String dc = endpointSnitchInfoMBean.getDatacenter(endpoint);
                             if (dcName.equals(dc)) {
                                 String hostId = endpointToHostId.get(endpoint);
                                 logger.debug("pod={} removing node endpoint={} id={}", pod.id(), endpoint, hostId);
-                                tuple._1.removeNode(hostId);
+                                storageServiceMBean.removeNode(hostId);
                             }
                         }
                         logger.info("nodes of datacenter={} removed from pod={}", dcName, pod.id());
-                        emitter.onComplete();
-                    } catch(Throwable t) {
-                        logger.error("error:", t);
-                        emitter.onError(t);
+                        return storageServiceMBean;
+                    } catch(Exception e) {
+                        logger.error("error:", e);
+                        throw e;
                     }
-                }));
+                }).ignoreElement();
     }
 
     public Completable drain(ElassandraPod pod) throws MalformedURLException {
-        return storageServiceMBeanProvider(pod)
-                .map(storageServiceMBean -> {
+        return withStorageService(pod, storageServiceMBean -> {
                     storageServiceMBean.drain();
                     logger.info("drain pod={}", pod.id());
                     return storageServiceMBean;
@@ -331,17 +366,53 @@ public class JmxmpElassandraProxy {
     }
 
     public Completable decomission(ElassandraPod pod) throws MalformedURLException {
-        return storageServiceMBeanProvider(pod)
-                .map(storageServiceMBean -> {
+        return withStorageService(pod, storageServiceMBean -> {
                     storageServiceMBean.decommission();
                     logger.info("decommission pod={}", pod.id());
                     return storageServiceMBean;
                 }).ignoreElement();
     }
 
+    /**
+     * Decommission a node while polling its outgoing streams every progressIntervalInSec seconds.
+     * The blocking decommission JMX call runs on the IO scheduler so that progress can be read concurrently.
+     */
+    public Completable decomission(ElassandraPod pod, long progressIntervalInSec, Consumer<StreamingProgress> progressConsumer) throws MalformedURLException {
+        final Completable decommission = decomission(pod).subscribeOn(Schedulers.io());
+        return Observable.interval(progressIntervalInSec, progressIntervalInSec, TimeUnit.SECONDS)
+                .concatMapMaybe(i -> streamingProgress(pod)
+                        .toMaybe()
+                        .onErrorComplete())
+                .takeUntil(decommission.andThen(Observable.just(0L)))
+                .doOnNext(progress -> progressConsumer.accept(progress))
+                .ignoreElements();
+    }
+
+    @SuppressWarnings("unchecked")
+    public Single<StreamingProgress> streamingProgress(ElassandraPod pod) throws MalformedURLException {
+        return withConnector(pod, jmxConnector -> {
+                    MBeanServerConnection mBeanServerConnection = jmxConnector.getMBeanServerConnection();
+                    Set<CompositeData> currentStreams = (Set<CompositeData>) mBeanServerConnection.getAttribute(STREAM_MANAGER_MBEAN_NAME, "CurrentStreams");
+                    StreamingProgress progress = StreamingProgress.of(currentStreams);
+                    logger.trace("pod={} streamingProgress={}", pod.id(), progress);
+                    return progress;
+                });
+    }
+
+    /**
+     * Number of pending compaction tasks of a node.
+     */
+    public Single<Integer> pendingCompactions(ElassandraPod pod) throws MalformedURLException {
+        return withConnector(pod, jmxConnector -> {
+                    Object value = jmxConnector.getMBeanServerConnection().getAttribute(PENDING_COMPACTIONS_MBEAN_NAME, "Value");
+                    int pendingCompactions = (value instanceof Number) ? ((Number) value).intValue() : 0;
+                    logger.debug("pod={} pendingCompactions={}", pod.id(), pendingCompactions);
+                    return pendingCompactions;
+                });
+    }
+
     public Completable cleanup(ElassandraPod pod, String keyspace) throws MalformedURLException {
-        return storageServiceMBeanProvider(pod)
-                .map(storageServiceMBean -> {
+        return withStorageService(pod, storageServiceMBean -> {
                     final List<String> keyspaces = keyspace == null ? storageServiceMBean.getNonLocalStrategyKeyspaces() : ImmutableList.of(keyspace);
                     for (String ks : keyspaces) {
                         storageServiceMBean.forceKeyspaceCleanup(2, ks);
@@ -351,6 +422,26 @@ public class JmxmpElassandraProxy {
                 }).ignoreElement();
     }
 
+    /**
+     * Take a flushed snapshot of the keyspaces, or of all keyspaces if empty.
+     */
+    public Completable takeSnapshot(ElassandraPod pod, String tag, List<String> keyspaces) throws MalformedURLException {
+        return withStorageService(pod, storageServiceMBean -> {
+                    final String[] entities = keyspaces == null ? new String[0] : keyspaces.toArray(new String[0]);
+                    storageServiceMBean.takeSnapshot(tag, ImmutableMap.of("skipFlush", "false"), entities);
+                    logger.info("Snapshot tag={} keyspaces={} done for pod={}", tag, keyspaces, pod.id());
+                    return storageServiceMBean;
+                }).ignoreElement();
+    }
+
+    public Completable clearSnapshot(ElassandraPod pod, String tag) throws MalformedURLException {
+        return withStorageService(pod, storageServiceMBean -> {
+                    storageServiceMBean.clearSnapshot(tag);
+                    logger.debug("Snapshot tag={} cleared for pod={}", tag, pod.id());
+                    return storageServiceMBean;
+                }).ignoreElement();
+    }
+
     public void repairAsync(final StorageServiceMBean storageServiceMBean, JMXConnector jmxc, final String keyspace, Map<String, String> options) throws IOException
     {
         RepairRunner runner = new RepairRunner(storageServiceMBean, keyspace, options);
@@ -379,8 +470,7 @@ public class JmxmpElassandraProxy {
     }
 
     public Completable repairAsync(ElassandraPod pod, String keyspace) throws MalformedURLException {
-        return storageServiceMBeanProvider(pod)
-                .map(storageServiceMBean -> {
+        return withStorageService(pod, storageServiceMBean -> {
                     Map<String, String> options = new HashMap<>();
                     options.put("parallelism", "sequential");
                     options.put("incremental", Boolean.FALSE.toString());
@@ -396,31 +486,68 @@ public class JmxmpElassandraProxy {
 
     // sequential synchronous repair
     public Completable repair(ElassandraPod pod, String keyspace) throws MalformedURLException {
-        return getMBeanProvider(pod)
-                .flatMapCompletable(tuple -> {
+        return withConnector(pod, jmxConnector -> {
+                    StorageServiceMBean storageServiceMBean = JMX.newMBeanProxy(jmxConnector.getMBeanServerConnection(), STORAGE_SERVICE_MBEAN_NAME, StorageServiceMBean.class);
                     Map<String, String> options = new HashMap<>();
                     options.put("parallelism", "sequential");
                     options.put("incremental", Boolean.FALSE.toString());
                     options.put("primaryRange", Boolean.TRUE.toString());
-                    final List<String> keyspaces = keyspace == null ? tuple._1.getNonLocalStrategyKeyspaces() : ImmutableList.of(keyspace);
-                    Completable todo = Completable.complete();
+                    final List<String> keyspaces = keyspace == null ? storageServiceMBean.getNonLocalStrategyKeyspaces() : ImmutableList.of(keyspace);
                     for (String ks : keyspaces) {
-                        todo = todo.andThen(Completable.fromCallable(new Callable<Object>() {
-                                   @Override
-                                    public Object call() throws Exception {
-                                        repairAsync(tuple._1, tuple._2, keyspace, options);
-                                        return null;
-                                    }
-                                }));
                         logger.info("Repair requested for keyspace={} pod={}", ks, pod.id());
+                        repairAsync(storageServiceMBean, jmxConnector, ks, options);
                     }
-                    return todo;
+                    return storageServiceMBean;
+                }).ignoreElement();
+    }
+
+    /**
+     * Token ranges ([start, end] tokens) to replica endpoints, for one or all non local keyspaces.
+     */
+    public Single<SortedMap<String, Map<List<String>, List<String>>>> rangeToEndpoints(ElassandraPod pod, String keyspace) throws MalformedURLException {
+        return withStorageService(pod, storageServiceMBean -> {
+                    final List<String> keyspaces = keyspace == null ? storageServiceMBean.getNonLocalStrategyKeyspaces() : ImmutableList.of(keyspace);
+                    final SortedMap<String, Map<List<String>, List<String>>> rangeToEndpoints = new TreeMap<>();
+                    for (String ks : keyspaces)
+                        rangeToEndpoints.put(ks, storageServiceMBean.getRangeToEndpointMap(ks));
+                    return rangeToEndpoints;
                 });
     }
 
+    /**
+     * Synchronous repair of token subranges ("start:end" comma separated) of a keyspace, coordinated by the pod.
+     */
+    public Completable repairRange(ElassandraPod pod, String keyspace, String ranges) throws MalformedURLException {
+        return withConnector(pod, jmxConnector -> {
+                    StorageServiceMBean storageServiceMBean = JMX.newMBeanProxy(jmxConnector.getMBeanServerConnection(), STORAGE_SERVICE_MBEAN_NAME, StorageServiceMBean.class);
+                    Map<String, String> options = new HashMap<>();
+                    options.put("parallelism", "sequential");
+                    options.put("incremental", Boolean.FALSE.toString());
+                    options.put("primaryRange", Boolean.FALSE.toString());
+                    options.put("ranges", ranges);
+                    repairAsync(storageServiceMBean, jmxConnector, keyspace, options);
+                    logger.debug("Repair done for keyspace={} ranges={} pod={}", keyspace, ranges, pod.id());
+                    return storageServiceMBean;
+                }).ignoreElement();
+    }
+
+    /**
+     * Rebuild a node while polling its incoming streams every progressIntervalInSec seconds.
+     * The blocking rebuild JMX call runs on the IO scheduler so that progress can be read concurrently.
+     */
+    public Completable rebuild(ElassandraPod pod, String srcDcName, String keyspace, long progressIntervalInSec, Consumer<StreamingProgress> progressConsumer) throws MalformedURLException {
+        final Completable rebuild = rebuild(pod, srcDcName, keyspace).subscribeOn(Schedulers.io());
+        return Observable.interval(progressIntervalInSec, progressIntervalInSec, TimeUnit.SECONDS)
+                .concatMapMaybe(i -> streamingProgress(pod)
+                        .toMaybe()
+                        .onErrorComplete())
+                .takeUntil(rebuild.andThen(Observable.just(0L)))
+                .doOnNext(progress -> progressConsumer.accept(progress))
+                .ignoreElements();
+    }
+
     public Completable rebuild(ElassandraPod pod, String srcDcName, String keyspace) throws MalformedURLException {
-        return storageServiceMBeanProvider(pod)
-                .map(storageServiceMBean -> {
+        return withStorageService(pod, storageServiceMBean -> {
                     logger.debug("Rebuilding from dc={} requested for keyspace={} on pod={}", srcDcName, keyspace, pod.id());
                     storageServiceMBean.rebuild(srcDcName, keyspace, null, null);
                     logger.info("Rebuilt from dc={} requested for keyspace={} on pod={}", srcDcName, keyspace, pod.id());
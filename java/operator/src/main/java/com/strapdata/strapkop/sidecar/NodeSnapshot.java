@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.sidecar;
+
+import com.strapdata.strapkop.model.sidecar.ElassandraNodeStatus;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.management.ObjectName;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static com.strapdata.strapkop.sidecar.JmxmpElassandraProxy.*;
+
+/**
+ * Status of an Elassandra node, collected with one JMX getAttributes call per MBean
+ * (StorageService, FailureDetector, EndpointSnitchInfo and the elasticsearch node MBean).
+ */
+@Data
+@NoArgsConstructor
+public class NodeSnapshot {
+    long timestamp;
+
+    // StorageService
+    ElassandraNodeStatus operationMode = ElassandraNodeStatus.UNKNOWN;
+    String hostId;
+    double load;
+    boolean joined;
+    boolean gossipRunning;
+    boolean nativeTransportRunning;
+    List<String> liveNodes = Collections.emptyList();
+    List<String> unreachableNodes = Collections.emptyList();
+    List<String> joiningNodes = Collections.emptyList();
+    List<String> leavingNodes = Collections.emptyList();
+
+    // FailureDetector
+    int upEndpointCount;
+    int downEndpointCount;
+    Map<String, String> simpleStates = Collections.emptyMap();
+
+    // EndpointSnitchInfo
+    String datacenter;
+    String rack;
+
+    // Elasticsearch node, null when elasticsearch is not enabled
+    String elasticsearchStatus;
+    Boolean searchEnabled;
+
+    /**
+     * Build a snapshot from the attributes read from each MBean, missing MBeans or attributes keep their default value.
+     */
+    @SuppressWarnings("unchecked")
+    public static NodeSnapshot of(Map<ObjectName, Map<String, Object>> attributes) {
+        NodeSnapshot snapshot = new NodeSnapshot();
+        snapshot.timestamp = System.currentTimeMillis();
+
+        Map<String, Object> storageService = attributes.getOrDefault(STORAGE_SERVICE_MBEAN_NAME, Collections.emptyMap());
+        Object operationMode = storageService.get("OperationMode");
+        if (operationMode != null) {
+            try {
+                snapshot.operationMode = ElassandraNodeStatus.valueOf(operationMode.toString());
+            } catch (IllegalArgumentException e) {
+                snapshot.operationMode = ElassandraNodeStatus.UNKNOWN;
+            }
+        }
+        snapshot.hostId = (String) storageService.get("LocalHostId");
+        snapshot.load = doubleValue(storageService.get("Load"));
+        snapshot.joined = Boolean.TRUE.equals(storageService.get("Joined"));
+        snapshot.gossipRunning = Boolean.TRUE.equals(storageService.get("GossipRunning"));
+        snapshot.nativeTransportRunning = Boolean.TRUE.equals(storageService.get("NativeTransportRunning"));
+        snapshot.liveNodes = (List<String>) storageService.getOrDefault("LiveNodes", Collections.emptyList());
+        snapshot.unreachableNodes = (List<String>) storageService.getOrDefault("UnreachableNodes", Collections.emptyList());
+        snapshot.joiningNodes = (List<String>) storageService.getOrDefault("JoiningNodes", Collections.emptyList());
+        snapshot.leavingNodes = (List<String>) storageService.getOrDefault("LeavingNodes", Collections.emptyList());
+
+        Map<String, Object> failureDetector = attributes.getOrDefault(FAILURE_DETECTOR_MBEAN_NAME, Collections.emptyMap());
+        snapshot.upEndpointCount = (int) doubleValue(failureDetector.get("UpEndpointCount"));
+        snapshot.downEndpointCount = (int) doubleValue(failureDetector.get("DownEndpointCount"));
+        snapshot.simpleStates = (Map<String, String>) failureDetector.getOrDefault("SimpleStates", Collections.emptyMap());
+
+        Map<String, Object> snitch = attributes.getOrDefault(ENDPOINT_SNITCH_INFO_MBEAN_NAME, Collections.emptyMap());
+        snapshot.datacenter = (String) snitch.get("Datacenter");
+        snapshot.rack = (String) snitch.get("Rack");
+
+        Map<String, Object> elasticsearch = attributes.get(ELASTIC_NODE_METRICS_MBEAN_NAME);
+        if (elasticsearch != null) {
+            snapshot.elasticsearchStatus = (String) elasticsearch.get("Status");
+            snapshot.searchEnabled = (Boolean) elasticsearch.get("SearchEnabled");
+        }
+        return snapshot;
+    }
+
+    private static double doubleValue(Object value) {
+        return (value instanceof Number) ? ((Number) value).doubleValue() : 0.0;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.sidecar;
+
+import com.strapdata.strapkop.OperatorConfig;
+import com.strapdata.strapkop.cache.NodeStatusCache;
+import com.strapdata.strapkop.k8s.ElassandraPod;
+import com.strapdata.strapkop.model.Key;
+import com.strapdata.strapkop.model.k8s.OperatorLabels;
+import com.strapdata.strapkop.model.k8s.datacenter.DataCenter;
+import io.kubernetes.client.informer.SharedInformerFactory;
+import io.kubernetes.client.openapi.models.V1Pod;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Singleton;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+/**
+ * Periodically collect the status of every running Elassandra pod over JMXMP, with a bounded concurrency,
+ * and record it in the {@link NodeStatusCache}, so that reconciliation reads node statuses from memory.
+ */
+@Singleton
+public class NodeStatusPoller {
+
+    private static final Logger logger = LoggerFactory.getLogger(NodeStatusPoller.class);
+
+    private final OperatorConfig operatorConfig;
+    private final SharedInformerFactory sharedInformerFactory;
+    private final JmxmpElassandraProxy jmxmpElassandraProxy;
+    private final NodeStatusCache nodeStatusCache;
+    private final MeterRegistry meterRegistry;
+
+    private volatile Disposable poller;
+
+    public NodeStatusPoller(final OperatorConfig operatorConfig,
+                            final SharedInformerFactory sharedInformerFactory,
+                            final JmxmpElassandraProxy jmxmpElassandraProxy,
+                            final NodeStatusCache nodeStatusCache,
+                            final MeterRegistry meterRegistry) {
+        this.operatorConfig = operatorConfig;
+        this.sharedInformerFactory = sharedInformerFactory;
+        this.jmxmpElassandraProxy = jmxmpElassandraProxy;
+        this.nodeStatusCache = nodeStatusCache;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Start polling, once DataCenter and Pod informers are started.
+     */
+    public synchronized void start() {
+        if (poller != null)
+            return;
+        this.poller = Completable.defer(() -> Completable.timer(nextDelay(), TimeUnit.MILLISECONDS, Schedulers.io()).andThen(pollAll()))
+                .doOnError(e -> logger.warn("Node status polling error:", e))
+                .onErrorComplete()
+                .repeat()
+                .subscribe();
+        logger.info("Node status poller started interval={}s concurrency={}",
+                operatorConfig.getNodeStatusPollIntervalInSec(), operatorConfig.getNodeStatusPollConcurrency());
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (poller != null) {
+            poller.dispose();
+            poller = null;
+        }
+    }
+
+    /**
+     * Poll interval with a random jitter, to avoid polling all nodes at the same time after a restart of the operator.
+     */
+    long nextDelay() {
+        final long interval = TimeUnit.SECONDS.toMillis(operatorConfig.getNodeStatusPollIntervalInSec());
+        final double jitter = operatorConfig.getNodeStatusPollJitter();
+        return Math.max(0L, (long) (interval * (1.0 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1.0))));
+    }
+
+    /**
+     * Poll all running pods of all datacenters.
+     */
+    Completable pollAll() {
+        final long start = System.nanoTime();
+        final Map<Key, List<ElassandraPod>> podsByDc = new HashMap<>();
+        for (DataCenter dataCenter : sharedInformerFactory.getExistingSharedIndexInformer(DataCenter.class).getIndexer().list()) {
+            final Key dcKey = new Key(dataCenter.getMetadata());
+            final List<ElassandraPod> pods = runningPods(dataCenter);
+            nodeStatusCache.retainPods(dcKey, pods.stream().map(ElassandraPod::getName).collect(Collectors.toSet()));
+            podsByDc.put(dcKey, pods);
+        }
+        return Flowable.fromIterable(podsByDc.entrySet())
+                .flatMapIterable(e -> {
+                    List<Map.Entry<Key, ElassandraPod>> entries = new ArrayList<>(e.getValue().size());
+                    for (ElassandraPod pod : e.getValue())
+                        entries.add(new AbstractMap.SimpleImmutableEntry<>(e.getKey(), pod));
+                    return entries;
+                })
+                .flatMapSingle(e -> poll(e.getKey(), e.getValue()), false, operatorConfig.getNodeStatusPollConcurrency())
+                .ignoreElements()
+                .doFinally(() -> meterRegistry.timer("node.status.poll").record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Poll one pod, errors are recorded as an UNKNOWN status and never propagated.
+     * A timeout does not invalidate the JMX connector, which may be shared with a running operation,
+     * the connector liveness is checked by the JMX pool probe.
+     */
+    Single<Boolean> poll(final Key dcKey, final ElassandraPod pod) {
+        return Single.defer(() -> jmxmpElassandraProxy.nodeSnapshot(pod))
+                // blocking JMX reads, pods are polled concurrently on distinct threads
+                .subscribeOn(Schedulers.io())
+                .timeout(operatorConfig.getNodeStatusPollTimeoutInSec(), TimeUnit.SECONDS)
+                .map(snapshot -> {
+                    nodeStatusCache.record(dcKey, pod.getName(), snapshot);
+                    return true;
+                })
+                .onErrorReturn(t -> {
+                    logger.debug("pod={} node status poll failed: {}", pod.id(), t.toString());
+                    meterRegistry.counter("node.status.poll.errors").increment();
+                    nodeStatusCache.recordFailure(dcKey, pod.getName());
+                    if (!(t instanceof TimeoutException))
+                        jmxmpElassandraProxy.invalidateClient(pod, t);
+                    return false;
+                });
+    }
+
+    List<ElassandraPod> runningPods(final DataCenter dataCenter) {
+        final String namespace = dataCenter.getMetadata().getNamespace();
+        final String parent = dataCenter.getMetadata().getName();
+        final List<ElassandraPod> pods = new ArrayList<>();
+        for (V1Pod v1Pod : sharedInformerFactory.getExistingSharedIndexInformer(V1Pod.class).getIndexer().list()) {
+            if (!namespace.equals(v1Pod.getMetadata().getNamespace()) ||
+                    v1Pod.getMetadata().getLabels() == null ||
+                    !parent.equals(v1Pod.getMetadata().getLabels().get(OperatorLabels.PARENT)) ||
+                    v1Pod.getStatus() == null ||
+                    !"Running".equals(v1Pod.getStatus().getPhase()) ||
+                    v1Pod.getStatus().getPodIP() == null)
+                continue;
+            try {
+                pods.add(ElassandraPod.fromV1Pod(v1Pod));
+            } catch (IllegalArgumentException e) {
+                logger.debug("Ignoring pod={}: {}", v1Pod.getMetadata().getName(), e.getMessage());
+            }
+        }
+        return pods;
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.sidecar;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.strapdata.strapkop.OperatorConfig;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micronaut.core.annotation.AnnotationMetadataResolver;
+import io.micronaut.core.io.ResourceResolver;
+import io.micronaut.http.client.DefaultHttpClient;
+import io.micronaut.http.client.DefaultHttpClientConfiguration;
+import io.micronaut.http.client.HttpClientConfiguration;
+import io.micronaut.http.client.RxHttpClient;
+import io.micronaut.http.codec.MediaTypeCodecRegistry;
+import io.micronaut.jackson.ObjectMapperFactory;
+import io.micronaut.jackson.codec.JsonMediaTypeCodec;
+import io.micronaut.jackson.codec.JsonStreamMediaTypeCodec;
+import io.micronaut.runtime.ApplicationConfiguration;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultithreadEventLoopGroup;
+import io.netty.channel.SingleThreadEventLoop;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.handler.ssl.SslContext;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Shared netty resources of the sidecar HTTP clients.
+ *
+ * All sidecar clients run on a single event loop group, and one micronaut client (with its per-host connection pool)
+ * is shared by all pods of a cluster, because pods of a cluster trust the same CA. Per pod {@link HttpClient} are
+ * lightweight wrappers holding the pod base URL and credentials.
+ */
+@Singleton
+public class SidecarHttpClientPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(SidecarHttpClientPool.class);
+
+    /**
+     * Reference counted event loop group shared by several clients.
+     * The pool holds the first reference, each client retains one, and shutting down the group releases a reference:
+     * the event loops are shut down when the last reference is released.
+     */
+    public static class SharedEventLoopGroup extends NioEventLoopGroup {
+
+        private final ThreadFactory threadFactory;
+        private final AtomicInteger refCount = new AtomicInteger(1);
+
+        public SharedEventLoopGroup(int nThreads, ThreadFactory threadFactory) {
+            super(nThreads, threadFactory);
+            this.threadFactory = threadFactory;
+        }
+
+        /**
+         * Retain a reference for a client, and return the thread factory to build it with.
+         */
+        ClientThreadFactory retain() {
+            if (refCount.getAndUpdate(c -> c > 0 ? c + 1 : c) <= 0)
+                throw new IllegalStateException("shared event loop group is shut down");
+            return new ClientThreadFactory(this);
+        }
+
+        public int refCount() {
+            return refCount.get();
+        }
+
+        /**
+         * Release a reference, the event loops are shut down with the last reference.
+         */
+        @Override
+        public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+            int refs = refCount.updateAndGet(c -> Math.max(0, c - 1));
+            return refs == 0 ? super.shutdownGracefully(quietPeriod, timeout, unit) : GlobalEventExecutor.INSTANCE.newSucceededFuture(null);
+        }
+
+        @Override
+        @Deprecated
+        public void shutdown() {
+            shutdownGracefully();
+        }
+
+        /**
+         * @return the number of channels registered on the event loops, that is, the number of open connections.
+         */
+        public int registeredChannels() {
+            int channels = 0;
+            for (EventExecutor executor : this) {
+                if (executor instanceof SingleThreadEventLoop)
+                    channels += Math.max(0, ((SingleThreadEventLoop) executor).registeredChannels());
+            }
+            return channels;
+        }
+    }
+
+    /**
+     * Thread factory of the shared event loop group, also identifying the group a client is built on.
+     */
+    static class ClientThreadFactory implements ThreadFactory {
+        final SharedEventLoopGroup group;
+
+        ClientThreadFactory(SharedEventLoopGroup group) {
+            this.group = group;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return group.threadFactory.newThread(r);
+        }
+    }
+
+    /**
+     * Micronaut client running on the shared event loop group.
+     * Micronaut 1.3 clients always build their event loop group through {@link DefaultHttpClient#createEventLoopGroup},
+     * closing the client releases its reference on the shared group.
+     */
+    static class SharedDefaultHttpClient extends DefaultHttpClient {
+        SharedDefaultHttpClient(HttpClientConfiguration configuration, SharedEventLoopGroup group, SslContext sslContext, MediaTypeCodecRegistry codecRegistry) {
+            super(null,
+                    configuration,
+                    null,
+                    group.retain(),
+                    new HttpNettyClientSslBuilder(new ResourceResolver(), sslContext),
+                    codecRegistry,
+                    AnnotationMetadataResolver.DEFAULT);
+        }
+
+        @Override
+        protected NioEventLoopGroup createEventLoopGroup(HttpClientConfiguration configuration, ThreadFactory threadFactory) {
+            return ((ClientThreadFactory) threadFactory).group;
+        }
+    }
+
+    private final OperatorConfig operatorConfig;
+    private final SharedEventLoopGroup eventLoopGroup;
+    private final MediaTypeCodecRegistry codecRegistry = createDefaultMediaTypeRegistry();
+    private final Map<String, SharedClient> clients = new ConcurrentHashMap<>();
+
+    /**
+     * Shared client of a cluster, created by the first subscriber.
+     */
+    static class SharedClient {
+        final Single<RxHttpClient> single;
+        private RxHttpClient created = null;
+        private boolean closed = false;
+
+        SharedClient(Single<RxHttpClient> creator) {
+            this.single = creator.doOnSuccess(this::created).cache();
+        }
+
+        private synchronized void created(RxHttpClient client) {
+            if (closed) {
+                // closed while being created
+                client.close();
+                throw new IllegalStateException("sidecar client closed");
+            }
+            created = client;
+        }
+
+        /**
+         * Close the client once created, without creating it.
+         */
+        synchronized void close() {
+            closed = true;
+            if (created != null)
+                created.close();
+        }
+    }
+
+    public SidecarHttpClientPool(final OperatorConfig operatorConfig, final MeterRegistry meterRegistry) {
+        this.operatorConfig = operatorConfig;
+        this.eventLoopGroup = new SharedEventLoopGroup(operatorConfig.getSidecarEventLoopThreads(),
+                new DefaultThreadFactory(MultithreadEventLoopGroup.class));
+
+        meterRegistry.gaugeMapSize("sidecar.http.clients", ImmutableList.of(), clients);
+        Gauge.builder("sidecar.http.eventloop.threads", eventLoopGroup, EventLoopGroup::executorCount)
+                .register(meterRegistry);
+        Gauge.builder("sidecar.http.connections", eventLoopGroup, SharedEventLoopGroup::registeredChannels)
+                .register(meterRegistry);
+    }
+
+    private static MediaTypeCodecRegistry createDefaultMediaTypeRegistry() {
+        ObjectMapper objectMapper = new ObjectMapperFactory().objectMapper(null, null);
+        ApplicationConfiguration applicationConfiguration = new ApplicationConfiguration();
+        return MediaTypeCodecRegistry.of(
+                new JsonMediaTypeCodec(objectMapper, applicationConfiguration, null),
+                new JsonStreamMediaTypeCodec(objectMapper, applicationConfiguration, null)
+        );
+    }
+
+    /**
+     * Get the client shared by the pods of a cluster. The client is created once, on the IO scheduler, by the first subscriber.
+     * A failed creation is removed from the pool, so that the next call retries: callers must call this method
+     * for each request rather than keep the returned Single.
+     * @param sslContextSupplier called only when the client is created, null for plain HTTP.
+     */
+    public Single<RxHttpClient> client(final String namespace, final String clusterName, final Callable<SslContext> sslContextSupplier) {
+        final String key = namespace + "/" + clusterName + (sslContextSupplier == null ? "/http" : "/https");
+        return clients.computeIfAbsent(key, k -> {
+            final AtomicReference<SharedClient> ref = new AtomicReference<>();
+            ref.set(new SharedClient(Single.fromCallable(() -> {
+                        logger.debug("creating shared sidecar client for cluster={} in namespace={}", clusterName, namespace);
+                        return (RxHttpClient) new SharedDefaultHttpClient(clientConfiguration(),
+                                eventLoopGroup,
+                                sslContextSupplier == null ? null : sslContextSupplier.call(),
+                                codecRegistry);
+                    })
+                    .subscribeOn(Schedulers.io())
+                    .doOnError(t -> {
+                        logger.warn("failed to create shared sidecar client for cluster={} in namespace={}: {}", clusterName, namespace, t.toString());
+                        clients.remove(k, ref.get());
+                    })));
+            return ref.get();
+        }).single;
+    }
+
+    HttpClientConfiguration clientConfiguration() {
+        DefaultHttpClientConfiguration configuration = new DefaultHttpClientConfiguration();
+        configuration.setReadTimeout(Duration.ofSeconds(30));
+        // idle keep-alive connections are closed after this timeout
+        configuration.setReadIdleTimeout(Duration.ofSeconds(operatorConfig.getSidecarConnectionIdleTimeoutInSec()));
+        // connection pools are per host (per sidecar)
+        HttpClientConfiguration.ConnectionPoolConfiguration pool = configuration.getConnectionPoolConfiguration();
+        pool.setEnabled(true);
+        pool.setMaxConnections(operatorConfig.getSidecarMaxConnectionsPerHost());
+        return configuration;
+    }
+
+    /**
+     * Close the shared clients of a cluster, for example when its CA changes.
+     */
+    public void invalidate(final String namespace, final String clusterName) {
+        final String prefix = namespace + "/" + clusterName + "/";
+        clients.entrySet().removeIf(e -> {
+            if (e.getKey().startsWith(prefix)) {
+                e.getValue().close();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    public SharedEventLoopGroup getEventLoopGroup() {
+        return eventLoopGroup;
+    }
+
+    @PreDestroy
+    public void close() {
+        clients.values().forEach(SharedClient::close);
+        clients.clear();
+        // release the pool reference
+        eventLoopGroup.shutdownGracefully(1, 5, TimeUnit.SECONDS);
+    }
+}
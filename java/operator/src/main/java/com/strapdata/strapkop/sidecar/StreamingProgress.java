@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.sidecar;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.management.openmbean.CompositeData;
+import java.util.Set;
+
+/**
+ * Aggregated streaming progress of an Elassandra node, as exposed by the cassandra StreamManager MBean.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StreamingProgress {
+    int streams;
+    long currentTxBytes;
+    long totalTxBytes;
+    long currentRxBytes;
+    long totalRxBytes;
+
+    /**
+     * Aggregate the CurrentStreams attribute of the StreamManager MBean (a set of StreamStateCompositeData).
+     */
+    public static StreamingProgress of(Set<CompositeData> currentStreams) {
+        StreamingProgress progress = new StreamingProgress();
+        if (currentStreams != null) {
+            for (CompositeData stream : currentStreams) {
+                progress.streams++;
+                progress.currentTxBytes += longValue(stream, "currentTxBytes");
+                progress.totalTxBytes += longValue(stream, "totalTxBytes");
+                progress.currentRxBytes += longValue(stream, "currentRxBytes");
+                progress.totalRxBytes += longValue(stream, "totalRxBytes");
+            }
+        }
+        return progress;
+    }
+
+    private static long longValue(CompositeData data, String key) {
+        Object value = data.containsKey(key) ? data.get(key) : null;
+        return (value instanceof Number) ? ((Number) value).longValue() : 0L;
+    }
+
+    public double txPercentage() {
+        return totalTxBytes == 0 ? 100.0 : (currentTxBytes * 100.0) / totalTxBytes;
+    }
+
+    public double rxPercentage() {
+        return totalRxBytes == 0 ? 100.0 : (currentRxBytes * 100.0) / totalRxBytes;
+    }
+}
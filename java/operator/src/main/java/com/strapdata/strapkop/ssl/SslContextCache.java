@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.ssl;
+
+import com.google.common.collect.ImmutableList;
+import com.strapdata.strapkop.OperatorConfig;
+import com.strapdata.strapkop.ssl.utils.X509CertificateAndPrivateKey;
+import io.micrometer.core.instrument.ImmutableTag;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import io.vavr.Tuple2;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Singleton;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Cache the JDK SSLContext (JMXMP) and netty SslContext (sidecar HTTP) of a cluster, built from the cluster root CA.
+ *
+ * Contexts are bound to the CA fingerprint: when the AuthorityManager returns a new CA for a cluster, cached contexts are
+ * dropped and rotation listeners are notified. Reusing contexts also enables TLS session resumption.
+ */
+@Singleton
+public class SslContextCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SslContextCache.class);
+
+    static class Contexts {
+        final X509CertificateAndPrivateKey ca;
+        final String fingerprint;
+        volatile SSLContext sslContext;
+        volatile SslContext nettySslContext;
+
+        Contexts(X509CertificateAndPrivateKey ca) {
+            this.ca = ca;
+            this.fingerprint = fingerprint(ca);
+        }
+    }
+
+    /**
+     * Trust the cluster CA for JMXMP connections.
+     */
+    static class JmxmpTrustManager implements X509TrustManager {
+        X509Certificate[] trustedCa;
+        public JmxmpTrustManager(X509Certificate ca) {
+            this.trustedCa = new X509Certificate[] { ca };
+        }
+        public void checkClientTrusted(X509Certificate[] arg0, String arg1){}
+        public void checkServerTrusted(X509Certificate[] arg0, String arg1){}
+        public X509Certificate[] getAcceptedIssuers() {
+            return this.trustedCa;
+        }
+    }
+
+    private final AuthorityManager authorityManager;
+    private final OperatorConfig operatorConfig;
+    private final MeterRegistry meterRegistry;
+    private final List<Tag> tags = ImmutableList.of(new ImmutableTag("type", "ssl_context"));
+    private final Map<Tuple2<String, String>, Contexts> contexts = new ConcurrentHashMap<>();
+    private final List<BiConsumer<String, String>> rotationListeners = new CopyOnWriteArrayList<>();
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    public SslContextCache(final AuthorityManager authorityManager, final OperatorConfig operatorConfig, final MeterRegistry meterRegistry) {
+        this.authorityManager = authorityManager;
+        this.operatorConfig = operatorConfig;
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gaugeMapSize("cache.size", tags, contexts);
+    }
+
+    static String fingerprint(X509CertificateAndPrivateKey ca) {
+        return DigestUtils.sha1Hex(ca.getCertificateChainAsString());
+    }
+
+    /**
+     * Register a callback (namespace, clusterName) called when the CA of a cluster has changed.
+     */
+    public void addRotationListener(BiConsumer<String, String> listener) {
+        rotationListeners.add(listener);
+    }
+
+    /**
+     * JDK SSLContext for JMXMP connections, client TLS sessions are cached to allow resumption.
+     */
+    public SSLContext getSSLContext(String namespace, String clusterName) throws Exception {
+        final Contexts ctx = contexts(namespace, clusterName, authorityManager.get(namespace, clusterName));
+        SSLContext sslContext = ctx.sslContext;
+        if (sslContext == null) {
+            synchronized (ctx) {
+                sslContext = ctx.sslContext;
+                if (sslContext == null) {
+                    meterRegistry.counter("cache.miss", tags).increment();
+                    sslContext = SSLContext.getInstance("TLS");
+                    sslContext.init(null, new TrustManager[] { new JmxmpTrustManager(ctx.ca.getCertificate()) }, secureRandom);
+                    configureSessionContext(sslContext.getClientSessionContext());
+                    ctx.sslContext = sslContext;
+                    return sslContext;
+                }
+            }
+        }
+        meterRegistry.counter("cache.hit", tags).increment();
+        return sslContext;
+    }
+
+    /**
+     * Netty SslContext for sidecar HTTPS connections, client TLS sessions are cached to allow resumption.
+     */
+    public SslContext getNettySslContext(String namespace, String clusterName) throws Exception {
+        final Contexts ctx = contexts(namespace, clusterName, authorityManager.get(namespace, clusterName));
+        SslContext sslContext = ctx.nettySslContext;
+        if (sslContext == null) {
+            synchronized (ctx) {
+                sslContext = ctx.nettySslContext;
+                if (sslContext == null) {
+                    meterRegistry.counter("cache.miss", tags).increment();
+                    sslContext = SslContextBuilder
+                            .forClient()
+                            .sslProvider(SslProvider.JDK)
+                            .trustManager(new ByteArrayInputStream(ctx.ca.getCertificateChainAsString().getBytes(StandardCharsets.UTF_8)))
+                            .sessionCacheSize(operatorConfig.getSslSessionCacheSize())
+                            .sessionTimeout(operatorConfig.getSslSessionTimeoutInSec())
+                            .build();
+                    ctx.nettySslContext = sslContext;
+                    return sslContext;
+                }
+            }
+        }
+        meterRegistry.counter("cache.hit", tags).increment();
+        return sslContext;
+    }
+
+    /**
+     * Non-blocking CA rotation check, using the CA only if already loaded by the AuthorityManager.
+     */
+    public void checkRotation(String namespace, String clusterName) {
+        final X509CertificateAndPrivateKey ca = authorityManager.getAsync(namespace, clusterName).getNow(null);
+        if (ca != null)
+            contexts(namespace, clusterName, ca);
+    }
+
+    /**
+     * Drop the contexts of a cluster, for example when the cluster is deleted.
+     */
+    public void invalidate(String namespace, String clusterName) {
+        contexts.remove(new Tuple2<>(namespace, clusterName));
+    }
+
+    Contexts contexts(String namespace, String clusterName, X509CertificateAndPrivateKey ca) {
+        final Tuple2<String, String> key = new Tuple2<>(namespace, clusterName);
+        final Contexts current = contexts.get(key);
+        // the AuthorityManager returns the same CA instance until reloaded from the secret
+        if (current != null && current.ca == ca)
+            return current;
+
+        final Contexts candidate = new Contexts(ca);
+        if (current != null && current.fingerprint.equals(candidate.fingerprint))
+            return current;
+
+        final Contexts updated = contexts.merge(key, candidate, (old, c) -> old.fingerprint.equals(c.fingerprint) ? old : c);
+        if (current != null && updated == candidate) {
+            logger.info("CA of cluster={} in namespace={} has changed, fingerprint={} => {}",
+                    clusterName, namespace, current.fingerprint, candidate.fingerprint);
+            meterRegistry.counter("cache.eviction", "type", "ssl_context", "reason", "rotation").increment();
+            for (BiConsumer<String, String> listener : rotationListeners) {
+                try {
+                    listener.accept(namespace, clusterName);
+                } catch (Exception e) {
+                    logger.warn("CA rotation listener error:", e);
+                }
+            }
+        }
+        return updated;
+    }
+
+    private void configureSessionContext(SSLSessionContext sessionContext) {
+        sessionContext.setSessionCacheSize(operatorConfig.getSslSessionCacheSize());
+        sessionContext.setSessionTimeout(operatorConfig.getSslSessionTimeoutInSec());
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.backup;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.strapdata.strapkop.model.k8s.task.BackupStatus;
+import com.strapdata.strapkop.model.k8s.task.TaskPhase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestIncrementalBackup {
+
+    static final String DIR = SnapshotFiles.DATA_DIRECTORY + "/foo/bar-1234/snapshots/";
+
+    final Map<String, byte[]> contents = new HashMap<>();
+    final List<String> opened = new ArrayList<>();
+
+    BackupFile file(String tag, String name, int size) {
+        byte[] bytes = new byte[size];
+        Arrays.fill(bytes, (byte) name.hashCode());
+        contents.put(DIR + tag + "/" + name, bytes);
+        return new BackupFile("foo", "bar-1234", name, size, DIR + tag + "/" + name);
+    }
+
+    BackupFile digest(String tag, String sstable, String crc) {
+        String name = sstable + "-Digest.crc32";
+        contents.put(DIR + tag + "/" + name, crc.getBytes(StandardCharsets.US_ASCII));
+        return new BackupFile("foo", "bar-1234", name, crc.length(), DIR + tag + "/" + name);
+    }
+
+    BackupProgress backup(Path root, String tag, List<BackupFile> files) throws IOException {
+        BackupProgress progress = new BackupProgress();
+        IncrementalBackup.FileSource source = f -> {
+            opened.add(f.getName());
+            return new ByteArrayInputStream(contents.get(f.getPath()));
+        };
+        new IncrementalBackup("pod-0", tag, new LocalFileSystemRepository(root), source,
+                RateLimiter.create(Double.MAX_VALUE), progress, () -> {}).run(files);
+        return progress;
+    }
+
+    @Test
+    public void testParseSnapshotFiles() {
+        String output = "1024 " + DIR + "t1/mc-1-big-Data.db\n" +
+                "43 " + DIR + "t1/manifest.json\n" +
+                "12 " + DIR + "t1/.foo_idx/mc-1-big-Data.db\n" +
+                "\n";
+        List<BackupFile> files = SnapshotFiles.parse(output, "t1");
+        assertEquals(2, files.size());
+        assertEquals(new BackupFile("foo", "bar-1234", "mc-1-big-Data.db", 1024, DIR + "t1/mc-1-big-Data.db"), files.get(0));
+        assertTrue(files.get(0).isSSTable());
+        assertEquals("mc-1-big", files.get(0).sstable());
+        assertEquals("foo/bar-1234/mc-1-big-123/mc-1-big-Data.db", files.get(0).key("t1", "123"));
+        assertEquals("foo/bar-1234/snapshots/t1/mc-1-big-Data.db", files.get(0).key("t1", null));
+        assertFalse(files.get(1).isSSTable());
+        assertEquals("foo/bar-1234/snapshots/t1/manifest.json", files.get(1).key("t1", null));
+    }
+
+    @Test
+    public void testIncrementalUpload(@TempDir Path root) throws IOException {
+        List<BackupFile> files1 = Arrays.asList(file("t1", "mc-1-big-Data.db", 1000), file("t1", "mc-1-big-Index.db", 100),
+                digest("t1", "mc-1-big", "111"), file("t1", "manifest.json", 10));
+        BackupProgress progress = backup(root, "t1", files1);
+        BackupStatus status = progress.toStatus(TaskPhase.SUCCEED);
+        assertEquals(4, status.getFilesTotal());
+        assertEquals(4, status.getFilesUploaded());
+        assertEquals(0, status.getFilesSkipped());
+        assertEquals(1113, status.getBytesUploaded());
+        assertEquals(1113, status.getBytesTotal());
+        assertArrayEquals(contents.get(DIR + "t1/mc-1-big-Data.db"), Files.readAllBytes(root.resolve("pod-0/data/foo/bar-1234/mc-1-big-111/mc-1-big-Data.db")));
+
+        // second snapshot, one new SSTable
+        opened.clear();
+        List<BackupFile> files2 = Arrays.asList(file("t2", "mc-1-big-Data.db", 1000), file("t2", "mc-1-big-Index.db", 100),
+                digest("t2", "mc-1-big", "111"), file("t2", "mc-2-big-Data.db", 500), digest("t2", "mc-2-big", "222"),
+                file("t2", "manifest.json", 10));
+        progress = backup(root, "t2", files2);
+        status = progress.toStatus(TaskPhase.SUCCEED);
+        // digests are read first
+        assertEquals(Arrays.asList("mc-1-big-Digest.crc32", "mc-2-big-Digest.crc32",
+                "mc-2-big-Data.db", "mc-2-big-Digest.crc32", "manifest.json"), opened);
+        assertEquals(3, status.getFilesUploaded());
+        assertEquals(3, status.getFilesSkipped());
+        assertEquals(513, status.getBytesUploaded());
+        assertEquals(513, status.getBytesTotal());
+        assertEquals(Arrays.asList("foo/bar-1234/mc-1-big-111/mc-1-big-Data.db", "foo/bar-1234/mc-1-big-111/mc-1-big-Index.db",
+                "foo/bar-1234/mc-1-big-111/mc-1-big-Digest.crc32", "foo/bar-1234/mc-2-big-222/mc-2-big-Data.db",
+                "foo/bar-1234/mc-2-big-222/mc-2-big-Digest.crc32", "foo/bar-1234/snapshots/t2/manifest.json"),
+                Files.readAllLines(root.resolve("pod-0/manifests/t2"), StandardCharsets.UTF_8));
+
+        // same snapshot again, nothing to upload
+        opened.clear();
+        progress = backup(root, "t2", files2);
+        assertEquals(Arrays.asList("mc-1-big-Digest.crc32", "mc-2-big-Digest.crc32"), opened);
+        assertEquals(6, progress.getFilesSkipped());
+        assertEquals(0, progress.getBytesUploaded());
+    }
+
+    @Test
+    public void testSSTableNameReused(@TempDir Path root) throws IOException {
+        backup(root, "t1", Arrays.asList(file("t1", "mc-1-big-Data.db", 1000), digest("t1", "mc-1-big", "111")));
+
+        // same name and size, another content, for example after a truncate or on a re-created node
+        opened.clear();
+        BackupFile data = file("t2", "mc-1-big-Data.db", 1000);
+        contents.put(data.getPath(), new byte[1000]);
+        BackupProgress progress = backup(root, "t2", Arrays.asList(data, digest("t2", "mc-1-big", "333")));
+        assertEquals(2, progress.getFilesUploaded());
+        assertArrayEquals(new byte[1000], Files.readAllBytes(root.resolve("pod-0/data/foo/bar-1234/mc-1-big-333/mc-1-big-Data.db")));
+        assertArrayEquals(contents.get(DIR + "t1/mc-1-big-Data.db"), Files.readAllBytes(root.resolve("pod-0/data/foo/bar-1234/mc-1-big-111/mc-1-big-Data.db")));
+
+        // without digest, the SSTable is stored with the snapshot
+        progress = backup(root, "t3", Collections.singletonList(file("t3", "mc-1-big-Data.db", 1000)));
+        assertEquals(1, progress.getFilesUploaded());
+        assertTrue(Files.exists(root.resolve("pod-0/data/foo/bar-1234/snapshots/t3/mc-1-big-Data.db")));
+    }
+
+    @Test
+    public void testTruncatedUpload(@TempDir Path root) throws IOException {
+        BackupFile file = file("t1", "mc-1-big-Data.db", 1000);
+        contents.put(file.getPath(), new byte[500]);
+        assertThrows(IOException.class, () -> backup(root, "t1", Collections.singletonList(file)));
+        assertFalse(new LocalFileSystemRepository(root).contains("pod-0", file.key("t1", null), 1000));
+        try (Stream<Path> paths = Files.walk(root)) {
+            assertFalse(paths.anyMatch(p -> p.toString().endsWith(".tmp")));
+        }
+    }
+
+    @Test
+    public void testThrottle() throws IOException {
+        long start = System.nanoTime();
+        long[] read = new long[1];
+        // 100KB/s, the first permits are granted immediately
+        try (ThrottledInputStream in = new ThrottledInputStream(new ByteArrayInputStream(new byte[30 * 1024]), RateLimiter.create(100 * 1024), n -> read[0] += n)) {
+            byte[] buffer = new byte[1024];
+            while (in.read(buffer) > 0);
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+        assertEquals(30 * 1024, read[0]);
+        assertTrue(elapsedMs >= 200, "elapsed=" + elapsedMs);
+    }
+}
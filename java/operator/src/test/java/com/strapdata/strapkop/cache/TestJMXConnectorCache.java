@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.cache;
+
+import com.strapdata.strapkop.OperatorConfig;
+import com.strapdata.strapkop.k8s.ElassandraPod;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServerConnection;
+import javax.management.NotificationFilter;
+import javax.management.NotificationListener;
+import javax.management.remote.JMXConnector;
+import javax.security.auth.Subject;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestJMXConnectorCache {
+
+    static class TestConnector implements JMXConnector {
+        boolean closed = false;
+        boolean alive = true;
+
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public void connect(Map<String, ?> env) {
+        }
+
+        @Override
+        public MBeanServerConnection getMBeanServerConnection() throws IOException {
+            if (!alive)
+                throw new IOException("connection reset");
+            return (MBeanServerConnection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[] { MBeanServerConnection.class }, (proxy, method, args) -> 0L);
+        }
+
+        @Override
+        public MBeanServerConnection getMBeanServerConnection(Subject delegationSubject) throws IOException {
+            return getMBeanServerConnection();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public void addConnectionNotificationListener(NotificationListener listener, NotificationFilter filter, Object handback) {
+        }
+
+        @Override
+        public void removeConnectionNotificationListener(NotificationListener listener) {
+        }
+
+        @Override
+        public void removeConnectionNotificationListener(NotificationListener l, NotificationFilter f, Object handback) {
+        }
+
+        @Override
+        public String getConnectionId() {
+            return "test";
+        }
+    }
+
+    static JMXConnectorCache cache(int maxSize, int idleTimeoutInSec) {
+        return cache(maxSize, idleTimeoutInSec, new AtomicLong());
+    }
+
+    static JMXConnectorCache cache(int maxSize, int idleTimeoutInSec, AtomicLong clock) {
+        return new JMXConnectorCache(new OperatorConfig() {
+            @Override
+            public int getJmxPoolMaxSize() {
+                return maxSize;
+            }
+
+            @Override
+            public int getJmxPoolIdleTimeoutInSec() {
+                return idleTimeoutInSec;
+            }
+        }, new SimpleMeterRegistry(), clock::get);
+    }
+
+    static void offerAndRelease(JMXConnectorCache cache, ElassandraPod pod, TestConnector connector, String podUid) {
+        cache.release(pod, cache.offer(pod, connector, podUid));
+    }
+
+    static ElassandraPod pod(String name) {
+        return new ElassandraPod("default", "cl1", "dc1", name);
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        AtomicLong clock = new AtomicLong(1000);
+        JMXConnectorCache cache = cache(2, 600, clock);
+        TestConnector c0 = new TestConnector();
+        TestConnector c1 = new TestConnector();
+        TestConnector c2 = new TestConnector();
+        offerAndRelease(cache, pod("elassandra-cl1-dc1-0-0"), c0, "uid0");
+        clock.addAndGet(5);
+        offerAndRelease(cache, pod("elassandra-cl1-dc1-1-0"), c1, "uid1");
+        clock.addAndGet(5);
+        JMXConnectorCache.PooledConnector borrowed = cache.borrow(pod("elassandra-cl1-dc1-0-0"), "uid0").get();
+        clock.addAndGet(5);
+        cache.release(pod("elassandra-cl1-dc1-0-0"), borrowed);
+        offerAndRelease(cache, pod("elassandra-cl1-dc1-2-0"), c2, "uid2");
+
+        assertEquals(2, cache.size());
+        assertTrue(c1.closed);
+        assertFalse(c0.closed);
+        assertFalse(cache.borrow(pod("elassandra-cl1-dc1-1-0"), "uid1").isPresent());
+    }
+
+    @Test
+    public void testConnectorInUseNotEvicted() {
+        AtomicLong clock = new AtomicLong(1000);
+        JMXConnectorCache cache = cache(1, 600, clock);
+        TestConnector c0 = new TestConnector();
+        TestConnector c1 = new TestConnector();
+        JMXConnectorCache.PooledConnector borrowed = cache.offer(pod("elassandra-cl1-dc1-0-0"), c0, "uid0");
+        clock.addAndGet(5);
+        offerAndRelease(cache, pod("elassandra-cl1-dc1-1-0"), c1, "uid1");
+
+        // the pool exceeds its max size rather than closing a connector in use
+        assertFalse(c0.closed);
+        assertEquals(2, cache.size());
+        cache.release(pod("elassandra-cl1-dc1-0-0"), borrowed);
+        assertFalse(c0.closed);
+    }
+
+    @Test
+    public void testInvalidatedConnectorClosedOnRelease() {
+        JMXConnectorCache cache = cache(10, 600);
+        TestConnector c0 = new TestConnector();
+        JMXConnectorCache.PooledConnector borrowed = cache.offer(pod("elassandra-cl1-dc1-0-0"), c0, "uid0");
+        cache.invalidate(pod("elassandra-cl1-dc1-0-0"), "error");
+        assertTrue(cache.isEmpty());
+        assertFalse(c0.closed);
+        cache.release(pod("elassandra-cl1-dc1-0-0"), borrowed);
+        assertTrue(c0.closed);
+    }
+
+    @Test
+    public void testPurgeCluster() {
+        JMXConnectorCache cache = cache(10, 600);
+        TestConnector c0 = new TestConnector();
+        TestConnector c1 = new TestConnector();
+        offerAndRelease(cache, pod("elassandra-cl1-dc1-0-0"), c0, "uid0");
+        offerAndRelease(cache, new ElassandraPod("default", "cl2", "dc1", "elassandra-cl2-dc1-0-0"), c1, "uid1");
+
+        cache.purgeCluster("default", "cl1");
+        assertTrue(c0.closed);
+        assertFalse(c1.closed);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testConcurrentOfferKeepsFirstConnector() {
+        JMXConnectorCache cache = cache(10, 600);
+        TestConnector c0 = new TestConnector();
+        TestConnector c1 = new TestConnector();
+        assertSame(c0, cache.offer(pod("elassandra-cl1-dc1-0-0"), c0, "uid0").getConnector());
+        assertSame(c0, cache.offer(pod("elassandra-cl1-dc1-0-0"), c1, "uid0").getConnector());
+        assertTrue(c1.closed);
+        assertFalse(c0.closed);
+    }
+
+    @Test
+    public void testPodUidInvalidation() {
+        JMXConnectorCache cache = cache(10, 600);
+        TestConnector c0 = new TestConnector();
+        TestConnector c1 = new TestConnector();
+        offerAndRelease(cache, pod("elassandra-cl1-dc1-0-0"), c0, "uid0");
+        offerAndRelease(cache, pod("elassandra-cl1-dc1-1-0"), c1, "uid1");
+
+        // pod re-created with a new UID
+        assertFalse(cache.borrow(pod("elassandra-cl1-dc1-0-0"), "uid0-bis").isPresent());
+        assertTrue(c0.closed);
+
+        cache.invalidatePodName("default", "elassandra-cl1-dc1-1-0", "uid1");
+        assertFalse(c1.closed);
+        cache.invalidatePodUid("uid1");
+        assertTrue(c1.closed);
+        assertTrue(cache.isEmpty());
+    }
+
+    @Test
+    public void testProbe() {
+        AtomicLong clock = new AtomicLong(0);
+        JMXConnectorCache cache = cache(10, 1, clock);
+        TestConnector idle = new TestConnector();
+        TestConnector busy = new TestConnector();
+        offerAndRelease(cache, pod("elassandra-cl1-dc1-0-0"), idle, "uid0");
+        JMXConnectorCache.PooledConnector borrowed = cache.offer(pod("elassandra-cl1-dc1-1-0"), busy, "uid1");
+        clock.addAndGet(2000);
+        cache.probe();
+        assertTrue(idle.closed);
+        assertFalse(busy.closed);
+
+        // the idle time restarts on release
+        cache.release(pod("elassandra-cl1-dc1-1-0"), borrowed);
+        cache.probe();
+        assertFalse(busy.closed);
+        clock.addAndGet(2000);
+        cache.probe();
+        assertTrue(busy.closed);
+
+        cache = cache(10, 600);
+        TestConnector alive = new TestConnector();
+        offerAndRelease(cache, pod("elassandra-cl1-dc1-1-0"), alive, "uid1");
+        TestConnector dead = new TestConnector();
+        dead.alive = false;
+        offerAndRelease(cache, pod("elassandra-cl1-dc1-0-0"), dead, "uid0");
+        cache.probe();
+        assertTrue(dead.closed);
+        assertFalse(alive.closed);
+        assertEquals(1, cache.size());
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.cache;
+
+import com.google.common.collect.ImmutableList;
+import com.strapdata.strapkop.model.sidecar.ElassandraNodeStatus;
+import com.strapdata.strapkop.sidecar.NodeSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestNodeStatusRing {
+
+    @Test
+    public void testEmpty() {
+        NodeStatusRing ring = new NodeStatusRing(4);
+        assertEquals(Optional.empty(), ring.latest());
+        assertEquals(0L, ring.latestTimestamp());
+        assertEquals(0, ring.consecutive(ElassandraNodeStatus.NORMAL));
+        assertTrue(ring.history().isEmpty());
+    }
+
+    @Test
+    public void testWrapAround() {
+        NodeStatusRing ring = new NodeStatusRing(3);
+        ring.record(ElassandraNodeStatus.STARTING, 1);
+        ring.record(ElassandraNodeStatus.JOINING, 2);
+        ring.record(ElassandraNodeStatus.NORMAL, 3);
+        ring.record(ElassandraNodeStatus.NORMAL, 4);
+        assertEquals(ImmutableList.of(ElassandraNodeStatus.JOINING, ElassandraNodeStatus.NORMAL, ElassandraNodeStatus.NORMAL), ring.history());
+        assertEquals(Optional.of(ElassandraNodeStatus.NORMAL), ring.latest());
+        assertEquals(4L, ring.latestTimestamp());
+        assertEquals(2, ring.consecutive(ElassandraNodeStatus.NORMAL));
+        assertEquals(0, ring.consecutive(ElassandraNodeStatus.JOINING));
+
+        ring.record(ElassandraNodeStatus.UNKNOWN, 5);
+        assertEquals(1, ring.consecutive(ElassandraNodeStatus.UNKNOWN));
+        assertEquals(ImmutableList.of(ElassandraNodeStatus.NORMAL, ElassandraNodeStatus.NORMAL, ElassandraNodeStatus.UNKNOWN), ring.history());
+    }
+
+    @Test
+    public void testStale() {
+        NodeStatusRing ring = new NodeStatusRing(2);
+        ring.record(ElassandraNodeStatus.LEAVING, 100);
+        assertEquals(Optional.of(ElassandraNodeStatus.LEAVING), ring.latest(100));
+        assertEquals(Optional.empty(), ring.latest(101));
+    }
+
+    @Test
+    public void testSnapshot() {
+        NodeStatusRing ring = new NodeStatusRing(2);
+        NodeSnapshot snapshot = new NodeSnapshot();
+        snapshot.setTimestamp(10);
+        snapshot.setOperationMode(ElassandraNodeStatus.DECOMMISSIONED);
+        ring.record(snapshot);
+        // a failed poll keeps the last snapshot
+        ring.record(ElassandraNodeStatus.UNKNOWN, 20);
+        assertSame(snapshot, ring.getLastSnapshot());
+        assertEquals(ImmutableList.of(ElassandraNodeStatus.DECOMMISSIONED, ElassandraNodeStatus.UNKNOWN), ring.history());
+    }
+}
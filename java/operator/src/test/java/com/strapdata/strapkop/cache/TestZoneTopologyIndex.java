@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.strapdata.strapkop.cache;
+
+import com.strapdata.strapkop.model.Key;
+import io.kubernetes.client.openapi.models.V1StatefulSet;
+import io.kubernetes.client.openapi.models.V1StatefulSetSpec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestZoneTopologyIndex {
+
+    static V1StatefulSet sts(int replicas) {
+        return new V1StatefulSet().spec(new V1StatefulSetSpec().replicas(replicas));
+    }
+
+    @Test
+    public void testScaleUpAndDown() {
+        ZoneTopologyIndex index = new ZoneTopologyIndex(new SimpleMeterRegistry());
+        Key dc = new Key("default", "elassandra-cl1-dc1");
+        index.updateNode("node-a1", "a");
+        index.updateNode("node-a2", "a");
+        index.updateNode("node-b1", "b");
+        index.updateNode("node-c1", "c");
+        assertEquals(4, index.totalNodes());
+
+        // smallest zone first, then lexical order
+        assertEquals("b", index.nextToScaleUp(dc).get().getName());
+        index.updateStatefulSet(dc, "b", sts(1));
+        assertEquals("c", index.nextToScaleUp(dc).get().getName());
+        index.updateStatefulSet(dc, "c", sts(1));
+        assertEquals("a", index.nextToScaleUp(dc).get().getName());
+        index.updateStatefulSet(dc, "a", sts(2));
+        assertEquals(4, index.totalReplicas(dc));
+        assertFalse(index.nextToScaleUp(dc).isPresent());
+
+        // largest zone first
+        assertEquals("a", index.nextToScaleDown(dc).get().getName());
+
+        // node moved to another zone
+        index.updateNode("node-a2", "c");
+        assertEquals(2, (int) index.zoneSizes().get("c"));
+        index.updateNode("node-c3", "c");
+        assertEquals("c", index.nextToScaleUp(dc).get().getName());
+
+        index.removeNode("node-c1");
+        index.removeStatefulSet(dc, "a");
+        assertEquals(2, index.totalReplicas(dc));
+
+        index.purgeDataCenter(dc);
+        assertEquals(0, index.totalReplicas(dc));
+    }
+
+    /**
+     * 600 nodes in 30 zones shared by 200 datacenters, replica counts stay consistent with statefulset updates.
+     */
+    @Test
+    public void testManyDataCenters() {
+        ZoneTopologyIndex index = new ZoneTopologyIndex(new SimpleMeterRegistry());
+        int zones = 30;
+        for (int i = 0; i < 600; i++)
+            index.updateNode("node-" + i, "zone-" + (i % zones));
+        assertEquals(600, index.totalNodes());
+
+        List<Key> dataCenters = new ArrayList<>();
+        int[][] replicas = new int[200][zones];
+        for (int i = 0; i < 200; i++) {
+            Key dc = new Key("ns" + (i % 10), "elassandra-cl" + i + "-dc1");
+            dataCenters.add(dc);
+            for (int z = 0; z < zones; z++) {
+                replicas[i][z] = (i + z) % 5;
+                index.updateStatefulSet(dc, "zone-" + z, sts(replicas[i][z]));
+            }
+        }
+
+        for (int r = 0; r < 100; r++) {
+            for (int i = 0; i < dataCenters.size(); i++) {
+                Key dc = dataCenters.get(i);
+                // every zone has free nodes and some replicas
+                assertTrue(index.nextToScaleUp(dc).isPresent());
+                assertTrue(index.nextToScaleDown(dc).isPresent());
+                // simulate a statefulset informer update
+                replicas[i][r % zones] = r % 5;
+                index.updateStatefulSet(dc, "zone-" + (r % zones), sts(r % 5));
+                assertEquals(Arrays.stream(replicas[i]).sum(), index.totalReplicas(dc));
+            }
+        }
+    }
+}
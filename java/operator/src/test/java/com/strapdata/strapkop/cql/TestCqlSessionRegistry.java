@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.cql;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.LatencyTracker;
+import com.datastax.driver.core.Session;
+import com.strapdata.strapkop.OperatorConfig;
+import com.strapdata.strapkop.model.k8s.datacenter.DataCenter;
+import com.strapdata.strapkop.model.k8s.datacenter.DataCenterSpec;
+import com.strapdata.strapkop.model.k8s.datacenter.DataCenterStatus;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.reactivex.Single;
+import io.vavr.Tuple2;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class TestCqlSessionRegistry {
+
+    static DataCenter dataCenter() {
+        return new DataCenter()
+                .setSpec(new DataCenterSpec()
+                        .setClusterName("cl1")
+                        .setDatacenterName("dc1"))
+                .setMetadata(new V1ObjectMeta().namespace("default").name("elassandra-cl1-dc1"));
+    }
+
+    @Test
+    public void testReplaceBorrowedSession() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        // clusters without any host up, so that the cached session is replaced on the next borrow
+        Cluster cluster1 = mock(Cluster.class, RETURNS_DEEP_STUBS);
+        Cluster cluster2 = mock(Cluster.class, RETURNS_DEEP_STUBS);
+        CqlRoleManager cqlRoleManager = mock(CqlRoleManager.class);
+        when(cqlRoleManager.connect(any(), any())).thenReturn(
+                Single.just(new Tuple2<>(cluster1, mock(Session.class))),
+                Single.just(new Tuple2<>(cluster2, mock(Session.class))));
+        CqlSessionRegistry sessionRegistry = new CqlSessionRegistry(cqlRoleManager, new OperatorConfig(), registry);
+        DataCenter dc = dataCenter();
+
+        CqlSessionRegistry.CqlSession session1 = sessionRegistry.borrow(dc, new DataCenterStatus()).blockingGet();
+        assertSame(cluster1, session1.cluster);
+        assertNotNull(registry.find("cql.driver.requests").tag("datacenter", "dc1").functionTimer());
+
+        CqlSessionRegistry.CqlSession session2 = sessionRegistry.borrow(dc, new DataCenterStatus()).blockingGet();
+        assertSame(cluster2, session2.cluster);
+        verify(cluster1, never()).closeAsync();
+
+        // the replaced session is closed once released, the meters of the new session are kept
+        sessionRegistry.release(session1);
+        verify(cluster1).closeAsync();
+        verify(cluster1).unregister(any(LatencyTracker.class));
+        assertNotNull(registry.find("cql.driver.requests").tag("datacenter", "dc1").functionTimer());
+        assertNotNull(registry.find("cql.driver.hosts").tags("datacenter", "dc1", "state", "known").gauge());
+        verify(cluster2, never()).unregister(any(LatencyTracker.class));
+
+        sessionRegistry.release(session2);
+        sessionRegistry.invalidate(dc);
+        assertNull(registry.find("cql.driver.requests").tag("datacenter", "dc1").functionTimer());
+    }
+}
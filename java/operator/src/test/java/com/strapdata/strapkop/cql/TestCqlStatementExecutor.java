@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.cql;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.google.common.util.concurrent.Futures;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+public class TestCqlStatementExecutor {
+
+    @Test
+    public void testStatementLatencyRecorded() throws Exception {
+        Session session = mock(Session.class);
+        ResultSetFuture resultSetFuture = mock(ResultSetFuture.class);
+        when(resultSetFuture.get()).thenReturn(mock(ResultSet.class));
+        when(resultSetFuture.isDone()).thenReturn(true);
+        when(session.executeAsync("GRANT SELECT ON ks.t TO r1")).thenReturn(resultSetFuture);
+        when(session.executeAsync("bad")).thenReturn(Futures.immediateFailedFuture(new IllegalStateException("syntax error")));
+        when(session.executeAsync(any(SimpleStatement.class))).thenReturn(resultSetFuture);
+
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CqlStatementExecutor executor = new CqlStatementExecutor(meterRegistry);
+        executor.executeSimple(session, "grant", "GRANT SELECT ON ks.t TO r1").blockingGet();
+        executor.executeSimple(session, "grant", "bad").test().assertError(IllegalStateException.class);
+        executor.executeRead(session, "select", "SELECT * FROM system_schema.keyspaces").blockingGet();
+
+        assertEquals(1, meterRegistry.get("cql.statement").tags("type", "grant", "outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get("cql.statement").tags("type", "grant", "outcome", "error").timer().count());
+        assertEquals(1, meterRegistry.get("cql.statement").tags("type", "select", "outcome", "success").timer().count());
+        verify(session).executeAsync(argThat((SimpleStatement s) -> s.isIdempotent() && s.getQueryString().startsWith("SELECT")));
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.cql;
+
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
+import com.strapdata.strapkop.OperatorConfig;
+import io.kubernetes.client.informer.SharedInformerFactory;
+import io.kubernetes.client.openapi.models.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestHostHealthTracker {
+
+    static V1Pod pod(String name, boolean ready) {
+        return new V1Pod()
+                .metadata(new V1ObjectMeta().name(name).namespace("default"))
+                .status(new V1PodStatus().addConditionsItem(new V1PodCondition().type("Ready").status(ready ? "True" : "False")));
+    }
+
+    static V1StatefulSet sts(int replicas, int updatedReplicas, String currentRevision, String updateRevision) {
+        return new V1StatefulSet()
+                .metadata(new V1ObjectMeta().name("elassandra-cl1-dc1-0").namespace("default"))
+                .status(new V1StatefulSetStatus()
+                        .replicas(replicas)
+                        .updatedReplicas(updatedReplicas)
+                        .currentRevision(currentRevision)
+                        .updateRevision(updateRevision));
+    }
+
+    @Test
+    public void testEwma() {
+        HostHealthTracker.Ewma ewma = new HostHealthTracker.Ewma(0.5);
+        assertEquals(0.5, ewma.update(true), 0.001);
+        assertEquals(0.75, ewma.update(true), 0.001);
+        assertEquals(0.375, ewma.update(false), 0.001);
+        assertEquals(0.375, ewma.rate(), 0.001);
+    }
+
+    @Test
+    public void testEwmaDecay() {
+        AtomicLong clock = new AtomicLong(0);
+        HostHealthTracker.Ewma ewma = new HostHealthTracker.Ewma(0.5, 1000, clock::get);
+        assertEquals(0.5, ewma.update(true), 0.001);
+        assertEquals(0.75, ewma.update(true), 0.001);
+        clock.addAndGet(1000);
+        assertEquals(0.375, ewma.rate(), 0.001);
+        clock.addAndGet(2000);
+        assertEquals(0.09375, ewma.rate(), 0.001);
+        // the update applies to the decayed rate
+        assertEquals(0.046875, ewma.update(false), 0.001);
+    }
+
+    @Test
+    public void testDegradedHosts() throws Exception {
+        AtomicLong clock = new AtomicLong(0);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        HostHealthTracker tracker = new HostHealthTracker(mock(SharedInformerFactory.class), new OperatorConfig(), registry, clock::get);
+        Host host = mock(Host.class);
+        when(host.getAddress()).thenReturn(InetAddress.getByName("10.0.0.1"));
+        Exception failure = new OperationTimedOutException(new InetSocketAddress("10.0.0.1", 9042));
+
+        tracker.update(host, null, failure, 0);
+        tracker.update(host, null, failure, 0);
+        assertTrue(tracker.isDegraded(host));
+        assertEquals(1.0, registry.get("cql.host.degraded").gauge().value(), 0.001);
+
+        // back up
+        tracker.reset(host);
+        assertFalse(tracker.isDegraded(host));
+        assertEquals(0.0, registry.get("cql.host.degraded").gauge().value(), 0.001);
+
+        // no more requests, the failure rate decays
+        tracker.update(host, null, failure, 0);
+        tracker.update(host, null, failure, 0);
+        assertTrue(tracker.isDegraded(host));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(new OperatorConfig().getCqlHostFailureHalfLifeMillis()));
+        assertFalse(tracker.isDegraded(host));
+    }
+
+    @Test
+    public void testHostFailure() {
+        assertTrue(HostHealthTracker.isHostFailure(new OperationTimedOutException(new InetSocketAddress("127.0.0.1", 9042))));
+        assertFalse(HostHealthTracker.isHostFailure(new InvalidQueryException("keyspace already exists")));
+    }
+
+    @Test
+    public void testRestartingPods() {
+        V1StatefulSet stable = sts(3, 3, "rev1", "rev1");
+        assertFalse(HostHealthTracker.isRestarting(pod("elassandra-cl1-dc1-0-2", true), stable));
+        assertTrue(HostHealthTracker.isRestarting(pod("elassandra-cl1-dc1-0-2", false), stable));
+
+        V1Pod terminating = pod("elassandra-cl1-dc1-0-1", true);
+        terminating.getMetadata().setDeletionTimestamp(DateTime.now());
+        assertTrue(HostHealthTracker.isRestarting(terminating, stable));
+
+        // rolling update, pod 2 already updated, pod 1 is the next one
+        V1StatefulSet rolling = sts(3, 1, "rev1", "rev2");
+        assertFalse(HostHealthTracker.isRestarting(pod("elassandra-cl1-dc1-0-2", true), rolling));
+        assertTrue(HostHealthTracker.isRestarting(pod("elassandra-cl1-dc1-0-1", true), rolling));
+        assertFalse(HostHealthTracker.isRestarting(pod("elassandra-cl1-dc1-0-0", true), rolling));
+        assertFalse(HostHealthTracker.isRestarting(pod("elassandra-cl1-dc1-0-0", true), null));
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.cql;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestKeyspaceReplicationPlan {
+
+    @Test
+    public void testReplicationMap() {
+        assertEquals(ImmutableMap.of("dc1", 3, "dc2", 1),
+                KeyspaceReplicationPlan.replicationMap(ImmutableMap.of("class", "org.apache.cassandra.locator.NetworkTopologyStrategy", "dc1", "3", "dc2", "1")));
+    }
+
+    @Test
+    public void testIncreaseByOnePerWave() {
+        Map<String, Map<String, Integer>> current = new HashMap<>();
+        current.put("ks1", ImmutableMap.of("dc1", 1));
+        current.put("ks2", ImmutableMap.of("dc1", 2, "dc2", 3));
+        KeyspaceReplicationPlan plan = KeyspaceReplicationPlan.plan("dc1", current, ImmutableMap.of("ks1", 3, "ks2", 3));
+
+        assertEquals(2, plan.getWaves().size());
+        assertEquals(2, plan.getWaves().get(0).size());
+        assertEquals(ImmutableMap.of("dc1", 2), plan.getWaves().get(0).get(0).getReplicationMap());
+        assertEquals(ImmutableMap.of("dc1", 3, "dc2", 3), plan.getWaves().get(0).get(1).getReplicationMap());
+        assertEquals(1, plan.getWaves().get(1).size());
+        assertEquals(ImmutableMap.of("dc1", 3), plan.getWaves().get(1).get(0).getReplicationMap());
+        for (KeyspaceReplicationPlan.Change change : plan.getWaves().get(1))
+            assertTrue(change.isIncrease());
+    }
+
+    @Test
+    public void testDecreaseFirstAndUnchanged() {
+        Map<String, Map<String, Integer>> current = new HashMap<>();
+        current.put("ks1", ImmutableMap.of("dc1", 3));
+        current.put("ks2", ImmutableMap.of("dc1", 3, "dc2", 3));
+        current.put("ks3", ImmutableMap.of("dc1", 2));
+        current.put("ks4", ImmutableMap.of("dc1", 0));
+        KeyspaceReplicationPlan plan = KeyspaceReplicationPlan.plan("dc1", current,
+                ImmutableMap.of("ks1", 0, "ks2", 0, "ks3", 2, "ks4", 1, "missing", 1));
+
+        // ks1 cannot lose its last replicas
+        assertEquals(ImmutableSet.of("ks1", "ks3"), plan.getUnchanged());
+        assertEquals(ImmutableSet.of("missing"), plan.getMissing());
+        assertEquals(2, plan.getWaves().size());
+        KeyspaceReplicationPlan.Change decrease = plan.getWaves().get(0).get(0);
+        assertEquals("ks2", decrease.getKeyspace());
+        assertFalse(decrease.isIncrease());
+        assertEquals(ImmutableMap.of("dc1", 0, "dc2", 3), decrease.getReplicationMap());
+        assertEquals("ks4", plan.getWaves().get(1).get(0).getKeyspace());
+    }
+
+    @Test
+    public void testNoChange() {
+        KeyspaceReplicationPlan plan = KeyspaceReplicationPlan.plan("dc1",
+                ImmutableMap.of("ks1", ImmutableMap.of("dc1", 3)), ImmutableMap.of("ks1", 3));
+        assertTrue(plan.isEmpty());
+    }
+
+    @Test
+    public void testMergeMultipleDatacenters() {
+        Map<String, Map<String, Integer>> current = new HashMap<>();
+        current.put("ks1", ImmutableMap.of("dc1", 3));
+        current.put("ks2", ImmutableMap.of("dc1", 3, "dc2", 2, "dc3", 2));
+        current.put("ks3", ImmutableMap.of("dc2", 1));
+        Map<String, Map<String, Integer>> changes = KeyspaceReplicationPlan.merge(current, ImmutableMap.of(
+                "ks1", ImmutableMap.of("dc2", 3, "dc3", 1),
+                "ks2", ImmutableMap.of("dc2", 2, "dc3", 0),
+                "ks3", ImmutableMap.of("dc2", 0),
+                "missing", ImmutableMap.of("dc2", 1)));
+
+        assertEquals(ImmutableMap.of(
+                "ks1", ImmutableMap.of("dc1", 3, "dc2", 3, "dc3", 1),
+                "ks2", ImmutableMap.of("dc1", 3, "dc2", 2)), changes);
+    }
+}
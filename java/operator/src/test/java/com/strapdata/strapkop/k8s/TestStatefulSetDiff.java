@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.k8s;
+
+import com.strapdata.strapkop.model.k8s.OperatorLabels;
+import io.kubernetes.client.openapi.models.*;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestStatefulSetDiff {
+
+    private V1StatefulSet sts(int replicas, String fingerprint) {
+        return new V1StatefulSet()
+                .metadata(new V1ObjectMeta().name("elassandra-cl1-dc1-0").putLabelsItem(OperatorLabels.RACK, "a"))
+                .spec(new V1StatefulSetSpec()
+                        .replicas(replicas)
+                        .template(new V1PodTemplateSpec()
+                                .metadata(new V1ObjectMeta().putAnnotationsItem(OperatorLabels.DATACENTER_FINGERPRINT, fingerprint))
+                                .spec(new V1PodSpec())));
+    }
+
+    @Test
+    public void testNoChange() {
+        V1StatefulSet existing = sts(3, "abc-123");
+        // defaulted fields set by the API server are ignored
+        existing.getSpec().getTemplate().getSpec().setRestartPolicy("Always");
+        existing.getMetadata().putLabelsItem("other", "value");
+        assertTrue(StatefulSetDiff.of(existing, sts(3, "abc-123")).isEmpty());
+    }
+
+    @Test
+    public void testReplicasOnly() {
+        StatefulSetDiff diff = StatefulSetDiff.of(sts(3, "abc-123"), sts(4, "abc-123"));
+        assertEquals(1, diff.getOperations().size());
+        assertEquals("/spec/replicas", diff.getOperations().get(0).get("path"));
+        assertFalse(diff.templateChanged());
+    }
+
+    @Test
+    public void testTemplateChanged() {
+        StatefulSetDiff diff = StatefulSetDiff.of(sts(3, "abc-123"), sts(3, "def-456"));
+        assertEquals(1, diff.getOperations().size());
+        assertTrue(diff.templateChanged());
+    }
+
+    @Test
+    public void testRackConfigMapChanged() {
+        V1StatefulSet existing = sts(3, "abc-123");
+        existing.getSpec().getTemplate().getMetadata().putAnnotationsItem(OperatorLabels.RACK_CONFIGMAP, "elassandra-cl1-dc1-rack-0-1111111");
+        V1StatefulSet desired = sts(3, "abc-123");
+        desired.getSpec().getTemplate().getMetadata().putAnnotationsItem(OperatorLabels.RACK_CONFIGMAP, "elassandra-cl1-dc1-rack-0-2222222");
+        assertTrue(StatefulSetDiff.of(existing, desired).templateChanged());
+    }
+
+    @Test
+    public void testLabelsMerged() {
+        V1StatefulSet existing = sts(3, "abc-123");
+        existing.getMetadata().putLabelsItem("other", "value");
+        V1StatefulSet desired = sts(3, "abc-123");
+        desired.getMetadata().putLabelsItem(OperatorLabels.RACK, "b");
+        StatefulSetDiff diff = StatefulSetDiff.of(existing, desired);
+        assertEquals(1, diff.getOperations().size());
+        assertEquals("/metadata/labels", diff.getOperations().get(0).get("path"));
+        assertEquals("value", ((java.util.Map<?, ?>) diff.getOperations().get(0).get("value")).get("other"));
+    }
+}
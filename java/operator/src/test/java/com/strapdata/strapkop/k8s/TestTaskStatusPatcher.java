@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.k8s;
+
+import com.strapdata.strapkop.model.k8s.task.Task;
+import io.kubernetes.client.openapi.models.V1ObjectMeta;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.reactivex.Completable;
+import io.reactivex.schedulers.TestScheduler;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTaskStatusPatcher {
+
+    static Task task(String name) {
+        Task task = new Task();
+        task.setMetadata(new V1ObjectMeta().namespace("default").name(name));
+        return task;
+    }
+
+    @Test
+    public void testThrottle() {
+        TestScheduler scheduler = new TestScheduler();
+        AtomicInteger writes = new AtomicInteger();
+        TaskStatusPatcher patcher = new TaskStatusPatcher(t -> Completable.fromAction(writes::incrementAndGet),
+                scheduler, 10_000L, new SimpleMeterRegistry());
+        scheduler.advanceTimeTo(60, TimeUnit.SECONDS);
+        Task task = task("repair1");
+
+        patcher.patch(task);
+        scheduler.triggerActions();
+        assertEquals(1, writes.get());
+
+        // coalesced in one write 10s after the previous one
+        for (int i = 0; i < 100; i++)
+            patcher.patch(task);
+        scheduler.advanceTimeBy(9, TimeUnit.SECONDS);
+        assertEquals(1, writes.get());
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertEquals(2, writes.get());
+
+        // cancelled before the final update
+        patcher.patch(task);
+        patcher.cancel(task);
+        scheduler.advanceTimeBy(1, TimeUnit.MINUTES);
+        assertEquals(2, writes.get());
+    }
+
+    @Test
+    public void testTasksAreIndependent() {
+        TestScheduler scheduler = new TestScheduler();
+        AtomicInteger writes = new AtomicInteger();
+        TaskStatusPatcher patcher = new TaskStatusPatcher(t -> Completable.fromAction(writes::incrementAndGet),
+                scheduler, 10_000L, new SimpleMeterRegistry());
+        scheduler.advanceTimeTo(60, TimeUnit.SECONDS);
+        patcher.patch(task("repair1"));
+        patcher.patch(task("repair2"));
+        scheduler.triggerActions();
+        assertEquals(2, writes.get());
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.reconcilier;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestBackupTaskReconcilier {
+
+    @Test
+    public void testRepositoryName() {
+        assertTrue(BackupTaskReconcilier.isValidRepositoryName("default"));
+        assertTrue(BackupTaskReconcilier.isValidRepositoryName("nightly-backups_2"));
+        assertFalse(BackupTaskReconcilier.isValidRepositoryName(""));
+        assertFalse(BackupTaskReconcilier.isValidRepositoryName("."));
+        assertFalse(BackupTaskReconcilier.isValidRepositoryName(".."));
+        assertFalse(BackupTaskReconcilier.isValidRepositoryName("../../etc"));
+        assertFalse(BackupTaskReconcilier.isValidRepositoryName("foo/bar"));
+        assertFalse(BackupTaskReconcilier.isValidRepositoryName("foo\\bar"));
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.reconcilier;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestRackParallelQueue {
+
+    static Map<String, String> pods(int racks, int podsPerRack) {
+        Map<String, String> rackByPod = new LinkedHashMap<>();
+        for (int i = 0; i < podsPerRack; i++)
+            for (int r = 0; r < racks; r++)
+                rackByPod.put("pod-" + r + "-" + i, Integer.toString(r));
+        return rackByPod;
+    }
+
+    @Test
+    public void testOneNodePerRack() {
+        RackParallelQueue queue = new RackParallelQueue(pods(3, 2), 1);
+        assertEquals(3, queue.concurrency());
+        assertEquals(Optional.of("pod-0-0"), queue.next());
+        assertEquals(Optional.of("pod-1-0"), queue.next());
+        assertEquals(Optional.of("pod-2-0"), queue.next());
+        assertEquals(Optional.empty(), queue.next());
+
+        queue.done("pod-1-0");
+        assertEquals(Optional.of("pod-1-1"), queue.next());
+        assertEquals(Optional.empty(), queue.next());
+        queue.done("pod-0-0");
+        queue.done("pod-2-0");
+        queue.done("pod-1-1");
+        assertFalse(queue.isFinished());
+        assertEquals(Optional.of("pod-0-1"), queue.next());
+        assertEquals(Optional.of("pod-2-1"), queue.next());
+        queue.done("pod-0-1");
+        queue.done("pod-2-1");
+        assertTrue(queue.isFinished());
+    }
+
+    @Test
+    public void testPostpone() {
+        RackParallelQueue queue = new RackParallelQueue(ImmutableMap.of("a0", "a", "a1", "a", "b0", "b"), 1);
+        assertEquals(Optional.of("a0"), queue.next(100L));
+        assertEquals(100L, queue.postponedSince("a0", 100L));
+        queue.postpone("a0", 150L);
+        assertEquals(Optional.of("a1"), queue.next(100L));   // postponed pod at the tail of its rack queue
+        assertEquals(Optional.of("b0"), queue.next(100L));
+        queue.done("a1");
+        assertEquals(Optional.empty(), queue.next(120L));   // not before 150
+        assertFalse(queue.isFinished());
+        assertEquals(Optional.of("a0"), queue.next(150L));
+        assertEquals(100L, queue.postponedSince("a0", 200L));
+        queue.done("a0");
+        queue.done("b0");
+        assertTrue(queue.isFinished());
+    }
+
+    @Test
+    public void testPostponedPodSkipped() {
+        RackParallelQueue queue = new RackParallelQueue(ImmutableMap.of("a0", "a", "a1", "a"), 1);
+        assertEquals(Optional.of("a0"), queue.next(100L));
+        queue.postpone("a0", 200L);
+        assertEquals(Optional.of("a1"), queue.next(100L));
+        queue.done("a1");
+        // the postponed pod does not hold the rack slot while waiting
+        assertEquals(Optional.empty(), queue.next(100L));
+        assertEquals(Optional.of("a0"), queue.next(200L));
+        queue.done("a0");
+        assertTrue(queue.isFinished());
+    }
+
+    @Test
+    public void testNodesPerRack() {
+        RackParallelQueue queue = new RackParallelQueue(pods(2, 3), 2);
+        assertEquals(4, queue.concurrency());
+        int running = 0;
+        while (queue.next().isPresent())
+            running++;
+        assertEquals(4, running);
+    }
+}
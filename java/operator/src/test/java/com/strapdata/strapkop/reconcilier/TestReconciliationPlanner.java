@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.strapdata.strapkop.reconcilier;
+
+import com.strapdata.strapkop.model.k8s.OperatorLabels;
+import com.strapdata.strapkop.model.k8s.datacenter.*;
+import io.kubernetes.client.openapi.models.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static com.strapdata.strapkop.reconcilier.ReconciliationPlan.StepType.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestReconciliationPlanner {
+
+    static final String FINGERPRINT = "1234567-abcdefg-0000000";
+
+    static V1StatefulSet sts(String rack, int replicas, int readyReplicas, String fingerprint) {
+        return new V1StatefulSet()
+                .metadata(new V1ObjectMeta().name("elassandra-cl1-dc1-" + rack))
+                .spec(new V1StatefulSetSpec()
+                        .replicas(replicas)
+                        .template(new V1PodTemplateSpec().metadata(new V1ObjectMeta().putAnnotationsItem(OperatorLabels.DATACENTER_FINGERPRINT, fingerprint))))
+                .status(new V1StatefulSetStatus().replicas(replicas).readyReplicas(readyReplicas));
+    }
+
+    static class SyntheticDataCenter {
+        final DataCenterSpec spec = new DataCenterSpec();
+        final DataCenterStatus status = new DataCenterStatus();
+        final SortedMap<String, V1StatefulSet> statefulSets = new TreeMap<>();
+
+        SyntheticDataCenter(int specReplicas, int... rackReplicas) {
+            spec.setReplicas(specReplicas);
+            status.setPhase(DataCenterPhase.RUNNING);
+            status.setBootstrapped(true);
+            status.setConfigMapFingerPrint(FINGERPRINT);
+            int ready = 0;
+            for (int i = 0; i < rackReplicas.length; i++) {
+                String rack = "rack" + i;
+                status.getRackStatuses().put(i, new RackStatus()
+                        .withIndex(i)
+                        .withName(rack)
+                        .withDesiredReplicas(rackReplicas[i])
+                        .withReadyReplicas(rackReplicas[i])
+                        .withHealth(Health.GREEN)
+                        .withProgressState(ProgressState.RUNNING)
+                        .withFingerprint(FINGERPRINT));
+                statefulSets.put(rack, sts(rack, rackReplicas[i], rackReplicas[i], FINGERPRINT));
+                ready += rackReplicas[i];
+            }
+            status.setReadyReplicas(ready);
+        }
+
+        ReconciliationPlan plan() {
+            return ReconciliationPlanner.plan(spec, status, statefulSets, FINGERPRINT, true);
+        }
+    }
+
+    static List<ReconciliationPlan.StepType> types(ReconciliationPlan plan) {
+        List<ReconciliationPlan.StepType> types = new ArrayList<>();
+        plan.getSteps().forEach(s -> types.add(s.getType()));
+        return types;
+    }
+
+    @Test
+    public void testStableDatacenter() {
+        ReconciliationPlan plan = new SyntheticDataCenter(3, 1, 1, 1).plan();
+        assertEquals(FINGERPRINT, plan.getFingerprint());
+        assertEquals(Arrays.asList(UPDATE_STATUS, RECONCILE_KEYSPACES, RECONCILE_ROLES, RECONCILE_PLUGINS), types(plan));
+        assertTrue(plan.requiresCqlSession());
+    }
+
+    @Test
+    public void testCqlSchemaUpToDate() {
+        SyntheticDataCenter dc = new SyntheticDataCenter(3, 1, 1, 1);
+        ReconciliationPlan plan = ReconciliationPlanner.plan(dc.spec, dc.status, dc.statefulSets, FINGERPRINT, false, true);
+        assertEquals(Arrays.asList(RECONCILE_PLUGINS), types(plan));
+        assertFalse(plan.requiresCqlSession());
+    }
+
+    @Test
+    public void testParking() {
+        SyntheticDataCenter dc = new SyntheticDataCenter(3, 1, 1, 1);
+        dc.spec.setParked(true);
+        assertEquals(Arrays.asList(PARK), types(dc.plan()));
+
+        dc.status.setPhase(DataCenterPhase.PARKED);
+        dc.status.setReadyReplicas(0);
+        assertEquals(Arrays.asList(UPDATE_STATUS), types(dc.plan()));
+        assertTrue(ReconciliationPlanner.planParking(dc.spec, dc.status, false).get().isEmpty());
+
+        dc.spec.setParked(false);
+        assertEquals(Arrays.asList(UNPARK), types(dc.plan()));
+    }
+
+    @Test
+    public void testRollingUpdate() {
+        SyntheticDataCenter dc = new SyntheticDataCenter(3, 1, 1, 1);
+        dc.statefulSets.put("rack1", sts("rack1", 1, 1, "previous"));
+        ReconciliationPlan plan = dc.plan();
+        assertEquals(Arrays.asList(ROLLING_UPDATE), types(plan));
+        assertEquals(1, (int) plan.getSteps().get(0).getRackIndex());
+
+        dc.status.getRackStatuses().get(1).setProgressState(ProgressState.UPDATING);
+        assertEquals(Arrays.asList(WAIT_ROLLING_UPDATE), types(dc.plan()));
+    }
+
+    @Test
+    public void testScaling() {
+        assertEquals(Arrays.asList(SCALE_UP), types(new SyntheticDataCenter(4, 1, 1, 1).plan()));
+
+        ReconciliationPlan plan = new SyntheticDataCenter(2, 1, 1, 1).plan();
+        assertEquals(Arrays.asList(SCALE_DOWN), types(plan));
+        assertTrue(plan.requiresCqlSession());
+    }
+
+    @Test
+    public void testWaitPodsReadyAndConfigMapGc() {
+        SyntheticDataCenter dc = new SyntheticDataCenter(3, 1, 1, 1);
+        dc.statefulSets.get("rack2").getStatus().setReadyReplicas(0);
+        dc.status.getRackStatuses().get(2).setHealth(Health.RED);
+        assertEquals(Arrays.asList(WAIT_PODS_READY), types(dc.plan()));
+
+        dc = new SyntheticDataCenter(3, 1, 1, 1);
+        dc.status.setConfigMapFingerPrint("previous");
+        dc.status.setBootstrapped(false);
+        assertEquals(Arrays.asList(UPDATE_STATUS, GC_CONFIGMAPS), types(dc.plan()));
+
+        // pods still rolling out may mount the previous configmaps
+        dc.statefulSets.get("rack1").getStatus().setUpdatedReplicas(0);
+        assertEquals(Arrays.asList(UPDATE_STATUS), types(dc.plan()));
+    }
+
+    /**
+     * Planning has no side effect, the same state always gives the same plan.
+     */
+    @Test
+    public void testPlanningIsRepeatable() {
+        SyntheticDataCenter scaleUp = new SyntheticDataCenter(9, 3, 3, 3);
+        SyntheticDataCenter stable = new SyntheticDataCenter(9, 3, 3, 3);
+        scaleUp.spec.setReplicas(12);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(Arrays.asList(SCALE_UP), types(scaleUp.plan()));
+            assertEquals(Arrays.asList(UPDATE_STATUS, RECONCILE_KEYSPACES, RECONCILE_ROLES, RECONCILE_PLUGINS), types(stable.plan()));
+        }
+        assertEquals(9, scaleUp.status.getReadyReplicas().intValue());
+    }
+
+    @Test
+    public void testStatefulSetWithoutStatus() {
+        V1StatefulSet sts = sts("rack0", 1, 1, FINGERPRINT).status(null);
+        assertFalse(ReconciliationPlanner.statefulSetIsReady(sts));
+        assertFalse(ReconciliationPlanner.statefulSetIsUpToDate(sts));
+    }
+}
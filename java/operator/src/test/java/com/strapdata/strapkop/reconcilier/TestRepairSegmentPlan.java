@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.reconcilier;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestRepairSegmentPlan {
+
+    @Test
+    public void testSplit() {
+        List<long[]> subranges = RepairSegmentPlan.split(0L, 100L, 4);
+        assertEquals(4, subranges.size());
+        assertArrayEquals(new long[]{0L, 25L}, subranges.get(0));
+        assertArrayEquals(new long[]{75L, 100L}, subranges.get(3));
+
+        // wrap-around range
+        subranges = RepairSegmentPlan.split(Long.MAX_VALUE - 9, Long.MIN_VALUE + 10, 2);
+        assertArrayEquals(new long[]{Long.MAX_VALUE - 9, Long.MIN_VALUE}, subranges.get(0));
+        assertArrayEquals(new long[]{Long.MIN_VALUE, Long.MIN_VALUE + 10}, subranges.get(1));
+
+        // whole ring
+        subranges = RepairSegmentPlan.split(Long.MIN_VALUE, Long.MIN_VALUE, 2);
+        assertEquals(Long.MIN_VALUE, subranges.get(0)[0]);
+        assertEquals(Long.MIN_VALUE, subranges.get(1)[1]);
+        assertTrue(subranges.get(0)[1] > -2 && subranges.get(0)[1] < 2);
+
+        // range too small
+        assertEquals(1, RepairSegmentPlan.split(0L, 1L, 4).size());
+    }
+
+    @Test
+    public void testNoReplicaOverlap() {
+        // 3 nodes, RF=2
+        SortedMap<String, Map<List<String>, List<String>>> ranges = new TreeMap<>();
+        ranges.put("ks", ImmutableMap.of(
+                ImmutableList.of("-100", "0"), ImmutableList.of("10.0.0.1", "10.0.0.2"),
+                ImmutableList.of("0", "100"), ImmutableList.of("10.0.0.2", "10.0.0.3"),
+                ImmutableList.of("100", "-100"), ImmutableList.of("10.0.0.3", "10.0.0.1")));
+        Map<String, String> local = ImmutableMap.of("10.0.0.1", "pod-0", "10.0.0.2", "pod-1", "10.0.0.3", "pod-2");
+        RepairSegmentPlan plan = RepairSegmentPlan.plan(ranges, local, 2, 2);
+        assertEquals(6, plan.getTotal());
+
+        // all ranges share a replica with each other, so segments run one at a time
+        RepairSegmentPlan.Segment first = plan.next().get();
+        assertFalse(plan.next().isPresent());
+        assertTrue(plan.fail(first));   // retried later
+        assertEquals(0, plan.getRunning());
+
+        Optional<RepairSegmentPlan.Segment> next;
+        while ((next = plan.next()).isPresent()) {
+            assertFalse(plan.next().isPresent());
+            if (next.get() == first) {
+                assertEquals(2, first.getAttempts());
+                assertFalse(plan.fail(first));
+            } else {
+                plan.succeed(next.get());
+            }
+        }
+        assertTrue(plan.isFinished());
+        assertEquals(1, plan.getFailed());
+        assertEquals(ImmutableList.of(first), plan.getFailedSegments());
+        assertEquals(5, plan.getCompleted());
+        assertEquals(100.0, plan.percentage());
+        assertEquals(6, plan.getPodStats().values().stream().mapToInt(RepairSegmentPlan.PodStats::getTotal).sum());
+    }
+
+    @Test
+    public void testRemoteReplicasOnly() {
+        SortedMap<String, Map<List<String>, List<String>>> ranges = new TreeMap<>();
+        ranges.put("ks", ImmutableMap.of(ImmutableList.of("0", "100"), ImmutableList.of("10.1.0.1")));
+        RepairSegmentPlan plan = RepairSegmentPlan.plan(ranges, ImmutableMap.of("10.0.0.1", "pod-0"), 4, 3);
+        assertEquals(0, plan.getTotal());
+        assertTrue(plan.isFinished());
+    }
+
+    /**
+     * 40 nodes, 16 vnodes, RF=3 : count the rounds of concurrent segments, when each segment lasts one round.
+     */
+    @Test
+    public void testRounds() {
+        final int nodes = 40, vnodes = 16, rf = 3;
+        final Random random = new Random(42);
+        final TreeMap<Long, Integer> ring = new TreeMap<>();
+        while (ring.size() < nodes * vnodes)
+            ring.put(random.nextLong(), ring.size() % nodes);
+        final List<Long> tokens = new ArrayList<>(ring.keySet());
+        final Map<List<String>, List<String>> rangeToEndpoints = new HashMap<>();
+        final Map<String, String> local = new HashMap<>();
+        for (int i = 0; i < nodes; i++)
+            local.put("10.0.0." + i, "pod-" + i);
+        for (int i = 0; i < tokens.size(); i++) {
+            List<String> replicas = new ArrayList<>();
+            for (int j = 1; replicas.size() < rf; j++) {
+                String endpoint = "10.0.0." + ring.get(tokens.get((i + j) % tokens.size()));
+                if (!replicas.contains(endpoint))
+                    replicas.add(endpoint);
+            }
+            rangeToEndpoints.put(ImmutableList.of(Long.toString(tokens.get(i)), Long.toString(tokens.get((i + 1) % tokens.size()))), replicas);
+        }
+        SortedMap<String, Map<List<String>, List<String>>> ranges = new TreeMap<>();
+        ranges.put("ks", rangeToEndpoints);
+
+        for (int concurrency : new int[] { 1, 4, 8, 13 }) {
+            RepairSegmentPlan plan = RepairSegmentPlan.plan(ranges, local, 1, 1);
+            int rounds = 0;
+            while (!plan.isFinished()) {
+                List<RepairSegmentPlan.Segment> round = new ArrayList<>();
+                Optional<RepairSegmentPlan.Segment> s;
+                while (round.size() < concurrency && (s = plan.next()).isPresent())
+                    round.add(s.get());
+                round.forEach(plan::succeed);
+                rounds++;
+            }
+            if (concurrency == 1)
+                assertEquals(plan.getTotal(), rounds);
+            else
+                assertTrue(rounds < plan.getTotal() / 2);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.reconcilier;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TestScaleDownPlan {
+
+    @Test
+    public void testBalancedScaleDown() {
+        ScaleDownPlan plan = ScaleDownPlan.plan(new TreeMap<>(ImmutableMap.of("a", 3, "b", 3, "c", 3)), 6, 3);
+        assertEquals(ImmutableMap.of("a", 2, "b", 2, "c", 2), plan.getTargetReplicas());
+        assertEquals(1, plan.getWaves().size());
+        assertEquals(3, plan.getWaves().get(0).size());
+        for (ScaleDownPlan.Step step : plan.getWaves().get(0))
+            assertEquals(2, step.getOrdinal());
+    }
+
+    @Test
+    public void testParallelismLimit() {
+        ScaleDownPlan plan = ScaleDownPlan.plan(new TreeMap<>(ImmutableMap.of("a", 2, "b", 2, "c", 2)), 3, 1);
+        assertEquals(3, plan.targetTotal());
+        assertEquals(3, plan.getWaves().size());
+        for (List<ScaleDownPlan.Step> wave : plan.getWaves())
+            assertEquals(1, wave.size());
+    }
+
+    @Test
+    public void testUnbalancedRacks() {
+        ScaleDownPlan plan = ScaleDownPlan.plan(new TreeMap<>(ImmutableMap.of("a", 4, "b", 1)), 2, 2);
+        assertEquals(ImmutableMap.of("a", 1, "b", 1), plan.getTargetReplicas());
+        // pods of the same rack are never decommissioned concurrently, last ordinal first
+        assertEquals(3, plan.getWaves().size());
+        assertEquals(3, plan.getWaves().get(0).get(0).getOrdinal());
+        assertEquals(1, plan.getWaves().get(2).get(0).getOrdinal());
+    }
+
+    @Test
+    public void testNothingToDo() {
+        ScaleDownPlan plan = ScaleDownPlan.plan(new TreeMap<>(ImmutableMap.of("a", 1)), 1, 2);
+        assertTrue(plan.isEmpty());
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.sidecar;
+
+import com.strapdata.strapkop.OperatorConfig;
+import com.strapdata.strapkop.cache.HttpConnectionCache;
+import com.strapdata.strapkop.k8s.ElassandraPod;
+import com.strapdata.strapkop.ssl.SslContextCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.handler.ssl.SslContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestHttpClientFactory {
+
+    static SslContextCache sslContextCache(SimpleMeterRegistry meterRegistry) {
+        return new SslContextCache(null, new OperatorConfig(), meterRegistry) {
+            @Override
+            public void checkRotation(String namespace, String clusterName) {
+                // CA not loaded yet
+            }
+        };
+    }
+
+    /**
+     * 500 concurrent lookups of 50 SSL pods, with 50 threads released at once.
+     * Lookups must not block on the CA (the authority manager is not even available here) and each pod gets a single client.
+     */
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SidecarHttpClientPool pool = new SidecarHttpClientPool(new OperatorConfig(), meterRegistry);
+        HttpClientFactory factory = new HttpClientFactory(new HttpConnectionCache(meterRegistry), sslContextCache(meterRegistry), null, pool);
+
+        int pods = 50;
+        int lookups = 500;
+        List<ElassandraPod> elassandraPods = new ArrayList<>(pods);
+        for (int i = 0; i < pods; i++)
+            elassandraPods.add(new ElassandraPod("default", "cl1", "dc1", "elassandra-cl1-dc1-0-" + i).setSsl(true));
+
+        ExecutorService executor = Executors.newFixedThreadPool(50);
+        try {
+            CountDownLatch startGate = new CountDownLatch(1);
+            List<Future<HttpClient>> futures = new ArrayList<>(lookups);
+            for (int i = 0; i < lookups; i++) {
+                final ElassandraPod pod = elassandraPods.get(i % pods);
+                futures.add(executor.submit(() -> {
+                    startGate.await();
+                    return factory.clientForPod(pod, null);
+                }));
+            }
+
+            startGate.countDown();
+            Set<HttpClient> clients = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Future<HttpClient> future : futures)
+                clients.add(future.get(10, TimeUnit.SECONDS));
+            assertEquals(pods, clients.size());
+        } finally {
+            executor.shutdownNow();
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testFailedSharedClientIsNotReplayed() throws Exception {
+        SidecarHttpClientPool pool = new SidecarHttpClientPool(new OperatorConfig(), new SimpleMeterRegistry());
+        AtomicInteger builds = new AtomicInteger();
+        Callable<SslContext> failingSslContext = () -> {
+            builds.incrementAndGet();
+            throw new IllegalStateException("CA not available");
+        };
+        try {
+            pool.client("default", "cl1", failingSslContext).test().await().assertError(IllegalStateException.class);
+            pool.client("default", "cl1", failingSslContext).test().await().assertError(IllegalStateException.class);
+            assertEquals(2, builds.get());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testInvalidateDoesNotCreateClient() {
+        SidecarHttpClientPool pool = new SidecarHttpClientPool(new OperatorConfig(), new SimpleMeterRegistry());
+        AtomicInteger builds = new AtomicInteger();
+        try {
+            pool.client("default", "cl1", () -> {
+                builds.incrementAndGet();
+                return null;
+            });
+            pool.invalidate("default", "cl1");
+            assertEquals(0, builds.get());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testInvalidatedClientIsRecreated() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SidecarHttpClientPool pool = new SidecarHttpClientPool(new OperatorConfig(), meterRegistry);
+        HttpClientFactory factory = new HttpClientFactory(new HttpConnectionCache(meterRegistry), sslContextCache(meterRegistry), null, pool);
+        try {
+            ElassandraPod pod = new ElassandraPod("default", "cl1", "dc1", "elassandra-cl1-dc1-0-0");
+            HttpClient client = factory.clientForPod(pod, null);
+            assertSame(client, factory.clientForPod(pod, null));
+
+            factory.invalidateClient(pod, null);
+            assertFalse(client.isRunning());
+            HttpClient client2 = factory.clientForPod(pod, null);
+            assertNotSame(client, client2);
+            assertTrue(client2.isRunning());
+        } finally {
+            pool.close();
+        }
+    }
+}
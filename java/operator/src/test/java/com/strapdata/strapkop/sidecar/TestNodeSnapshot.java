@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.sidecar;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.strapdata.strapkop.model.sidecar.ElassandraNodeStatus;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestNodeSnapshot {
+
+    @Test
+    public void testSnapshot() {
+        Map<ObjectName, Map<String, Object>> attributes = new HashMap<>();
+        attributes.put(JmxmpElassandraProxy.STORAGE_SERVICE_MBEAN_NAME, ImmutableMap.<String, Object>builder()
+                .put("OperationMode", "NORMAL")
+                .put("LocalHostId", "a1b2")
+                .put("Load", 1024.0)
+                .put("Joined", true)
+                .put("GossipRunning", true)
+                .put("LiveNodes", ImmutableList.of("10.0.0.1", "10.0.0.2"))
+                .put("UnreachableNodes", ImmutableList.of("10.0.0.3"))
+                .build());
+        attributes.put(JmxmpElassandraProxy.FAILURE_DETECTOR_MBEAN_NAME, ImmutableMap.of(
+                "UpEndpointCount", 2,
+                "DownEndpointCount", 1,
+                "SimpleStates", ImmutableMap.of("/10.0.0.3", "DOWN")));
+        attributes.put(JmxmpElassandraProxy.ENDPOINT_SNITCH_INFO_MBEAN_NAME, ImmutableMap.of("Datacenter", "dc1", "Rack", "a"));
+
+        NodeSnapshot snapshot = NodeSnapshot.of(attributes);
+        assertEquals(ElassandraNodeStatus.NORMAL, snapshot.getOperationMode());
+        assertEquals("a1b2", snapshot.getHostId());
+        assertEquals(1024.0, snapshot.getLoad());
+        assertTrue(snapshot.isJoined());
+        assertFalse(snapshot.isNativeTransportRunning());
+        assertEquals(2, snapshot.getLiveNodes().size());
+        assertEquals(1, snapshot.getDownEndpointCount());
+        assertEquals("DOWN", snapshot.getSimpleStates().get("/10.0.0.3"));
+        assertEquals("dc1", snapshot.getDatacenter());
+        assertEquals("a", snapshot.getRack());
+        // elasticsearch MBean not registered
+        assertNull(snapshot.getElasticsearchStatus());
+        assertNull(snapshot.getSearchEnabled());
+    }
+
+    @Test
+    public void testUnknownOperationMode() {
+        Map<ObjectName, Map<String, Object>> attributes = new HashMap<>();
+        attributes.put(JmxmpElassandraProxy.STORAGE_SERVICE_MBEAN_NAME, ImmutableMap.of("OperationMode", "BOOTSTRAP_FAILED"));
+        attributes.put(JmxmpElassandraProxy.ELASTIC_NODE_METRICS_MBEAN_NAME, ImmutableMap.of("Status", "GREEN", "SearchEnabled", true));
+
+        NodeSnapshot snapshot = NodeSnapshot.of(attributes);
+        assertEquals(ElassandraNodeStatus.UNKNOWN, snapshot.getOperationMode());
+        assertTrue(snapshot.getLiveNodes().isEmpty());
+        assertEquals("GREEN", snapshot.getElasticsearchStatus());
+        assertTrue(snapshot.getSearchEnabled());
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.sidecar;
+
+import com.strapdata.strapkop.OperatorConfig;
+import com.strapdata.strapkop.cache.NodeStatusCache;
+import com.strapdata.strapkop.k8s.ElassandraPod;
+import com.strapdata.strapkop.model.Key;
+import io.kubernetes.client.informer.SharedInformerFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class TestNodeStatusPoller {
+
+    @Test
+    public void testSlowPodsPolledConcurrently() throws Exception {
+        final int pods = 4;
+        // each snapshot completes only once all pods are being polled
+        final CountDownLatch polling = new CountDownLatch(pods);
+        JmxmpElassandraProxy proxy = mock(JmxmpElassandraProxy.class);
+        when(proxy.nodeSnapshot(any())).thenAnswer(invocation -> Single.fromCallable(() -> {
+            polling.countDown();
+            if (!polling.await(5, TimeUnit.SECONDS))
+                throw new IllegalStateException("pods polled sequentially");
+            return new NodeSnapshot();
+        }));
+        NodeStatusCache nodeStatusCache = mock(NodeStatusCache.class);
+        NodeStatusPoller poller = new NodeStatusPoller(new OperatorConfig(), mock(SharedInformerFactory.class), proxy, nodeStatusCache, new SimpleMeterRegistry());
+
+        Key dcKey = new Key("default", "elassandra-cl1-dc1");
+        List<ElassandraPod> elassandraPods = IntStream.range(0, pods)
+                .mapToObj(i -> new ElassandraPod("default", "cl1", "dc1", "elassandra-cl1-dc1-0-" + i))
+                .collect(Collectors.toList());
+        List<Boolean> results = Flowable.fromIterable(elassandraPods)
+                .flatMapSingle(pod -> poller.poll(dcKey, pod), false, pods)
+                .toList()
+                .blockingGet();
+
+        assertFalse(results.contains(false));
+        verify(nodeStatusCache, times(pods)).record(eq(dcKey), anyString(), any(NodeSnapshot.class));
+        verify(nodeStatusCache, never()).recordFailure(any(), anyString());
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.sidecar;
+
+import io.netty.channel.MultithreadEventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSidecarHttpClientPool {
+
+    @Test
+    public void testSharedGroupSurvivesClientClose() {
+        SidecarHttpClientPool.SharedEventLoopGroup group = new SidecarHttpClientPool.SharedEventLoopGroup(2,
+                new DefaultThreadFactory(MultithreadEventLoopGroup.class));
+        SidecarHttpClientPool.ClientThreadFactory threadFactory = group.retain();
+        assertSame(group, threadFactory.group);
+        assertNotNull(threadFactory.newThread(() -> { }));
+
+        // what DefaultHttpClient.close() does
+        assertTrue(group.shutdownGracefully().isSuccess());
+        assertFalse(group.isShuttingDown());
+        assertEquals(0, group.registeredChannels());
+
+        // the pool releases the last reference
+        group.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        assertTrue(group.isShutdown());
+        assertThrows(IllegalStateException.class, group::retain);
+    }
+
+    /**
+     * The clients of 100 pods share the event loops of one group.
+     */
+    @Test
+    public void testClientsShareEventLoops() {
+        int pods = 100;
+        SidecarHttpClientPool.SharedEventLoopGroup shared = new SidecarHttpClientPool.SharedEventLoopGroup(4,
+                new DefaultThreadFactory(MultithreadEventLoopGroup.class));
+        List<SidecarHttpClientPool.ClientThreadFactory> clients = new ArrayList<>(pods);
+        for (int i = 0; i < pods; i++)
+            clients.add(shared.retain());
+        assertEquals(pods + 1, shared.refCount());
+        assertEquals(4, shared.executorCount());
+
+        for (int i = 0; i < pods; i++)
+            shared.shutdownGracefully();
+        assertEquals(1, shared.refCount());
+        assertFalse(shared.isShuttingDown());
+
+        shared.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+        assertEquals(0, shared.refCount());
+        assertTrue(shared.isShutdown());
+    }
+}
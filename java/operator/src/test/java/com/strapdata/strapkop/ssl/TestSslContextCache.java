@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2020 Strapdata SAS (support@strapdata.com)
+ *
+ * The Elassandra-Operator is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The Elassandra-Operator is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with the Elassandra-Operator.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.strapdata.strapkop.ssl;
+
+import com.strapdata.strapkop.OperatorConfig;
+import com.strapdata.strapkop.ssl.utils.X509CertificateAndPrivateKey;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSslContextCache {
+
+    @Test
+    public void testCaRotation() {
+        SslContextCache cache = new SslContextCache(null, new OperatorConfig(), new SimpleMeterRegistry());
+        List<String> rotated = new ArrayList<>();
+        cache.addRotationListener((ns, cluster) -> rotated.add(ns + "/" + cluster));
+
+        X509CertificateAndPrivateKey ca1 = new X509CertificateAndPrivateKey("ca1-pem", "ca1-key");
+        SslContextCache.Contexts contexts = cache.contexts("default", "cl1", ca1);
+        assertSame(contexts, cache.contexts("default", "cl1", ca1));
+
+        // same CA reloaded from the secret
+        assertSame(contexts, cache.contexts("default", "cl1", new X509CertificateAndPrivateKey("ca1-pem", "ca1-key")));
+        assertTrue(rotated.isEmpty());
+
+        // other clusters are not affected
+        assertNotSame(contexts, cache.contexts("default", "cl2", ca1));
+
+        X509CertificateAndPrivateKey ca2 = new X509CertificateAndPrivateKey("ca2-pem", "ca2-key");
+        SslContextCache.Contexts contexts2 = cache.contexts("default", "cl1", ca2);
+        assertNotSame(contexts, contexts2);
+        assertNotEquals(contexts.fingerprint, contexts2.fingerprint);
+        assertEquals(1, rotated.size());
+        assertEquals("default/cl1", rotated.get(0));
+        assertSame(contexts2, cache.contexts("default", "cl1", ca2));
+    }
+}